@@ -0,0 +1,277 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.image;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.playsawdust.glow.image.color.RGBColor;
+import com.playsawdust.glow.model.ShaderAttribute;
+import com.playsawdust.glow.model.ShaderAttributeHolder;
+import com.playsawdust.glow.vecmath.Vector2d;
+import com.playsawdust.glow.vecmath.Vector3d;
+import com.playsawdust.glow.vecmath.Vector4d;
+
+/**
+ * One pixel of a triangle being drawn by {@link SoftwareRenderer}, with the attributes of the triangle's vertices
+ * interpolated across it.
+ *
+ * <p>When a triangle starts, the attributes of its first vertex are laid out into float slots: Doubles take one,
+ * Vector2d two, Vector3d three, and Vector4d and RGBColor four. Attributes of any other type, or which don't have the
+ * same type on all three vertices, aren't interpolated; the first vertex's value is used for the whole triangle.
+ *
+ * <p>Interpolation is perspective-correct, and is only done for the components that are asked for. Use
+ * {@link #getFloat(ShaderAttribute, int)} to read single components without allocating anything. {@link #get}
+ * builds a new record each time it's called, which is convenient but slow.
+ *
+ * <p>The renderer reuses one Fragment for every pixel it draws, so don't hold onto it after the PixelShader returns.
+ */
+public final class Fragment implements ShaderAttributeHolder {
+	private static final int FLAT = 0;
+
+	private ShaderAttribute<?>[] attributes = new ShaderAttribute<?>[8];
+	/* The number of float slots each attribute takes, or FLAT */
+	private int[] sizes = new int[8];
+	/* The index of each attribute's first slot */
+	private int[] offsets = new int[8];
+	/* The first vertex's value of each attribute, so flat attributes can be returned and interpolated ones rebuilt */
+	private Object[] values = new Object[8];
+	private int count;
+	/* The index of each attribute in the arrays above, by ShaderAttribute id, or -1 if the triangle doesn't have it */
+	private int[] indexById = new int[0];
+
+	/* Three floats per slot: the value at the first, second and third vertex of the triangle */
+	private float[] base = new float[48];
+	/* The same layout, for the corners currently being rasterized, each already divided by its w */
+	private float[] slots = new float[48];
+	private int slotCount;
+
+	private float q0, q1, q2;
+	private float p0, p1, p2;
+	private int x;
+	private int y;
+	private float depth;
+
+	private ShaderAttributeHolder b;
+	private ShaderAttributeHolder c;
+	private final BiConsumer<ShaderAttribute<?>, Object> collector = this::add;
+
+	Fragment() {}
+
+	/**
+	 * Lays out the attributes for a new triangle. This must be followed by one of the setCorners methods before any
+	 * pixels are shaded.
+	 */
+	void setTriangle(ShaderAttributeHolder a, ShaderAttributeHolder b, ShaderAttributeHolder c) {
+		for(int i=0; i<count; i++) indexById[attributes[i].id()] = -1;
+		Arrays.fill(values, 0, count, null);
+		count = 0;
+		slotCount = 0;
+
+		this.b = b;
+		this.c = c;
+		a.forEach(collector);
+		this.b = null;
+		this.c = null;
+	}
+
+	/**
+	 * Rasterizes the whole triangle.
+	 * @param w0 the clip-space w of the first vertex. w1 and w2 are the same for the second and third vertices. Pass 1
+	 *           for all three if there's no perspective, which makes interpolation linear in screen space.
+	 */
+	void setCorners(double w0, double w1, double w2) {
+		q0 = (float) (1 / w0);
+		q1 = (float) (1 / w1);
+		q2 = (float) (1 / w2);
+		for(int i=0; i<slotCount*3; i+=3) {
+			slots[i    ] = base[i    ] * q0;
+			slots[i + 1] = base[i + 1] * q1;
+			slots[i + 2] = base[i + 2] * q2;
+		}
+	}
+
+	/**
+	 * Rasterizes part of the triangle, as happens when it's been clipped. Each corner of the part is given as its
+	 * weights of the whole triangle's three vertices, which must be linear in clip space.
+	 * @param weights an array holding the weights of each corner
+	 * @param ofs0    the index in weights of the first corner's three weights. ofs1 and ofs2 do the same for the
+	 *                second and third corners.
+	 * @param w0      the clip-space w of the first corner
+	 */
+	void setCorners(float[] weights, int ofs0, int ofs1, int ofs2, double w0, double w1, double w2) {
+		q0 = (float) (1 / w0);
+		q1 = (float) (1 / w1);
+		q2 = (float) (1 / w2);
+		for(int i=0; i<slotCount*3; i+=3) {
+			float a = base[i];
+			float b = base[i + 1];
+			float c = base[i + 2];
+			slots[i    ] = (weights[ofs0] * a + weights[ofs0 + 1] * b + weights[ofs0 + 2] * c) * q0;
+			slots[i + 1] = (weights[ofs1] * a + weights[ofs1 + 1] * b + weights[ofs1 + 2] * c) * q1;
+			slots[i + 2] = (weights[ofs2] * a + weights[ofs2 + 1] * b + weights[ofs2 + 2] * c) * q2;
+		}
+	}
+
+	/**
+	 * Moves to a new pixel.
+	 * @param b1 the screen-space barycentric weight of the second vertex
+	 * @param b2 the screen-space barycentric weight of the third vertex
+	 */
+	void setPixel(int x, int y, float depth, float b1, float b2) {
+		this.x = x;
+		this.y = y;
+		this.depth = depth;
+
+		//Screen-space weights are linear in attribute/w, which is what the slots hold. Interpolating 1/w the same way
+		//and dividing by it recovers the attribute, so p_i = b_i / (b_0 q_0 + b_1 q_1 + b_2 q_2), with q_i = 1/w_i.
+		//The slots already carry one factor of q_i, so the weights mustn't.
+		float b0 = 1 - b1 - b2;
+		float scale = 1 / (b0 * q0 + b1 * q1 + b2 * q2);
+		p0 = b0 * scale;
+		p1 = b1 * scale;
+		p2 = b2 * scale;
+	}
+
+	/** Returns the x coordinate of the pixel being shaded */
+	public int getX() {
+		return x;
+	}
+
+	/** Returns the y coordinate of the pixel being shaded */
+	public int getY() {
+		return y;
+	}
+
+	/** Returns the value written to the z-buffer for this pixel */
+	public float getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Returns true if the triangle has the specified attribute at all.
+	 */
+	public boolean has(ShaderAttribute<?> attribute) {
+		return indexOf(attribute) != -1;
+	}
+
+	/**
+	 * Returns one component of an interpolated attribute.
+	 * @param attribute the attribute to get
+	 * @param component which component to get: 0-2 for x, y, and z, 3 for w, or for colors, 0-3 for r, g, b, and alpha
+	 * @return the interpolated component, or 0 if the attribute is missing, has fewer components, or isn't
+	 *         interpolated
+	 */
+	public float getFloat(ShaderAttribute<?> attribute, int component) {
+		int index = indexOf(attribute);
+		if (index == -1 || component < 0 || component >= sizes[index]) return 0;
+		int slot = (offsets[index] + component) * 3;
+		return p0 * slots[slot] + p1 * slots[slot + 1] + p2 * slots[slot + 2];
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T> @Nullable T get(ShaderAttribute<T> attribute) {
+		int index = indexOf(attribute);
+		if (index == -1) return null;
+		Object value = values[index];
+		if (sizes[index] == FLAT) return (T) value;
+
+		return (T) switch(value) {
+			case Double d -> Double.valueOf(getFloat(attribute, 0));
+			case Vector2d v -> new Vector2d(getFloat(attribute, 0), getFloat(attribute, 1));
+			case Vector3d v -> new Vector3d(getFloat(attribute, 0), getFloat(attribute, 1), getFloat(attribute, 2));
+			case Vector4d v -> new Vector4d(getFloat(attribute, 0), getFloat(attribute, 1), getFloat(attribute, 2), getFloat(attribute, 3));
+			case RGBColor col -> new RGBColor(getFloat(attribute, 3), getFloat(attribute, 0), getFloat(attribute, 1), getFloat(attribute, 2));
+			default -> value;
+		};
+	}
+
+	@Override
+	public Map<ShaderAttribute<?>, Object> getAll() {
+		Map<ShaderAttribute<?>, Object> result = new HashMap<>();
+		for(int i=0; i<count; i++) {
+			result.put(attributes[i], get(attributes[i]));
+		}
+		return result;
+	}
+
+	private int indexOf(ShaderAttribute<?> attribute) {
+		int id = attribute.id();
+		return (id < indexById.length) ? indexById[id] : -1;
+	}
+
+	private void add(ShaderAttribute<?> attribute, Object value) {
+		if (count == attributes.length) {
+			int newSize = count * 2;
+			attributes = Arrays.copyOf(attributes, newSize);
+			sizes = Arrays.copyOf(sizes, newSize);
+			offsets = Arrays.copyOf(offsets, newSize);
+			values = Arrays.copyOf(values, newSize);
+		}
+
+		Object bValue = b.get(attribute);
+		Object cValue = c.get(attribute);
+		int size = componentCount(value);
+		if (bValue == null || cValue == null || bValue.getClass() != value.getClass() || cValue.getClass() != value.getClass()) {
+			size = FLAT;
+		}
+
+		if (attribute.id() >= indexById.length) {
+			int oldLength = indexById.length;
+			indexById = Arrays.copyOf(indexById, Math.max(ShaderAttribute.count(), attribute.id() + 1));
+			Arrays.fill(indexById, oldLength, indexById.length, -1);
+		}
+		indexById[attribute.id()] = count;
+		attributes[count] = attribute;
+		sizes[count] = size;
+		offsets[count] = slotCount;
+		values[count] = value;
+		count++;
+
+		if (size == FLAT) return;
+		if ((slotCount + size) * 3 > base.length) {
+			base = Arrays.copyOf(base, Math.max(base.length * 2, (slotCount + size) * 3));
+			slots = new float[base.length];
+		}
+		for(int i=0; i<size; i++) {
+			int slot = (slotCount + i) * 3;
+			base[slot    ] = component(value, i);
+			base[slot + 1] = component(bValue, i);
+			base[slot + 2] = component(cValue, i);
+		}
+		slotCount += size;
+	}
+
+	private static int componentCount(Object value) {
+		return switch(value) {
+			case Double d -> 1;
+			case Vector2d v -> 2;
+			case Vector3d v -> 3;
+			case Vector4d v -> 4;
+			case RGBColor c -> 4;
+			default -> FLAT;
+		};
+	}
+
+	private static float component(Object value, int i) {
+		return (float) switch(value) {
+			case Double d -> d;
+			case Vector2d v -> (i == 0) ? v.x() : v.y();
+			case Vector3d v -> (i == 0) ? v.x() : (i == 1) ? v.y() : v.z();
+			case Vector4d v -> (i == 0) ? v.x() : (i == 1) ? v.y() : (i == 2) ? v.z() : v.w();
+			case RGBColor c -> (i == 0) ? c.r() : (i == 1) ? c.g() : (i == 2) ? c.b() : c.alpha();
+			default -> 0.0;
+		};
+	}
+}
@@ -37,6 +37,62 @@ public interface ImageData extends Sized {
 	
 	void setPixel(int x, int y, RGBColor color);
 	
+	/*
+	 * Primitive access. These do the same jobs as getLinearPixel and setPixel(x, y, RGBColor), but without allocating,
+	 * so that they can be used in tight compositing loops. Colors are always laid out as linear R, G, B, A floats.
+	 */
+	
+	/**
+	 * Gets the value of the indicated pixel as linear R, G, B, and A values, written into the first four elements of
+	 * out. If the pixel is outside the image, transparent black will be written.
+	 */
+	default void getLinear(int x, int y, float[] out) {
+		RGBColor color = getLinearPixel(x, y);
+		out[0] = color.r();
+		out[1] = color.g();
+		out[2] = color.b();
+		out[3] = color.alpha();
+	}
+	
+	/**
+	 * Sets the value of the indicated pixel from linear components. If the pixel is outside the image, nothing
+	 * happens.
+	 */
+	default void setLinear(int x, int y, float r, float g, float b, float a) {
+		setPixel(x, y, new RGBColor(a, r, g, b));
+	}
+	
+	/**
+	 * Reads a run of pixels from one row of the image, as interleaved linear R, G, B, A values. Pixels which fall
+	 * outside the image read as transparent black.
+	 * @param y    the row to read from
+	 * @param x    the first column to read
+	 * @param len  the number of pixels to read
+	 * @param rgba the array to store values in. Must be at least {@code len * 4} elements long.
+	 */
+	default void getLinearRow(int y, int x, int len, float[] rgba) {
+		float[] pixel = new float[4];
+		for(int i=0; i<len; i++) {
+			getLinear(x + i, y, pixel);
+			System.arraycopy(pixel, 0, rgba, i*4, 4);
+		}
+	}
+	
+	/**
+	 * Writes a run of pixels into one row of the image, from interleaved linear R, G, B, A values. Pixels which fall
+	 * outside the image are skipped.
+	 * @param y    the row to write to
+	 * @param x    the first column to write
+	 * @param len  the number of pixels to write
+	 * @param rgba the values to write. Must be at least {@code len * 4} elements long.
+	 */
+	default void setLinearRow(int y, int x, int len, float[] rgba) {
+		for(int i=0; i<len; i++) {
+			int ofs = i*4;
+			setLinear(x + i, y, rgba[ofs], rgba[ofs+1], rgba[ofs+2], rgba[ofs+3]);
+		}
+	}
+	
 	default void setPixel(int x, int y, XYZColor color) { setPixel(x,y, color.toRgb()); }
 	default void setPixel(int x, int y, LABColor color) {setPixel(x,y, color.toXyz(Colors.WHITEPOINT_D65).toRgb()); }
 }
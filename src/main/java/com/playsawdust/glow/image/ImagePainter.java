@@ -8,52 +8,130 @@
  */
 package com.playsawdust.glow.image;
 
+import java.util.Arrays;
+
 import com.playsawdust.glow.image.color.BlendMode;
 import com.playsawdust.glow.image.color.RGBColor;
+import com.playsawdust.glow.render.ClipStack;
 import com.playsawdust.glow.render.Painter;
+import com.playsawdust.glow.render.PainterType;
 
 public class ImagePainter implements Painter {
 	private ImageData target;
 	private BlendMode mode;
+	private final ClipStack clip = new ClipStack(this);
+	
+	/* Scratch rows, reused between calls so that drawing doesn't allocate. This is why painters aren't thread-safe. */
+	private float[] srcRow = new float[0];
+	private float[] destRow = new float[0];
+	private float[] tintRow = new float[0];
 	
 	public ImagePainter(ImageData target, BlendMode mode) {
 		this.target = target;
 		this.mode = mode;
 	}
 	
+	/**
+	 * Creates a Painter of the requested type which draws onto target.
+	 * @throws IllegalArgumentException if that type of Painter can't draw onto this kind of image
+	 */
+	public static Painter create(ImageData target, PainterType type) {
+		if (type instanceof BlendModePainterType blendType) {
+			return new ImagePainter(target, blendType.getBlendMode());
+		} else if (type == PainterType.FAST_SRGB && target instanceof SrgbImageData srgb) {
+			return new FastSrgbPainter(srgb);
+		}
+		throw new IllegalArgumentException("Can't create a "+type+" for "+target.getClass().getSimpleName()+".");
+	}
+	
 	@Override
 	public void drawImage(ImageData image, int destX, int destY, int srcX, int srcY, int width, int height, float opacity) {
-		for(int y = 0; y < height; y++) {
-			for(int x = 0; x < width; x++) {
-				RGBColor src = image.getLinearPixel(srcX + x, srcY + y);
-				RGBColor dest = target.getLinearPixel(destX + x, destY + y);
-				RGBColor result = mode.blend(src, dest, opacity);
-				target.setPixel(destX + x, destY + y, result);
+		int x0 = Math.max(0, Math.max(clip.left() - destX, -srcX));
+		int x1 = Math.min(width, Math.min(clip.right() - destX, image.getWidth() - srcX));
+		int y0 = Math.max(0, Math.max(clip.top() - destY, -srcY));
+		int y1 = Math.min(height, Math.min(clip.bottom() - destY, image.getHeight() - srcY));
+		if (x0 >= x1 || y0 >= y1) return;
+		
+		int len = x1 - x0;
+		if (image instanceof LinearImageData src && target instanceof LinearImageData dest) {
+			//Both sides are already planar, so blend straight from plane to plane
+			for(int y = y0; y < y1; y++) {
+				mode.blendPlanes(
+						src.getRed(), src.getGreen(), src.getBlue(), src.getAlpha(), (srcY + y) * src.getWidth() + srcX + x0,
+						dest.getRed(), dest.getGreen(), dest.getBlue(), dest.getAlpha(), (destY + y) * dest.getWidth() + destX + x0,
+						len, opacity);
 			}
+			return;
+		}
+		
+		ensureRows(len);
+		for(int y = y0; y < y1; y++) {
+			image.getLinearRow(srcY + y, srcX + x0, len, srcRow);
+			target.getLinearRow(destY + y, destX + x0, len, destRow);
+			mode.blendRow(srcRow, destRow, len, opacity);
+			target.setLinearRow(destY + y, destX + x0, len, destRow);
 		}
 	}
 
 	@Override
 	public void drawTintImage(ImageData image, int destX, int destY, int srcX, int srcY, int width, int height, RGBColor tintColor) {
-		for(int y = 0; y < height; y++) {
-			for(int x = 0; x < width; x++) {
-				RGBColor src = image.getLinearPixel(srcX + x, srcY + y);
-				RGBColor dest = target.getLinearPixel(destX + x, destY + y);
-				
-				RGBColor tintedSrc = BlendMode.NORMAL.blend(tintColor, src);
-				RGBColor result = mode.blend(tintedSrc, dest);
-				target.setPixel(destX + x, destY + y, result);
-			}
+		int x0 = Math.max(0, Math.max(clip.left() - destX, -srcX));
+		int x1 = Math.min(width, Math.min(clip.right() - destX, image.getWidth() - srcX));
+		int y0 = Math.max(0, Math.max(clip.top() - destY, -srcY));
+		int y1 = Math.min(height, Math.min(clip.bottom() - destY, image.getHeight() - srcY));
+		if (x0 >= x1 || y0 >= y1) return;
+		
+		int len = x1 - x0;
+		ensureRows(len);
+		for(int y = y0; y < y1; y++) {
+			image.getLinearRow(srcY + y, srcX + x0, len, srcRow);
+			target.getLinearRow(destY + y, destX + x0, len, destRow);
+			
+			//Tint the source row in place, then blend it onto the destination
+			fillRow(tintRow, len, tintColor);
+			BlendMode.NORMAL.blendRow(tintRow, srcRow, len, 1.0f);
+			mode.blendRow(srcRow, destRow, len, 1.0f);
+			target.setLinearRow(destY + y, destX + x0, len, destRow);
 		}
 	}
 
 	@Override
 	public void drawPixel(int x, int y, RGBColor color) {
-		RGBColor dest = target.getLinearPixel(x, y);
-		RGBColor result = mode.blend(color, dest);
-		target.setPixel(x, y, result);
+		fillSpan(x, x + 1, y, color);
+	}
+	
+	@Override
+	public void fillSpan(int x0, int x1, int y, RGBColor color) {
+		if (y<clip.top() || y>=clip.bottom()) return;
+		x0 = Math.max(x0, clip.left());
+		x1 = Math.min(x1, clip.right());
+		if (x0 >= x1) return;
+		
+		if (mode == BlendMode.NORMAL && color.alpha() == 1.0f) {
+			//An opaque color drawn normally replaces what's underneath, so there's nothing to blend
+			if (target instanceof SrgbImageData srgb) {
+				int rowOfs = y * srgb.getWidth();
+				Arrays.fill(srgb.getData(), rowOfs + x0, rowOfs + x1, color.toSrgb());
+				return;
+			} else if (target instanceof LinearImageData linear) {
+				linear.fillSpan(x0, x1, y, color);
+				return;
+			}
+		}
+		
+		int len = x1 - x0;
+		ensureRows(len);
+		fillRow(srcRow, len, color);
+		target.getLinearRow(y, x0, len, destRow);
+		mode.blendRow(srcRow, destRow, len, 1.0f);
+		target.setLinearRow(y, x0, len, destRow);
 	}
 
+	@Override
+	public ClipStack getClipStack() {
+		return clip;
+	}
+	
 	@Override
 	public int getWidth() {
 		return target.getWidth();
@@ -64,4 +142,21 @@ public class ImagePainter implements Painter {
 		return target.getHeight();
 	}
 	
+	private void ensureRows(int len) {
+		if (srcRow.length < len*4) {
+			srcRow = new float[len*4];
+			destRow = new float[len*4];
+			tintRow = new float[len*4];
+		}
+	}
+	
+	private static void fillRow(float[] row, int len, RGBColor color) {
+		for(int i=0; i<len; i++) {
+			int ofs = i*4;
+			row[ofs  ] = color.r();
+			row[ofs+1] = color.g();
+			row[ofs+2] = color.b();
+			row[ofs+3] = color.alpha();
+		}
+	}
 }
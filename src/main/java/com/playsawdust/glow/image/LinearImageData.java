@@ -8,6 +8,9 @@
  */
 package com.playsawdust.glow.image;
 
+import java.util.Arrays;
+
+import com.playsawdust.glow.image.color.GammaLut;
 import com.playsawdust.glow.image.color.RGBColor;
 
 public class LinearImageData implements ImageData {
@@ -39,14 +42,8 @@ public class LinearImageData implements ImageData {
 	}
 	
 	public LinearImageData(SrgbImageData image) {
-		this.width = image.getWidth();
-		this.height = image.getHeight();
-		
-		for(int y=0; y<height; y++) {
-			for(int x=0; x<width; x++) {
-				setPixel(x, y, image.getLinearPixel(x, y));
-			}
-		}
+		this(image.getWidth(), image.getHeight());
+		GammaLut.decodePlanes(image.getData(), 0, r, g, b, a, 0, width*height);
 	}
 	
 	@Override
@@ -59,6 +56,19 @@ public class LinearImageData implements ImageData {
 		return height;
 	}
 	
+	/*
+	 * Direct access to the channel planes. Each one is laid out row by row, so the pixel at (x, y) is at index
+	 * y * width + x. The arrays are replaced when the image is resized.
+	 */
+	
+	public float[] getRed() { return r; }
+	
+	public float[] getGreen() { return g; }
+	
+	public float[] getBlue() { return b; }
+	
+	public float[] getAlpha() { return a; }
+	
 	public void resize(int width, int height) {
 		float[] newA = new float[width*height];
 		float[] newR = new float[width*height];
@@ -91,6 +101,13 @@ public class LinearImageData implements ImageData {
 	public SrgbImageData toSrgb() {
 		return new SrgbImageData(this);
 	}
+	
+	/**
+	 * Packs this entire image into sRGB pixels. Used by {@link SrgbImageData#SrgbImageData(LinearImageData)}.
+	 */
+	void encodeSrgb(int[] dest) {
+		GammaLut.encodePlanes(r, g, b, a, 0, dest, 0, width*height);
+	}
 
 	@Override
 	public int getSrgbPixel(int x, int y) {
@@ -98,19 +115,18 @@ public class LinearImageData implements ImageData {
 		
 		int index = y * width + x;
 		
-		return new RGBColor(a[index], r[index], g[index], b[index]).toSrgb();
+		return GammaLut.encode(r[index], g[index], b[index], a[index]);
 	}
 
 	@Override
 	public void setPixel(int x, int y, int srgb) {
 		if (x<0 || x>=width || y<0 || y>=height) return;
 		
-		RGBColor rgb = new RGBColor(srgb);
 		int index = y * width + x;
-		a[index] = rgb.alpha();
-		r[index] = rgb.r();
-		g[index] = rgb.g();
-		b[index] = rgb.b();
+		a[index] = ((srgb >> 24) & 0xFF) / 255.0f;
+		r[index] = GammaLut.decode((srgb >> 16) & 0xFF);
+		g[index] = GammaLut.decode((srgb >>  8) & 0xFF);
+		b[index] = GammaLut.decode( srgb        & 0xFF);
 	}
 
 	@Override
@@ -121,6 +137,69 @@ public class LinearImageData implements ImageData {
 		return new RGBColor(a[index], r[index], g[index], b[index]);
 	}
 
+	@Override
+	public void getLinear(int x, int y, float[] out) {
+		if (x<0 || x>=width || y<0 || y>=height) {
+			out[0] = 0; out[1] = 0; out[2] = 0; out[3] = 0;
+			return;
+		}
+		
+		int index = y * width + x;
+		out[0] = r[index];
+		out[1] = g[index];
+		out[2] = b[index];
+		out[3] = a[index];
+	}
+	
+	@Override
+	public void setLinear(int x, int y, float r, float g, float b, float a) {
+		if (x<0 || x>=width || y<0 || y>=height) return;
+		
+		int index = y * width + x;
+		this.r[index] = r;
+		this.g[index] = g;
+		this.b[index] = b;
+		this.a[index] = a;
+	}
+	
+	@Override
+	public void getLinearRow(int y, int x, int len, float[] rgba) {
+		if (y<0 || y>=height) {
+			Arrays.fill(rgba, 0, len*4, 0f);
+			return;
+		}
+		
+		int rowOfs = y * width + x;
+		for(int i=0; i<len; i++) {
+			int ofs = i*4;
+			if (x+i<0 || x+i>=width) {
+				rgba[ofs] = 0; rgba[ofs+1] = 0; rgba[ofs+2] = 0; rgba[ofs+3] = 0;
+				continue;
+			}
+			int index = rowOfs + i;
+			rgba[ofs  ] = r[index];
+			rgba[ofs+1] = g[index];
+			rgba[ofs+2] = b[index];
+			rgba[ofs+3] = a[index];
+		}
+	}
+	
+	@Override
+	public void setLinearRow(int y, int x, int len, float[] rgba) {
+		if (y<0 || y>=height) return;
+		int start = Math.max(0, -x);
+		int end = Math.min(len, width - x);
+		int rowOfs = y * width + x;
+		for(int i=start; i<end; i++) {
+			int ofs = i*4;
+			int index = rowOfs + i;
+			r[index] = rgba[ofs  ];
+			g[index] = rgba[ofs+1];
+			b[index] = rgba[ofs+2];
+			a[index] = rgba[ofs+3];
+		}
+	}
+	
 	@Override
 	public void setPixel(int x, int y, RGBColor color) {
 		if (x<0 || x>=width || y<0 || y>=height) return;
@@ -131,5 +210,16 @@ public class LinearImageData implements ImageData {
 		g[index] = color.g();
 		b[index] = color.b();
 	}
+	
+	/**
+	 * Overwrites a run of pixels in one row with a color. The span must already be clipped to the image.
+	 */
+	void fillSpan(int x0, int x1, int y, RGBColor color) {
+		int rowOfs = y * width;
+		Arrays.fill(r, rowOfs + x0, rowOfs + x1, color.r());
+		Arrays.fill(g, rowOfs + x0, rowOfs + x1, color.g());
+		Arrays.fill(b, rowOfs + x0, rowOfs + x1, color.b());
+		Arrays.fill(a, rowOfs + x0, rowOfs + x1, color.alpha());
+	}
 
 }
@@ -0,0 +1,225 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.image;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+import com.playsawdust.glow.image.color.RGBColor;
+import com.playsawdust.glow.render.ClipStack;
+import com.playsawdust.glow.render.Painter;
+import com.playsawdust.glow.render.PainterType;
+
+/**
+ * A Painter which records drawing commands and renders them later, on many threads at once.
+ *
+ * <p>The target is split into square tiles of {@link #TILE_SIZE} pixels. Each command is filed under every tile its
+ * bounding box touches, and {@link #flush()} renders the tiles in parallel, each on its own Painter with the tile
+ * pushed as its clip. Within a tile, commands run in the order they were submitted, and every pixel belongs to exactly one tile,
+ * so the result is exactly the same as painting the commands one after another.
+ *
+ * <p>Nothing is drawn until flush is called. Images passed to drawImage and drawTintImage are read during the flush,
+ * so they must not be modified until it's done. The target mustn't be resized or drawn to by anything else in the
+ * meantime, either. Like other Painters, this class is not thread-safe; only the flush itself runs in parallel.
+ */
+public class ParallelPainter implements Painter {
+	public static final int TILE_SIZE = 64;
+
+	private final ImageData target;
+	private final PainterType type;
+	private final ForkJoinPool pool;
+
+	private final int tilesX;
+	private final int tilesY;
+	private final List<List<Consumer<Painter>>> tiles;
+	private final ClipStack clip = new ClipStack(this);
+
+	/**
+	 * Creates a ParallelPainter which renders on the common ForkJoinPool.
+	 * @param target the image to draw onto
+	 * @param type   the kind of Painter to draw each tile with. See {@link ImagePainter#create(ImageData, PainterType)}.
+	 */
+	public ParallelPainter(ImageData target, PainterType type) {
+		this(target, type, ForkJoinPool.commonPool());
+	}
+
+	public ParallelPainter(ImageData target, PainterType type, ForkJoinPool pool) {
+		ImagePainter.create(target, type); //Fail now, rather than on flush, if this type can't draw on this target
+		this.target = target;
+		this.type = type;
+		this.pool = pool;
+
+		this.tilesX = (target.getWidth() + TILE_SIZE - 1) / TILE_SIZE;
+		this.tilesY = (target.getHeight() + TILE_SIZE - 1) / TILE_SIZE;
+		this.tiles = new ArrayList<>(tilesX * tilesY);
+		for(int i=0; i<tilesX * tilesY; i++) {
+			tiles.add(new ArrayList<>());
+		}
+	}
+
+	/**
+	 * Renders every command recorded since the last flush, and waits for rendering to finish.
+	 */
+	public void flush() {
+		List<ForkJoinTask<?>> tasks = new ArrayList<>();
+		for(int ty=0; ty<tilesY; ty++) {
+			for(int tx=0; tx<tilesX; tx++) {
+				List<Consumer<Painter>> commands = tiles.get(ty * tilesX + tx);
+				if (commands.isEmpty()) continue;
+
+				int x0 = tx * TILE_SIZE;
+				int y0 = ty * TILE_SIZE;
+				tasks.add(ForkJoinTask.adapt(() -> {
+					Painter painter = ImagePainter.create(target, type);
+					painter.pushClip(x0, y0, TILE_SIZE, TILE_SIZE);
+					for(Consumer<Painter> command : commands) {
+						command.accept(painter);
+					}
+				}));
+			}
+		}
+
+		try {
+			if (!tasks.isEmpty()) pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+		} finally {
+			for(List<Consumer<Painter>> commands : tiles) commands.clear();
+		}
+	}
+
+	/**
+	 * Files a command under every tile that both its bounding box and the current clip overlap. If a clip has been
+	 * pushed, the command is wrapped so that the tile's Painter applies the same clip when it runs.
+	 * @param x0 the left edge of the bounding box
+	 * @param y0 the top edge of the bounding box
+	 * @param x1 the right edge of the bounding box, exclusive
+	 * @param y1 the bottom edge of the bounding box, exclusive
+	 */
+	private void record(long x0, long y0, long x1, long y1, Consumer<Painter> action) {
+		//Clamp to the clip on both sides before narrowing, so far-off bounds can't wrap around into the image
+		int minX = (int) Math.min(Math.max(x0, clip.left()), clip.right());
+		int minY = (int) Math.min(Math.max(y0, clip.top()), clip.bottom());
+		int maxX = (int) Math.max(Math.min(x1, clip.right()), clip.left());
+		int maxY = (int) Math.max(Math.min(y1, clip.bottom()), clip.top());
+		if (minX >= maxX || minY >= maxY) return;
+		
+		if (clip.depth() > 0) {
+			Consumer<Painter> unclipped = action;
+			int left = clip.left();
+			int top = clip.top();
+			int width = clip.right() - left;
+			int height = clip.bottom() - top;
+			action = p -> {
+				p.pushClip(left, top, width, height);
+				unclipped.accept(p);
+				p.popClip();
+			};
+		}
+
+		for(int ty = minY / TILE_SIZE; ty <= (maxY - 1) / TILE_SIZE; ty++) {
+			for(int tx = minX / TILE_SIZE; tx <= (maxX - 1) / TILE_SIZE; tx++) {
+				tiles.get(ty * tilesX + tx).add(action);
+			}
+		}
+	}
+
+	@Override
+	public void drawImage(ImageData image, int destX, int destY, int srcX, int srcY, int width, int height, float opacity) {
+		record(destX, destY, (long) destX + width, (long) destY + height,
+				p -> p.drawImage(image, destX, destY, srcX, srcY, width, height, opacity));
+	}
+
+	@Override
+	public void drawTintImage(ImageData image, int destX, int destY, int srcX, int srcY, int width, int height, RGBColor tintColor) {
+		record(destX, destY, (long) destX + width, (long) destY + height,
+				p -> p.drawTintImage(image, destX, destY, srcX, srcY, width, height, tintColor));
+	}
+
+	@Override
+	public void drawPixel(int x, int y, RGBColor color) {
+		record(x, y, x + 1L, y + 1L, p -> p.drawPixel(x, y, color));
+	}
+
+	@Override
+	public void fillSpan(int x0, int x1, int y, RGBColor color) {
+		record(x0, y, x1, y + 1L, p -> p.fillSpan(x0, x1, y, color));
+	}
+
+	@Override
+	public void clear(RGBColor color) {
+		record(0, 0, target.getWidth(), target.getHeight(), p -> p.clear(color));
+	}
+
+	@Override
+	public ClipStack getClipStack() {
+		return clip;
+	}
+
+	@Override
+	public void drawLine(double x1, double y1, double x2, double y2, RGBColor color) {
+		record(
+				(long) Math.floor(Math.min(x1, x2)) - 1, (long) Math.floor(Math.min(y1, y2)) - 1,
+				(long) Math.ceil(Math.max(x1, x2)) + 2, (long) Math.ceil(Math.max(y1, y2)) + 2,
+				p -> p.drawLine(x1, y1, x2, y2, color));
+	}
+
+	@Override
+	public void drawLine(double x1, double y1, double x2, double y2, RGBColor color, double lineWeight) {
+		long pad = (long) Math.ceil(lineWeight / 2) + 2;
+		record(
+				(long) Math.floor(Math.min(x1, x2)) - pad, (long) Math.floor(Math.min(y1, y2)) - pad,
+				(long) Math.ceil(Math.max(x1, x2)) + pad, (long) Math.ceil(Math.max(y1, y2)) + pad,
+				p -> p.drawLine(x1, y1, x2, y2, color, lineWeight));
+	}
+
+	@Override
+	public void fillRect(int x, int y, int width, int height, RGBColor color) {
+		record(x, y, (long) x + width, (long) y + height, p -> p.fillRect(x, y, width, height, color));
+	}
+
+	@Override
+	public void fillTriangle(int x1, int y1, int x2, int y2, int x3, int y3, RGBColor color) {
+		record(
+				Math.min(x1, Math.min(x2, x3)), Math.min(y1, Math.min(y2, y3)),
+				Math.max(x1, Math.max(x2, x3)) + 1L, Math.max(y1, Math.max(y2, y3)) + 1L,
+				p -> p.fillTriangle(x1, y1, x2, y2, x3, y3, color));
+	}
+
+	@Override
+	public void fillQuad(int x1, int y1, int x2, int y2, int x3, int y3, int x4, int y4, RGBColor color) {
+		record(
+				Math.min(Math.min(x1, x2), Math.min(x3, x4)), Math.min(Math.min(y1, y2), Math.min(y3, y4)),
+				Math.max(Math.max(x1, x2), Math.max(x3, x4)) + 1L, Math.max(Math.max(y1, y2), Math.max(y3, y4)) + 1L,
+				p -> p.fillQuad(x1, y1, x2, y2, x3, y3, x4, y4, color));
+	}
+
+	@Override
+	public void fillCircle(int x, int y, double radius, RGBColor color) {
+		long ir = (long) Math.ceil(radius);
+		record(x - ir, y - ir, x + ir + 1, y + ir + 1, p -> p.fillCircle(x, y, radius, color));
+	}
+
+	@Override
+	public void outlineCircle(int x, int y, double radius, RGBColor color, double weight) {
+		long extent = (long) Math.ceil(radius) + (long) radius;
+		record(x - extent, y - extent, x + extent + 1, y + extent + 1, p -> p.outlineCircle(x, y, radius, color, weight));
+	}
+
+	@Override
+	public int getWidth() {
+		return target.getWidth();
+	}
+
+	@Override
+	public int getHeight() {
+		return target.getHeight();
+	}
+}
@@ -9,14 +9,13 @@
 package com.playsawdust.glow.image;
 
 import java.util.Arrays;
-import java.util.Map;
-import java.util.function.Consumer;
-
-import org.checkerframework.checker.nullness.qual.Nullable;
+import java.util.function.Function;
 
 import com.playsawdust.glow.image.color.RGBColor;
 import com.playsawdust.glow.model.Material;
 import com.playsawdust.glow.model.Mesh;
+import com.playsawdust.glow.model.Model;
+import com.playsawdust.glow.model.PackedMesh;
 import com.playsawdust.glow.model.ShaderAttributeHolder;
 import com.playsawdust.glow.model.Mesh.Vertex;
 import com.playsawdust.glow.model.ShaderAttribute;
@@ -25,20 +24,91 @@ import com.playsawdust.glow.render.Renderer;
 import com.playsawdust.glow.vecmath.Matrix4;
 import com.playsawdust.glow.vecmath.Vector3d;
 
+/**
+ * Draws 3d geometry onto a Painter, on the CPU.
+ *
+ * <p>{@link #renderModel(Model, double, double, double, Function) renderModel} runs the whole pipeline: each mesh's
+ * vertices are transformed into clip space by the transform, then triangles are culled, clipped, divided by w, mapped
+ * to the screen and rasterized. {@link #fillTriangle fillTriangle} and {@link #drawTriangle drawTriangle} skip the
+ * vertex stage, and take positions which are already in pixels.
+ */
 public class SoftwareRenderer implements Renderer {
+	/** How far outside of the screen, in multiples of its half-size, triangles can reach before they're clipped */
+	private static final float GUARD_BAND = 64;
+	
+	/* Outcode bits, one for each clip plane, in the order they're clipped against */
+	private static final int CLIP_NEAR   = 1;
+	private static final int CLIP_FAR    = 2;
+	private static final int CLIP_LEFT   = 4;
+	private static final int CLIP_RIGHT  = 8;
+	private static final int CLIP_TOP    = 16;
+	private static final int CLIP_BOTTOM = 32;
+	private static final int CLIP_PLANES = 6;
+	
+	/* Clipped polygons hold clip-space x, y, z, w, and then the weights of the original triangle's three vertices */
+	private static final int POLYGON_STRIDE = 7;
+	private static final int POLYGON_MAX = 3 + CLIP_PLANES;
+	private static final float[] CORNERS = { 1, 0, 0,  0, 1, 0,  0, 0, 1 };
+	
+	private static final RGBColor WHITE = new RGBColor(1, 1, 1, 1);
+	
 	private Matrix4 transform = Matrix4.IDENTITY; // Identity puts 0,0,0 in the middle, GL style
+	private boolean cullBackFaces = true;
 	private float[] zbuffer;
 	private Painter target;
-	private Vector3d[] leftPoints;
-	private Vector3d[] rightPoints;
+	private final TriangleRasterizer rasterizer;
+	private final SpanCollector spans = new SpanCollector();
+	private final Fragment fragment = new Fragment();
+	private final FragmentShader fragmentShader = new FragmentShader();
 	
 	private PixelShader shader = SoftwareRenderer::defaultShader;
 	
+	/* Vertex stage scratch space, reused from mesh to mesh */
+	private float[] clipCoords = new float[0];   // x, y, z, w per vertex
+	private float[] screenCoords = new float[0]; // x, y, z per vertex, only valid if its outcode is zero
+	private byte[] outcodes = new byte[0];
+	private Vertex[] vertices = new Vertex[0];
+	private float[] polygon = new float[POLYGON_MAX * POLYGON_STRIDE];
+	private float[] clipped = new float[POLYGON_MAX * POLYGON_STRIDE];
+	private final float[] polygonScreen = new float[POLYGON_MAX * 3];
+	
 	public SoftwareRenderer(Painter target) {
 		this.target = target;
 		this.zbuffer = new float[target.getWidth() * target.getHeight()];
+		this.rasterizer = new TriangleRasterizer(zbuffer, target.getWidth());
+		clearDepth();
+	}
+	
+	/**
+	 * Resets the z-buffer so that the next triangle drawn over any pixel will be visible.
+	 */
+	public void clearDepth() {
+		Arrays.fill(zbuffer, Float.POSITIVE_INFINITY);
 	}
 
+	/**
+	 * Returns true if renderModel skips triangles which face away from the viewer.
+	 */
+	public boolean getCullBackFaces() {
+		return cullBackFaces;
+	}
+	
+	/**
+	 * Sets whether renderModel skips triangles which face away from the viewer. Front faces wind counter-clockwise
+	 * once they're on screen, like GL's default. This is on by default.
+	 */
+	public void setCullBackFaces(boolean cullBackFaces) {
+		this.cullBackFaces = cullBackFaces;
+	}
+	
+	public PixelShader getPixelShader() {
+		return shader;
+	}
+	
+	public void setPixelShader(PixelShader shader) {
+		this.shader = shader;
+	}
+	
 	@Override
 	public Matrix4 getTransform() {
 		return transform;
@@ -51,51 +121,9 @@ public class SoftwareRenderer implements Renderer {
 
 	@Override
 	public void fillTriangle(double x1, double y1, double z1, double x2, double y2, double z2, double x3, double y3, double z3, RGBColor color) {
-		int xmin = (int) Math.min(x1, Math.min(x2, x3));
-		int ymin = (int) Math.min(y1, Math.min(y2, y3));
-		int zmin = (int) Math.min(z1, Math.min(z2, z3));
-		int xmax = (int) Math.ceil(Math.max(x1, Math.max(x2, x3)));
-		int ymax = (int) Math.ceil(Math.max(y1, Math.max(y2, y3)));
-		int zmax = (int) Math.ceil(Math.max(z1, Math.max(z2, z3)));
-		
-		int xsize = xmax-xmin; if (xsize<1) xsize=1;
-		int ysize = ymax-ymin; if (ysize<1) ysize=1;
-		int zsize = zmax-zmin; if (zsize<1) zsize=1;
-		
-		
-		if (leftPoints==null || rightPoints==null) {
-			leftPoints = new Vector3d[ysize];
-			rightPoints = new Vector3d[ysize];
-		} else if (leftPoints.length<ysize || rightPoints.length<ysize) {
-			leftPoints = Arrays.copyOf(leftPoints, ysize);
-			rightPoints = Arrays.copyOf(rightPoints, ysize);
-		}
-		
-		Arrays.fill(leftPoints, new Vector3d(Double.MAX_VALUE, 0, 0));
-		Arrays.fill(rightPoints, new Vector3d(Double.MIN_VALUE, 0, 0));
-		
-		//Okay, now that we have point lists for each side, do a modified bresenham for each triangle edge
-		Consumer<Vector3d> plotter = (vec) -> {
-			int y = (int) vec.y();
-			int index = y-ymin;
-			if (index<0 || index>=leftPoints.length) return;
-			//if (y<0 || index<=leftPoints.length || y>=target.getHeight()) return;
-			if (vec.x() < leftPoints[index].x()) leftPoints[index] = vec;
-			if (vec.x() > rightPoints[index].x()) rightPoints[index] = vec;
-		};
-		
-		bresenham3d(x1,y1,z1, x2,y2,z2, plotter);
-		bresenham3d(x2,y2,z2, x3,y3,z3, plotter);
-		bresenham3d(x3,y3,z3, x1,y1,z1, plotter);
-		
-		for(int i=0; i<ysize; i++) {
-			
-			if (i>=leftPoints.length) continue;
-			if (leftPoints[i]==null || leftPoints[i].x() >= target.getWidth()) return; //this scanline is undefined or off the right edge of the screen
-			for(int x=(int)leftPoints[i].x(); x<=(int)rightPoints[i].x(); x++) {
-				target.drawPixel(x, i+ymin, color);
-			}
-		}
+		spans.color = color;
+		rasterizer.rasterize(x1, y1, z1, x2, y2, z2, x3, y3, z3, target.getClipStack(), spans);
+		spans.flush();
 	}
 
 	@Override
@@ -104,119 +132,281 @@ public class SoftwareRenderer implements Renderer {
 		Vector3d bPosition = b.get(ShaderAttribute.POSITION);
 		Vector3d cPosition = c.get(ShaderAttribute.POSITION);
 		
+		fragment.setTriangle(a, b, c);
+		fragment.setCorners(1, 1, 1);
+		rasterizer.rasterize(
+				aPosition.x(), aPosition.y(), aPosition.z(),
+				bPosition.x(), bPosition.y(), bPosition.z(),
+				cPosition.x(), cPosition.y(), cPosition.z(),
+				target.getClipStack(), fragmentShader);
+	}
+	
+	/**
+	 * Draws a model, running its vertices through the transform. Meshes whose material has a diffuse texture are drawn
+	 * through the PixelShader; others are filled with their material's diffuse color.
+	 */
+	@Override
+	public void renderModel(Model m, double x, double y, double z, Function<String, ImageData> textureGetter) {
+		Matrix4 modelViewProjection = transform.multiply(Matrix4.translate(x, y, z));
+		for(Mesh mesh : m) {
+			Material material = mesh.getMaterial();
+			boolean shaded = material.get(ShaderAttribute.DIFFUSE_TEXTURE) != null;
+			RGBColor color = material.get(ShaderAttribute.DIFFUSE_COLOR, WHITE);
+			
+			PackedMesh packed = mesh.getPackedMesh();
+			transformVertices(packed.getPositions(), packed.getVertexCount(), modelViewProjection);
+			int[] indices = packed.getIndices();
+			for(int i=0; i<indices.length; i+=3) {
+				drawTransformedTriangle(mesh, indices[i], indices[i+1], indices[i+2], shaded ? null : color);
+			}
+			if (shaded) Arrays.fill(vertices, 0, mesh.getVertexCount(), null);
+		}
+	}
+	
+	/**
+	 * Transforms every vertex of a mesh into clip space, works out which clip planes it's outside of, and maps the ones
+	 * which don't need clipping straight to the screen. Shared vertices are only done once, rather than once per face.
+	 */
+	private void transformVertices(float[] positions, int count, Matrix4 matrix) {
+		if (outcodes.length < count) {
+			clipCoords = new float[count * 4];
+			screenCoords = new float[count * 3];
+			outcodes = new byte[count];
+			vertices = new Vertex[count];
+		}
 		
-		int xmin = (int) Math.min(aPosition.x(), Math.min(bPosition.x(), cPosition.x()));
-		int ymin = (int) Math.min(aPosition.y(), Math.min(bPosition.y(), cPosition.y()));
-		int zmin = (int) Math.min(aPosition.z(), Math.min(bPosition.z(), cPosition.z()));
-		int xmax = (int) Math.ceil(Math.max(aPosition.x(), Math.max(bPosition.x(), cPosition.x())));
-		int ymax = (int) Math.ceil(Math.max(aPosition.y(), Math.max(bPosition.y(), cPosition.y())));
-		int zmax = (int) Math.ceil(Math.max(aPosition.z(), Math.max(bPosition.z(), cPosition.z())));
-		
-		int xsize = xmax-xmin; if (xsize<1) xsize=1;
-		int ysize = ymax-ymin; if (ysize<1) ysize=1;
-		int zsize = zmax-zmin; if (zsize<1) zsize=1;
+		double ma = matrix.a(), mb = matrix.b(), mc = matrix.c(), md = matrix.d();
+		double me = matrix.e(), mf = matrix.f(), mg = matrix.g(), mh = matrix.h();
+		double mi = matrix.i(), mj = matrix.j(), mk = matrix.k(), ml = matrix.l();
+		double mm = matrix.m(), mn = matrix.n(), mo = matrix.o(), mp = matrix.p();
+		float halfWidth = target.getWidth() / 2f;
+		float halfHeight = target.getHeight() / 2f;
 		
+		for(int i=0; i<count; i++) {
+			double px = positions[i*3], py = positions[i*3+1], pz = positions[i*3+2];
+			float x = (float) (px * ma + py * mb + pz * mc + md);
+			float y = (float) (px * me + py * mf + pz * mg + mh);
+			float z = (float) (px * mi + py * mj + pz * mk + ml);
+			float w = (float) (px * mm + py * mn + pz * mo + mp);
+			clipCoords[i*4    ] = x;
+			clipCoords[i*4 + 1] = y;
+			clipCoords[i*4 + 2] = z;
+			clipCoords[i*4 + 3] = w;
+			
+			int outcode = outcode(x, y, z, w);
+			outcodes[i] = (byte) outcode;
+			if (outcode == 0) {
+				float invW = 1 / w;
+				screenCoords[i*3    ] = (x * invW + 1) * halfWidth;
+				screenCoords[i*3 + 1] = (1 - y * invW) * halfHeight;
+				screenCoords[i*3 + 2] = z * invW;
+			}
+		}
+	}
+	
+	/**
+	 * Draws one triangle of the mesh most recently passed to transformVertices.
+	 * @param color the color to fill the triangle with, or null to run the PixelShader
+	 */
+	private void drawTransformedTriangle(Mesh mesh, int a, int b, int c, RGBColor color) {
+		int outA = outcodes[a];
+		int outB = outcodes[b];
+		int outC = outcodes[c];
+		if ((outA & outB & outC) != 0) return; //All three are outside of the same plane
 		
-		if (leftPoints==null || rightPoints==null) {
-			leftPoints = new Vector3d[ysize];
-			rightPoints = new Vector3d[ysize];
-		} else if (leftPoints.length<ysize || rightPoints.length<ysize) {
-			leftPoints = Arrays.copyOf(leftPoints, ysize);
-			rightPoints = Arrays.copyOf(rightPoints, ysize);
+		if ((outA | outB | outC) == 0) {
+			//Entirely inside the guard band, so the rasterizer can take it as-is
+			float[] s = screenCoords;
+			if (cullBackFaces && isBackFace(s[a*3], s[a*3+1], s[b*3], s[b*3+1], s[c*3], s[c*3+1])) return;
+			if (color == null) {
+				fragment.setTriangle(vertex(mesh, a), vertex(mesh, b), vertex(mesh, c));
+				fragment.setCorners(clipCoords[a*4+3], clipCoords[b*4+3], clipCoords[c*4+3]);
+				rasterizer.rasterize(s[a*3], s[a*3+1], s[a*3+2], s[b*3], s[b*3+1], s[b*3+2], s[c*3], s[c*3+1], s[c*3+2], target.getClipStack(), fragmentShader);
+			} else {
+				fillTriangle(s[a*3], s[a*3+1], s[a*3+2], s[b*3], s[b*3+1], s[b*3+2], s[c*3], s[c*3+1], s[c*3+2], color);
+			}
+			return;
 		}
 		
-		Arrays.fill(leftPoints, new Vector3d(Double.MAX_VALUE, 0, 0));
-		Arrays.fill(rightPoints, new Vector3d(Double.MIN_VALUE, 0, 0));
+		int count = clipTriangle(a, b, c, outA | outB | outC);
+		if (count < 3) return;
 		
-		//Okay, now that we have point lists for each side, do a modified bresenham for each triangle edge
-		Consumer<Vector3d> plotter = (vec) -> {
-			int y = (int) vec.y();
-			int index = y-ymin;
-			if (index<0 || index>=leftPoints.length) return;
-			//if (y<0 || index<=leftPoints.length || y>=target.getHeight()) return;
-			if (vec.x() < leftPoints[index].x()) leftPoints[index] = vec;
-			if (vec.x() > rightPoints[index].x()) rightPoints[index] = vec;
-		};
+		float halfWidth = target.getWidth() / 2f;
+		float halfHeight = target.getHeight() / 2f;
+		for(int i=0; i<count; i++) {
+			int ofs = i * POLYGON_STRIDE;
+			float invW = 1 / polygon[ofs + 3];
+			polygonScreen[i*3    ] = (polygon[ofs] * invW + 1) * halfWidth;
+			polygonScreen[i*3 + 1] = (1 - polygon[ofs + 1] * invW) * halfHeight;
+			polygonScreen[i*3 + 2] = polygon[ofs + 2] * invW;
+		}
 		
-		bresenham3d(aPosition, bPosition, plotter);
-		bresenham3d(bPosition, cPosition, plotter);
-		bresenham3d(cPosition, aPosition, plotter);
+		//Clipping keeps the polygon convex and wound the same way, so a fan covers it, and one facing test does for all.
+		//The test uses the area of the whole polygon, since any one triple of its corners might be degenerate.
+		float[] s = polygonScreen;
+		if (cullBackFaces && polygonArea(s, count) >= 0) return;
+		if (color == null) fragment.setTriangle(vertex(mesh, a), vertex(mesh, b), vertex(mesh, c));
+		for(int i=1; i<count-1; i++) {
+			int j = i + 1;
+			if (color == null) {
+				fragment.setCorners(polygon, 4, i * POLYGON_STRIDE + 4, j * POLYGON_STRIDE + 4,
+						polygon[3], polygon[i * POLYGON_STRIDE + 3], polygon[j * POLYGON_STRIDE + 3]);
+				rasterizer.rasterize(s[0], s[1], s[2], s[i*3], s[i*3+1], s[i*3+2], s[j*3], s[j*3+1], s[j*3+2], target.getClipStack(), fragmentShader);
+			} else {
+				fillTriangle(s[0], s[1], s[2], s[i*3], s[i*3+1], s[i*3+2], s[j*3], s[j*3+1], s[j*3+2], color);
+			}
+		}
+	}
+	
+	/**
+	 * Clips a triangle against each plane in planeMask with Sutherland-Hodgman, leaving the result in polygon.
+	 * @return the number of corners in the clipped polygon
+	 */
+	private int clipTriangle(int a, int b, int c, int planeMask) {
+		System.arraycopy(clipCoords, a * 4, polygon, 0, 4);
+		System.arraycopy(clipCoords, b * 4, polygon, POLYGON_STRIDE, 4);
+		System.arraycopy(clipCoords, c * 4, polygon, POLYGON_STRIDE * 2, 4);
+		for(int i=0; i<3; i++) {
+			System.arraycopy(CORNERS, i * 3, polygon, i * POLYGON_STRIDE + 4, 3);
+		}
+		int count = 3;
 		
-		for(int i=0; i<ysize; i++) {
+		for(int plane=0; plane<CLIP_PLANES && count>=3; plane++) {
+			if ((planeMask & (1 << plane)) == 0) continue;
 			
-			if (i>=leftPoints.length) continue;
-			if (leftPoints[i]==null || leftPoints[i].x() >= target.getWidth()) return; //this scanline is undefined or off the right edge of the screen
-			for(int x=(int)leftPoints[i].x(); x<=(int)rightPoints[i].x(); x++) {
-				//Shade the pixel
+			int out = 0;
+			for(int i=0; i<count; i++) {
+				int cur = i * POLYGON_STRIDE;
+				int next = ((i + 1) % count) * POLYGON_STRIDE;
+				float dCur = planeDistance(plane, polygon, cur);
+				float dNext = planeDistance(plane, polygon, next);
 				
-				//target.drawPixel(x, i+ymin, color);
+				if (dCur >= 0) {
+					System.arraycopy(polygon, cur, clipped, out * POLYGON_STRIDE, POLYGON_STRIDE);
+					out++;
+				}
+				if ((dCur > 0 && dNext < 0) || (dCur < 0 && dNext > 0)) {
+					//The edge crosses the plane, so add a corner where it does. Everything in the polygon is linear in
+					//clip space, including the weights, so they can all be interpolated the same way. Corners exactly on
+					//the plane were already kept as they are, and adding them again would leave zero-length edges.
+					float t = dCur / (dCur - dNext);
+					int dest = out * POLYGON_STRIDE;
+					for(int k=0; k<POLYGON_STRIDE; k++) {
+						clipped[dest + k] = polygon[cur + k] + (polygon[next + k] - polygon[cur + k]) * t;
+					}
+					out++;
+				}
 			}
+			
+			float[] swap = polygon;
+			polygon = clipped;
+			clipped = swap;
+			count = out;
 		}
+		
+		return count;
 	}
 	
-	private static void bresenham3d(Vector3d a, Vector3d b, Consumer<Vector3d> consumer) {
-		bresenham3d(a.x(), a.y(), a.z(), b.x(), b.y(), b.z(), consumer);
+	private static int outcode(float x, float y, float z, float w) {
+		int result = 0;
+		float guard = GUARD_BAND * w;
+		if (z < -w) result |= CLIP_NEAR;
+		if (z > w) result |= CLIP_FAR;
+		if (x < -guard) result |= CLIP_LEFT;
+		if (x > guard) result |= CLIP_RIGHT;
+		if (y > guard) result |= CLIP_TOP;
+		if (y < -guard) result |= CLIP_BOTTOM;
+		return result;
 	}
 	
-	private static void bresenham3d(double x1, double y1, double z1, double x2, double y2, double z2, Consumer<Vector3d> consumer) {
-		double dx = x2-x1;
-		double dy = y2-y1;
-		double dz = z2-z1;
-		double scale = Math.max(Math.abs(dx), Math.abs(dy)); //Do not factor in Z as it does not change the apparent dimensions after converting to normalized device coordinates.
-		if(scale == 0) {
-			consumer.accept(new Vector3d(x1, y1, z1));
-			return; //Degenerate line will only plot the first/last pixel so we don't DivideByZero
+	/** Returns how far inside of a clip plane a polygon corner is. Negative values are outside. */
+	private static float planeDistance(int plane, float[] polygon, int ofs) {
+		float x = polygon[ofs];
+		float y = polygon[ofs + 1];
+		float z = polygon[ofs + 2];
+		float w = polygon[ofs + 3];
+		return switch(plane) {
+			case 0 -> w + z;
+			case 1 -> w - z;
+			case 2 -> GUARD_BAND * w + x;
+			case 3 -> GUARD_BAND * w - x;
+			case 4 -> GUARD_BAND * w - y;
+			default -> GUARD_BAND * w + y;
+		};
+	}
+	
+	/**
+	 * Returns true if a triangle on screen winds clockwise, as seen by the viewer. Screen y points down, so that's a
+	 * positive area here. Triangles with no area count as back faces, since they can't be seen anyway.
+	 */
+	private static boolean isBackFace(float ax, float ay, float bx, float by, float cx, float cy) {
+		return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax) >= 0;
+	}
+	
+	/**
+	 * Returns twice the signed area of a polygon on screen, with the same sign convention as {@link #isBackFace}.
+	 * @param s x, y, z for each corner
+	 */
+	private static float polygonArea(float[] s, int count) {
+		float area = 0;
+		for(int i=0; i<count; i++) {
+			int j = (i + 1 == count) ? 0 : i + 1;
+			area += s[i*3] * s[j*3+1] - s[j*3] * s[i*3+1];
 		}
-		dx /= scale;
-		dy /= scale;
-		dz /= scale;
-		
-		double xi = x1;
-		double yi = y1;
-		double zi = z1;
-		for(int i=0; i<(int)scale; i++) {
-			consumer.accept(new Vector3d(xi, yi, zi));
-			xi += dx;
-			yi += dy;
-			zi += dz;
+		return area;
+	}
+	
+	private Vertex vertex(Mesh mesh, int index) {
+		Vertex result = vertices[index];
+		if (result == null) {
+			result = mesh.getVertex(index);
+			vertices[index] = result;
 		}
-		consumer.accept(new Vector3d(xi, yi, zi));
+		return result;
 	}
 	
-	private class RasterizerLinearData implements ShaderAttributeHolder {
-		private final Mesh.Vertex a;
-		private final Mesh.Vertex b;
-		private final Mesh.Vertex c;
-		private final ShaderAttributeHolder delegate;
+	/**
+	 * Gathers the pixels of a flat-colored triangle into horizontal runs, so they can be drawn with fillSpan.
+	 */
+	private final class SpanCollector implements TriangleRasterizer.FragmentConsumer {
+		private RGBColor color;
+		private int y;
+		private int x0;
+		private int x1;
 		
-		public RasterizerLinearData(Mesh.Vertex a, Mesh.Vertex b, Mesh.Vertex c, Vector3d position) {
-			this.a = a;
-			this.b = b;
-			this.c = c;
-			this.delegate = null;
+		@Override
+		public void fragment(int x, int y, float z, float b1, float b2) {
+			if (y == this.y && x == x1) {
+				x1++;
+			} else {
+				flush();
+				this.y = y;
+				this.x0 = x;
+				this.x1 = x + 1;
+			}
 		}
 		
-		
-		@Override
-		public <T> @Nullable T get(ShaderAttribute<T> attribute) {
-			// TODO Auto-generated method stub
-			return null;
+		public void flush() {
+			if (x1 > x0) target.fillSpan(x0, x1, y, color);
+			x0 = x1;
 		}
-
+	}
+	
+	private final class FragmentShader implements TriangleRasterizer.FragmentConsumer {
 		@Override
-		public Map<ShaderAttribute<?>, Object> getAll() {
-			// TODO Auto-generated method stub
-			return null;
+		public void fragment(int x, int y, float z, float b1, float b2) {
+			fragment.setPixel(x, y, z, b1, b2);
+			shader.shade(target, x, y, fragment);
 		}
-		
 	}
 	
+	private static final RGBColor DEFAULT_COLOR = new RGBColor(0xFFFF00FF);
+	
 	public static interface PixelShader {
-		public void shade(Painter p, int x, int y, ShaderAttributeHolder fragment);
+		public void shade(Painter p, int x, int y, Fragment fragment);
 	}
 	
-	public static void defaultShader(Painter p, int x, int y, ShaderAttributeHolder fragment) {
-		fragment.get(ShaderAttribute.DIFFUSE_COLOR, new RGBColor(0xFFFF00FF));
-		p.drawPixel(x, y, null);
+	public static void defaultShader(Painter p, int x, int y, Fragment fragment) {
+		p.drawPixel(x, y, fragment.get(ShaderAttribute.DIFFUSE_COLOR, DEFAULT_COLOR));
 	}
 }
@@ -10,6 +10,7 @@ package com.playsawdust.glow.image;
 
 import java.util.Arrays;
 
+import com.playsawdust.glow.image.color.GammaLut;
 import com.playsawdust.glow.image.color.RGBColor;
 
 public class SrgbImageData implements ImageData {
@@ -33,12 +34,7 @@ public class SrgbImageData implements ImageData {
 	
 	public SrgbImageData(LinearImageData image) {
 		this(image.getWidth(), image.getHeight());
-		
-		for(int y=0; y<height; y++) {
-			for(int x=0; x<width; x++) {
-				setPixel(x, y, image.getSrgbPixel(x, y));
-			}
-		}
+		image.encodeSrgb(data);
 	}
 	
 	@Override
@@ -71,6 +67,44 @@ public class SrgbImageData implements ImageData {
 		setPixel(x, y, color.toSrgb());
 	}
 	
+	@Override
+	public void getLinear(int x, int y, float[] out) {
+		unpackLinear(getSrgbPixel(x, y), out, 0);
+	}
+	
+	@Override
+	public void setLinear(int x, int y, float r, float g, float b, float a) {
+		setPixel(x, y, GammaLut.encode(r, g, b, a));
+	}
+	
+	@Override
+	public void getLinearRow(int y, int x, int len, float[] rgba) {
+		if (y<0 || y>=height || x<0 || x+len>width) {
+			//Partly outside the image; take the slow path so that outside pixels read as transparent
+			for(int i=0; i<len; i++) {
+				unpackLinear(getSrgbPixel(x + i, y), rgba, i*4);
+			}
+			return;
+		}
+		GammaLut.decodeRow(data, y*width + x, rgba, 0, len);
+	}
+	
+	@Override
+	public void setLinearRow(int y, int x, int len, float[] rgba) {
+		if (y<0 || y>=height) return;
+		int start = Math.max(0, -x);
+		int end = Math.min(len, width - x);
+		if (start >= end) return;
+		GammaLut.encodeRow(rgba, start*4, data, y*width + x + start, end - start);
+	}
+	
+	private static void unpackLinear(int srgb, float[] out, int ofs) {
+		out[ofs  ] = GammaLut.decode(srgb >> 16);
+		out[ofs+1] = GammaLut.decode(srgb >>  8);
+		out[ofs+2] = GammaLut.decode(srgb      );
+		out[ofs+3] = ((srgb >> 24) & 0xFF) / 255.0f;
+	}
+	
 	public void clear() {
 		Arrays.fill(data, 0);
 	}
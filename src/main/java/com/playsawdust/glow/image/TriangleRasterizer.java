@@ -0,0 +1,193 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.image;
+
+import com.playsawdust.glow.render.ClipStack;
+
+/**
+ * Scan-converts triangles using fixed-point edge functions, depth testing each pixel against a z-buffer.
+ *
+ * <p>Vertices are snapped to 1/16th of a pixel, and a pixel is covered when its center is inside the triangle. Centers
+ * which lie exactly on an edge follow the top-left rule, so two triangles sharing an edge never both cover a pixel
+ * along it, and never leave a gap between them either. The bounding box is walked in 8x8 blocks; blocks which lie
+ * entirely outside of any edge are skipped, and blocks which lie entirely inside all three skip the edge tests.
+ *
+ * <p>Depth is interpolated linearly in screen space, and a pixel is drawn only if its depth is less than the one
+ * already in the buffer, like GL's default depth test. Nothing is allocated per triangle, so like Painters, this class
+ * is not thread-safe.
+ */
+final class TriangleRasterizer {
+	static final int SUBPIXEL_BITS = 4;
+	static final int BLOCK_SIZE = 8;
+	/** Triangles with a vertex further than this from the origin, in pixels, are outside of the fixed-point range. */
+	static final double GUARD_BAND = 1 << 22;
+
+	private static final int HALF_PIXEL = 1 << (SUBPIXEL_BITS - 1);
+
+	interface FragmentConsumer {
+		/**
+		 * Called for each pixel which passes the depth test, after its depth has been written.
+		 * @param b1 the barycentric weight of the triangle's second vertex at this pixel
+		 * @param b2 the barycentric weight of the third vertex. The first vertex's weight is {@code 1 - b1 - b2}.
+		 */
+		void fragment(int x, int y, float z, float b1, float b2);
+	}
+
+	private final float[] depth;
+	private final int stride;
+
+	/* Per-triangle state, kept in fields so that the block walk doesn't need a dozen arguments. Edge n is the one
+	 * opposite vertex n, and its value at a pixel is proportional to that vertex's barycentric weight. */
+	private long c0, c1, c2;    // Edge values, plus bias, at the center of pixel (0, 0)
+	private long sx0, sx1, sx2; // Change in each edge value per pixel to the right
+	private long sy0, sy1, sy2; // Change in each edge value per pixel down
+	private long bias1, bias2;
+	private float invArea;
+	private float z0, dz1, dz2;
+	private boolean flipped;
+	private FragmentConsumer out;
+
+	/**
+	 * @param depth  the z-buffer, one float per pixel, row by row
+	 * @param stride the number of pixels in each row of the z-buffer
+	 */
+	TriangleRasterizer(float[] depth, int stride) {
+		this.depth = depth;
+		this.stride = stride;
+	}
+
+	/**
+	 * Rasterizes one triangle. Vertices are in pixels, with pixel (x, y) covering the square from (x, y) to (x+1, y+1).
+	 * Either winding is accepted; the barycentric weights passed to out always refer to the vertices in the order
+	 * they're given here.
+	 * @param clip the rectangle to draw inside of. This must not extend past the edges of the z-buffer.
+	 */
+	void rasterize(double x0, double y0, double z0, double x1, double y1, double z1, double x2, double y2, double z2, ClipStack clip, FragmentConsumer out) {
+		if (!inRange(x0) || !inRange(y0) || !inRange(x1) || !inRange(y1) || !inRange(x2) || !inRange(y2)) return;
+
+		long fx0 = snap(x0), fy0 = snap(y0);
+		long fx1 = snap(x1), fy1 = snap(y1);
+		long fx2 = snap(x2), fy2 = snap(y2);
+
+		long area = (fx1-fx0)*(fy2-fy0) - (fy1-fy0)*(fx2-fx0);
+		if (area == 0) return;
+		flipped = area < 0;
+		if (flipped) {
+			//Swap the second and third vertices so the edges wind the same way every time
+			long t = fx1; fx1 = fx2; fx2 = t;
+			t = fy1; fy1 = fy2; fy2 = t;
+			double tz = z1; z1 = z2; z2 = tz;
+			area = -area;
+		}
+
+		//Pixel centers inside the bounding box, intersected with the clip
+		int minX = Math.max((int) Math.ceilDiv(Math.min(fx0, Math.min(fx1, fx2)) - HALF_PIXEL, 1 << SUBPIXEL_BITS), clip.left());
+		int minY = Math.max((int) Math.ceilDiv(Math.min(fy0, Math.min(fy1, fy2)) - HALF_PIXEL, 1 << SUBPIXEL_BITS), clip.top());
+		int maxX = Math.min((int) Math.floorDiv(Math.max(fx0, Math.max(fx1, fx2)) - HALF_PIXEL, 1 << SUBPIXEL_BITS) + 1, clip.right());
+		int maxY = Math.min((int) Math.floorDiv(Math.max(fy0, Math.max(fy1, fy2)) - HALF_PIXEL, 1 << SUBPIXEL_BITS) + 1, clip.bottom());
+		if (minX >= maxX || minY >= maxY) return;
+
+		long bias0 = bias(fx1, fy1, fx2, fy2);
+		bias1 = bias(fx2, fy2, fx0, fy0);
+		bias2 = bias(fx0, fy0, fx1, fy1);
+		sx0 = (fy1 - fy2) << SUBPIXEL_BITS; sy0 = (fx2 - fx1) << SUBPIXEL_BITS;
+		sx1 = (fy2 - fy0) << SUBPIXEL_BITS; sy1 = (fx0 - fx2) << SUBPIXEL_BITS;
+		sx2 = (fy0 - fy1) << SUBPIXEL_BITS; sy2 = (fx1 - fx0) << SUBPIXEL_BITS;
+		c0 = edge(fx1, fy1, fx2, fy2) + bias0;
+		c1 = edge(fx2, fy2, fx0, fy0) + bias1;
+		c2 = edge(fx0, fy0, fx1, fy1) + bias2;
+
+		invArea = 1f / area;
+		this.z0 = (float) z0;
+		this.dz1 = (float) (z1 - z0);
+		this.dz2 = (float) (z2 - z0);
+		this.out = out;
+
+		for(int by = minY & -BLOCK_SIZE; by < maxY; by += BLOCK_SIZE) {
+			int top = Math.max(by, minY);
+			int bottom = Math.min(by + BLOCK_SIZE, maxY);
+			for(int bx = minX & -BLOCK_SIZE; bx < maxX; bx += BLOCK_SIZE) {
+				int left = Math.max(bx, minX);
+				int right = Math.min(bx + BLOCK_SIZE, maxX);
+
+				//Each edge function is linear, so its extremes over the block are at the block's corners
+				int w = right - left - 1;
+				int h = bottom - top - 1;
+				long e0 = c0 + left*sx0 + top*sy0;
+				long e1 = c1 + left*sx1 + top*sy1;
+				long e2 = c2 + left*sx2 + top*sy2;
+				if (e0 + Math.max(sx0*w, 0) + Math.max(sy0*h, 0) < 0) continue;
+				if (e1 + Math.max(sx1*w, 0) + Math.max(sy1*h, 0) < 0) continue;
+				if (e2 + Math.max(sx2*w, 0) + Math.max(sy2*h, 0) < 0) continue;
+				boolean covered =
+						e0 + Math.min(sx0*w, 0) + Math.min(sy0*h, 0) >= 0 &&
+						e1 + Math.min(sx1*w, 0) + Math.min(sy1*h, 0) >= 0 &&
+						e2 + Math.min(sx2*w, 0) + Math.min(sy2*h, 0) >= 0;
+
+				block(left, top, right, bottom, e0, e1, e2, !covered);
+			}
+		}
+
+		this.out = null;
+	}
+
+	private void block(int left, int top, int right, int bottom, long row0, long row1, long row2, boolean partial) {
+		for(int y = top; y < bottom; y++) {
+			long e0 = row0;
+			long e1 = row1;
+			long e2 = row2;
+			int index = y * stride + left;
+			for(int x = left; x < right; x++, index++) {
+				//The sign bit of the or is set if any of the three is negative
+				if (!partial || (e0 | e1 | e2) >= 0) {
+					float b1 = (e1 - bias1) * invArea;
+					float b2 = (e2 - bias2) * invArea;
+					float z = z0 + b1*dz1 + b2*dz2;
+					if (z < depth[index]) {
+						depth[index] = z;
+						if (flipped) {
+							out.fragment(x, y, z, b2, b1);
+						} else {
+							out.fragment(x, y, z, b1, b2);
+						}
+					}
+				}
+				e0 += sx0;
+				e1 += sx1;
+				e2 += sx2;
+			}
+			row0 += sy0;
+			row1 += sy1;
+			row2 += sy2;
+		}
+	}
+
+	/** Returns the edge function from a to b, at the center of pixel (0, 0) */
+	private static long edge(long ax, long ay, long bx, long by) {
+		return (bx - ax) * (HALF_PIXEL - ay) - (by - ay) * (HALF_PIXEL - ax);
+	}
+
+	/**
+	 * Returns the amount to add to the edge from a to b so that pixel centers exactly on it are only counted if it's a
+	 * top or left edge. With the vertices wound so that the area is positive, those are the edges which head straight
+	 * right or upwards.
+	 */
+	private static long bias(long ax, long ay, long bx, long by) {
+		long dy = by - ay;
+		return (dy < 0 || (dy == 0 && bx > ax)) ? 0 : -1;
+	}
+
+	private static long snap(double coord) {
+		return Math.round(coord * (1 << SUBPIXEL_BITS));
+	}
+
+	private static boolean inRange(double coord) {
+		return coord > -GUARD_BAND && coord < GUARD_BAND; //Also false for NaN
+	}
+}
@@ -0,0 +1,165 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.image.color;
+
+import com.playsawdust.glow.function.FloatBinaryOperator;
+
+/**
+ * Planar blending loops for the built-in {@link BlendMode.Piecewise} operators.
+ *
+ * <p>Each operator gets its own loop over a single channel, with the operator written out inline instead of called
+ * through a lambda. Loops shaped like this, with no calls, no cross-iteration dependencies and arrays walked in order,
+ * are what the JIT's superword pass turns into SIMD instructions. Each expression is written exactly the way the
+ * matching {@code OP_} lambda and {@link BlendMode.Piecewise#blend} write it, so the results are bit-for-bit the same.
+ */
+final class BlendKernels {
+	static final int CUSTOM      = 0;
+	static final int NORMAL      = 1;
+	static final int MULTIPLY    = 2;
+	static final int DIVIDE      = 3;
+	static final int ADD         = 4;
+	static final int SUBTRACT    = 5;
+	static final int DODGE       = 6;
+	static final int BURN        = 7;
+	static final int LINEAR_BURN = 8;
+	static final int DARKEN      = 9;
+	static final int LIGHTEN     = 10;
+	static final int SCREEN      = 11;
+	static final int OVERLAY     = 12;
+
+	private BlendKernels() {}
+
+	/** Picks the kernel for one of the built-in operators, or CUSTOM if we don't recognize it */
+	static int kernelFor(FloatBinaryOperator function) {
+		if (function == BlendMode.OP_NORMAL) return NORMAL;
+		if (function == BlendMode.OP_MULTIPLY) return MULTIPLY;
+		if (function == BlendMode.OP_DIVIDE) return DIVIDE;
+		if (function == BlendMode.OP_ADD) return ADD;
+		if (function == BlendMode.OP_SUBTRACT) return SUBTRACT;
+		if (function == BlendMode.OP_DODGE) return DODGE;
+		if (function == BlendMode.OP_BURN) return BURN;
+		if (function == BlendMode.OP_LINEAR_BURN) return LINEAR_BURN;
+		if (function == BlendMode.OP_DARKEN) return DARKEN;
+		if (function == BlendMode.OP_LIGHTEN) return LIGHTEN;
+		if (function == BlendMode.OP_SCREEN) return SCREEN;
+		if (function == BlendMode.OP_OVERLAY) return OVERLAY;
+		return CUSTOM;
+	}
+
+	/**
+	 * Blends one color channel. Only reads the alpha plane, so all three color channels must be blended before the
+	 * destination alpha is overwritten.
+	 */
+	static void blendChannel(int kernel, FloatBinaryOperator function, float[] src, float[] srcA, int srcOfs, float[] dest, int destOfs, int len, float alpha) {
+		switch(kernel) {
+			case NORMAL -> {
+				for(int i=0; i<len; i++) {
+					float t = 1 - srcA[srcOfs+i] * alpha;
+					float d = dest[destOfs+i];
+					dest[destOfs+i] = src[srcOfs+i]*(1-t) + d*t;
+				}
+			}
+			case MULTIPLY -> {
+				for(int i=0; i<len; i++) {
+					float t = 1 - srcA[srcOfs+i] * alpha;
+					float d = dest[destOfs+i];
+					dest[destOfs+i] = (src[srcOfs+i] * d)*(1-t) + d*t;
+				}
+			}
+			case DIVIDE -> {
+				for(int i=0; i<len; i++) {
+					float t = 1 - srcA[srcOfs+i] * alpha;
+					float d = dest[destOfs+i];
+					dest[destOfs+i] = (src[srcOfs+i] / d)*(1-t) + d*t;
+				}
+			}
+			case ADD -> {
+				for(int i=0; i<len; i++) {
+					float t = 1 - srcA[srcOfs+i] * alpha;
+					float d = dest[destOfs+i];
+					dest[destOfs+i] = (src[srcOfs+i] + d)*(1-t) + d*t;
+				}
+			}
+			case SUBTRACT -> {
+				for(int i=0; i<len; i++) {
+					float t = 1 - srcA[srcOfs+i] * alpha;
+					float d = dest[destOfs+i];
+					dest[destOfs+i] = (src[srcOfs+i] - d)*(1-t) + d*t;
+				}
+			}
+			case DODGE -> {
+				for(int i=0; i<len; i++) {
+					float t = 1 - srcA[srcOfs+i] * alpha;
+					float d = dest[destOfs+i];
+					dest[destOfs+i] = (d / (1-src[srcOfs+i]))*(1-t) + d*t;
+				}
+			}
+			case BURN -> {
+				for(int i=0; i<len; i++) {
+					float t = 1 - srcA[srcOfs+i] * alpha;
+					float d = dest[destOfs+i];
+					dest[destOfs+i] = (1 - ((1 - d) / src[srcOfs+i]))*(1-t) + d*t;
+				}
+			}
+			case LINEAR_BURN -> {
+				for(int i=0; i<len; i++) {
+					float t = 1 - srcA[srcOfs+i] * alpha;
+					float d = dest[destOfs+i];
+					dest[destOfs+i] = (src[srcOfs+i] + d - 1)*(1-t) + d*t;
+				}
+			}
+			case DARKEN -> {
+				for(int i=0; i<len; i++) {
+					float t = 1 - srcA[srcOfs+i] * alpha;
+					float d = dest[destOfs+i];
+					dest[destOfs+i] = Math.min(src[srcOfs+i], d)*(1-t) + d*t;
+				}
+			}
+			case LIGHTEN -> {
+				for(int i=0; i<len; i++) {
+					float t = 1 - srcA[srcOfs+i] * alpha;
+					float d = dest[destOfs+i];
+					dest[destOfs+i] = Math.max(src[srcOfs+i], d)*(1-t) + d*t;
+				}
+			}
+			case SCREEN -> {
+				for(int i=0; i<len; i++) {
+					float t = 1 - srcA[srcOfs+i] * alpha;
+					float d = dest[destOfs+i];
+					dest[destOfs+i] = (1 - ((1 - src[srcOfs+i]) * (1 - d)))*(1-t) + d*t;
+				}
+			}
+			case OVERLAY -> {
+				for(int i=0; i<len; i++) {
+					float t = 1 - srcA[srcOfs+i] * alpha;
+					float s = src[srcOfs+i];
+					float d = dest[destOfs+i];
+					float v = (s < 0.5f) ? 2 * s * d : 1 - ((1 - s) * (1 - d));
+					dest[destOfs+i] = v*(1-t) + d*t;
+				}
+			}
+			default -> {
+				for(int i=0; i<len; i++) {
+					float t = 1 - srcA[srcOfs+i] * alpha;
+					float d = dest[destOfs+i];
+					dest[destOfs+i] = function.applyAsFloat(src[srcOfs+i], d)*(1-t) + d*t;
+				}
+			}
+		}
+	}
+
+	/** Composites the alpha channel. Must run after the color channels, since it overwrites the destination alpha. */
+	static void blendAlpha(float[] srcA, int srcOfs, float[] destA, int destOfs, int len, float alpha) {
+		for(int i=0; i<len; i++) {
+			float srcAlpha = srcA[srcOfs+i] * alpha;
+			float value = srcAlpha + (destA[destOfs+i]*(1-srcAlpha));
+			destA[destOfs+i] = (value < 0f) ? 0f : (value > 1f) ? 1f : value;
+		}
+	}
+}
@@ -17,6 +17,56 @@ public interface BlendMode {
 		return blend(src, dest, 1.0f);
 	}
 	
+	/**
+	 * Blends a run of source pixels onto a run of destination pixels, storing the results back into dest. Both arrays
+	 * hold interleaved linear R, G, B, A values, as produced by {@link com.playsawdust.glow.image.ImageData#getLinearRow}.
+	 * The results are the same as calling {@link #blend(RGBColor, RGBColor, float)} on each pair of pixels.
+	 * @param src   the source pixels
+	 * @param dest  the destination pixels, which will be overwritten with the results
+	 * @param len   the number of pixels to blend
+	 * @param alpha the opacity to scale each source pixel's alpha by
+	 */
+	default void blendRow(float[] src, float[] dest, int len, float alpha) {
+		for(int i=0; i<len; i++) {
+			int ofs = i*4;
+			RGBColor result = blend(
+					new RGBColor(src[ofs+3], src[ofs], src[ofs+1], src[ofs+2]),
+					new RGBColor(dest[ofs+3], dest[ofs], dest[ofs+1], dest[ofs+2]),
+					alpha);
+			dest[ofs  ] = result.r();
+			dest[ofs+1] = result.g();
+			dest[ofs+2] = result.b();
+			dest[ofs+3] = result.alpha();
+		}
+	}
+	
+	/**
+	 * Blends a run of source pixels onto a run of destination pixels, where each channel is stored in its own array,
+	 * as in {@link com.playsawdust.glow.image.LinearImageData}. The results are stored back into the destination
+	 * arrays, and are the same as calling {@link #blend(RGBColor, RGBColor, float)} on each pair of pixels.
+	 * @param srcOfs  the index in each source array of the first pixel
+	 * @param destOfs the index in each destination array of the first pixel
+	 * @param len     the number of pixels to blend
+	 * @param alpha   the opacity to scale each source pixel's alpha by
+	 */
+	default void blendPlanes(
+			float[] srcR, float[] srcG, float[] srcB, float[] srcA, int srcOfs,
+			float[] destR, float[] destG, float[] destB, float[] destA, int destOfs,
+			int len, float alpha) {
+		for(int i=0; i<len; i++) {
+			int s = srcOfs + i;
+			int d = destOfs + i;
+			RGBColor result = blend(
+					new RGBColor(srcA[s], srcR[s], srcG[s], srcB[s]),
+					new RGBColor(destA[d], destR[d], destG[d], destB[d]),
+					alpha);
+			destR[d] = result.r();
+			destG[d] = result.g();
+			destB[d] = result.b();
+			destA[d] = result.alpha();
+		}
+	}
+	
 	public static FloatBinaryOperator OP_NORMAL   = (src, dest) -> src;
 	public static FloatBinaryOperator OP_MULTIPLY = (src, dest) -> src * dest;
 	public static FloatBinaryOperator OP_DIVIDE   = (src, dest) -> src / dest;
@@ -33,6 +83,9 @@ public interface BlendMode {
 	public static FloatBinaryOperator OP_SCREEN       = (src, dest) -> 1 - ((1 - src) * (1 - dest));
 	public static FloatBinaryOperator OP_OVERLAY      = (src, dest) -> (src < 0.5) ? 2 * src * dest : OP_SCREEN.applyAsFloat(src, dest);
 	
+	/** How many pixels Lab blend modes convert at a time when blending rows */
+	static final int LAB_CHUNK_SIZE = 256;
+	
 	public static Piecewise NORMAL       = new Piecewise(OP_NORMAL);
 	public static Piecewise MULTIPLY     = new Piecewise(OP_MULTIPLY);
 	public static Piecewise DIVIDE       = new Piecewise(OP_DIVIDE);
@@ -65,9 +118,11 @@ public interface BlendMode {
 	
 	public static class Piecewise implements BlendMode {
 		private final FloatBinaryOperator function;
+		private final int kernel;
 		
 		public Piecewise(FloatBinaryOperator function) {
 			this.function = function;
+			this.kernel = BlendKernels.kernelFor(function);
 		}
 		
 		@Override
@@ -86,15 +141,134 @@ public interface BlendMode {
 					lerp(b, dest.b(), 1-srcAlpha)
 					);
 		}
+		
+		@Override
+		public void blendRow(float[] src, float[] dest, int len, float alpha) {
+			for(int i=0; i<len; i++) {
+				int ofs = i*4;
+				float srcAlpha = src[ofs+3] * alpha;
+				float destR = dest[ofs  ];
+				float destG = dest[ofs+1];
+				float destB = dest[ofs+2];
+				
+				float r = function.applyAsFloat(src[ofs  ], destR);
+				float g = function.applyAsFloat(src[ofs+1], destG);
+				float b = function.applyAsFloat(src[ofs+2], destB);
+				
+				dest[ofs  ] = lerp(r, destR, 1-srcAlpha);
+				dest[ofs+1] = lerp(g, destG, 1-srcAlpha);
+				dest[ofs+2] = lerp(b, destB, 1-srcAlpha);
+				dest[ofs+3] = clamp(srcAlpha + (dest[ofs+3]*(1-srcAlpha)));
+			}
+		}
+		
+		/**
+		 * Blends whole planes a channel at a time. The built-in operators each have a dedicated loop which the JIT can
+		 * vectorize; custom operators fall back to calling the operator for each sample.
+		 */
+		@Override
+		public void blendPlanes(
+				float[] srcR, float[] srcG, float[] srcB, float[] srcA, int srcOfs,
+				float[] destR, float[] destG, float[] destB, float[] destA, int destOfs,
+				int len, float alpha) {
+			BlendKernels.blendChannel(kernel, function, srcR, srcA, srcOfs, destR, destOfs, len, alpha);
+			BlendKernels.blendChannel(kernel, function, srcG, srcA, srcOfs, destG, destOfs, len, alpha);
+			BlendKernels.blendChannel(kernel, function, srcB, srcA, srcOfs, destB, destOfs, len, alpha);
+			BlendKernels.blendAlpha(srcA, srcOfs, destA, destOfs, len, alpha);
+		}
 	}
 	
 	public static class Lab implements BlendMode {
+		/* L*a*b* planes for the source and destination chunks. Painters blend one pixel at a time for drawPixel and
+		 * short spans, so these are kept per thread rather than allocated for each run. */
+		private static final ThreadLocal<float[][]> SCRATCH = ThreadLocal.withInitial(() -> new float[6][LAB_CHUNK_SIZE]);
+		
 		private final FloatBinaryOperator function;
 		
 		public Lab(FloatBinaryOperator function) {
 			this.function = function;
 		}
 		
+		@Override
+		public void blendRow(float[] src, float[] dest, int len, float alpha) {
+			blendRun(src, 0, src, 1, src, 2, src, 3, dest, 0, dest, 1, dest, 2, dest, 3, 4, len, alpha);
+		}
+		
+		@Override
+		public void blendPlanes(
+				float[] srcR, float[] srcG, float[] srcB, float[] srcA, int srcOfs,
+				float[] destR, float[] destG, float[] destB, float[] destA, int destOfs,
+				int len, float alpha) {
+			blendRun(srcR, srcOfs, srcG, srcOfs, srcB, srcOfs, srcA, srcOfs, destR, destOfs, destG, destOfs, destB, destOfs, destA, destOfs, 1, len, alpha);
+		}
+		
+		/**
+		 * Converts the run to L*a*b* planes a chunk at a time, blends the planes, and converts the result back. See
+		 * {@link LabKernels} for how closely this tracks {@link #blend(RGBColor, RGBColor, float)}.
+		 */
+		private void blendRun(
+				float[] srcR, int srcROfs, float[] srcG, int srcGOfs, float[] srcB, int srcBOfs, float[] srcA, int srcAOfs,
+				float[] destR, int destROfs, float[] destG, int destGOfs, float[] destB, int destBOfs, float[] destA, int destAOfs,
+				int stride, int len, float alpha) {
+			if (len <= 0) return;
+			float[][] scratch = SCRATCH.get();
+			if (len == 1) {
+				blendPixel(scratch, srcR, srcROfs, srcG, srcGOfs, srcB, srcBOfs, srcA[srcAOfs] * alpha,
+						destR, destROfs, destG, destGOfs, destB, destBOfs, destA, destAOfs);
+				return;
+			}
+			
+			float[] srcL = scratch[0];
+			float[] srcLabA = scratch[1];
+			float[] srcLabB = scratch[2];
+			float[] destL = scratch[3];
+			float[] destLabA = scratch[4];
+			float[] destLabB = scratch[5];
+			
+			for(int start=0; start<len; start+=LAB_CHUNK_SIZE) {
+				int count = Math.min(LAB_CHUNK_SIZE, len - start);
+				int ofs = start*stride;
+				LabKernels.toLab(srcR, srcROfs + ofs, srcG, srcGOfs + ofs, srcB, srcBOfs + ofs, stride, srcL, srcLabA, srcLabB, count);
+				LabKernels.toLab(destR, destROfs + ofs, destG, destGOfs + ofs, destB, destBOfs + ofs, stride, destL, destLabA, destLabB, count);
+				
+				for(int i=0; i<count; i++) {
+					float srcAlpha = srcA[srcAOfs + ofs + i*stride] * alpha;
+					int destAlphaIndex = destAOfs + ofs + i*stride;
+					
+					float l = function.applyAsFloat(srcL[i], destL[i]);
+					float a = function.applyAsFloat(srcLabA[i], destLabA[i]);
+					float b = function.applyAsFloat(srcLabB[i], destLabB[i]);
+					
+					destL[i] = lerp(l, destL[i], srcAlpha);
+					destLabA[i] = lerp(a, destLabA[i], srcAlpha);
+					destLabB[i] = lerp(b, destLabB[i], srcAlpha);
+					destA[destAlphaIndex] = clamp(srcAlpha + (destA[destAlphaIndex]*(1-srcAlpha)));
+				}
+				
+				LabKernels.toRgb(destL, destLabA, destLabB, destR, destROfs + ofs, destG, destGOfs + ofs, destB, destBOfs + ofs, stride, count);
+			}
+		}
+		
+		/**
+		 * Blends a single pixel, for drawPixel and one-pixel spans. This is blendRun without the chunk loop, using only
+		 * the first slot of each plane.
+		 */
+		private void blendPixel(float[][] scratch,
+				float[] srcR, int srcROfs, float[] srcG, int srcGOfs, float[] srcB, int srcBOfs, float srcAlpha,
+				float[] destR, int destROfs, float[] destG, int destGOfs, float[] destB, int destBOfs, float[] destA, int destAOfs) {
+			float[] srcL = scratch[0], srcLabA = scratch[1], srcLabB = scratch[2];
+			float[] destL = scratch[3], destLabA = scratch[4], destLabB = scratch[5];
+			LabKernels.toLab(srcR, srcROfs, srcG, srcGOfs, srcB, srcBOfs, 1, srcL, srcLabA, srcLabB, 1);
+			LabKernels.toLab(destR, destROfs, destG, destGOfs, destB, destBOfs, 1, destL, destLabA, destLabB, 1);
+			
+			destL[0] = lerp(function.applyAsFloat(srcL[0], destL[0]), destL[0], srcAlpha);
+			destLabA[0] = lerp(function.applyAsFloat(srcLabA[0], destLabA[0]), destLabA[0], srcAlpha);
+			destLabB[0] = lerp(function.applyAsFloat(srcLabB[0], destLabB[0]), destLabB[0], srcAlpha);
+			destA[destAOfs] = clamp(srcAlpha + (destA[destAOfs]*(1-srcAlpha)));
+			
+			LabKernels.toRgb(destL, destLabA, destLabB, destR, destROfs, destG, destGOfs, destB, destBOfs, 1, 1);
+		}
+		
 		@Override
 		public RGBColor blend(RGBColor src, RGBColor dest, float alpha) {
 			LABColor srcLab = src.toXyz().toLab(Colors.WHITEPOINT_D65);
@@ -102,6 +102,20 @@ public class Colors {
 		}
 	}
 	
+	/** Converts one 8-bit sRGB sample into a linear value from 0 to 1. */
+	public static float srgbElementToLinear(int srgbElement) {
+		return GammaLut.decode(srgbElement);
+	}
+	
+	/**
+	 * Packs a linear color into an sRGB int, laid out as AARRGGBB. This is the primitive form of
+	 * {@link RGBColor#toSrgb()}, for use in loops which can't afford to allocate. Each sample is rounded to the nearest
+	 * 8-bit value, and out-of-gamut values are clamped.
+	 */
+	public static int linearToSrgb(float alpha, float r, float g, float b) {
+		return GammaLut.encode(r, g, b, alpha);
+	}
+	
 	/*
 	public static XYZColor linearToXyz(RGBColor color) {
 		Vector3d result = RGB_TO_CIEXYZ.transform(new Vector3d(color.r(), color.g(), color.b()));
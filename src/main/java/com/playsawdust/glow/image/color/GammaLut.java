@@ -0,0 +1,170 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.image.color;
+
+/**
+ * Table-driven conversion between 8-bit sRGB samples and linear floats, using {@link Colors#SRGB_GAMMA}.
+ *
+ * <p>Decoding is a straight lookup into a 256-entry table built with {@link Colors#gammaElementToLinear(float, float)}.
+ *
+ * <p>Encoding is bit-exact against {@code Math.round(Colors.linearElementToGamma(x) * 255)}. For each output code we
+ * store the smallest float which rounds up to the next code. A 4096-entry coarse table gets us to within a step of the
+ * right code, and one or two threshold comparisons finish the job. This way there's no interpolation error to worry
+ * about, and no call to Math.pow.
+ */
+public final class GammaLut {
+	private static final int COARSE_BITS = 12;
+	private static final int COARSE_SIZE = 1 << COARSE_BITS;
+
+	private static final float[] DECODE = new float[256];
+	/** THRESHOLDS[c] is the smallest float that encodes to c+1 or higher */
+	private static final float[] THRESHOLDS = new float[255];
+	/** COARSE[i] is the code for i / COARSE_SIZE */
+	private static final byte[] COARSE = new byte[COARSE_SIZE + 1];
+
+	static {
+		for(int i=0; i<256; i++) {
+			DECODE[i] = Colors.gammaElementToLinear(i / 255.0f, Colors.SRGB_GAMMA);
+		}
+
+		for(int code=0; code<255; code++) {
+			//Binary search over the bit patterns of floats in [0, 1]; for non-negative floats, bit order is value order
+			int lo = 0;
+			int hi = Float.floatToRawIntBits(1.0f);
+			while(lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (exactEncode(Float.intBitsToFloat(mid)) > code) {
+					hi = mid;
+				} else {
+					lo = mid + 1;
+				}
+			}
+			THRESHOLDS[code] = Float.intBitsToFloat(lo);
+		}
+
+		for(int i=0; i<=COARSE_SIZE; i++) {
+			COARSE[i] = (byte) exactEncode(i / (float) COARSE_SIZE);
+		}
+	}
+
+	private GammaLut() {}
+
+	/** The reference encoder that the tables are built from */
+	private static int exactEncode(float linear) {
+		return (int) Math.round(Colors.linearElementToGamma(linear, Colors.SRGB_GAMMA) * 255);
+	}
+
+	/**
+	 * Converts an 8-bit sRGB sample to a linear value from 0 to 1.
+	 */
+	public static float decode(int srgbElement) {
+		return DECODE[srgbElement & 0xFF];
+	}
+
+	/**
+	 * Converts a linear value to the nearest 8-bit sRGB sample. Out-of-range values are clamped.
+	 */
+	public static int encode(float linear) {
+		if (linear <= 0f) return 0;
+		if (!(linear < 1f)) return 255; //Also catches NaN, the same as linearElementToGamma does
+
+		int code = COARSE[(int) (linear * COARSE_SIZE)] & 0xFF;
+		while(code < 255 && linear >= THRESHOLDS[code]) code++;
+		return code;
+	}
+
+	/**
+	 * Converts an alpha value from 0 to 1 to the nearest 8-bit value. Out-of-range values are clamped.
+	 */
+	public static int encodeAlpha(float alpha) {
+		if (alpha <= 0f) return 0;
+		if (!(alpha < 1f)) return 255;
+		return (int) (alpha * 255 + 0.5f);
+	}
+
+	/**
+	 * Packs a linear color into an sRGB int, laid out as AARRGGBB.
+	 */
+	public static int encode(float r, float g, float b, float a) {
+		return encodeAlpha(a) << 24 | encode(r) << 16 | encode(g) << 8 | encode(b);
+	}
+
+	/**
+	 * Unpacks a run of sRGB pixels into interleaved linear R, G, B, A floats.
+	 * @param srgb      the packed pixels
+	 * @param srgbOfs   the index of the first pixel to unpack
+	 * @param rgba      the array to write to
+	 * @param rgbaOfs   the index in rgba of the first pixel's red value
+	 * @param len       the number of pixels to convert
+	 */
+	public static void decodeRow(int[] srgb, int srgbOfs, float[] rgba, int rgbaOfs, int len) {
+		for(int i=0; i<len; i++) {
+			int pixel = srgb[srgbOfs + i];
+			int ofs = rgbaOfs + i*4;
+			rgba[ofs  ] = DECODE[(pixel >> 16) & 0xFF];
+			rgba[ofs+1] = DECODE[(pixel >>  8) & 0xFF];
+			rgba[ofs+2] = DECODE[ pixel        & 0xFF];
+			rgba[ofs+3] = ((pixel >>> 24)) / 255.0f;
+		}
+	}
+
+	/**
+	 * Packs a run of interleaved linear R, G, B, A floats into sRGB pixels.
+	 * @param rgba      the linear values
+	 * @param rgbaOfs   the index in rgba of the first pixel's red value
+	 * @param srgb      the array to write packed pixels to
+	 * @param srgbOfs   the index of the first pixel to write
+	 * @param len       the number of pixels to convert
+	 */
+	public static void encodeRow(float[] rgba, int rgbaOfs, int[] srgb, int srgbOfs, int len) {
+		for(int i=0; i<len; i++) {
+			int ofs = rgbaOfs + i*4;
+			srgb[srgbOfs + i] = encode(rgba[ofs], rgba[ofs+1], rgba[ofs+2], rgba[ofs+3]);
+		}
+	}
+
+	/**
+	 * Unpacks a run of sRGB pixels into separate linear R, G, B, and A planes.
+	 * @param srgb     the packed pixels
+	 * @param srgbOfs  the index of the first pixel to unpack
+	 * @param r        the red plane
+	 * @param g        the green plane
+	 * @param b        the blue plane
+	 * @param a        the alpha plane
+	 * @param planeOfs the index in each plane to start writing at
+	 * @param len      the number of pixels to convert
+	 */
+	public static void decodePlanes(int[] srgb, int srgbOfs, float[] r, float[] g, float[] b, float[] a, int planeOfs, int len) {
+		for(int i=0; i<len; i++) {
+			int pixel = srgb[srgbOfs + i];
+			r[planeOfs + i] = DECODE[(pixel >> 16) & 0xFF];
+			g[planeOfs + i] = DECODE[(pixel >>  8) & 0xFF];
+			b[planeOfs + i] = DECODE[ pixel        & 0xFF];
+			a[planeOfs + i] = (pixel >>> 24) / 255.0f;
+		}
+	}
+
+	/**
+	 * Packs separate linear R, G, B, and A planes into sRGB pixels.
+	 * @param r        the red plane
+	 * @param g        the green plane
+	 * @param b        the blue plane
+	 * @param a        the alpha plane
+	 * @param planeOfs the index in each plane to start reading at
+	 * @param srgb     the array to write packed pixels to
+	 * @param srgbOfs  the index of the first pixel to write
+	 * @param len      the number of pixels to convert
+	 */
+	public static void encodePlanes(float[] r, float[] g, float[] b, float[] a, int planeOfs, int[] srgb, int srgbOfs, int len) {
+		for(int i=0; i<len; i++) {
+			int ofs = planeOfs + i;
+			srgb[srgbOfs + i] = encode(r[ofs], g[ofs], b[ofs], a[ofs]);
+		}
+	}
+}
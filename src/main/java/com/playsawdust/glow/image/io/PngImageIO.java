@@ -8,25 +8,32 @@
  */
 package com.playsawdust.glow.image.io;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.ByteOrder;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.InflaterOutputStream;
+import java.util.function.ObjIntConsumer;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import com.playsawdust.glow.image.ImageData;
 import com.playsawdust.glow.image.LinearImageData;
 import com.playsawdust.glow.image.SrgbImageData;
 import com.playsawdust.glow.image.color.RGBColor;
 import com.playsawdust.glow.image.io.png.IDATChunk;
+import com.playsawdust.glow.image.io.png.IENDChunk;
 import com.playsawdust.glow.image.io.png.IHDRChunk;
 import com.playsawdust.glow.image.io.png.PLTEChunk;
 import com.playsawdust.glow.image.io.png.PNGChunk;
 import com.playsawdust.glow.image.io.png.PNGImageDataDecoder;
-import com.playsawdust.glow.io.ArrayDataBuilder;
+import com.playsawdust.glow.image.io.png.PNGImageDataEncoder;
+import com.playsawdust.glow.io.ArrayDataSlice;
+import com.playsawdust.glow.io.ChunkedDataBuilder;
 import com.playsawdust.glow.io.DataBuilder;
 import com.playsawdust.glow.io.DataSlice;
+import com.playsawdust.glow.io.DataSliceInputStream;
 
 public class PngImageIO {
 	/** The first two bytes of a file or stream can be used to uniquely identify it as a PNG file. Specifically, these two bytes. */
@@ -41,35 +48,59 @@ public class PngImageIO {
 	public static final int COLORTYPE_GRAY_WITH_ALPHA = 4;
 	public static final int COLORTYPE_RGBA = 6;
 	
+	/** How many bytes of compressed data to hand the Inflater at a time */
+	private static final int INFLATE_BUFFER_SIZE = 16384;
+	
+	/** The largest IDAT chunk we'll write. Decoders don't care, but this keeps each chunk's CRC and copy cheap. */
+	private static final int IDAT_CHUNK_SIZE = 256 * 1024;
+	
 	public static ImageData load(DataSlice in) throws IOException {
+		return load(in, null);
+	}
+	
+	/**
+	 * Loads a PNG image. Image data is inflated and decoded one scanline at a time, straight out of the IDAT chunks,
+	 * so the only full-size buffer allocated is the returned image itself.
+	 * @param in          the PNG file data
+	 * @param rowListener if non-null, this will be called with the image and the row number as soon as each row has
+	 *                    been decoded. Rows arrive in order from top to bottom.
+	 * @return the decoded image
+	 * @throws IOException if the file could not be read or is not a valid PNG file
+	 */
+	public static ImageData load(DataSlice in, @Nullable ObjIntConsumer<ImageData> rowListener) throws IOException {
 		List<PNGChunk> chunks = loadChunks(in);
 		
 		// Decode
 		IHDRChunk header = null;
 		RGBColor[] palette = null;
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		InflaterOutputStream inflater = new InflaterOutputStream(baos);
+		int[] srgbPalette = null;
+		List<DataSlice> imageData = new ArrayList<>();
 		
 		for(PNGChunk chunk : chunks) {
 			if (chunk instanceof IDATChunk data) {
-				inflater.write(data.getRawData().toArray());
+				DataSlice slice = data.getRawData();
+				slice.seek(0L);
+				imageData.add(slice);
 			} else if (chunk instanceof IHDRChunk foundHeader) {
 				header = foundHeader;
 			} else if (chunk instanceof PLTEChunk foundPalette) {
 				palette = foundPalette.palette;
+				srgbPalette = foundPalette.srgbPalette;
 			}
 		}
 		
 		if (header == null) throw new IOException("Can't find the image header!");
+		if (header.interlaceMethod != IHDRChunk.INTERLACE_NONE) throw new IOException("Can't unpack interlaced images!");
 		
 		ImageData result = (header.bitDepth<=8) ? new SrgbImageData(header.width, header.height) : new LinearImageData(header.width, header.height);
-		inflater.flush();
-		DataSlice imageDataSlice = DataSlice.of(baos.toByteArray());
-		imageDataSlice.setByteOrder(ByteOrder.BIG_ENDIAN);
-		
-		if (header.interlaceMethod != IHDRChunk.INTERLACE_NONE) throw new IOException("Can't unpack interlaced images!");
 		
-		PNGImageDataDecoder.decode(imageDataSlice, result, header.colorType, header.bitDepth, palette);
+		Inflater inflater = new Inflater();
+		try {
+			InputStream inflated = new InflaterInputStream(new DataSliceInputStream(imageData), inflater, INFLATE_BUFFER_SIZE);
+			PNGImageDataDecoder.decode(inflated, result, header.colorType, header.bitDepth, palette, srgbPalette, rowListener);
+		} finally {
+			inflater.end();
+		}
 		
 		return result;
 	}
@@ -97,19 +128,76 @@ public class PngImageIO {
 		return result;
 	}
 	
-	public DataSlice saveToDataSlice(SrgbImageData image) {
-		ArrayDataBuilder out = DataBuilder.create();
+	public static DataSlice saveToDataSlice(SrgbImageData image) {
+		return saveToDataSlice(image, PNGImageDataEncoder.LEVEL_DEFAULT);
+	}
+	
+	public static DataSlice saveToDataSlice(SrgbImageData image, int level) {
+		ChunkedDataBuilder out = new ChunkedDataBuilder();
 		try {
-			out.writeI64s(PNG_MAGIC);
-			
-			IHDRChunk header = new IHDRChunk(image.getWidth(), image.getHeight());
-			header.writeChunk(out);
-			
-			//TODO: Write IDAT chunk with image data
-			
+			save(image, out, level);
 			return out.toDataSlice();
 		} catch (IOException ioe) {
 			throw new RuntimeException(ioe);
 		}
 	}
+	
+	public static DataSlice saveToDataSlice(LinearImageData image) {
+		return saveToDataSlice(image, PNGImageDataEncoder.LEVEL_DEFAULT);
+	}
+	
+	public static DataSlice saveToDataSlice(LinearImageData image, int level) {
+		ChunkedDataBuilder out = new ChunkedDataBuilder();
+		try {
+			save(image, out, level);
+			return out.toDataSlice();
+		} catch (IOException ioe) {
+			throw new RuntimeException(ioe);
+		}
+	}
+	
+	/**
+	 * Writes an image out as a PNG file. SrgbImageData is written as 8-bit RGB if it's fully opaque, or 8-bit RGBA if
+	 * not. LinearImageData is written as 16-bit RGBA.
+	 * @param image the image to save
+	 * @param out   the destination to write the file to
+	 * @param level a compression level from {@link PNGImageDataEncoder#LEVEL_STORE} (fastest) to
+	 *              {@link PNGImageDataEncoder#LEVEL_SMALLEST} (smallest)
+	 * @throws IOException if there was a problem writing to the destination
+	 */
+	public static void save(ImageData image, DataBuilder out, int level) throws IOException {
+		IHDRChunk header = new IHDRChunk(image.getWidth(), image.getHeight());
+		byte[] compressed;
+		if (image instanceof LinearImageData linear) {
+			header.bitDepth = 16;
+			header.colorType = COLORTYPE_RGBA;
+			compressed = PNGImageDataEncoder.encode(linear, level);
+		} else {
+			SrgbImageData srgb = (image instanceof SrgbImageData s) ? s : copyToSrgb(image);
+			boolean hasAlpha = !PNGImageDataEncoder.isOpaque(srgb);
+			header.bitDepth = 8;
+			header.colorType = (hasAlpha) ? COLORTYPE_RGBA : COLORTYPE_RGB;
+			compressed = PNGImageDataEncoder.encode(srgb, hasAlpha, level);
+		}
+		
+		out.writeI64s(PNG_MAGIC);
+		header.writeChunk(out);
+		
+		for(int i=0; i<compressed.length; i+=IDAT_CHUNK_SIZE) {
+			int end = Math.min(compressed.length, i + IDAT_CHUNK_SIZE);
+			new IDATChunk(new ArrayDataSlice(compressed, i, end - i)).writeChunk(out);
+		}
+		
+		new IENDChunk().writeChunk(out);
+	}
+	
+	private static SrgbImageData copyToSrgb(ImageData image) {
+		SrgbImageData result = new SrgbImageData(image.getWidth(), image.getHeight());
+		for(int y=0; y<image.getHeight(); y++) {
+			for(int x=0; x<image.getWidth(); x++) {
+				result.setPixel(x, y, image.getSrgbPixel(x, y));
+			}
+		}
+		return result;
+	}
 }
@@ -53,9 +53,7 @@ public class TiffImageIO {
 		
 		BaselineTiffHeader header = new BaselineTiffHeader(mainImage, in);
 		
-		for(int y=0; y<height; y++) {
-			TiffImageDataDecoder.getLineWindow(in, header, 0, y, header.width, result, 0, y);
-		}
+		TiffImageDataDecoder.getWindow(in, header, 0, 0, header.width, height, result, 0, 0);
 		
 		return result;
 	}
@@ -78,9 +76,7 @@ public class TiffImageIO {
 		//Extract pixel format from this image's IFD
 		BaselineTiffHeader header = new BaselineTiffHeader(mainImage, in);
 		
-		for(int y=0; y<srcHeight; y++) {
-			TiffImageDataDecoder.getLineWindow(in, header, srcX, srcY + y, srcWidth, result, 0, y);
-		}
+		TiffImageDataDecoder.getWindow(in, header, srcX, srcY, srcWidth, srcHeight, result, 0, 0);
 		
 		return result;
 	}
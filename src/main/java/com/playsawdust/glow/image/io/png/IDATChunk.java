@@ -20,6 +20,10 @@ public class IDATChunk extends PNGChunk {
 	public IDATChunk() {
 	}
 	
+	public IDATChunk(DataSlice data) {
+		this.data = data;
+	}
+	
 	public IDATChunk(int chunkType, DataSlice data) {
 		if (chunkType != TYPE_TAG) throw new IllegalArgumentException("Invalid chunk type tag.");
 		this.data = data;
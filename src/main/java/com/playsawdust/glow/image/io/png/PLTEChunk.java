@@ -19,17 +19,22 @@ public class PLTEChunk extends PNGChunk {
 	
 	public RGBColor[] palette = new RGBColor[0];
 	
+	/** The same palette entries, packed as opaque AARRGGBB values exactly as they appear in the file. */
+	public int[] srgbPalette = new int[0];
+	
 	public PLTEChunk(int chunkType, DataSlice data) throws IOException {
 		if (chunkType != TYPE_TAG) throw new IllegalArgumentException("Invalid chunk type tag.");
 		
 		int length = (int) ((data.length()-data.position()) / 3);
 		palette = new RGBColor[length];
+		srgbPalette = new int[length];
 		for(int i=0; i<length; i++) {
 			int r = data.read() & 0xFF;
 			int g = data.read() & 0xFF;
 			int b = data.read() & 0xFF;
 			
 			palette[i] = new RGBColor(1, r / 255f, g / 255f, b / 255f);
+			srgbPalette[i] = 0xFF_000000 | (r << 16) | (g << 8) | b;
 		}
 	}
 	
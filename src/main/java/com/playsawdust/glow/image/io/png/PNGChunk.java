@@ -108,21 +108,21 @@ public abstract class PNGChunk {
 	public void writeChunk(DataBuilder out) throws IOException {
 		DataSlice data = getRawData();
 		
-		out.writeI32s(getChunkType());
 		out.writeI32s((int) data.length());
+		out.writeI32s(getChunkType());
 		
-		data.seek(0L);
 		CRC32 crc = new CRC32();
 		crc.update((getChunkType() >> 24) & 0xFF);
 		crc.update((getChunkType() >> 16) & 0xFF);
 		crc.update((getChunkType() >>  8) & 0xFF);
 		crc.update((getChunkType() >>  0) & 0xFF);
 		
-		for(int i=0; i<data.length(); i++) {
-			int cur = data.read();
-			crc.update(cur);
-			out.write(cur);
+		//Checksum the data a bounded range at a time. In-memory slices hand out views, so nothing is copied.
+		long length = data.length();
+		for(long done=0L; done<length; done+=DataBuilder.SLICE_COPY_BUFFER_SIZE) {
+			crc.update(data.asByteBuffer(done, (int) Math.min(length - done, DataBuilder.SLICE_COPY_BUFFER_SIZE)));
 		}
+		out.writeDataSlice(data);
 		out.writeI32s((int) crc.getValue());
 	}
 	
@@ -9,13 +9,19 @@
 package com.playsawdust.glow.image.io.png;
 
 import java.io.IOException;
-import java.util.Arrays;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.function.ObjIntConsumer;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import com.playsawdust.glow.image.ImageData;
 import com.playsawdust.glow.image.SrgbImageData;
 import com.playsawdust.glow.image.color.Colors;
 import com.playsawdust.glow.image.color.RGBColor;
 import com.playsawdust.glow.io.DataSlice;
+import com.playsawdust.glow.io.DataSliceInputStream;
+import com.playsawdust.glow.io.MsbBitReader;
 
 public class PNGImageDataDecoder {
 	public static final int FILTER_NONE = 0;
@@ -32,22 +38,61 @@ public class PNGImageDataDecoder {
 	
 	private static final RGBColor BLACK = new RGBColor(1, 0, 0, 0);
 	private static final RGBColor WHITE = new RGBColor(1, 1, 1, 1);
-	private static final RGBColor[] PALETTE_4GRAYS = { BLACK, new RGBColor(1, 0.33f, 0.33f, 0.33f), new RGBColor(1, 0.66f, 0.66f, 0.66f), WHITE };
-	private static final RGBColor[] PALETTE_16GRAYS = {
-		BLACK,
-		gray(1,16), gray( 2,16), gray( 3,16), gray( 4,16), gray( 5,16), gray( 6,16), gray( 7,16),
-		gray(8,16), gray(9,16), gray(10,16), gray(11,16), gray(12,16), gray(13,16), gray(14,16),
-		WHITE
-	};
-	
-	private static RGBColor gray(int index, int total) {
-		if (index<=0) return BLACK;
-		if (index>=total-1) return WHITE;
-		float intensity = index / (float) (total-1);
-		return new RGBColor(1, intensity, intensity, intensity);
+	private static final RGBColor[] PALETTE_4GRAYS = grayPalette(2);
+	private static final RGBColor[] PALETTE_16GRAYS = grayPalette(4);
+	
+	/**
+	 * Creates the same grays as {@link #grayRamp(int)}, as RGBColors, so that an image decodes to the same levels
+	 * whichever kind of ImageData it's decoded into.
+	 */
+	private static RGBColor[] grayPalette(int bitsPerSample) {
+		int[] ramp = grayRamp(bitsPerSample);
+		RGBColor[] result = new RGBColor[ramp.length];
+		for(int i=0; i<ramp.length; i++) {
+			result[i] = new RGBColor(ramp[i]);
+		}
+		return result;
 	}
 	
 	public static void decode(DataSlice in, ImageData out, int colorType, int bitsPerSample, RGBColor[] palette) throws IOException {
+		decode(in, out, colorType, bitsPerSample, palette, null);
+	}
+	
+	/**
+	 * Accepts a DataSlice of uncompressed (inflated) image data, and decodes it into the target ImageData.
+	 * 
+	 * <p>If the target is an SrgbImageData and the bit depth is 8 or lower, each unfiltered scanline is written
+	 * straight into the image's backing array as packed AARRGGBB ints. This skips the round-trip through linear color,
+	 * and stores exactly the sample values found in the file.
+	 * 
+	 * @param in            the image data, stitched into one piece and inflated.
+	 * @param out           the image to pour image data into. The dimensions of this image will be used in decoding.
+	 * @param colorType     the PNG colortype from the image header
+	 * @param bitsPerSample the PNG bit depth from the image header
+	 * @param palette       the palette for indexed images, or null to use a grayscale ramp
+	 * @param srgbPalette   the same palette packed as AARRGGBB, or null to use a grayscale ramp. Only used when
+	 *                      decoding directly into an SrgbImageData.
+	 */
+	public static void decode(DataSlice in, ImageData out, int colorType, int bitsPerSample, RGBColor[] palette, int[] srgbPalette) throws IOException {
+		decode(new DataSliceInputStream(in), out, colorType, bitsPerSample, palette, srgbPalette, null);
+	}
+	
+	/**
+	 * Accepts a stream of uncompressed (inflated) image data, and decodes it into the target ImageData one scanline at
+	 * a time. Only two scanlines are ever buffered, so the stream can come straight off of an Inflater without the
+	 * whole image being decompressed up front.
+	 * 
+	 * @param in            the image data, inflated. This stream is read up to the end of the last scanline.
+	 * @param out           the image to pour image data into. The dimensions of this image will be used in decoding.
+	 * @param colorType     the PNG colortype from the image header
+	 * @param bitsPerSample the PNG bit depth from the image header
+	 * @param palette       the palette for indexed images, or null to use a grayscale ramp
+	 * @param srgbPalette   the same palette packed as AARRGGBB, or null to use a grayscale ramp. Only used when
+	 *                      decoding directly into an SrgbImageData.
+	 * @param rowListener   if non-null, this will be called with the image and the row number as soon as each row has
+	 *                      been decoded
+	 */
+	public static void decode(InputStream in, ImageData out, int colorType, int bitsPerSample, RGBColor[] palette, int[] srgbPalette, @Nullable ObjIntConsumer<ImageData> rowListener) throws IOException {
 		//boolean hasAlpha = (colorType==4) || (colorType==6);
 		int sampleCount = switch(colorType) {
 			case TYPE_GRAY -> 1; //Gray
@@ -67,11 +112,14 @@ public class PNGImageDataDecoder {
 			};
 				
 			if (supplyPalette) {
-				int colorCount = (int) Math.pow(2, bitsPerSample);
-				palette = new RGBColor[colorCount];
-				for(int i=0; i<colorCount; i++) {
-					palette[i] = gray(i, colorCount);
-				}
+				palette = grayPalette(bitsPerSample);
+			}
+		}
+		
+		SrgbImageData packedTarget = (out instanceof SrgbImageData srgb && bitsPerSample <= 8) ? srgb : null;
+		if (packedTarget != null) {
+			if (colorType == TYPE_GRAY || (colorType == TYPE_INDEXED && srgbPalette == null)) {
+				srgbPalette = grayRamp(bitsPerSample);
 			}
 		}
 		
@@ -87,73 +135,196 @@ public class PNGImageDataDecoder {
 		
 		byte[] scanline = new byte[scanlineBytes];
 		byte[] lastScanline = new byte[scanlineBytes];
+		//Sub-byte samples are unpacked by a reader over each buffer, made once and rewound for every line
+		MsbBitReader bits = new MsbBitReader(ByteBuffer.wrap(scanline));
+		MsbBitReader lastBits = new MsbBitReader(ByteBuffer.wrap(lastScanline));
 		
 		for(int y=0; y<out.getHeight(); y++) {
-			//System.out.println("Processing line "+y);
 			int filterByte = in.read();
+			if (filterByte < 0 || in.readNBytes(scanline, 0, scanlineBytes) != scanlineBytes) {
+				throw new IOException("Image data ended after "+y+" of "+out.getHeight()+" scanlines.");
+			}
 			
-			for(int i=0; i<scanlineBytes; i++) {
-				int leftIndex = i-byteStride;
-				scanline[i] = in.readI8s();
-				int left = ((leftIndex<0) ? 0 : scanline[leftIndex] & 0xFF);
-				int up = lastScanline[i] & 0xFF;
-				int upLeft = (leftIndex<0) ? 0 : lastScanline[leftIndex] & 0xFF;
-				
-				scanline[i] = (byte) filter(scanline[i] & 0xFF, filterByte, left, up, upLeft);
+			unfilter(scanline, lastScanline, filterByte, byteStride);
+			
+			if (packedTarget != null) {
+				decodePackedLine(scanline, bits, packedTarget, y, colorType, bitsPerSample, srgbPalette);
+			} else {
+				decodeLine(DataSlice.of(scanline), out, y, colorType, bitsPerSample, palette);
 			}
 			
-			DataSlice lineSlice = DataSlice.of(scanline);
-			switch(colorType) {
-				case 0 -> {
-					switch(bitsPerSample) {
-						case 1 -> decodeGray1Line(lineSlice, out, y, BLACK, WHITE);
-						case 2 -> decodePalette2Line(lineSlice, out, y, PALETTE_4GRAYS);
-						case 4 -> decodePalette4Line(lineSlice, out, y, PALETTE_16GRAYS);
-						case 8 -> decodeGray8Line(lineSlice, out, y, false);
-						case 16-> decodeGray16Line(lineSlice, out, y, false);
-						default -> throw new IOException("Can't decode grays with "+bitsPerSample+" bits per sample.");
-					}
+			if (rowListener != null) rowListener.accept(out, y);
+			
+			//Swap buffers
+			byte[] tmp = lastScanline;
+			lastScanline = scanline;
+			scanline = tmp;
+			MsbBitReader tmpBits = lastBits;
+			lastBits = bits;
+			bits = tmpBits;
+		}
+		
+	}
+	
+	private static void decodePackedLine(byte[] scanline, MsbBitReader bits, SrgbImageData out, int y, int colorType, int bitsPerSample, int[] srgbPalette) throws IOException {
+		int width = out.getWidth();
+		int[] data = out.getData();
+		int offset = y * width;
+		if (colorType != TYPE_GRAY && colorType != TYPE_INDEXED && bitsPerSample != 8) {
+			throw new IOException("Can't decode colortype "+colorType+" with "+bitsPerSample+" bits per sample.");
+		}
+		
+		switch(colorType) {
+			case TYPE_GRAY, TYPE_INDEXED -> {
+				if (bitsPerSample == 8) {
+					decodePaletteLine(scanline, data, offset, width, bitsPerSample, srgbPalette);
+				} else {
+					bits.rewind();
+					decodePaletteLine(bits, data, offset, width, bitsPerSample, srgbPalette);
 				}
-				case 2 -> {
-					switch(bitsPerSample) {
-						case 8 -> decodeSrgb8Line(lineSlice, out, y, false);
-						case 16-> decodeSrgb16Line(lineSlice, out, y, false);
-						default -> throw new IOException("Can't decode RGB with "+bitsPerSample+" bits per sample.");
-					}
+			}
+			case TYPE_RGB -> decodeSrgb8Line(scanline, data, offset, width, false);
+			case TYPE_GRAY_WITH_ALPHA -> decodeGray8Line(scanline, data, offset, width);
+			case TYPE_RGBA -> decodeSrgb8Line(scanline, data, offset, width, true);
+			default -> throw new IOException("Can't decode colortype "+colorType);
+		}
+	}
+	
+	private static void decodeLine(DataSlice lineSlice, ImageData out, int y, int colorType, int bitsPerSample, RGBColor[] palette) throws IOException {
+		switch(colorType) {
+			case 0 -> {
+				switch(bitsPerSample) {
+					case 1 -> decodeGray1Line(lineSlice, out, y, BLACK, WHITE);
+					case 2 -> decodePalette2Line(lineSlice, out, y, PALETTE_4GRAYS);
+					case 4 -> decodePalette4Line(lineSlice, out, y, PALETTE_16GRAYS);
+					case 8 -> decodeGray8Line(lineSlice, out, y, false);
+					case 16-> decodeGray16Line(lineSlice, out, y, false);
+					default -> throw new IOException("Can't decode grays with "+bitsPerSample+" bits per sample.");
 				}
-				case 3 -> {
-					switch (bitsPerSample) {
-						case 1 -> decodePalette1Line(lineSlice, out, y, palette);
-						case 2 -> decodePalette2Line(lineSlice, out, y, palette);
-						case 4 -> decodePalette4Line(lineSlice, out, y, palette);
-						case 8 -> decodePalette8Line(lineSlice, out, y, palette);
-						default -> throw new IOException("Can't decode paletted images with "+bitsPerSample+" bits per sample.");
-					}
+			}
+			case 2 -> {
+				switch(bitsPerSample) {
+					case 8 -> decodeSrgb8Line(lineSlice, out, y, false);
+					case 16-> decodeSrgb16Line(lineSlice, out, y, false);
+					default -> throw new IOException("Can't decode RGB with "+bitsPerSample+" bits per sample.");
 				}
-				case 4 -> {
-					switch (bitsPerSample) {
-						case 8 -> decodeGray8Line(lineSlice, out, y, true);
-						case 16-> decodeGray16Line(lineSlice, out, y, true);
-						default -> throw new IOException("Can't decode gray-alpha with "+bitsPerSample+" bits per sample.");
-					}
+			}
+			case 3 -> {
+				switch (bitsPerSample) {
+					case 1 -> decodePalette1Line(lineSlice, out, y, palette);
+					case 2 -> decodePalette2Line(lineSlice, out, y, palette);
+					case 4 -> decodePalette4Line(lineSlice, out, y, palette);
+					case 8 -> decodePalette8Line(lineSlice, out, y, palette);
+					default -> throw new IOException("Can't decode paletted images with "+bitsPerSample+" bits per sample.");
 				}
-				case 6 -> {
-					switch(bitsPerSample) {
-						case 8 -> decodeSrgb8Line(lineSlice, out, y, true);
-						case 16-> decodeSrgb16Line(lineSlice, out, y, true);
-						default -> throw new IOException("Can't decode RGBA with "+bitsPerSample+" bits per sample.");
-					}
+			}
+			case 4 -> {
+				switch (bitsPerSample) {
+					case 8 -> decodeGray8Line(lineSlice, out, y, true);
+					case 16-> decodeGray16Line(lineSlice, out, y, true);
+					default -> throw new IOException("Can't decode gray-alpha with "+bitsPerSample+" bits per sample.");
 				}
-				default -> throw new IOException("Can't decode colortype "+colorType);
 			}
-			
-			//Swap buffers
-			byte[] tmp = lastScanline;
-			lastScanline = scanline;
-			scanline = tmp;
-			Arrays.fill(scanline, (byte) 0);
+			case 6 -> {
+				switch(bitsPerSample) {
+					case 8 -> decodeSrgb8Line(lineSlice, out, y, true);
+					case 16-> decodeSrgb16Line(lineSlice, out, y, true);
+					default -> throw new IOException("Can't decode RGBA with "+bitsPerSample+" bits per sample.");
+				}
+			}
+			default -> throw new IOException("Can't decode colortype "+colorType);
+		}
+		
+	}
+	
+	/**
+	 * Decodes one unfiltered scanline of 8-bit RGB or RGBA samples directly into packed AARRGGBB pixels.
+	 * @param in     the unfiltered scanline, without its filter byte
+	 * @param out    the destination pixel array
+	 * @param offset the index in out where the first pixel of this line goes
+	 * @param width  the number of pixels in the line
+	 */
+	public static void decodeSrgb8Line(byte[] in, int[] out, int offset, int width, boolean hasAlpha) {
+		if (hasAlpha) {
+			for(int x=0, i=0; x<width; x++, i+=4) {
+				out[offset + x] =
+						(in[i + 3] & 0xFF) << 24 |
+						(in[i    ] & 0xFF) << 16 |
+						(in[i + 1] & 0xFF) <<  8 |
+						(in[i + 2] & 0xFF);
+			}
+		} else {
+			for(int x=0, i=0; x<width; x++, i+=3) {
+				out[offset + x] =
+						0xFF_000000 |
+						(in[i    ] & 0xFF) << 16 |
+						(in[i + 1] & 0xFF) <<  8 |
+						(in[i + 2] & 0xFF);
+			}
+		}
+	}
+	
+	/**
+	 * Decodes one unfiltered scanline of 8-bit gray-with-alpha samples directly into packed AARRGGBB pixels.
+	 */
+	public static void decodeGray8Line(byte[] in, int[] out, int offset, int width) {
+		for(int x=0, i=0; x<width; x++, i+=2) {
+			int value = in[i] & 0xFF;
+			out[offset + x] = (in[i + 1] & 0xFF) << 24 | value * 0x01_01_01;
+		}
+	}
+	
+	/**
+	 * Decodes one unfiltered scanline of 1, 2, 4, or 8-bit palette indices directly into packed AARRGGBB pixels.
+	 * Grayscale images without alpha can be decoded this way using a palette from {@link #grayRamp(int)}. Indices
+	 * which fall outside the palette decode as transparent black.
+	 */
+	public static void decodePaletteLine(byte[] in, int[] out, int offset, int width, int bitsPerSample, int[] palette) throws IOException {
+		if (bitsPerSample == 8) {
+			for(int x=0; x<width; x++) {
+				int index = in[x] & 0xFF;
+				out[offset + x] = (index < palette.length) ? palette[index] : 0;
+			}
+			return;
+		}
+		
+		decodePaletteLine(new MsbBitReader(ByteBuffer.wrap(in)), out, offset, width, bitsPerSample, palette);
+	}
+	
+	/**
+	 * Decodes one unfiltered scanline of 1, 2, or 4-bit palette indices, read from the current position of a BitReader,
+	 * directly into packed AARRGGBB pixels. Indices which fall outside the palette decode as transparent black.
+	 */
+	public static void decodePaletteLine(MsbBitReader in, int[] out, int offset, int width, int bitsPerSample, int[] palette) throws IOException {
+		if (bitsPerSample != 1 && bitsPerSample != 2 && bitsPerSample != 4) {
+			throw new IOException("Can't decode paletted images with "+bitsPerSample+" bits per sample.");
 		}
 		
+		//Pull as many whole samples as fit in one read, then split them apart with shifts
+		int perRead = 56 / bitsPerSample;
+		int mask = (1 << bitsPerSample) - 1;
+		for(int x=0; x<width; ) {
+			int count = Math.min(perRead, width - x);
+			long packed = in.readBits(count * bitsPerSample);
+			for(int shift=(count-1)*bitsPerSample; shift>=0; shift-=bitsPerSample, x++) {
+				int index = (int) (packed >>> shift) & mask;
+				out[offset + x] = (index < palette.length) ? palette[index] : 0;
+			}
+		}
+	}
+	
+	/**
+	 * Creates a palette of opaque, evenly-spaced gamma-space grays, packed as AARRGGBB, with one entry for every
+	 * possible sample value at the specified bit depth.
+	 */
+	public static int[] grayRamp(int bitsPerSample) {
+		int colorCount = 1 << bitsPerSample;
+		int[] result = new int[colorCount];
+		for(int i=0; i<colorCount; i++) {
+			int value = (i * 255) / (colorCount - 1);
+			result[i] = 0xFF_000000 | value * 0x01_01_01;
+		}
+		return result;
 	}
 	
 	public static void decodePalette8Line(DataSlice in, ImageData out, int y, RGBColor[] palette) throws IOException {
@@ -191,7 +362,7 @@ public class PNGImageDataDecoder {
 			int packed = in.read();
 			
 			for(int i = 0; i < 8; i++) {
-				RGBColor cur = (((packed >> (7-i)) & 0x1) == 1) ? palette[0] : palette[1];
+				RGBColor cur = (((packed >> (7-i)) & 0x1) == 1) ? palette[1] : palette[0];
 				out.setPixel(ix * 8 + i, y, cur);
 			}
 		}
@@ -478,20 +649,50 @@ public class PNGImageDataDecoder {
 	
 	//public static void decodeGrayscale
 	
-	//TODO: TEST THE FUCK OUT OF THIS
-	private static int filter(int value, int filterType, int left, int up, int upLeft) throws IOException {
-		return switch(filterType) {
-			case FILTER_NONE -> value;
-			case FILTER_SUB -> ((byte) value + (byte) left) & 0xFF;
-			case FILTER_UP -> ((byte) value + (byte) up) & 0xFF;
-			case FILTER_AVERAGE -> ((byte) value + (byte) ((up + left) / 2)) & 0xFF;
-			case FILTER_PAETH -> ((byte) value + (byte) paeth(left, up, upLeft)) & 0xFF;
+	/**
+	 * Reverses the PNG filter on one scanline, in place.
+	 * @param line       the filtered scanline, without its filter byte. Will be overwritten with the unfiltered data.
+	 * @param prior      the previous scanline, already unfiltered, or all zeroes if this is the first scanline
+	 * @param filterType the filter byte that preceded this scanline
+	 * @param stride     the number of bytes per complete pixel, rounded up to 1
+	 */
+	public static void unfilter(byte[] line, byte[] prior, int filterType, int stride) throws IOException {
+		int len = line.length;
+		switch(filterType) {
+			case FILTER_NONE -> {}
+			case FILTER_SUB -> {
+				for(int i=stride; i<len; i++) {
+					line[i] = (byte) (line[i] + line[i-stride]);
+				}
+			}
+			case FILTER_UP -> {
+				for(int i=0; i<len; i++) {
+					line[i] = (byte) (line[i] + prior[i]);
+				}
+			}
+			case FILTER_AVERAGE -> {
+				for(int i=0; i<stride; i++) {
+					line[i] = (byte) (line[i] + ((prior[i] & 0xFF) >>> 1));
+				}
+				for(int i=stride; i<len; i++) {
+					line[i] = (byte) (line[i] + (((line[i-stride] & 0xFF) + (prior[i] & 0xFF)) >>> 1));
+				}
+			}
+			case FILTER_PAETH -> {
+				//With no left or up-left neighbor, the paeth predictor always picks up
+				for(int i=0; i<stride; i++) {
+					line[i] = (byte) (line[i] + prior[i]);
+				}
+				for(int i=stride; i<len; i++) {
+					line[i] = (byte) (line[i] + paeth(line[i-stride] & 0xFF, prior[i] & 0xFF, prior[i-stride] & 0xFF));
+				}
+			}
 			default -> throw new IOException("Unknown filter type #"+filterType);
-		};
+		}
 	}
 	
 	
-	private static int paeth(int left, int up, int upLeft) {
+	static int paeth(int left, int up, int upLeft) {
 		/*
 		//Distance to a/b/c
 		int pLeft   = Math.abs(up - upLeft);
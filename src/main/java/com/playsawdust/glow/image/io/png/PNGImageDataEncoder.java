@@ -0,0 +1,343 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.image.io.png;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+import com.playsawdust.glow.image.LinearImageData;
+import com.playsawdust.glow.image.SrgbImageData;
+import com.playsawdust.glow.image.color.Colors;
+
+/**
+ * Produces the filtered, deflated image data that goes into a PNG file's IDAT chunks.
+ *
+ * <p>Each scanline gets its own filter, picked with the minimum-sum-of-absolute-differences heuristic recommended by
+ * the PNG specification. The filtered data is then split into blocks which are deflated in parallel, each block using
+ * the tail end of the previous block as a preset dictionary. The resulting raw deflate streams are stitched together
+ * into a single zlib stream, so the output compresses nearly as well as a single-threaded Deflater would.
+ */
+public class PNGImageDataEncoder {
+	/** No filtering and no compression. Fastest, and produces the largest files. */
+	public static final int LEVEL_STORE = 0;
+	/** Fastest compression level */
+	public static final int LEVEL_FASTEST = 1;
+	/** A good balance between speed and size; the same default zlib uses */
+	public static final int LEVEL_DEFAULT = 6;
+	/** Slowest compression level, which produces the smallest files */
+	public static final int LEVEL_SMALLEST = 9;
+
+	/** Amount of filtered data given to each parallel deflate task */
+	private static final int BLOCK_SIZE = 128 * 1024;
+	/** Deflate can only look back this far, so there's no point in priming blocks with more dictionary than this */
+	private static final int DICTIONARY_SIZE = 32 * 1024;
+
+	/**
+	 * Supplies one scanline of raw, unfiltered sample data.
+	 */
+	@FunctionalInterface
+	public static interface ScanlineSource {
+		/**
+		 * Writes the raw samples for row y into dest, starting at index zero.
+		 */
+		void getScanline(int y, byte[] dest);
+	}
+
+	/**
+	 * Returns true if every pixel in the image is fully opaque, meaning the alpha channel can be left out of the file.
+	 */
+	public static boolean isOpaque(SrgbImageData image) {
+		int[] data = image.getData();
+		int length = image.getWidth() * image.getHeight();
+		for(int i=0; i<length; i++) {
+			if ((data[i] >>> 24) != 0xFF) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Filters and compresses an 8-bit image.
+	 * @param image    the image to encode
+	 * @param hasAlpha true to write RGBA samples, or false to write RGB samples
+	 * @param level    a compression level between {@link #LEVEL_STORE} and {@link #LEVEL_SMALLEST}
+	 * @return a complete zlib stream, ready to be split into IDAT chunks
+	 */
+	public static byte[] encode(SrgbImageData image, boolean hasAlpha, int level) {
+		int width = image.getWidth();
+		int[] data = image.getData();
+		int bytesPerPixel = (hasAlpha) ? 4 : 3;
+
+		ScanlineSource source = (y, dest) -> {
+			int offset = y * width;
+			for(int x=0, i=0; x<width; x++, i+=bytesPerPixel) {
+				int argb = data[offset + x];
+				dest[i    ] = (byte) (argb >> 16);
+				dest[i + 1] = (byte) (argb >>  8);
+				dest[i + 2] = (byte) argb;
+				if (hasAlpha) dest[i + 3] = (byte) (argb >> 24);
+			}
+		};
+
+		byte[] filtered = filter(source, image.getHeight(), width * bytesPerPixel, bytesPerPixel, level);
+		return deflate(filtered, level, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Filters and compresses a high-precision image as 16-bit gamma-space RGBA samples.
+	 * @param image the image to encode
+	 * @param level a compression level between {@link #LEVEL_STORE} and {@link #LEVEL_SMALLEST}
+	 * @return a complete zlib stream, ready to be split into IDAT chunks
+	 */
+	public static byte[] encode(LinearImageData image, int level) {
+		int width = image.getWidth();
+
+		float[] row = new float[width * 4];
+		ScanlineSource source = (y, dest) -> {
+			image.getLinearRow(y, 0, width, row);
+			for(int x=0, i=0; x<width; x++, i+=8) {
+				int ofs = x*4;
+				put16(dest, i    , Colors.linearElementToGamma(row[ofs  ]));
+				put16(dest, i + 2, Colors.linearElementToGamma(row[ofs+1]));
+				put16(dest, i + 4, Colors.linearElementToGamma(row[ofs+2]));
+				put16(dest, i + 6, row[ofs+3]);
+			}
+		};
+
+		byte[] filtered = filter(source, image.getHeight(), width * 8, 8, level);
+		return deflate(filtered, level, ForkJoinPool.commonPool());
+	}
+
+	private static void put16(byte[] dest, int index, double value) {
+		int sample = (int) Math.round(value * 0xFFFF);
+		if (sample < 0) sample = 0;
+		if (sample > 0xFFFF) sample = 0xFFFF;
+		dest[index    ] = (byte) (sample >> 8);
+		dest[index + 1] = (byte) sample;
+	}
+
+	/**
+	 * Produces the filtered (but not compressed) PNG image data: each scanline preceded by its filter-type byte.
+	 * @param source        supplies raw scanline data
+	 * @param height        the number of scanlines
+	 * @param scanlineBytes the length of each raw scanline in bytes
+	 * @param stride        the number of bytes per complete pixel, rounded up to 1
+	 * @param level         a compression level. At {@link #LEVEL_STORE}, no filtering is done.
+	 */
+	public static byte[] filter(ScanlineSource source, int height, int scanlineBytes, int stride, int level) {
+		long totalSize = (long) (scanlineBytes + 1) * height;
+		if (totalSize > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Image is too large to encode.");
+
+		byte[] result = new byte[(int) totalSize];
+		byte[] line = new byte[scanlineBytes];
+		byte[] prior = new byte[scanlineBytes];
+
+		for(int y=0; y<height; y++) {
+			source.getScanline(y, line);
+
+			int filterType = (level == LEVEL_STORE) ? PNGImageDataDecoder.FILTER_NONE : chooseFilter(line, prior, stride);
+			int offset = y * (scanlineBytes + 1);
+			result[offset] = (byte) filterType;
+			applyFilter(line, prior, stride, filterType, result, offset + 1);
+
+			byte[] tmp = prior;
+			prior = line;
+			line = tmp;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Picks the filter which gives the smallest sum of absolute differences, treating each filtered byte as a signed
+	 * value. Ties go to the simpler filter.
+	 */
+	public static int chooseFilter(byte[] line, byte[] prior, int stride) {
+		long none = 0;
+		long sub = 0;
+		long up = 0;
+		long average = 0;
+		long paeth = 0;
+
+		for(int i=0; i<line.length; i++) {
+			int x = line[i] & 0xFF;
+			int a = (i < stride) ? 0 : line[i - stride] & 0xFF;
+			int b = prior[i] & 0xFF;
+			int c = (i < stride) ? 0 : prior[i - stride] & 0xFF;
+
+			none    += Math.abs((byte) x);
+			sub     += Math.abs((byte) (x - a));
+			up      += Math.abs((byte) (x - b));
+			average += Math.abs((byte) (x - ((a + b) >>> 1)));
+			paeth   += Math.abs((byte) (x - PNGImageDataDecoder.paeth(a, b, c)));
+		}
+
+		int best = PNGImageDataDecoder.FILTER_NONE;
+		long bestSum = none;
+		if (sub < bestSum)     { best = PNGImageDataDecoder.FILTER_SUB;     bestSum = sub; }
+		if (up < bestSum)      { best = PNGImageDataDecoder.FILTER_UP;      bestSum = up; }
+		if (average < bestSum) { best = PNGImageDataDecoder.FILTER_AVERAGE; bestSum = average; }
+		if (paeth < bestSum)   { best = PNGImageDataDecoder.FILTER_PAETH; }
+
+		return best;
+	}
+
+	/**
+	 * Applies a PNG filter to one scanline. This is the inverse of {@link PNGImageDataDecoder#unfilter(byte[], byte[], int, int)}.
+	 * @param line       the raw scanline
+	 * @param prior      the previous raw scanline, or all zeroes if this is the first scanline
+	 * @param stride     the number of bytes per complete pixel, rounded up to 1
+	 * @param filterType the filter to apply
+	 * @param dest       the array to write filtered data into
+	 * @param offset     the index in dest to start writing at
+	 */
+	public static void applyFilter(byte[] line, byte[] prior, int stride, int filterType, byte[] dest, int offset) {
+		int len = line.length;
+		switch(filterType) {
+			case PNGImageDataDecoder.FILTER_NONE -> System.arraycopy(line, 0, dest, offset, len);
+			case PNGImageDataDecoder.FILTER_SUB -> {
+				for(int i=0; i<len; i++) {
+					int a = (i < stride) ? 0 : line[i - stride];
+					dest[offset + i] = (byte) (line[i] - a);
+				}
+			}
+			case PNGImageDataDecoder.FILTER_UP -> {
+				for(int i=0; i<len; i++) {
+					dest[offset + i] = (byte) (line[i] - prior[i]);
+				}
+			}
+			case PNGImageDataDecoder.FILTER_AVERAGE -> {
+				for(int i=0; i<len; i++) {
+					int a = (i < stride) ? 0 : line[i - stride] & 0xFF;
+					dest[offset + i] = (byte) (line[i] - ((a + (prior[i] & 0xFF)) >>> 1));
+				}
+			}
+			case PNGImageDataDecoder.FILTER_PAETH -> {
+				for(int i=0; i<len; i++) {
+					int a = (i < stride) ? 0 : line[i - stride] & 0xFF;
+					int c = (i < stride) ? 0 : prior[i - stride] & 0xFF;
+					dest[offset + i] = (byte) (line[i] - PNGImageDataDecoder.paeth(a, prior[i] & 0xFF, c));
+				}
+			}
+			default -> throw new IllegalArgumentException("Unknown filter type #"+filterType);
+		}
+	}
+
+	/**
+	 * Compresses data into a zlib stream. Data larger than one block is split up, and the blocks are deflated in
+	 * parallel on the provided pool.
+	 * @param data  the data to compress
+	 * @param level a compression level between {@link #LEVEL_STORE} and {@link #LEVEL_SMALLEST}
+	 * @param pool  the pool to run deflate tasks on
+	 * @return the complete zlib stream, including header and checksum
+	 */
+	public static byte[] deflate(byte[] data, int level, ForkJoinPool pool) {
+		if (level < LEVEL_STORE || level > LEVEL_SMALLEST) throw new IllegalArgumentException("Compression level must be between 0 and 9.");
+
+		int blockCount = Math.max(1, (data.length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+
+		List<ForkJoinTask<byte[]>> tasks = new ArrayList<>(blockCount);
+		for(int i=0; i<blockCount; i++) {
+			int start = i * BLOCK_SIZE;
+			int length = Math.min(BLOCK_SIZE, data.length - start);
+			boolean last = (i == blockCount - 1);
+			tasks.add(pool.submit(() -> deflateBlock(data, start, length, level, last)));
+		}
+
+		//Checksum the uncompressed data while the deflaters run
+		Adler32 adler = new Adler32();
+		adler.update(data);
+
+		byte[][] blocks = new byte[blockCount][];
+		int totalLength = 2 + 4;
+		for(int i=0; i<blockCount; i++) {
+			blocks[i] = tasks.get(i).join();
+			totalLength += blocks[i].length;
+		}
+
+		byte[] result = new byte[totalLength];
+		result[0] = 0x78; // CM=8 (deflate), CINFO=7 (32K window)
+		result[1] = (byte) zlibFlags(level);
+		int pos = 2;
+		for(byte[] block : blocks) {
+			System.arraycopy(block, 0, result, pos, block.length);
+			pos += block.length;
+		}
+
+		int checksum = (int) adler.getValue();
+		result[pos    ] = (byte) (checksum >> 24);
+		result[pos + 1] = (byte) (checksum >> 16);
+		result[pos + 2] = (byte) (checksum >>  8);
+		result[pos + 3] = (byte) checksum;
+
+		return result;
+	}
+
+	/**
+	 * Deflates one block as a raw (headerless) deflate stream. Every block except the last ends in a sync flush so that
+	 * it finishes on a byte boundary and the blocks can be concatenated.
+	 */
+	private static byte[] deflateBlock(byte[] data, int start, int length, int level, boolean last) {
+		Deflater deflater = new Deflater(level, true);
+		try {
+			if (level != LEVEL_STORE) {
+				deflater.setStrategy(Deflater.FILTERED);
+				//Strategy changes are only applied on the next deflate call, and applying them after a dictionary has
+				//been set throws the dictionary's match state out of sync. Apply it now, while the stream is empty.
+				deflater.deflate(new byte[0]);
+			}
+			if (start > 0) {
+				int dictionaryLength = Math.min(DICTIONARY_SIZE, start);
+				deflater.setDictionary(data, start - dictionaryLength, dictionaryLength);
+			}
+			deflater.setInput(data, start, length);
+			if (last) deflater.finish();
+
+			byte[] out = new byte[length + (length >> 3) + 64];
+			int pos = 0;
+			int flush = (last) ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH;
+			while(true) {
+				pos += deflater.deflate(out, pos, out.length - pos, flush);
+
+				boolean done = (last) ? deflater.finished() : (pos < out.length);
+				if (done) break;
+				if (pos == out.length) out = Arrays.copyOf(out, out.length * 2);
+			}
+
+			return Arrays.copyOf(out, pos);
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Gets the zlib FLG byte for the given level. The FLEVEL bits are informational only, but the check bits must make
+	 * the header a multiple of 31.
+	 */
+	private static int zlibFlags(int level) {
+		int flevel;
+		if (level < 2) {
+			flevel = 0;
+		} else if (level < 6) {
+			flevel = 1;
+		} else if (level == 6) {
+			flevel = 2;
+		} else {
+			flevel = 3;
+		}
+
+		int flags = flevel << 6;
+		int check = 31 - ((0x78 << 8 | flags) % 31);
+		return flags | (check % 31);
+	}
+}
@@ -17,7 +17,22 @@ import com.playsawdust.glow.image.color.RGBColor;
 import com.playsawdust.glow.io.DataSlice;
 
 public class TiffImageDataDecoder {
+	/**
+	 * Decodes a rectangle of the image, one row at a time. Rows share their scratch buffers, so this is cheaper than
+	 * calling {@link #getLineWindow} for each row.
+	 */
+	public static void getWindow(DataSlice source, BaselineTiffHeader header, long srcX, long srcY, long width, long height, ImageData dest, int destX, int destY) throws IOException {
+		RowBuffers buffers = new RowBuffers();
+		for(int y=0; y<height; y++) {
+			getLineWindow(source, header, srcX, srcY + y, width, dest, destX, destY + y, buffers);
+		}
+	}
+	
 	public static void getLineWindow(DataSlice source, BaselineTiffHeader header, long srcX, long srcY, long length, ImageData dest, int destX, int destY) throws IOException {
+		getLineWindow(source, header, srcX, srcY, length, dest, destX, destY, new RowBuffers());
+	}
+	
+	private static void getLineWindow(DataSlice source, BaselineTiffHeader header, long srcX, long srcY, long length, ImageData dest, int destX, int destY, RowBuffers buffers) throws IOException {
 		
 		//long compression = ifd.getLong(source, IFD.TAG_COMPRESSION, -1L);
 		//if (compression != 1L) throw new IOException("Don't know how to deal with compression type "+compression);
@@ -115,14 +130,49 @@ public class TiffImageDataDecoder {
 			long pixelsToCopy = Math.min(length, availablePixels);
 			
 			//System.out.println("Reading in "+length+" pixels...");
-			for(int i=0; i<pixelsToCopy; i++) {
-				RGBColor col = pixelDecoder.apply(source);
-				dest.setPixel(destX + i, destY, col);
+			if (isGray16(header) && pixelsToCopy > 0 && seekTarget + pixelsToCopy * 2 <= source.length()) {
+				//Pull the whole row in with one bulk read instead of decoding it a sample at a time, and hand it over as
+				//one run of linear pixels
+				int count = (int) pixelsToCopy;
+				if (buffers.samples.length < count) {
+					buffers.samples = new short[count];
+					buffers.pixels = new float[count * 4];
+				}
+				short[] samples = buffers.samples;
+				float[] pixels = buffers.pixels;
+				source.readShorts(samples, 0, count);
+				boolean signed = header.sampleFormat[0] == 2;
+				for(int i=0; i<count; i++) {
+					float level = gray16Level(samples[i], signed);
+					pixels[i*4    ] = level;
+					pixels[i*4 + 1] = level;
+					pixels[i*4 + 2] = level;
+					pixels[i*4 + 3] = 1.0f;
+				}
+				dest.setLinearRow(destY, destX, count, pixels);
+			} else {
+				for(int i=0; i<pixelsToCopy; i++) {
+					RGBColor col = pixelDecoder.apply(source);
+					dest.setPixel(destX + i, destY, col);
+				}
 			}
 			//System.out.println("Done.");
 		}
 	}
 	
+	/** Scratch space for decoding rows, kept for as long as one call decodes rows */
+	private static final class RowBuffers {
+		short[] samples = new short[0];
+		float[] pixels = new float[0];
+	}
+	
+	private static boolean isGray16(BaselineTiffHeader header) {
+		return header.colorType == TiffColorType.BLACK_IS_ZERO
+				&& header.sampleFormat.length == 1
+				&& (header.sampleFormat[0] == 1 || header.sampleFormat[0] == 2)
+				&& header.bitsPerSample[0] == 16;
+	}
+	
 	public static RGBColor rgb8uPixel(DataSlice source) {
 		try {
 			int r = source.read();
@@ -172,13 +222,24 @@ public class TiffImageDataDecoder {
 	
 	//TODO: I'm pretty sure -Short.MIN_VALUE (0x8000) is the correct value and the result is getting washed out by gamma.
 	private static final int SHORT_SIGNED_OFFSET = 0x2000; //-Short.MIN_VALUE;
+	
+	/**
+	 * Converts one 16-bit gray sample into a linear level. Only the low 16 bits of sample are used.
+	 * @param signed true if the sample is an i16s, false if it's an i16u
+	 */
+	static float gray16Level(int sample, boolean signed) {
+		return (signed) ?
+				((short) sample + SHORT_SIGNED_OFFSET) / (float) 0xFFFF :
+				(sample & 0xFFFF) / (float) 0xFFFF;
+	}
+	
 	public static RGBColor gray16sPixel(DataSlice source) {
 		try {
 			int value = (short) source.readI16s();
 			//value = (short)(value + 0x8000);// & 0xFFFF);
 			
 			//if (value < 0) {
-				float level = (value + SHORT_SIGNED_OFFSET) / (float) 0xFFFF;
+				float level = gray16Level(value, true);
 				return new RGBColor(1.0f, level, level, level);
 				//value = -value - 1; //0..32767
 				//value = ((value + 0x8000) & 0xFFFF) / 2 + (0xFFFF / 4);
@@ -203,7 +264,7 @@ public class TiffImageDataDecoder {
 	public static RGBColor gray16uPixel(DataSlice source) {
 		try {
 			int value = source.readI16u();
-			float level = (value / (float) 0xFFFF);
+			float level = gray16Level(value, false);
 			
 			return new RGBColor(1.0f, level, level, level);
 		} catch (Throwable t) {
@@ -33,9 +33,10 @@ public class ArrayDataBuilder implements DataBuilder {
 	
 	@Override
 	public void seek(long offset) {
-		if (offset > 0x7FFFFFFF) throw new IndexOutOfBoundsException("Offset value '"+offset+"' out of range for arrays.");
-		ensureCapacity((int) offset - 1);
-		ensureDataLength((int) offset - 1);
+		if (offset < 0 || offset > 0x7FFFFFFF) throw new IndexOutOfBoundsException("Offset value '"+offset+"' out of range for arrays.");
+		ensureCapacity((int) offset);
+		ensureDataLength((int) offset);
+		writePointer = (int) offset;
 	}
 	
 	@Override
@@ -51,6 +52,15 @@ public class ArrayDataBuilder implements DataBuilder {
 		ensureDataLength(writePointer);
 	}
 	
+	@Override
+	public void write(byte[] data, int offset, int length) {
+		if (offset < 0 || length < 0 || offset+length > data.length) throw new ArrayIndexOutOfBoundsException();
+		ensureCapacity(writePointer + length);
+		System.arraycopy(data, offset, this.data, writePointer, length);
+		writePointer += length;
+		ensureDataLength(writePointer);
+	}
+	
 	@Override
 	public void write(long offset, int value) {
 		if (offset > 0x7FFFFFFF) throw new IndexOutOfBoundsException("Offset value '"+offset+"' out of range for arrays.");
@@ -9,12 +9,24 @@
 package com.playsawdust.glow.io;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 /**
  * Represents a {@link DataSlice} backed by an array.
  */
 public class ArrayDataSlice implements DataSlice {
+	private static final VarHandle SHORT_BE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle SHORT_LE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle FLOAT_BE = MethodHandles.byteArrayViewVarHandle(float[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle FLOAT_LE = MethodHandles.byteArrayViewVarHandle(float[].class, ByteOrder.LITTLE_ENDIAN);
+	
 	protected byte[] data;
 	protected int baseOffset;
 	protected int length;
@@ -40,16 +52,98 @@ public class ArrayDataSlice implements DataSlice {
 	@Override
 	public int read() throws IOException {
 		if (pointer>=length) throw new IOException("Out of bounds.");
-		int value = data[baseOffset+pointer];
+		int value = data[baseOffset+pointer] & 0xFF;
 		pointer++;
 		return value;
 	}
 	
 	@Override
 	public int read(long offset) {
-		if (offset<0) throw new ArrayIndexOutOfBoundsException();
-		if (baseOffset+offset>=length) throw new ArrayIndexOutOfBoundsException();
-		return data[baseOffset + (int) offset];
+		if (offset<0 || offset>=length) throw new ArrayIndexOutOfBoundsException();
+		return data[baseOffset + (int) offset] & 0xFF;
+	}
+	
+	/**
+	 * Makes sure there are at least count bytes left after the read pointer, and then advances the pointer past them.
+	 * @return the array index of the first byte skipped over
+	 */
+	private int advance(long count) throws IOException {
+		if (count<0 || count > length-pointer) throw new IOException("Out of bounds.");
+		int index = baseOffset + pointer;
+		pointer += (int) count;
+		return index;
+	}
+	
+	private boolean bigEndian() {
+		return byteOrder==ByteOrder.BIG_ENDIAN;
+	}
+	
+	@Override
+	public short readI16s() throws IOException {
+		return (short) ((bigEndian()) ? SHORT_BE : SHORT_LE).get(data, advance(2));
+	}
+	
+	@Override
+	public int readI16u() throws IOException {
+		return readI16s() & 0xFFFF;
+	}
+	
+	@Override
+	public int readI32s() throws IOException {
+		return (int) ((bigEndian()) ? INT_BE : INT_LE).get(data, advance(4));
+	}
+	
+	@Override
+	public long readI32u() throws IOException {
+		return readI32s() & 0xFFFFFFFFL;
+	}
+	
+	@Override
+	public long readI64s() throws IOException {
+		return (long) ((bigEndian()) ? LONG_BE : LONG_LE).get(data, advance(8));
+	}
+	
+	@Override
+	public void readShorts(short[] destination, int start, int len) throws IOException {
+		if (start<0 || len<0 || start+len > destination.length) throw new ArrayIndexOutOfBoundsException();
+		VarHandle handle = (bigEndian()) ? SHORT_BE : SHORT_LE;
+		int index = advance(len * 2L);
+		for(int i=0; i<len; i++) {
+			destination[start+i] = (short) handle.get(data, index + i*2);
+		}
+	}
+	
+	@Override
+	public void readInts(int[] destination, int start, int len) throws IOException {
+		if (start<0 || len<0 || start+len > destination.length) throw new ArrayIndexOutOfBoundsException();
+		VarHandle handle = (bigEndian()) ? INT_BE : INT_LE;
+		int index = advance(len * 4L);
+		for(int i=0; i<len; i++) {
+			destination[start+i] = (int) handle.get(data, index + i*4);
+		}
+	}
+	
+	@Override
+	public void readFloats(float[] destination, int start, int len) throws IOException {
+		if (start<0 || len<0 || start+len > destination.length) throw new ArrayIndexOutOfBoundsException();
+		VarHandle handle = (bigEndian()) ? FLOAT_BE : FLOAT_LE;
+		int index = advance(len * 4L);
+		for(int i=0; i<len; i++) {
+			destination[start+i] = (float) handle.get(data, index + i*4);
+		}
+	}
+	
+	@Override
+	public int read(ByteBuffer destination) throws IOException {
+		int count = Math.min(destination.remaining(), length-pointer);
+		destination.put(data, advance(count), count);
+		return count;
+	}
+	
+	@Override
+	public void copy(byte[] destination, int start, int len) throws IOException {
+		if (start<0 || len<0 || start+len > destination.length) throw new ArrayIndexOutOfBoundsException();
+		System.arraycopy(data, advance(len), destination, start, len);
 	}
 
 	@Override
@@ -64,7 +158,7 @@ public class ArrayDataSlice implements DataSlice {
 
 	@Override
 	public DataSlice slice(long offset, long length) {
-		if (offset<0 || offset > this.baseOffset+this.length) throw new ArrayIndexOutOfBoundsException();
+		if (offset<0 || offset > this.length) throw new ArrayIndexOutOfBoundsException();
 		if (length<0 || offset+length > this.length) throw new ArrayIndexOutOfBoundsException();
 		
 		ArrayDataSlice result = new ArrayDataSlice(data, (int) (this.baseOffset+offset), (int) length);
@@ -76,10 +170,22 @@ public class ArrayDataSlice implements DataSlice {
 	@Override
 	public byte[] arraycopy(long offset, int length) {
 		byte[] result = new byte[length];
-		System.arraycopy(data, (int) offset, result, 0, length);
+		arraycopy(offset, result, 0, length);
 		return result;
 	}
+	
+	@Override
+	public void arraycopy(long offset, byte[] destination, int start, int len) {
+		if (offset<0 || len<0 || offset+len > this.length) throw new ArrayIndexOutOfBoundsException();
+		System.arraycopy(data, baseOffset + (int) offset, destination, start, len);
+	}
 
+	@Override
+	public ByteBuffer asByteBuffer(long offset, int length) {
+		if (offset<0 || length<0 || offset+length > this.length) throw new ArrayIndexOutOfBoundsException();
+		return ByteBuffer.wrap(data, (int) (baseOffset+offset), length).slice().asReadOnlyBuffer().order(byteOrder);
+	}
+	
 	@Override
 	public ByteOrder getByteOrder() {
 		return byteOrder;
@@ -8,13 +8,19 @@
  */
 package com.playsawdust.glow.io;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 
+/**
+ * Reads bits out of an InputStream, starting from the highest bit of each byte. For DataSlices and ByteBuffers, or for
+ * LSB-first data, prefer {@link BitReader}, which refills a whole word at a time.
+ */
 public class BitInputStream {
 	protected final InputStream in;
-	protected int value = 0;
-	protected int bitIndex = 0;
+	/** Bits which have been read from the stream but not consumed yet, right-aligned */
+	protected long value = 0L;
+	protected int bitCount = 0;
 	
 	public BitInputStream(InputStream in) {
 		this.in = in;
@@ -22,32 +28,27 @@ public class BitInputStream {
 	
 	/** Reads in a single bit from the stream, starting from the highest bit of the first byte */
 	public boolean readBit() throws IOException {
-		if (bitIndex>=8) {
-			value = in.read();
-			bitIndex = 0;
-		}
-			
-		boolean result = (value & 0x80) != 0;
-		value <<= 1;
-		bitIndex++;
-		
-		return result;
+		return readBits(1) != 0;
 	}
 	
-	/** Reads a number of bits in, in big-endian order */
+	/** Reads up to 32 bits in, in big-endian order */
 	public int readBits(int count) throws IOException {
-		int result = 0;
-		for(int i=0; i<count; i++) {
-			result <<= 1;
-			if (readBit()) result |= 1;
+		if (count < 0 || count > 32) throw new IllegalArgumentException("Can only read between 0 and 32 bits at a time.");
+		
+		while(bitCount < count) {
+			int b = in.read();
+			if (b < 0) throw new EOFException();
+			value = (value << 8) | b;
+			bitCount += 8;
 		}
 		
-		return result;
+		bitCount -= count;
+		return (int) ((value >>> bitCount) & ((1L << count) - 1));
 	}
 	
 	/** Aligns the stream back onto a byte boundary, discarding any remaining bits in the current byte */
 	public void align() {
-		bitIndex = 8;
+		bitCount &= ~7;
 	}
 	
 	public void close() throws IOException {
@@ -0,0 +1,189 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Reads variable-width bit fields out of a DataSlice or ByteBuffer. Bits are held in a 64-bit accumulator which is
+ * refilled eight bytes at a time, so each call is a shift and a mask rather than a loop over individual bits. Any
+ * number of bits from 0 to {@link #MAX_BITS} can be read in a single call.
+ *
+ * <p>Formats disagree about which end of a byte comes first. PNG sample packing, TIFF LZW and CCITT fax codes start
+ * from the most significant bit; deflate and GIF LZW start from the least significant bit. Use {@link #msbFirst} or
+ * {@link #lsbFirst} to pick one.
+ *
+ * <p>Like DataSlices, BitReaders are not thread-safe. A BitReader reading from a DataSlice reads ahead, so the slice's
+ * read pointer is undefined until the BitReader is done with it.
+ */
+public abstract class BitReader {
+	/** The largest number of bits that can be read or peeked in one call */
+	public static final int MAX_BITS = 57;
+	private static final int DATASLICE_BUFFER_SIZE = 4096;
+
+	protected final ByteBuffer buffer;
+	protected final @Nullable DataSlice source;
+	/** Bits that have been loaded but not yet consumed. Where they sit in the word depends on the subclass. */
+	protected long bits = 0L;
+	/** How many of the bits in the accumulator are valid */
+	protected int bitCount = 0;
+
+	protected BitReader(ByteBuffer buffer, ByteOrder order) {
+		this.buffer = buffer.slice().order(order);
+		this.source = null;
+	}
+
+	protected BitReader(DataSlice source, ByteOrder order) {
+		this.buffer = ByteBuffer.allocate(DATASLICE_BUFFER_SIZE).order(order);
+		this.buffer.flip();
+		this.source = source;
+	}
+
+	/** Creates a BitReader that reads each byte starting from its highest bit */
+	public static BitReader msbFirst(ByteBuffer buffer) {
+		return new MsbBitReader(buffer);
+	}
+
+	/** Creates a BitReader that reads each byte starting from its highest bit */
+	public static BitReader msbFirst(DataSlice source) {
+		return new MsbBitReader(source);
+	}
+
+	/** Creates a BitReader that reads each byte starting from its lowest bit */
+	public static BitReader lsbFirst(ByteBuffer buffer) {
+		return new LsbBitReader(buffer);
+	}
+
+	/** Creates a BitReader that reads each byte starting from its lowest bit */
+	public static BitReader lsbFirst(DataSlice source) {
+		return new LsbBitReader(source);
+	}
+
+	/**
+	 * Reads count bits and returns them as an unsigned value. The first bit read becomes the highest-order bit of the
+	 * result for MSB-first readers, and the lowest-order bit for LSB-first readers.
+	 * @param count the number of bits to read, from 0 to {@link #MAX_BITS}
+	 * @throws EOFException if there are fewer than count bits left
+	 */
+	public long readBits(int count) throws IOException {
+		long result = peekBits(count);
+		consume(count);
+		return result;
+	}
+
+	/**
+	 * Reads a single bit.
+	 * @throws EOFException if there are no bits left
+	 */
+	public boolean readBit() throws IOException {
+		return readBits(1) != 0L;
+	}
+
+	/**
+	 * Returns the next count bits without consuming them.
+	 * @param count the number of bits to peek at, from 0 to {@link #MAX_BITS}
+	 * @throws EOFException if there are fewer than count bits left
+	 */
+	public long peekBits(int count) throws IOException {
+		if (count<0 || count>MAX_BITS) throw new IllegalArgumentException("Can only read between 0 and "+MAX_BITS+" bits at a time.");
+		if (count == 0) return 0L;
+		if (bitCount < count) {
+			refill();
+			if (bitCount < count) throw new EOFException();
+		}
+		return peek(count);
+	}
+
+	/**
+	 * Discards count bits.
+	 * @throws EOFException if there are fewer than count bits left
+	 */
+	public void skipBits(long count) throws IOException {
+		while(count > 0) {
+			int step = (int) Math.min(count, MAX_BITS);
+			peekBits(step);
+			consume(step);
+			count -= step;
+		}
+	}
+
+	/**
+	 * Discards any remaining bits in the current byte, so that the next read starts on a byte boundary.
+	 */
+	public void align() {
+		consume(bitCount & 7);
+	}
+
+	/**
+	 * Goes back to the start of the data, discarding any bits already loaded. This lets one reader be reused over a
+	 * buffer whose contents are replaced between passes, like a scanline, without allocating a new one each time.
+	 * @throws IOException if the reader's DataSlice can't seek back to its start
+	 */
+	public void rewind() throws IOException {
+		bits = 0L;
+		bitCount = 0;
+		DataSlice source = this.source;
+		if (source == null) {
+			buffer.rewind();
+		} else {
+			source.seek(0L);
+			buffer.clear().flip();
+		}
+	}
+
+	/**
+	 * Tops the accumulator up to at least {@link #MAX_BITS} bits, or as many bits as are left if that's fewer.
+	 */
+	protected void refill() throws IOException {
+		if (buffer.remaining() < 8 && source != null) fillBuffer();
+
+		int pos = buffer.position();
+		if (buffer.remaining() >= 8) {
+			/*
+			 * Load a whole word and merge it in below the bits we already have. The word usually carries a few bits
+			 * past the last whole byte we consume; those are the real next bits in the stream, so when they're loaded
+			 * again next time they merge in as the same values.
+			 */
+			int bytes = (64 - bitCount) >>> 3;
+			mergeWord(buffer.getLong(pos));
+			buffer.position(pos + bytes);
+			bitCount += bytes * 8;
+		} else {
+			while(bitCount <= 56 && buffer.hasRemaining()) {
+				mergeByte(buffer.get() & 0xFF);
+				bitCount += 8;
+			}
+		}
+	}
+
+	private void fillBuffer() throws IOException {
+		DataSlice source = this.source;
+		if (source == null || source.position() >= source.length()) return;
+		buffer.compact();
+		source.read(buffer);
+		buffer.flip();
+	}
+
+	/** Merges an 8-byte word, read in this reader's byte order, into the accumulator just past the valid bits */
+	protected abstract void mergeWord(long word);
+
+	/** Merges a single byte into the accumulator just past the valid bits */
+	protected abstract void mergeByte(int value);
+
+	/** Returns the next count bits in the accumulator. count is between 1 and bitCount. */
+	protected abstract long peek(int count);
+
+	/** Discards the next count bits in the accumulator. count is between 0 and bitCount. */
+	protected abstract void consume(int count);
+}
@@ -0,0 +1,213 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.io;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Represents a {@link DataSlice} backed by a file, read through a shared {@link PageCache}.
+ *
+ * <p>Unlike {@link FileDataSlice}, this class keeps no state in the file itself. Each ChannelDataSlice is just a cursor
+ * into the cache, so {@link #slice(long, long)} is cheap, and slices taken from the same file may each be handed off to
+ * a different thread, for instance to decode several strips of one image at once. Each individual slice is still only
+ * safe to use from one thread at a time.
+ *
+ * <p>Only the slice that opened the file owns it. Closing that slice closes the channel, and invalidates every slice
+ * taken from it; closing any other slice does nothing.
+ */
+public class ChannelDataSlice implements DataSlice {
+	protected final PageCache cache;
+	protected final long baseOffset;
+	protected final long length;
+	protected final boolean ownsChannel;
+	protected long pointer = 0L;
+	protected ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
+
+	private final int blockSize;
+	private final byte[] scratch = new byte[8];
+	/* The most recently used block, so that sequential reads don't have to go to the cache for every byte */
+	private byte[] currentBlock = null;
+	private long currentBlockIndex = -1L;
+
+	/**
+	 * Creates a DataSlice covering the whole channel. The channel remains the caller's responsibility to close.
+	 */
+	public ChannelDataSlice(FileChannel channel) throws IOException {
+		this(new PageCache(channel), false);
+	}
+
+	/**
+	 * Creates a DataSlice covering the whole file that the cache reads from.
+	 * @param cache       the cache to read through
+	 * @param ownsChannel if true, closing this slice will close the cache's channel
+	 */
+	public ChannelDataSlice(PageCache cache, boolean ownsChannel) {
+		this(cache, 0L, cache.length(), ownsChannel);
+	}
+
+	protected ChannelDataSlice(PageCache cache, long offset, long length, boolean ownsChannel) {
+		this.cache = cache;
+		this.baseOffset = offset;
+		this.length = length;
+		this.ownsChannel = ownsChannel;
+		this.blockSize = cache.getBlockSize();
+	}
+
+	/**
+	 * Opens a file for reading. The returned slice owns the file, and closing it will close the file.
+	 */
+	public static ChannelDataSlice open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			return new ChannelDataSlice(new PageCache(channel), true);
+		} catch (IOException | RuntimeException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+
+	private byte[] block(long blockIndex) throws IOException {
+		if (blockIndex != currentBlockIndex) {
+			currentBlock = cache.getBlock(blockIndex);
+			currentBlockIndex = blockIndex;
+		}
+		return currentBlock;
+	}
+
+	@Override
+	public void seek(long offset) throws IOException {
+		if (offset<0 || offset>length) throw new IOException("Out of bounds.");
+		pointer = offset;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int result = read(pointer);
+		pointer++;
+		return result;
+	}
+
+	@Override
+	public int read(long offset) throws IOException {
+		if (offset<0 || offset>=length) throw new IOException("Out of bounds.");
+		long absolute = baseOffset + offset;
+		return block(absolute / blockSize)[(int) (absolute % blockSize)] & 0xFF;
+	}
+
+	@Override
+	public void arraycopy(long offset, byte[] destination, int start, int len) throws IOException {
+		if (offset<0 || len<0 || offset+len > length) throw new IOException("Out of bounds.");
+		if (start<0 || start+len > destination.length) throw new ArrayIndexOutOfBoundsException();
+
+		long absolute = baseOffset + offset;
+		int done = 0;
+		while(done < len) {
+			byte[] block = block(absolute / blockSize);
+			int blockOffset = (int) (absolute % blockSize);
+			int count = Math.min(len - done, block.length - blockOffset);
+			System.arraycopy(block, blockOffset, destination, start + done, count);
+			done += count;
+			absolute += count;
+		}
+	}
+
+	@Override
+	public void copy(byte[] destination, int start, int len) throws IOException {
+		arraycopy(pointer, destination, start, len);
+		pointer += len;
+	}
+
+	/**
+	 * Copies the next count bytes into the scratch buffer and advances the read pointer past them.
+	 */
+	private byte[] readScratch(int count) throws IOException {
+		arraycopy(pointer, scratch, 0, count);
+		pointer += count;
+		return scratch;
+	}
+
+	@Override
+	public short readI16s() throws IOException {
+		byte[] b = readScratch(2);
+		return (short) DataSlice.order(b[0], b[1], byteOrder);
+	}
+
+	@Override
+	public int readI16u() throws IOException {
+		byte[] b = readScratch(2);
+		return DataSlice.order(b[0], b[1], byteOrder);
+	}
+
+	@Override
+	public int readI32s() throws IOException {
+		byte[] b = readScratch(4);
+		return DataSlice.order(b[0], b[1], b[2], b[3], byteOrder);
+	}
+
+	@Override
+	public long readI32u() throws IOException {
+		return readI32s() & 0xFFFFFFFFL;
+	}
+
+	@Override
+	public long readI64s() throws IOException {
+		byte[] b = readScratch(8);
+		return DataSlice.order(b[0], b[1], b[2], b[3], b[4], b[5], b[6], b[7], byteOrder);
+	}
+
+	@Override
+	public long position() {
+		return pointer;
+	}
+
+	@Override
+	public long length() {
+		return length;
+	}
+
+	/**
+	 * Creates a new, independent cursor over part of this slice. The returned slice shares this slice's page cache,
+	 * and may be used on a different thread than this one.
+	 */
+	@Override
+	public DataSlice slice(long offset, long length) {
+		if (offset<0 || length<0 || offset+length > this.length) throw new ArrayIndexOutOfBoundsException();
+
+		ChannelDataSlice result = new ChannelDataSlice(cache, baseOffset + offset, length, false);
+		result.setByteOrder(byteOrder);
+		this.pointer = offset + length;
+		return result;
+	}
+
+	@Override
+	public ByteOrder getByteOrder() {
+		return byteOrder;
+	}
+
+	@Override
+	public void setByteOrder(ByteOrder order) {
+		this.byteOrder = order;
+	}
+
+	public PageCache getCache() {
+		return cache;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (ownsChannel) {
+			cache.clear();
+			cache.getChannel().close();
+		}
+	}
+}
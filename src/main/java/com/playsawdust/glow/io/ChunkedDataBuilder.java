@@ -0,0 +1,190 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DataBuilder which stores its data as a list of fixed-size chunks instead of one large array. Growing never copies
+ * data that's already been written, so building a file costs no more than one extra copy of its contents, and the
+ * builder can grow past the 2GB limit of a single array.
+ *
+ * <p>The finished data can be read back as a {@link ChunkedDataSlice} without flattening it, or written straight to a
+ * channel with gather I/O via {@link #writeTo(WritableByteChannel)}.
+ */
+public class ChunkedDataBuilder implements DataBuilder {
+	public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+	private final int chunkSize;
+	private final List<byte[]> chunks = new ArrayList<>();
+	private long dataLength = 0L;
+	private long writePointer = 0L;
+	private ByteOrder order = ByteOrder.BIG_ENDIAN;
+
+	public ChunkedDataBuilder() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	public ChunkedDataBuilder(int chunkSize) {
+		if (chunkSize <= 0) throw new IllegalArgumentException("Chunk size must be positive.");
+		this.chunkSize = chunkSize;
+	}
+
+	@Override
+	public void reset() {
+		writePointer = 0L;
+		order = ByteOrder.BIG_ENDIAN;
+	}
+
+	@Override
+	public void seek(long offset) {
+		if (offset < 0) throw new IndexOutOfBoundsException("Offset value '"+offset+"' is negative.");
+		ensureCapacity(offset);
+		ensureDataLength(offset);
+		writePointer = offset;
+	}
+
+	@Override
+	public void skip(long bytes) {
+		seek(writePointer + bytes);
+	}
+
+	@Override
+	public void write(int value) {
+		write(writePointer, value);
+		writePointer++;
+	}
+
+	@Override
+	public void write(long offset, int value) {
+		if (offset < 0) throw new IndexOutOfBoundsException("Offset value '"+offset+"' is negative.");
+		ensureCapacity(offset + 1);
+		chunks.get((int) (offset / chunkSize))[(int) (offset % chunkSize)] = (byte) value;
+		ensureDataLength(offset + 1);
+	}
+
+	@Override
+	public void write(byte[] data, int offset, int length) {
+		if (offset < 0 || length < 0 || offset+length > data.length) throw new ArrayIndexOutOfBoundsException();
+		ensureCapacity(writePointer + length);
+
+		int done = 0;
+		while(done < length) {
+			byte[] chunk = chunks.get((int) (writePointer / chunkSize));
+			int chunkOffset = (int) (writePointer % chunkSize);
+			int count = Math.min(length - done, chunkSize - chunkOffset);
+			System.arraycopy(data, offset + done, chunk, chunkOffset, count);
+			done += count;
+			writePointer += count;
+		}
+		ensureDataLength(writePointer);
+	}
+
+	@Override
+	public void writeDataSlice(DataSlice value) throws IOException {
+		long length = value.length();
+		ensureCapacity(writePointer + length);
+
+		//Copy straight into our chunks with no intermediate buffer
+		long done = 0L;
+		while(done < length) {
+			byte[] chunk = chunks.get((int) (writePointer / chunkSize));
+			int chunkOffset = (int) (writePointer % chunkSize);
+			int count = (int) Math.min(length - done, chunkSize - chunkOffset);
+			value.arraycopy(done, chunk, chunkOffset, count);
+			done += count;
+			writePointer += count;
+		}
+		ensureDataLength(writePointer);
+		value.seek(length);
+	}
+
+	@Override
+	public ByteOrder getByteOrder() {
+		return order;
+	}
+
+	@Override
+	public void setByteOrder(ByteOrder order) {
+		this.order = order;
+	}
+
+	@Override
+	public long length() {
+		return dataLength;
+	}
+
+	/**
+	 * Writes all data in this builder to a channel. If the channel supports gather I/O, all chunks are handed to it at
+	 * once.
+	 */
+	public void writeTo(WritableByteChannel channel) throws IOException {
+		int chunkCount = (int) ((dataLength + chunkSize - 1) / chunkSize);
+		ByteBuffer[] buffers = new ByteBuffer[chunkCount];
+		for(int i=0; i<chunkCount; i++) {
+			int length = (int) Math.min(chunkSize, dataLength - (long) i * chunkSize);
+			buffers[i] = ByteBuffer.wrap(chunks.get(i), 0, length);
+		}
+
+		if (channel instanceof GatheringByteChannel gathering) {
+			int first = 0;
+			while(first < chunkCount) {
+				gathering.write(buffers, first, chunkCount - first);
+				while(first < chunkCount && !buffers[first].hasRemaining()) first++;
+			}
+		} else {
+			for(ByteBuffer buffer : buffers) {
+				while(buffer.hasRemaining()) channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Defensively copies all data written to the buffer so far into a new byte array and returns it.
+	 */
+	@Override
+	public byte[] toByteArray() {
+		if (dataLength > 0x7FFFFFFFL) throw new ArrayIndexOutOfBoundsException("Arrays cannot be larger than "+0x7FFFFFFFL+" bytes.");
+
+		byte[] result = new byte[(int) dataLength];
+		int done = 0;
+		for(byte[] chunk : chunks) {
+			int count = Math.min(chunk.length, result.length - done);
+			if (count <= 0) break;
+			System.arraycopy(chunk, 0, result, done, count);
+			done += count;
+		}
+		return result;
+	}
+
+	/**
+	 * Converts this ChunkedDataBuilder into a DataSlice. No data is copied. This Builder should not be used after this
+	 * method is called, as the chunks are shared with the returned slice.
+	 */
+	@Override
+	public ChunkedDataSlice toDataSlice() {
+		return new ChunkedDataSlice(chunks.toArray(new byte[0][]), chunkSize, 0L, dataLength);
+	}
+
+	private void ensureCapacity(long capacity) {
+		while((long) chunks.size() * chunkSize < capacity) {
+			chunks.add(new byte[chunkSize]);
+		}
+	}
+
+	private void ensureDataLength(long length) {
+		if (dataLength < length) dataLength = length;
+	}
+}
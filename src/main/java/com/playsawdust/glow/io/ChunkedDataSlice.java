@@ -0,0 +1,153 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.io;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+/**
+ * Represents a {@link DataSlice} backed by a sequence of equal-sized arrays, such as the ones produced by
+ * {@link ChunkedDataBuilder}. The chunks are read in place, and never flattened into a single array.
+ */
+public class ChunkedDataSlice implements DataSlice {
+	protected final byte[][] chunks;
+	protected final int chunkSize;
+	protected final long baseOffset;
+	protected final long length;
+	protected long pointer = 0L;
+	protected ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
+	private final byte[] scratch = new byte[8];
+
+	/**
+	 * Creates a new ChunkedDataSlice.
+	 * @param chunks     the backing arrays. Every array must be at least chunkSize bytes long, except that the last
+	 *                   one only needs to be long enough to reach the end of this slice.
+	 * @param chunkSize  the number of bytes of data in each chunk
+	 * @param offset     the offset of this slice's first byte, relative to the start of the first chunk
+	 * @param length     the length of this slice in bytes
+	 */
+	public ChunkedDataSlice(byte[][] chunks, int chunkSize, long offset, long length) {
+		this.chunks = chunks;
+		this.chunkSize = chunkSize;
+		this.baseOffset = offset;
+		this.length = length;
+	}
+
+	@Override
+	public void seek(long offset) throws IOException {
+		if (offset<0 || offset>length) throw new IOException("Out of bounds.");
+		pointer = offset;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (pointer>=length) throw new IOException("Out of bounds.");
+		int result = read(pointer);
+		pointer++;
+		return result;
+	}
+
+	@Override
+	public int read(long offset) {
+		if (offset<0 || offset>=length) throw new ArrayIndexOutOfBoundsException();
+		long absolute = baseOffset + offset;
+		return chunks[(int) (absolute / chunkSize)][(int) (absolute % chunkSize)] & 0xFF;
+	}
+
+	@Override
+	public void arraycopy(long offset, byte[] destination, int start, int len) {
+		if (offset<0 || len<0 || offset+len > length) throw new ArrayIndexOutOfBoundsException();
+
+		long absolute = baseOffset + offset;
+		int done = 0;
+		while(done < len) {
+			int chunkOffset = (int) (absolute % chunkSize);
+			int count = Math.min(len - done, chunkSize - chunkOffset);
+			System.arraycopy(chunks[(int) (absolute / chunkSize)], chunkOffset, destination, start + done, count);
+			done += count;
+			absolute += count;
+		}
+	}
+
+	@Override
+	public void copy(byte[] destination, int start, int len) throws IOException {
+		if (len > length - pointer) throw new IOException("Out of bounds.");
+		arraycopy(pointer, destination, start, len);
+		pointer += len;
+	}
+
+	private byte[] readScratch(int count) throws IOException {
+		copy(scratch, 0, count);
+		return scratch;
+	}
+
+	@Override
+	public short readI16s() throws IOException {
+		byte[] b = readScratch(2);
+		return (short) DataSlice.order(b[0], b[1], byteOrder);
+	}
+
+	@Override
+	public int readI16u() throws IOException {
+		byte[] b = readScratch(2);
+		return DataSlice.order(b[0], b[1], byteOrder);
+	}
+
+	@Override
+	public int readI32s() throws IOException {
+		byte[] b = readScratch(4);
+		return DataSlice.order(b[0], b[1], b[2], b[3], byteOrder);
+	}
+
+	@Override
+	public long readI32u() throws IOException {
+		return readI32s() & 0xFFFFFFFFL;
+	}
+
+	@Override
+	public long readI64s() throws IOException {
+		byte[] b = readScratch(8);
+		return DataSlice.order(b[0], b[1], b[2], b[3], b[4], b[5], b[6], b[7], byteOrder);
+	}
+
+	@Override
+	public long position() {
+		return pointer;
+	}
+
+	@Override
+	public long length() {
+		return length;
+	}
+
+	@Override
+	public DataSlice slice(long offset, long length) {
+		if (offset<0 || length<0 || offset+length > this.length) throw new ArrayIndexOutOfBoundsException();
+
+		ChunkedDataSlice result = new ChunkedDataSlice(chunks, chunkSize, baseOffset + offset, length);
+		result.setByteOrder(byteOrder);
+		this.pointer = offset + length;
+		return result;
+	}
+
+	@Override
+	public ByteOrder getByteOrder() {
+		return byteOrder;
+	}
+
+	@Override
+	public void setByteOrder(ByteOrder order) {
+		this.byteOrder = order;
+	}
+
+	@Override
+	public void close() throws IOException {
+		// Do Nothing
+	}
+}
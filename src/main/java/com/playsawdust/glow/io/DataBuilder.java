@@ -9,9 +9,12 @@
 package com.playsawdust.glow.io;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 public interface DataBuilder {
+	/** The largest intermediate buffer {@link #writeDataSlice(DataSlice)} will use */
+	static final int SLICE_COPY_BUFFER_SIZE = 64 * 1024;
 	
 	/**
 	 * Sets the write pointer to zero and resets the endianness of this builder to BIG_ENDIAN.
@@ -119,11 +122,85 @@ public interface DataBuilder {
 		write64(Double.doubleToLongBits(value));
 	}
 	
+	/**
+	 * Writes a range of bytes into the data buffer and advances the write pointer by that many bytes.
+	 * @param data   the array to copy bytes from
+	 * @param offset the first index in the array to copy from
+	 * @param length the number of bytes to write
+	 */
+	default void write(byte[] data, int offset, int length) throws IOException {
+		for(int i=0; i<length; i++) {
+			write(data[offset+i] & 0xFF);
+		}
+	}
+	
+	/**
+	 * Writes an entire array of bytes into the data buffer and advances the write pointer by its length.
+	 */
+	default void write(byte[] data) throws IOException {
+		write(data, 0, data.length);
+	}
+	
+	/**
+	 * Writes a range of shorts into the data buffer using this builder's ByteOrder, and advances the write pointer by
+	 * {@code length * 2} bytes.
+	 */
+	default void writeShorts(short[] values, int offset, int length) throws IOException {
+		byte[] buf = new byte[Math.min(length, DataSlice.BULK_READ_CHUNK) * Short.BYTES];
+		int done = 0;
+		while(done < length) {
+			int count = Math.min(length - done, DataSlice.BULK_READ_CHUNK);
+			ByteBuffer.wrap(buf).order(getByteOrder()).asShortBuffer().put(values, offset + done, count);
+			write(buf, 0, count * Short.BYTES);
+			done += count;
+		}
+	}
+	
+	/**
+	 * Writes a range of ints into the data buffer using this builder's ByteOrder, and advances the write pointer by
+	 * {@code length * 4} bytes.
+	 */
+	default void writeInts(int[] values, int offset, int length) throws IOException {
+		byte[] buf = new byte[Math.min(length, DataSlice.BULK_READ_CHUNK) * Integer.BYTES];
+		int done = 0;
+		while(done < length) {
+			int count = Math.min(length - done, DataSlice.BULK_READ_CHUNK);
+			ByteBuffer.wrap(buf).order(getByteOrder()).asIntBuffer().put(values, offset + done, count);
+			write(buf, 0, count * Integer.BYTES);
+			done += count;
+		}
+	}
+	
+	/**
+	 * Writes a range of floats into the data buffer using this builder's ByteOrder, and advances the write pointer by
+	 * {@code length * 4} bytes.
+	 */
+	default void writeFloats(float[] values, int offset, int length) throws IOException {
+		byte[] buf = new byte[Math.min(length, DataSlice.BULK_READ_CHUNK) * Float.BYTES];
+		int done = 0;
+		while(done < length) {
+			int count = Math.min(length - done, DataSlice.BULK_READ_CHUNK);
+			ByteBuffer.wrap(buf).order(getByteOrder()).asFloatBuffer().put(values, offset + done, count);
+			write(buf, 0, count * Float.BYTES);
+			done += count;
+		}
+	}
+	
+	/**
+	 * Writes the entire contents of a DataSlice into the data buffer, regardless of its read pointer. When this method
+	 * returns, the slice's read pointer will be at its end.
+	 */
 	default void writeDataSlice(DataSlice value) throws IOException {
-		value.seek(0L);
-		for(long i=0; i<value.length(); i++) {
-			write(value.read());
+		long length = value.length();
+		byte[] buf = new byte[(int) Math.min(length, SLICE_COPY_BUFFER_SIZE)];
+		long done = 0;
+		while(done < length) {
+			int count = (int) Math.min(length - done, buf.length);
+			value.arraycopy(done, buf, 0, count);
+			write(buf, 0, count);
+			done += count;
 		}
+		value.seek(length);
 	}
 	
 	/**
@@ -10,7 +10,9 @@ package com.playsawdust.glow.io;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 
 /**
  * Represents a segment of randomly-seekable raw byte data, agnostic of its origin.
@@ -27,9 +29,13 @@ import java.nio.ByteOrder;
  * 
  * <p><B>Threading:</B> DataSlices are not thread-safe. Slices and sub-slices generally should not be passed
  * off of the thread that created them; in order to do so, use the {@link #copy(long, int)} command to produce a new
- * Slice that the target thread can own.
+ * Slice that the target thread can own. The exception is {@link ChannelDataSlice}, whose slices are independent
+ * cursors over a thread-safe cache, and may each be owned by a different thread.
  */
 public interface DataSlice {
+	/** How many values the default bulk reads convert at a time, to bound the size of their scratch buffers */
+	static final int BULK_READ_CHUNK = 4096;
+	
 	/**
 	 * Resets this DataSlice to the state it had at creation time; sets the read
 	 * pointer to zero and the ByteOrder to BIG_ENDIAN.
@@ -178,9 +184,96 @@ public interface DataSlice {
 	 *                     data.
 	 */
 	public default void copy(byte[] destination, int start, int len) throws IOException {
-		for(int i=0; i<len; i++) {
-			destination[start+i] = (byte) read();
+		if (len > length() - position()) throw new IOException("Not enough data left to fill the request.");
+		arraycopy(position(), destination, start, len);
+		skip(len);
+	}
+	
+	/**
+	 * Reads shorts from the current read pointer into the specified area in the destination array, using this
+	 * DataSlice's ByteOrder. Either all values requested will be read successfully or an IOException will be thrown.
+	 * The read pointer will be advanced by {@code len * 2} bytes.
+	 * @param destination  the array to read values into
+	 * @param start        the first index in the array to write to
+	 * @param len          the number of shorts to read
+	 * @throws IOException if there was not enough data to fulfill the request, or if there was a problem reading the
+	 *                     data.
+	 * @see #setByteOrder(ByteOrder)
+	 */
+	public default void readShorts(short[] destination, int start, int len) throws IOException {
+		byte[] buf = new byte[Math.min(len, BULK_READ_CHUNK) * Short.BYTES];
+		int done = 0;
+		while(done < len) {
+			int count = Math.min(len - done, BULK_READ_CHUNK);
+			copy(buf, 0, count * Short.BYTES);
+			ByteBuffer.wrap(buf).order(getByteOrder()).asShortBuffer().get(destination, start + done, count);
+			done += count;
+		}
+	}
+	
+	/**
+	 * Reads ints from the current read pointer into the specified area in the destination array, using this
+	 * DataSlice's ByteOrder. Either all values requested will be read successfully or an IOException will be thrown.
+	 * The read pointer will be advanced by {@code len * 4} bytes.
+	 * @param destination  the array to read values into
+	 * @param start        the first index in the array to write to
+	 * @param len          the number of ints to read
+	 * @throws IOException if there was not enough data to fulfill the request, or if there was a problem reading the
+	 *                     data.
+	 * @see #setByteOrder(ByteOrder)
+	 */
+	public default void readInts(int[] destination, int start, int len) throws IOException {
+		byte[] buf = new byte[Math.min(len, BULK_READ_CHUNK) * Integer.BYTES];
+		int done = 0;
+		while(done < len) {
+			int count = Math.min(len - done, BULK_READ_CHUNK);
+			copy(buf, 0, count * Integer.BYTES);
+			ByteBuffer.wrap(buf).order(getByteOrder()).asIntBuffer().get(destination, start + done, count);
+			done += count;
+		}
+	}
+	
+	/**
+	 * Reads floats from the current read pointer into the specified area in the destination array, using this
+	 * DataSlice's ByteOrder. Either all values requested will be read successfully or an IOException will be thrown.
+	 * The read pointer will be advanced by {@code len * 4} bytes.
+	 * @param destination  the array to read values into
+	 * @param start        the first index in the array to write to
+	 * @param len          the number of floats to read
+	 * @throws IOException if there was not enough data to fulfill the request, or if there was a problem reading the
+	 *                     data.
+	 * @see #setByteOrder(ByteOrder)
+	 */
+	public default void readFloats(float[] destination, int start, int len) throws IOException {
+		byte[] buf = new byte[Math.min(len, BULK_READ_CHUNK) * Float.BYTES];
+		int done = 0;
+		while(done < len) {
+			int count = Math.min(len - done, BULK_READ_CHUNK);
+			copy(buf, 0, count * Float.BYTES);
+			ByteBuffer.wrap(buf).order(getByteOrder()).asFloatBuffer().get(destination, start + done, count);
+			done += count;
+		}
+	}
+	
+	/**
+	 * Reads as many bytes as will fit into the destination buffer, or as many as are left in this DataSlice, whichever
+	 * is smaller. The buffer's position and this DataSlice's read pointer are both advanced by the number of bytes
+	 * read.
+	 * @param destination the buffer to read data into
+	 * @return the number of bytes read, which will be zero if either the buffer is full or there is no data left.
+	 * @throws IOException if there was a problem reading the data
+	 */
+	public default int read(ByteBuffer destination) throws IOException {
+		int count = (int) Math.min(destination.remaining(), length() - position());
+		if (destination.hasArray()) {
+			copy(destination.array(), destination.arrayOffset() + destination.position(), count);
+			destination.position(destination.position() + count);
+		} else {
+			byte[] buf = new byte[count];
+			copy(buf, 0, count);
+			destination.put(buf);
 		}
+		return count;
 	}
 	
 	/**
@@ -243,12 +336,26 @@ public interface DataSlice {
 	default byte[] arraycopy(long offset, int length) throws IOException {
 		if (offset<0 || length<0) throw new ArrayIndexOutOfBoundsException();
 		byte[] data = new byte[length];
-		for(int i=0; i<length; i++) {
-			data[i] = (byte) read(offset+i);
-		}
+		arraycopy(offset, data, 0, length);
 		return data;
 	}
 	
+	/**
+	 * Copies a portion of this DataSlice into an existing byte array. Does not move the read pointer. Implementations
+	 * should override this with a bulk copy; nearly every other multi-byte read is built on top of it.
+	 * @param offset      the start location of the copy
+	 * @param destination the array to copy data into
+	 * @param start       the first index in the destination array to write to
+	 * @param len         how many bytes to copy
+	 * @throws IOException if there was an error reading the data from the underlying medium
+	 */
+	default void arraycopy(long offset, byte[] destination, int start, int len) throws IOException {
+		if (offset<0 || len<0 || start<0 || start+len > destination.length) throw new ArrayIndexOutOfBoundsException();
+		for(int i=0; i<len; i++) {
+			destination[start+i] = (byte) read(offset+i);
+		}
+	}
+	
 	/**
 	 * Creates a byte array containing a copy of this Slice's buffered data. Does not move the read pointer. May be
 	 * significantly faster for in-memory slices.
@@ -259,6 +366,19 @@ public interface DataSlice {
 		return arraycopy(0, (int) this.length());
 	}
 	
+	/**
+	 * Returns a ByteBuffer holding a range of this DataSlice, in this slice's ByteOrder. Does not move the read
+	 * pointer. Slices backed by memory return a view which shares that memory, so no data is copied, and the buffer is
+	 * only valid for as long as this slice is; others fall back to copying the range out. The returned buffer may be
+	 * read-only.
+	 * @param offset the start of the range
+	 * @param length how many bytes the buffer should hold
+	 * @throws IOException if there was an error reading the data from the underlying medium
+	 */
+	default ByteBuffer asByteBuffer(long offset, int length) throws IOException {
+		return ByteBuffer.wrap(arraycopy(offset, length)).order(getByteOrder());
+	}
+	
 	/**
 	 * Closes the underlying slice, file, or stream
 	 */
@@ -278,7 +398,16 @@ public interface DataSlice {
 	 * try-with-resources block to manage the file closure.
 	 */
 	public static DataSlice of(RandomAccessFile f) throws IOException {
-		return new FileDataSlice(f);
+		return new ChannelDataSlice(f.getChannel());
+	}
+	
+	/**
+	 * Creates a DataSlice backed by the specified FileChannel, read through a block cache. Slices taken from the
+	 * result share its cache and can be read from different threads at the same time. It is the responsibility of the
+	 * caller to close the channel.
+	 */
+	public static DataSlice of(FileChannel channel) throws IOException {
+		return new ChannelDataSlice(channel);
 	}
 	
 	public static DataSlice EMPTY = new ArrayDataSlice(new byte[0]);
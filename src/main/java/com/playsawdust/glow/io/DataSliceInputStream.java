@@ -0,0 +1,68 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Presents one or more DataSlices, read back-to-back, as an InputStream. Each slice is read from its current read
+ * pointer to its end, and no data is copied until it is requested.
+ *
+ * <p>This is useful for handing chunked file data (such as a PNG's IDAT chunks) to stream-based decoders like
+ * {@link java.util.zip.InflaterInputStream} without stitching the chunks together first.
+ */
+public class DataSliceInputStream extends InputStream {
+	private final Iterator<DataSlice> slices;
+	private DataSlice current = null;
+
+	public DataSliceInputStream(DataSlice slice) {
+		this(List.of(slice));
+	}
+
+	public DataSliceInputStream(Iterable<DataSlice> slices) {
+		this.slices = slices.iterator();
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!advance()) return -1;
+		return current.read() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) return 0;
+		if (!advance()) return -1;
+
+		int count = (int) Math.min(len, current.length() - current.position());
+		current.copy(b, off, count);
+		return count;
+	}
+
+	@Override
+	public int available() throws IOException {
+		if (current == null) return 0;
+		return (int) Math.min(Integer.MAX_VALUE, current.length() - current.position());
+	}
+
+	/**
+	 * Makes sure that current is a slice with data left in it, moving on to the next slice if needed.
+	 * @return true if there is more data, or false if all slices have been exhausted.
+	 */
+	private boolean advance() throws IOException {
+		while(current == null || current.position() >= current.length()) {
+			if (!slices.hasNext()) return false;
+			current = slices.next();
+		}
+		return true;
+	}
+}
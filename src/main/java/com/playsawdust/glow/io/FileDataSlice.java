@@ -16,6 +16,7 @@ public class FileDataSlice implements DataSlice {
 	protected final RandomAccessFile file;
 	protected long pointer = 0L;
 	protected ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
+	private final byte[] scratch = new byte[8];
 	
 	public FileDataSlice(RandomAccessFile file) {
 		this.file = file;
@@ -36,10 +37,62 @@ public class FileDataSlice implements DataSlice {
 	
 	@Override
 	public int read(long offset) throws IOException {
-		if (offset!=file.getFilePointer()) file.seek(pointer);
+		if (offset!=file.getFilePointer()) file.seek(offset);
 		return file.read();
 	}
 
+	/**
+	 * Reads the next count bytes into the scratch buffer with a single read call, and advances the read pointer past
+	 * them.
+	 */
+	private byte[] readScratch(int count) throws IOException {
+		arraycopy(pointer, scratch, 0, count);
+		pointer += count;
+		return scratch;
+	}
+	
+	@Override
+	public short readI16s() throws IOException {
+		byte[] b = readScratch(2);
+		return (short) DataSlice.order(b[0], b[1], byteOrder);
+	}
+	
+	@Override
+	public int readI16u() throws IOException {
+		byte[] b = readScratch(2);
+		return DataSlice.order(b[0], b[1], byteOrder);
+	}
+	
+	@Override
+	public int readI32s() throws IOException {
+		byte[] b = readScratch(4);
+		return DataSlice.order(b[0], b[1], b[2], b[3], byteOrder);
+	}
+	
+	@Override
+	public long readI32u() throws IOException {
+		return readI32s() & 0xFFFFFFFFL;
+	}
+	
+	@Override
+	public long readI64s() throws IOException {
+		byte[] b = readScratch(8);
+		return DataSlice.order(b[0], b[1], b[2], b[3], b[4], b[5], b[6], b[7], byteOrder);
+	}
+	
+	@Override
+	public void copy(byte[] destination, int start, int len) throws IOException {
+		arraycopy(pointer, destination, start, len);
+		pointer += len;
+	}
+	
+	@Override
+	public void arraycopy(long offset, byte[] destination, int start, int len) throws IOException {
+		if (offset<0 || len<0) throw new ArrayIndexOutOfBoundsException();
+		if (offset!=file.getFilePointer()) file.seek(offset);
+		file.readFully(destination, start, len);
+	}
+	
 	@Override
 	public long position() {
 		return pointer;
@@ -0,0 +1,47 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads bits starting from the least significant bit of each byte, as deflate and GIF do. Unconsumed bits are kept
+ * right-aligned in the accumulator.
+ */
+public class LsbBitReader extends BitReader {
+	public LsbBitReader(ByteBuffer buffer) {
+		super(buffer, ByteOrder.LITTLE_ENDIAN);
+	}
+
+	public LsbBitReader(DataSlice source) {
+		super(source, ByteOrder.LITTLE_ENDIAN);
+	}
+
+	@Override
+	protected void mergeWord(long word) {
+		bits |= word << bitCount;
+	}
+
+	@Override
+	protected void mergeByte(int value) {
+		bits |= (long) value << bitCount;
+	}
+
+	@Override
+	protected long peek(int count) {
+		return bits & ((1L << count) - 1);
+	}
+
+	@Override
+	protected void consume(int count) {
+		bits >>>= count;
+		bitCount -= count;
+	}
+}
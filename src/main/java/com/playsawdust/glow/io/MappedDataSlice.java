@@ -0,0 +1,248 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.io;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.playsawdust.glow.offheap.Destroyable;
+
+/**
+ * Represents a {@link DataSlice} backed by a memory-mapped file. Reads are plain memory loads instead of system calls,
+ * and multi-byte values are loaded in one go rather than assembled a byte at a time.
+ *
+ * <p>MemorySegments are indexed by long, so files larger than 2GB are mapped as a single segment; there's no need to
+ * window them the way a MappedByteBuffer would.
+ *
+ * <p>The slice returned by {@link #map(Path)} owns the mapping. Calling {@link #destroy()} or {@link #close()} on it
+ * unmaps the file immediately, after which it and every slice taken from it are invalid. Slices taken from a
+ * MappedDataSlice share the mapping but don't own it, so closing them does nothing.
+ */
+public class MappedDataSlice implements DataSlice, Destroyable {
+	private static final ValueLayout.OfShort SHORT_BE = ValueLayout.JAVA_SHORT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+	private static final ValueLayout.OfShort SHORT_LE = ValueLayout.JAVA_SHORT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+	private static final ValueLayout.OfInt INT_BE = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+	private static final ValueLayout.OfInt INT_LE = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+	private static final ValueLayout.OfLong LONG_BE = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+	private static final ValueLayout.OfLong LONG_LE = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+	private static final ValueLayout.OfFloat FLOAT_BE = ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+	private static final ValueLayout.OfFloat FLOAT_LE = ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+	protected final MemorySegment segment;
+	protected final @Nullable Arena arena;
+	protected long pointer = 0L;
+	protected ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
+
+	/**
+	 * Creates a DataSlice over an existing MemorySegment. The caller remains responsible for the segment's lifetime.
+	 */
+	public MappedDataSlice(MemorySegment segment) {
+		this(segment, null);
+	}
+
+	protected MappedDataSlice(MemorySegment segment, @Nullable Arena arena) {
+		this.segment = segment;
+		this.arena = arena;
+	}
+
+	/**
+	 * Maps an entire file read-only. The file doesn't need to stay open once it's mapped.
+	 * @param path the file to map
+	 * @return a DataSlice which owns the mapping, and must be destroyed to release it
+	 * @throws IOException if the file could not be opened or mapped
+	 */
+	public static MappedDataSlice map(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return map(channel);
+		}
+	}
+
+	/**
+	 * Maps an entire channel read-only. The channel may be closed once this method returns.
+	 * @param channel the file channel to map
+	 * @return a DataSlice which owns the mapping, and must be destroyed to release it
+	 * @throws IOException if the channel could not be mapped
+	 */
+	public static MappedDataSlice map(FileChannel channel) throws IOException {
+		Arena arena = Arena.ofShared();
+		try {
+			MemorySegment segment = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size(), arena);
+			return new MappedDataSlice(segment, arena);
+		} catch (IOException | RuntimeException ex) {
+			arena.close();
+			throw ex;
+		}
+	}
+
+	@Override
+	public void seek(long offset) throws IOException {
+		if (offset<0 || offset>segment.byteSize()) throw new IOException("Out of bounds.");
+		pointer = offset;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (pointer>=segment.byteSize()) throw new IOException("Out of bounds.");
+		int value = segment.get(ValueLayout.JAVA_BYTE, pointer) & 0xFF;
+		pointer++;
+		return value;
+	}
+
+	@Override
+	public int read(long offset) throws IOException {
+		if (offset<0 || offset>=segment.byteSize()) throw new IOException("Out of bounds.");
+		return segment.get(ValueLayout.JAVA_BYTE, offset) & 0xFF;
+	}
+
+	/**
+	 * Makes sure there are at least count bytes left after the read pointer, and then advances the pointer past them.
+	 * @return the location of the read pointer before it was advanced
+	 */
+	private long advance(long count) throws IOException {
+		long start = pointer;
+		if (start+count > segment.byteSize()) throw new IOException("Out of bounds.");
+		pointer += count;
+		return start;
+	}
+
+	@Override
+	public short readI16s() throws IOException {
+		return segment.get((byteOrder==ByteOrder.BIG_ENDIAN) ? SHORT_BE : SHORT_LE, advance(2));
+	}
+
+	@Override
+	public int readI16u() throws IOException {
+		return readI16s() & 0xFFFF;
+	}
+
+	@Override
+	public int readI32s() throws IOException {
+		return segment.get((byteOrder==ByteOrder.BIG_ENDIAN) ? INT_BE : INT_LE, advance(4));
+	}
+
+	@Override
+	public long readI32u() throws IOException {
+		return readI32s() & 0xFFFFFFFFL;
+	}
+
+	@Override
+	public long readI64s() throws IOException {
+		return segment.get((byteOrder==ByteOrder.BIG_ENDIAN) ? LONG_BE : LONG_LE, advance(8));
+	}
+
+	@Override
+	public void copy(byte[] destination, int start, int len) throws IOException {
+		if (start<0 || len<0 || start+len > destination.length) throw new ArrayIndexOutOfBoundsException();
+		MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, advance(len), destination, start, len);
+	}
+
+	@Override
+	public void readShorts(short[] destination, int start, int len) throws IOException {
+		if (start<0 || len<0 || start+len > destination.length) throw new ArrayIndexOutOfBoundsException();
+		MemorySegment.copy(segment, (byteOrder==ByteOrder.BIG_ENDIAN) ? SHORT_BE : SHORT_LE, advance(len * 2L), destination, start, len);
+	}
+
+	@Override
+	public void readInts(int[] destination, int start, int len) throws IOException {
+		if (start<0 || len<0 || start+len > destination.length) throw new ArrayIndexOutOfBoundsException();
+		MemorySegment.copy(segment, (byteOrder==ByteOrder.BIG_ENDIAN) ? INT_BE : INT_LE, advance(len * 4L), destination, start, len);
+	}
+
+	@Override
+	public void readFloats(float[] destination, int start, int len) throws IOException {
+		if (start<0 || len<0 || start+len > destination.length) throw new ArrayIndexOutOfBoundsException();
+		MemorySegment.copy(segment, (byteOrder==ByteOrder.BIG_ENDIAN) ? FLOAT_BE : FLOAT_LE, advance(len * 4L), destination, start, len);
+	}
+
+	@Override
+	public int read(ByteBuffer destination) throws IOException {
+		int count = (int) Math.min(destination.remaining(), segment.byteSize() - pointer);
+		MemorySegment.ofBuffer(destination).copyFrom(segment.asSlice(advance(count), count));
+		destination.position(destination.position() + count);
+		return count;
+	}
+
+	@Override
+	public byte[] arraycopy(long offset, int length) throws IOException {
+		byte[] result = new byte[length];
+		arraycopy(offset, result, 0, length);
+		return result;
+	}
+
+	@Override
+	public void arraycopy(long offset, byte[] destination, int start, int len) throws IOException {
+		if (offset<0 || len<0 || offset+len > segment.byteSize()) throw new ArrayIndexOutOfBoundsException();
+		MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, offset, destination, start, len);
+	}
+
+	@Override
+	public ByteBuffer asByteBuffer(long offset, int length) {
+		if (offset<0 || length<0 || offset+length > segment.byteSize()) throw new ArrayIndexOutOfBoundsException();
+		return segment.asSlice(offset, length).asByteBuffer().order(byteOrder);
+	}
+
+	@Override
+	public long position() {
+		return pointer;
+	}
+
+	@Override
+	public long length() {
+		return segment.byteSize();
+	}
+
+	@Override
+	public DataSlice slice(long offset, long length) {
+		if (offset<0 || length<0 || offset+length > segment.byteSize()) throw new ArrayIndexOutOfBoundsException();
+
+		MappedDataSlice result = new MappedDataSlice(segment.asSlice(offset, length), null);
+		result.setByteOrder(byteOrder);
+		this.pointer = offset + length;
+		return result;
+	}
+
+	@Override
+	public ByteOrder getByteOrder() {
+		return byteOrder;
+	}
+
+	@Override
+	public void setByteOrder(ByteOrder order) {
+		this.byteOrder = order;
+	}
+
+	/**
+	 * Gets the MemorySegment this slice reads from.
+	 */
+	public MemorySegment getSegment() {
+		return segment;
+	}
+
+	/**
+	 * Unmaps the file, if this slice owns the mapping. Does nothing for slices taken from another MappedDataSlice.
+	 */
+	@Override
+	public void destroy() {
+		if (arena != null && arena.scope().isAlive()) arena.close();
+	}
+
+	@Override
+	public void close() throws IOException {
+		destroy();
+	}
+}
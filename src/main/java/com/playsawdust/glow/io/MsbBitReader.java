@@ -0,0 +1,47 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads bits starting from the most significant bit of each byte, as PNG, TIFF LZW and CCITT do. Unconsumed bits are
+ * kept left-aligned in the accumulator.
+ */
+public class MsbBitReader extends BitReader {
+	public MsbBitReader(ByteBuffer buffer) {
+		super(buffer, ByteOrder.BIG_ENDIAN);
+	}
+
+	public MsbBitReader(DataSlice source) {
+		super(source, ByteOrder.BIG_ENDIAN);
+	}
+
+	@Override
+	protected void mergeWord(long word) {
+		bits |= word >>> bitCount;
+	}
+
+	@Override
+	protected void mergeByte(int value) {
+		bits |= (long) value << (56 - bitCount);
+	}
+
+	@Override
+	protected long peek(int count) {
+		return bits >>> (64 - count);
+	}
+
+	@Override
+	protected void consume(int count) {
+		bits <<= count;
+		bitCount -= count;
+	}
+}
@@ -0,0 +1,145 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A fixed-size, least-recently-used cache of blocks read out of a FileChannel. All reads use positional
+ * {@link FileChannel#read(ByteBuffer, long)} calls, which never touch the channel's own position, so a single cache can
+ * safely serve any number of threads at once.
+ *
+ * <p>The cache is split into lock stripes by block number. Threads reading from different parts of the file will
+ * rarely contend for the same lock, and no lock is held while waiting on the disk. If two threads miss on the same block
+ * at the same time, both will read it, and whichever finishes second wins; blocks are never modified, so this is
+ * harmless.
+ *
+ * <p>The block budget is divided between the stripes, so the cache never holds more than maxBlocks blocks in total.
+ * Small budgets get fewer stripes rather than being rounded up.
+ */
+public class PageCache {
+	public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+	/** 1024 blocks of 64KiB is 64MiB */
+	public static final int DEFAULT_MAX_BLOCKS = 1024;
+	private static final int STRIPES = 16;
+
+	private final FileChannel channel;
+	private final int blockSize;
+	private final long channelSize;
+	private final Stripe[] stripes;
+
+	public PageCache(FileChannel channel) throws IOException {
+		this(channel, DEFAULT_BLOCK_SIZE, DEFAULT_MAX_BLOCKS);
+	}
+
+	/**
+	 * Creates a new PageCache.
+	 * @param channel   the channel to read blocks from. The channel's size is sampled once, here.
+	 * @param blockSize the size of each cached block, in bytes
+	 * @param maxBlocks the maximum number of blocks to keep in memory at once. Must be at least 1.
+	 */
+	public PageCache(FileChannel channel, int blockSize, int maxBlocks) throws IOException {
+		if (blockSize <= 0) throw new IllegalArgumentException("Block size must be positive.");
+		if (maxBlocks <= 0) throw new IllegalArgumentException("The cache must be able to hold at least one block.");
+		this.channel = channel;
+		this.blockSize = blockSize;
+		this.channelSize = channel.size();
+
+		//Split the budget as evenly as possible, with the first few stripes taking one extra block each
+		stripes = new Stripe[Math.min(STRIPES, maxBlocks)];
+		int blocksPerStripe = maxBlocks / stripes.length;
+		int extra = maxBlocks % stripes.length;
+		for(int i=0; i<stripes.length; i++) stripes[i] = new Stripe((i < extra) ? blocksPerStripe + 1 : blocksPerStripe);
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Gets the length of the underlying channel, as of when this cache was created.
+	 */
+	public long length() {
+		return channelSize;
+	}
+
+	public FileChannel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * Gets the maximum number of blocks this cache will keep in memory at once.
+	 */
+	public int getMaxBlocks() {
+		int result = 0;
+		for(Stripe stripe : stripes) result += stripe.capacity;
+		return result;
+	}
+
+	/**
+	 * Gets the contents of the specified block, loading it from the channel if it isn't cached. The returned array
+	 * must not be modified. Every block is {@link #getBlockSize()} bytes long except the last block in the file, which
+	 * may be shorter.
+	 * @param blockIndex the index of the block, such that its first byte is at {@code blockIndex * blockSize}
+	 * @return the block's data
+	 * @throws IOException if the block is out of range, or there was a problem reading from the channel
+	 */
+	public byte[] getBlock(long blockIndex) throws IOException {
+		long start = blockIndex * blockSize;
+		if (blockIndex < 0 || start >= channelSize) throw new IOException("Out of bounds.");
+
+		Stripe stripe = stripes[(int) (blockIndex % stripes.length)];
+		synchronized(stripe) {
+			byte[] cached = stripe.get(blockIndex);
+			if (cached != null) return cached;
+		}
+
+		byte[] block = new byte[(int) Math.min(blockSize, channelSize - start)];
+		ByteBuffer buf = ByteBuffer.wrap(block);
+		while(buf.hasRemaining()) {
+			int read = channel.read(buf, start + buf.position());
+			if (read < 0) throw new IOException("Unexpected end of file.");
+		}
+
+		synchronized(stripe) {
+			stripe.put(blockIndex, block);
+		}
+		return block;
+	}
+
+	/**
+	 * Drops all cached blocks.
+	 */
+	public void clear() {
+		for(Stripe stripe : stripes) {
+			synchronized(stripe) {
+				stripe.clear();
+			}
+		}
+	}
+
+	private static class Stripe extends LinkedHashMap<Long, byte[]> {
+		private static final long serialVersionUID = 1L;
+		private final int capacity;
+
+		public Stripe(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+			return size() > capacity;
+		}
+	}
+}
@@ -9,6 +9,7 @@
 package com.playsawdust.glow.io;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 /**
@@ -20,6 +21,7 @@ public class SubSlice implements DataSlice {
 	protected final long length;
 	protected long pointer = 0L;
 	protected ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
+	private final byte[] scratch = new byte[8];
 	
 	public SubSlice(DataSlice underlying, long offset, long length) {
 		this.underlying = underlying;
@@ -45,6 +47,65 @@ public class SubSlice implements DataSlice {
 	public int read(long offset) throws IOException {
 		return underlying.read(baseOffset + offset);
 	}
+	
+	/**
+	 * Copies the next count bytes into the scratch buffer with a single ranged read on the underlying slice, and
+	 * advances the read pointer past them.
+	 */
+	private byte[] readScratch(int count) throws IOException {
+		if (count > length - pointer) throw new IOException("Out of bounds.");
+		underlying.arraycopy(baseOffset + pointer, scratch, 0, count);
+		pointer += count;
+		return scratch;
+	}
+	
+	@Override
+	public short readI16s() throws IOException {
+		byte[] b = readScratch(2);
+		return (short) DataSlice.order(b[0], b[1], byteOrder);
+	}
+	
+	@Override
+	public int readI16u() throws IOException {
+		byte[] b = readScratch(2);
+		return DataSlice.order(b[0], b[1], byteOrder);
+	}
+	
+	@Override
+	public int readI32s() throws IOException {
+		byte[] b = readScratch(4);
+		return DataSlice.order(b[0], b[1], b[2], b[3], byteOrder);
+	}
+	
+	@Override
+	public long readI32u() throws IOException {
+		return readI32s() & 0xFFFFFFFFL;
+	}
+	
+	@Override
+	public long readI64s() throws IOException {
+		byte[] b = readScratch(8);
+		return DataSlice.order(b[0], b[1], b[2], b[3], b[4], b[5], b[6], b[7], byteOrder);
+	}
+	
+	@Override
+	public void copy(byte[] destination, int start, int len) throws IOException {
+		if (len > length - pointer) throw new IOException("Out of bounds.");
+		underlying.arraycopy(baseOffset + pointer, destination, start, len);
+		pointer += len;
+	}
+	
+	@Override
+	public void arraycopy(long offset, byte[] destination, int start, int len) throws IOException {
+		if (offset<0 || len<0 || offset+len > length) throw new ArrayIndexOutOfBoundsException();
+		underlying.arraycopy(baseOffset + offset, destination, start, len);
+	}
+
+	@Override
+	public ByteBuffer asByteBuffer(long offset, int length) throws IOException {
+		if (offset<0 || length<0 || offset+length > this.length) throw new ArrayIndexOutOfBoundsException();
+		return underlying.asByteBuffer(baseOffset + offset, length).order(byteOrder);
+	}
 
 	@Override
 	public long position() {
@@ -11,6 +11,7 @@ import java.util.Optional;
 import com.playsawdust.glow.image.ImageData;
 import com.playsawdust.glow.image.io.PngImageIO;
 import com.playsawdust.glow.io.DataSlice;
+import com.playsawdust.glow.io.MappedDataSlice;
 
 public interface Resource {
 	public Identifier id();
@@ -27,6 +28,16 @@ public interface Resource {
 		}
 	}
 	
+	/**
+	 * Returns the contents of this resource as a DataSlice. The default implementation reads the whole resource into
+	 * memory; resources backed by a file map it instead. Close the slice when you're done with it.
+	 */
+	public default DataSlice asDataSlice() throws IOException {
+		try(InputStream in = asInputStream()) {
+			return DataSlice.of(in.readAllBytes());
+		}
+	}
+	
 	public default Optional<String> asString() {
 		try {
 			return Optional.of(new InputStreamReader(asInputStream()).readAllAsString());
@@ -52,6 +63,8 @@ public interface Resource {
 		public String origin() { return origin; }
 		@Override
 		public InputStream asInputStream() { return new ByteArrayInputStream(data); }
+		@Override
+		public DataSlice asDataSlice() { return DataSlice.of(data); }
 	}
 	
 	public static class PathResource implements Resource {
@@ -73,6 +86,11 @@ public interface Resource {
 		public InputStream asInputStream() throws IOException {
 			return Files.newInputStream(path);
 		}
+		
+		@Override
+		public DataSlice asDataSlice() throws IOException {
+			return MappedDataSlice.map(path);
+		}
 	}
 	
 	public static class EmbeddedResource implements Resource {
@@ -8,34 +8,68 @@
  */
 package com.playsawdust.glow.model;
 
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+/**
+ * Holds attribute values in an array indexed by {@link ShaderAttribute#id()}. The array only grows as far as the
+ * highest id that's been put, so a holder with a few of the built-in attributes costs a few words.
+ */
 public class AbstractShaderAttributeHolder implements ShaderAttributeHolder {
-	protected Map<ShaderAttribute<?>, Object> attributes = new HashMap<>();
+	private static final Object[] EMPTY = new Object[0];
+	
+	protected Object[] values = EMPTY;
 	
 	@SuppressWarnings("unchecked")
 	@Override
 	public @Nullable <T> T get(ShaderAttribute<T> attribute) {
-		return (T) attributes.get(attribute);
+		int id = attribute.id();
+		return (id < values.length) ? (T) values[id] : null;
 	}
 	
+	/**
+	 * Sets an attribute's value. Putting null removes the attribute.
+	 */
 	public <T> void put(ShaderAttribute<T> attribute, T value) {
-		attributes.put(attribute, value);
+		put(attribute.id(), value);
+	}
+	
+	private void put(int id, Object value) {
+		if (id >= values.length) {
+			if (value == null) return;
+			values = Arrays.copyOf(values, id + 1);
+		}
+		values[id] = value;
 	}
 	
 	@Override
 	public Map<ShaderAttribute<?>, Object> getAll() {
-		return Collections.unmodifiableMap(attributes);
+		Map<ShaderAttribute<?>, Object> result = new LinkedHashMap<>();
+		forEach(result::put);
+		return Collections.unmodifiableMap(result);
+	}
+	
+	@Override
+	public void forEach(BiConsumer<ShaderAttribute<?>, Object> action) {
+		for(int i=0; i<values.length; i++) {
+			if (values[i] != null) action.accept(ShaderAttribute.byId(i), values[i]);
+		}
 	}
 	
 	public void putAll(ShaderAttributeHolder other) {
 		//Assumes other isn't poisoned with wrongly typed data
-		for(Map.Entry<ShaderAttribute<?>, Object> entry : other.getAll().entrySet()) {
-			attributes.put(entry.getKey(), entry.getValue());
+		if (other instanceof AbstractShaderAttributeHolder holder) {
+			if (holder.values.length > values.length) values = Arrays.copyOf(values, holder.values.length);
+			for(int i=0; i<holder.values.length; i++) {
+				if (holder.values[i] != null) values[i] = holder.values[i];
+			}
+		} else {
+			other.forEach((attribute, value) -> put(attribute.id(), value));
 		}
 	}
 	
@@ -43,15 +77,18 @@ public class AbstractShaderAttributeHolder implements ShaderAttributeHolder {
 	public String toString() {
 		StringBuilder result = new StringBuilder("{ ");
 		
-		if (!attributes.isEmpty()) {
-			for(Map.Entry<ShaderAttribute<?>, Object> entry : attributes.entrySet()) {
-				result.append("\"");
-				result.append(entry.getKey().name());
-				result.append("\": ");
-				result.append(entry.getValue().toString());
-				result.append(", ");
-			}
-			
+		boolean empty = true;
+		for(int i=0; i<values.length; i++) {
+			if (values[i] == null) continue;
+			empty = false;
+			result.append("\"");
+			result.append(ShaderAttribute.byId(i).name());
+			result.append("\": ");
+			result.append(values[i].toString());
+			result.append(", ");
+		}
+		
+		if (!empty) {
 			result.deleteCharAt(result.length()-1); //Trim off trailing space
 			result.deleteCharAt(result.length()-1); //Trim off trailing comma
 			
@@ -0,0 +1,128 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.model;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import com.playsawdust.glow.vecmath.Rect3d;
+
+/**
+ * Mesh geometry held in NIO buffers, laid out the same way as a {@link PackedMesh}. The buffers are usually views of a
+ * loaded file, so a BufferMesh can be drawn or uploaded without its data ever being copied onto the heap; when it does
+ * need to be edited, {@link #toPackedMesh()} makes a copy.
+ *
+ * <p>Buffers are read with absolute gets, so their positions and limits don't matter and may be changed freely.
+ * Indices aren't range-checked until the mesh is copied, so a corrupt file can still hand out-of-range indices to
+ * {@link #forEachTriangle(TriangleVisitor)}.
+ */
+public class BufferMesh {
+	protected final Material material;
+	protected final Rect3d bounds;
+	protected final FloatBuffer positions;
+	protected final FloatBuffer texcoords;
+	protected final FloatBuffer normals;
+	protected final IntBuffer indices;
+	protected final int vertexCount;
+	protected final int indexCount;
+
+	/**
+	 * Creates a BufferMesh which uses the passed-in buffers as its storage. Each buffer's data starts at index zero and
+	 * runs up to its capacity.
+	 * @param bounds the bounding box of the positions, which is trusted rather than checked
+	 * @throws IllegalArgumentException if the buffers don't describe the same number of vertices
+	 */
+	public BufferMesh(Material material, Rect3d bounds, FloatBuffer positions, FloatBuffer texcoords, FloatBuffer normals, IntBuffer indices) {
+		if (positions.capacity() % PackedMesh.POSITION_COMPONENTS != 0) throw new IllegalArgumentException("Positions must have "+PackedMesh.POSITION_COMPONENTS+" components each.");
+		int vertexCount = positions.capacity() / PackedMesh.POSITION_COMPONENTS;
+		if (texcoords.capacity() != vertexCount * PackedMesh.TEXCOORD_COMPONENTS) throw new IllegalArgumentException("Expected "+vertexCount+" texcoords, found "+(texcoords.capacity() / (double) PackedMesh.TEXCOORD_COMPONENTS));
+		if (normals.capacity() != vertexCount * PackedMesh.NORMAL_COMPONENTS) throw new IllegalArgumentException("Expected "+vertexCount+" normals, found "+(normals.capacity() / (double) PackedMesh.NORMAL_COMPONENTS));
+		if (indices.capacity() % 3 != 0) throw new IllegalArgumentException("Index count must be a multiple of 3.");
+
+		this.material = material;
+		this.bounds = bounds;
+		this.positions = positions;
+		this.texcoords = texcoords;
+		this.normals = normals;
+		this.indices = indices;
+		this.vertexCount = vertexCount;
+		this.indexCount = indices.capacity();
+	}
+
+	public Material getMaterial() {
+		return material;
+	}
+
+	/** Returns the box containing every position in this mesh */
+	public Rect3d getBounds() {
+		return bounds;
+	}
+
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	public int getTriangleCount() {
+		return indexCount / 3;
+	}
+
+	/** Returns the position buffer: x, y, z for each vertex */
+	public FloatBuffer getPositions() {
+		return positions;
+	}
+
+	/** Returns the texture coordinate buffer: u, v for each vertex */
+	public FloatBuffer getTexcoords() {
+		return texcoords;
+	}
+
+	/** Returns the normal buffer: x, y, z for each vertex */
+	public FloatBuffer getNormals() {
+		return normals;
+	}
+
+	/** Returns the index buffer: three vertex indices for each triangle */
+	public IntBuffer getIndices() {
+		return indices;
+	}
+
+	/**
+	 * Calls visitor once for each triangle, in index buffer order.
+	 */
+	public void forEachTriangle(TriangleVisitor visitor) {
+		IntBuffer indices = this.indices;
+		for(int i=0; i<indexCount; i+=3) {
+			visitor.visit(i / 3, indices.get(i), indices.get(i+1), indices.get(i+2));
+		}
+	}
+
+	/**
+	 * Copies the buffers onto the heap.
+	 * @throws IllegalArgumentException if an index is out of range
+	 */
+	public PackedMesh toPackedMesh() {
+		float[] positions = new float[vertexCount * PackedMesh.POSITION_COMPONENTS];
+		float[] texcoords = new float[vertexCount * PackedMesh.TEXCOORD_COMPONENTS];
+		float[] normals = new float[vertexCount * PackedMesh.NORMAL_COMPONENTS];
+		int[] indices = new int[indexCount];
+		this.positions.get(0, positions);
+		this.texcoords.get(0, texcoords);
+		this.normals.get(0, normals);
+		this.indices.get(0, indices);
+		return new PackedMesh(positions, texcoords, normals, indices);
+	}
+
+	/**
+	 * Copies the buffers onto the heap, and wraps them in a Mesh with this mesh's Material.
+	 * @throws IllegalArgumentException if an index is out of range
+	 */
+	public Mesh toMesh() {
+		return new Mesh(material, toPackedMesh());
+	}
+}
@@ -17,29 +17,67 @@ import com.playsawdust.glow.vecmath.Matrix3;
 import com.playsawdust.glow.vecmath.Vector2d;
 import com.playsawdust.glow.vecmath.Vector3d;
 
+/**
+ * A material and the geometry drawn with it. The geometry itself lives in a {@link PackedMesh}; the methods here which
+ * return records, Faces and Vertices build them from the packed arrays on demand, so code which runs every frame should
+ * use {@link #getPackedMesh()} and {@link #forEachTriangle(TriangleVisitor)} instead.
+ */
 public class Mesh {
 	protected Material material;
-	
-	protected Vector3d[] vertexBuffer;
-	protected Vector2d[] uvBuffer;
-	protected Vector3d[] normalBuffer;
+	protected PackedMesh packed;
+	/* Extra attributes for individual vertices, beyond what's in the packed arrays */
 	protected Vertex[] vertexData;
 	
-	protected int[] indices;
-	
+	/**
+	 * Creates a Mesh by packing the passed-in records. Missing (null) texcoords and normals are packed as zeroes.
+	 */
 	public Mesh(Material material, Vector3d[] vertexBuffer, Vector2d[] uvBuffer, Vector3d[] normalBuffer, int[] indices) {
+		this(material, pack(vertexBuffer, uvBuffer, normalBuffer, indices));
+	}
+	
+	public Mesh(Material material, PackedMesh packed) {
 		this.material = material;
-		this.vertexBuffer = vertexBuffer;
-		this.uvBuffer = uvBuffer;
-		this.normalBuffer = normalBuffer;
-		this.indices = indices;
-		this.vertexData = new Vertex[vertexBuffer.length];
+		this.packed = packed;
+		this.vertexData = new Vertex[packed.getVertexCount()];
 	}
 	
-	public void transform(Matrix3 matrix) {
+	private static PackedMesh pack(Vector3d[] vertexBuffer, Vector2d[] uvBuffer, Vector3d[] normalBuffer, int[] indices) {
+		float[] positions = new float[vertexBuffer.length * PackedMesh.POSITION_COMPONENTS];
+		float[] texcoords = new float[vertexBuffer.length * PackedMesh.TEXCOORD_COMPONENTS];
+		float[] normals = new float[vertexBuffer.length * PackedMesh.NORMAL_COMPONENTS];
 		for(int i=0; i<vertexBuffer.length; i++) {
-			vertexBuffer[i] = matrix.transform(vertexBuffer[i]);
+			positions[i*3  ] = (float) vertexBuffer[i].x();
+			positions[i*3+1] = (float) vertexBuffer[i].y();
+			positions[i*3+2] = (float) vertexBuffer[i].z();
+			if (i < uvBuffer.length && uvBuffer[i] != null) {
+				texcoords[i*2  ] = (float) uvBuffer[i].x();
+				texcoords[i*2+1] = (float) uvBuffer[i].y();
+			}
+			if (i < normalBuffer.length && normalBuffer[i] != null) {
+				normals[i*3  ] = (float) normalBuffer[i].x();
+				normals[i*3+1] = (float) normalBuffer[i].y();
+				normals[i*3+2] = (float) normalBuffer[i].z();
+			}
 		}
+		return new PackedMesh(positions, texcoords, normals, indices);
+	}
+	
+	public void transform(Matrix3 matrix) {
+		packed.transform(matrix);
+	}
+	
+	/**
+	 * Returns the packed arrays backing this Mesh. Changes to them show up in the Mesh.
+	 */
+	public PackedMesh getPackedMesh() {
+		return packed;
+	}
+	
+	/**
+	 * Calls visitor once for each triangle, without allocating anything. See {@link PackedMesh#forEachTriangle}.
+	 */
+	public void forEachTriangle(TriangleVisitor visitor) {
+		packed.forEachTriangle(visitor);
 	}
 	/*
 	public void transform(Matrix4 matrix) {
@@ -48,7 +86,12 @@ public class Mesh {
 		}
 	}*/
 	
+	/**
+	 * Builds a list of Faces, each with three freshly-built Vertices. This allocates a great deal; prefer
+	 * {@link #forEachTriangle(TriangleVisitor)}.
+	 */
 	public List<Face> createTriangleList() {
+		int[] indices = packed.getIndices();
 		int faceCount = indices.length / 3;
 		List<Face> result = new ArrayList<>();
 		for(int i=0; i<faceCount; i++) {
@@ -69,16 +112,49 @@ public class Mesh {
 		return material;
 	}
 	
+	/**
+	 * Returns the number of vertices in this mesh. Vertices can be shared between faces, so this is usually smaller
+	 * than {@link #getIndexCount()}.
+	 */
+	public int getVertexCount() {
+		return packed.getVertexCount();
+	}
+	
+	/**
+	 * Returns the position of a vertex, without building a whole {@link Vertex} for it.
+	 * @param index the index of the vertex in the global list
+	 */
+	public Vector3d getPosition(int index) {
+		float[] positions = packed.getPositions();
+		return new Vector3d(positions[index*3], positions[index*3+1], positions[index*3+2]);
+	}
+	
+	/**
+	 * Returns the number of entries in the index buffer. Every three entries make one triangle.
+	 */
+	public int getIndexCount() {
+		return packed.getIndices().length;
+	}
+	
+	/**
+	 * Returns an entry from the index buffer, which is the index of a vertex in the global list.
+	 */
+	public int getIndex(int i) {
+		return packed.getIndices()[i];
+	}
+	
 	/**
 	 * Returns the vertex for the specified index-buffer index
 	 * @param index the index of the vertex in the global list
 	 * @return a Vertex containing the data for that index
 	 */
 	public Vertex getVertex(int index) {
+		float[] texcoords = packed.getTexcoords();
+		float[] normals = packed.getNormals();
 		Vertex v = new Vertex();
-		v.put(ShaderAttribute.POSITION, vertexBuffer[index]);
-		v.put(ShaderAttribute.TEXCOORD, uvBuffer[index]);
-		v.put(ShaderAttribute.NORMAL, normalBuffer[index]);
+		v.put(ShaderAttribute.POSITION, getPosition(index));
+		v.put(ShaderAttribute.TEXCOORD, new Vector2d(texcoords[index*2], texcoords[index*2+1]));
+		v.put(ShaderAttribute.NORMAL, new Vector3d(normals[index*3], normals[index*3+1], normals[index*3+2]));
 		if (vertexData[index]!=null) {
 			v.putAll(vertexData[index]);
 		}
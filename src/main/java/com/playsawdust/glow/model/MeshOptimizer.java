@@ -0,0 +1,372 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.model;
+
+import java.util.Arrays;
+
+/**
+ * Rearranges mesh geometry so it's cheaper to draw, without changing what's drawn.
+ *
+ * <ul>
+ *   <li>{@link #weld(PackedMesh, double)} merges vertices which are the same to within a tolerance, so each one is only
+ *       transformed and shaded once.
+ *   <li>{@link #reorderTriangles(PackedMesh, int)} puts triangles which share vertices near each other, using
+ *       Tipsify (Sander, Nehab and Barczak, 2007), so a post-transform vertex cache gets more hits. The runs of
+ *       triangles it produces are then sorted so that those facing outwards are drawn first, which cuts down on
+ *       overdraw when the depth test is on.
+ *   <li>{@link #reorderVertices(PackedMesh)} numbers vertices in the order they're first used, so fetching them walks
+ *       forwards through memory.
+ * </ul>
+ *
+ * <p>{@link #optimize(Mesh, double)} does all three, and reports the average cache miss ratio (ACMR, the number of
+ * vertices transformed per triangle, for a FIFO cache) before and after. The best possible is about 0.5, and an
+ * unoptimized mesh is often close to 3.
+ */
+public final class MeshOptimizer {
+	/** The vertex cache size triangles are ordered for, and ACMR is measured with, unless one is given */
+	public static final int DEFAULT_CACHE_SIZE = 16;
+
+	private MeshOptimizer() {}
+
+	/**
+	 * The optimized mesh, and how much it improved.
+	 * @param verticesBefore the vertex count of the original mesh
+	 * @param verticesAfter  the vertex count of the optimized mesh
+	 * @param acmrBefore     the original mesh's average cache miss ratio
+	 * @param acmrAfter      the optimized mesh's average cache miss ratio
+	 */
+	public record Result(Mesh mesh, int verticesBefore, int verticesAfter, double acmrBefore, double acmrAfter) {}
+
+	/**
+	 * Welds, reorders triangles, and reorders vertices, with a cache of {@link #DEFAULT_CACHE_SIZE}. The original mesh
+	 * isn't changed. Attributes set on individual {@link Mesh.Vertex Vertices}, beyond what's in the PackedMesh, aren't
+	 * carried over.
+	 * @param weldTolerance see {@link #weld(PackedMesh, double)}
+	 */
+	public static Result optimize(Mesh mesh, double weldTolerance) {
+		PackedMesh before = mesh.getPackedMesh();
+		PackedMesh after = weld(before, weldTolerance);
+		after = reorderTriangles(after, DEFAULT_CACHE_SIZE);
+		after = reorderVertices(after);
+		return new Result(new Mesh(mesh.getMaterial(), after),
+				before.getVertexCount(), after.getVertexCount(),
+				acmr(before.getIndices(), before.getVertexCount(), DEFAULT_CACHE_SIZE),
+				acmr(after.getIndices(), after.getVertexCount(), DEFAULT_CACHE_SIZE));
+	}
+
+	/**
+	 * Merges vertices whose positions, texcoords and normals all match to within a tolerance. Each vertex is merged
+	 * into the first earlier vertex that matches it, so the result depends on vertex order when vertices chain
+	 * together. Triangles which collapse, because two of their corners were merged, are dropped.
+	 *
+	 * <p>Matches are found with a spatial hash of the positions, so this takes time proportional to the vertex count.
+	 * @param tolerance the largest difference allowed in any one component. Zero merges only exact duplicates.
+	 * @throws IllegalArgumentException if the tolerance is negative or NaN
+	 */
+	public static PackedMesh weld(PackedMesh mesh, double tolerance) {
+		if (!(tolerance >= 0)) throw new IllegalArgumentException("Tolerance must not be negative.");
+		float[] positions = mesh.getPositions();
+		float[] texcoords = mesh.getTexcoords();
+		float[] normals = mesh.getNormals();
+		int vertexCount = mesh.getVertexCount();
+
+		//Each bucket heads a chain of kept vertices. Different cells can share a bucket, which is harmless, since every
+		//candidate is compared in full.
+		int bucketCount = Integer.highestOneBit(Math.max(16, vertexCount)) * 2;
+		int[] buckets = new int[bucketCount];
+		Arrays.fill(buckets, -1);
+		int[] next = new int[vertexCount];
+		int[] remap = new int[vertexCount];
+		int[] kept = new int[vertexCount];
+		int keptCount = 0;
+		//Cells are as big as the tolerance, so a match can be in any neighboring cell
+		int reach = (tolerance > 0) ? 1 : 0;
+
+		for(int v=0; v<vertexCount; v++) {
+			int cx = cell(positions[v*3    ], tolerance);
+			int cy = cell(positions[v*3 + 1], tolerance);
+			int cz = cell(positions[v*3 + 2], tolerance);
+
+			int match = -1;
+			search:
+			for(int dx=-reach; dx<=reach; dx++) {
+				for(int dy=-reach; dy<=reach; dy++) {
+					for(int dz=-reach; dz<=reach; dz++) {
+						for(int k = buckets[hash(cx+dx, cy+dy, cz+dz) & (bucketCount - 1)]; k != -1; k = next[k]) {
+							int candidate = kept[k];
+							if (close(positions, v*3, candidate*3, 3, tolerance) && close(texcoords, v*2, candidate*2, 2, tolerance) && close(normals, v*3, candidate*3, 3, tolerance)) {
+								match = k;
+								break search;
+							}
+						}
+					}
+				}
+			}
+
+			if (match == -1) {
+				int bucket = hash(cx, cy, cz) & (bucketCount - 1);
+				kept[keptCount] = v;
+				next[keptCount] = buckets[bucket];
+				buckets[bucket] = keptCount;
+				match = keptCount++;
+			}
+			remap[v] = match;
+		}
+
+		float[] newPositions = new float[keptCount * 3];
+		float[] newTexcoords = new float[keptCount * 2];
+		float[] newNormals = new float[keptCount * 3];
+		for(int k=0; k<keptCount; k++) {
+			System.arraycopy(positions, kept[k] * 3, newPositions, k * 3, 3);
+			System.arraycopy(texcoords, kept[k] * 2, newTexcoords, k * 2, 2);
+			System.arraycopy(normals, kept[k] * 3, newNormals, k * 3, 3);
+		}
+
+		int[] indices = mesh.getIndices();
+		int[] newIndices = new int[indices.length];
+		int indexCount = 0;
+		for(int i=0; i<indices.length; i+=3) {
+			int a = remap[indices[i]], b = remap[indices[i+1]], c = remap[indices[i+2]];
+			if (a == b || b == c || a == c) continue;
+			newIndices[indexCount++] = a;
+			newIndices[indexCount++] = b;
+			newIndices[indexCount++] = c;
+		}
+
+		return new PackedMesh(newPositions, newTexcoords, newNormals, Arrays.copyOf(newIndices, indexCount));
+	}
+
+	/**
+	 * Reorders triangles for a post-transform vertex cache of the given size, and then for less overdraw. Vertices,
+	 * and the winding of each triangle, are left alone.
+	 *
+	 * <p>Tipsify fans out around one vertex at a time, choosing the next vertex from the ones just used so that it's
+	 * likely to still be in the cache. When none of them have triangles left, it has to jump somewhere else, and the
+	 * cache is effectively flushed. The runs of triangles between jumps can be drawn in any order for the cost of a few
+	 * extra misses at their edges, so they're sorted by how far they sit out from the middle of the mesh along their
+	 * own average normal. Runs on the outside of the mesh, facing out, tend to occlude the rest, so they're drawn first.
+	 * @param cacheSize the number of vertices the cache holds
+	 */
+	public static PackedMesh reorderTriangles(PackedMesh mesh, int cacheSize) {
+		if (cacheSize < 3) throw new IllegalArgumentException("Cache size must be at least 3.");
+		int[] indices = mesh.getIndices();
+		int vertexCount = mesh.getVertexCount();
+		int triangleCount = indices.length / 3;
+
+		//Triangles around each vertex, as offsets into one big array
+		int[] live = new int[vertexCount];
+		for(int index : indices) live[index]++;
+		int[] adjacencyStart = new int[vertexCount + 1];
+		for(int v=0; v<vertexCount; v++) adjacencyStart[v + 1] = adjacencyStart[v] + live[v];
+		int[] adjacency = new int[indices.length];
+		int[] fill = Arrays.copyOf(adjacencyStart, vertexCount);
+		for(int i=0; i<indices.length; i++) adjacency[fill[indices[i]]++] = i / 3;
+
+		int[] cacheTime = new int[vertexCount];
+		int time = cacheSize + 1;
+		boolean[] emitted = new boolean[triangleCount];
+		int[] deadEnds = new int[indices.length];
+		int deadEndCount = 0;
+		int[] candidates = new int[indices.length];
+		int cursor = 0;
+
+		int[] order = new int[triangleCount];
+		int orderCount = 0;
+		int[] runStarts = new int[triangleCount + 1];
+		int runCount = 0;
+
+		int fan = (vertexCount > 0) ? 0 : -1;
+		while(fan >= 0) {
+			int candidateCount = 0;
+			for(int a = adjacencyStart[fan]; a < adjacencyStart[fan + 1]; a++) {
+				int triangle = adjacency[a];
+				if (emitted[triangle]) continue;
+				emitted[triangle] = true;
+				order[orderCount++] = triangle;
+				for(int corner=0; corner<3; corner++) {
+					int v = indices[triangle * 3 + corner];
+					deadEnds[deadEndCount++] = v;
+					candidates[candidateCount++] = v;
+					live[v]--;
+					if (time - cacheTime[v] > cacheSize) cacheTime[v] = time++;
+				}
+			}
+
+			//Pick the candidate that's in the cache, and will stay there while its remaining triangles are fanned
+			int best = -1;
+			int bestPriority = -1;
+			for(int i=0; i<candidateCount; i++) {
+				int v = candidates[i];
+				if (live[v] <= 0) continue;
+				int priority = 0;
+				if (time - cacheTime[v] + 2 * live[v] <= cacheSize) priority = time - cacheTime[v];
+				if (priority > bestPriority) {
+					best = v;
+					bestPriority = priority;
+				}
+			}
+
+			if (best == -1) {
+				//Dead end. Whatever comes next starts a new run.
+				if (runCount == 0 || runStarts[runCount - 1] != orderCount) runStarts[runCount++] = orderCount;
+				while(deadEndCount > 0 && best == -1) {
+					int v = deadEnds[--deadEndCount];
+					if (live[v] > 0) best = v;
+				}
+				while(cursor < vertexCount && best == -1) {
+					if (live[cursor] > 0) best = cursor;
+					cursor++;
+				}
+			}
+			fan = best;
+		}
+
+		//The first run starts at zero; the last dead end marks the end of the last one
+		int[] runs = new int[runCount + 2];
+		runs[0] = 0;
+		int boundaries = 1;
+		for(int i=0; i<runCount; i++) {
+			if (runStarts[i] > runs[boundaries - 1]) runs[boundaries++] = runStarts[i];
+		}
+		if (runs[boundaries - 1] != orderCount) runs[boundaries++] = orderCount;
+
+		int[] sortedOrder = sortRunsForOverdraw(mesh, order, runs, boundaries - 1);
+		int[] result = new int[indices.length];
+		for(int i=0; i<triangleCount; i++) {
+			System.arraycopy(indices, sortedOrder[i] * 3, result, i * 3, 3);
+		}
+		return new PackedMesh(mesh.getPositions(), mesh.getTexcoords(), mesh.getNormals(), result);
+	}
+
+	/**
+	 * Renumbers vertices in the order the index buffer first uses them. Vertices which no triangle uses are dropped.
+	 */
+	public static PackedMesh reorderVertices(PackedMesh mesh) {
+		int[] indices = mesh.getIndices();
+		int[] remap = new int[mesh.getVertexCount()];
+		Arrays.fill(remap, -1);
+		int[] kept = new int[mesh.getVertexCount()];
+		int keptCount = 0;
+		int[] newIndices = new int[indices.length];
+		for(int i=0; i<indices.length; i++) {
+			int v = indices[i];
+			if (remap[v] == -1) {
+				remap[v] = keptCount;
+				kept[keptCount++] = v;
+			}
+			newIndices[i] = remap[v];
+		}
+
+		float[] positions = new float[keptCount * 3];
+		float[] texcoords = new float[keptCount * 2];
+		float[] normals = new float[keptCount * 3];
+		for(int k=0; k<keptCount; k++) {
+			System.arraycopy(mesh.getPositions(), kept[k] * 3, positions, k * 3, 3);
+			System.arraycopy(mesh.getTexcoords(), kept[k] * 2, texcoords, k * 2, 2);
+			System.arraycopy(mesh.getNormals(), kept[k] * 3, normals, k * 3, 3);
+		}
+		return new PackedMesh(positions, texcoords, normals, newIndices);
+	}
+
+	/**
+	 * Returns the average cache miss ratio of an index buffer: the number of vertices a FIFO post-transform cache of the
+	 * given size would have to transform, divided by the number of triangles. Returns 0 if there are no triangles.
+	 */
+	public static double acmr(int[] indices, int vertexCount, int cacheSize) {
+		if (indices.length < 3) return 0;
+		int[] cacheTime = new int[vertexCount];
+		Arrays.fill(cacheTime, Integer.MIN_VALUE);
+		int time = 0;
+		int misses = 0;
+		for(int v : indices) {
+			if (cacheTime[v] < time - cacheSize) {
+				cacheTime[v] = time++;
+				misses++;
+			}
+		}
+		return misses / (double) (indices.length / 3);
+	}
+
+	/**
+	 * Sorts runs of triangles, keeping the order within each run, by how far they sit out from the mesh's centroid
+	 * along their normal, furthest first.
+	 * @param order    triangle indices, in Tipsify order
+	 * @param runs     the start of each run in order, followed by the end of the last one
+	 * @param runCount the number of runs
+	 * @return triangle indices, in their new order
+	 */
+	private static int[] sortRunsForOverdraw(PackedMesh mesh, int[] order, int[] runs, int runCount) {
+		if (runCount <= 1) return order;
+		float[] positions = mesh.getPositions();
+		int[] indices = mesh.getIndices();
+
+		//Area-weighted centroid and normal of each run, and of the whole mesh
+		double[] runData = new double[runCount * 6];
+		double meshX = 0, meshY = 0, meshZ = 0, meshArea = 0;
+		for(int r=0; r<runCount; r++) {
+			double cx = 0, cy = 0, cz = 0, nx = 0, ny = 0, nz = 0, area = 0;
+			for(int i = runs[r]; i < runs[r + 1]; i++) {
+				int t = order[i];
+				int a = indices[t*3] * 3, b = indices[t*3 + 1] * 3, c = indices[t*3 + 2] * 3;
+				double abx = positions[b] - positions[a], aby = positions[b+1] - positions[a+1], abz = positions[b+2] - positions[a+2];
+				double acx = positions[c] - positions[a], acy = positions[c+1] - positions[a+1], acz = positions[c+2] - positions[a+2];
+				double crossX = aby * acz - abz * acy;
+				double crossY = abz * acx - abx * acz;
+				double crossZ = abx * acy - aby * acx;
+				double triangleArea = Math.sqrt(crossX * crossX + crossY * crossY + crossZ * crossZ);
+				nx += crossX; ny += crossY; nz += crossZ;
+				cx += triangleArea * (positions[a] + positions[b] + positions[c]) / 3;
+				cy += triangleArea * (positions[a+1] + positions[b+1] + positions[c+1]) / 3;
+				cz += triangleArea * (positions[a+2] + positions[b+2] + positions[c+2]) / 3;
+				area += triangleArea;
+			}
+			meshX += cx; meshY += cy; meshZ += cz; meshArea += area;
+			if (area > 0) { cx /= area; cy /= area; cz /= area; }
+			runData[r*6    ] = cx; runData[r*6 + 1] = cy; runData[r*6 + 2] = cz;
+			runData[r*6 + 3] = nx; runData[r*6 + 4] = ny; runData[r*6 + 5] = nz;
+		}
+		if (meshArea > 0) { meshX /= meshArea; meshY /= meshArea; meshZ /= meshArea; }
+
+		double[] keys = new double[runCount];
+		Integer[] sorted = new Integer[runCount];
+		for(int r=0; r<runCount; r++) {
+			double nx = runData[r*6 + 3], ny = runData[r*6 + 4], nz = runData[r*6 + 5];
+			double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+			keys[r] = (length == 0) ? 0 : ((runData[r*6] - meshX) * nx + (runData[r*6 + 1] - meshY) * ny + (runData[r*6 + 2] - meshZ) * nz) / length;
+			sorted[r] = r;
+		}
+		Arrays.sort(sorted, (a, b) -> Double.compare(keys[b], keys[a]));
+
+		int[] result = new int[order.length];
+		int pos = 0;
+		for(int r : sorted) {
+			int length = runs[r + 1] - runs[r];
+			System.arraycopy(order, runs[r], result, pos, length);
+			pos += length;
+		}
+		return result;
+	}
+
+	private static int cell(float coord, double tolerance) {
+		if (tolerance == 0) return Float.floatToIntBits(coord + 0f); //Adding zero turns -0 into 0
+		return (int) Math.floor(coord / tolerance);
+	}
+
+	private static int hash(int x, int y, int z) {
+		int h = x * 0x9E3779B1 + y * 0x85EBCA77 + z * 0xC2B2AE3D;
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean close(float[] data, int a, int b, int count, double tolerance) {
+		for(int i=0; i<count; i++) {
+			if (!(Math.abs(data[a + i] - data[b + i]) <= tolerance)) return false;
+		}
+		return true;
+	}
+}
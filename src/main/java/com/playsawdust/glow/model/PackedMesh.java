@@ -0,0 +1,126 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.model;
+
+import com.playsawdust.glow.vecmath.Matrix3;
+import com.playsawdust.glow.vecmath.Rect3d;
+
+/**
+ * Mesh geometry stored as flat arrays: one float array per attribute, with each vertex's components next to each other,
+ * and an index buffer with three entries per triangle.
+ *
+ * <p>The getters hand out the arrays themselves rather than copies, so renderers and exporters can read them directly.
+ * Anything that modifies them is responsible for keeping the lengths consistent.
+ */
+public class PackedMesh {
+	public static final int POSITION_COMPONENTS = 3;
+	public static final int TEXCOORD_COMPONENTS = 2;
+	public static final int NORMAL_COMPONENTS = 3;
+
+	protected final float[] positions;
+	protected final float[] texcoords;
+	protected final float[] normals;
+	protected final int[] indices;
+
+	/**
+	 * Creates a PackedMesh which uses the passed-in arrays as its storage.
+	 * @param positions x, y, z for each vertex
+	 * @param texcoords u, v for each vertex
+	 * @param normals   x, y, z for each vertex
+	 * @param indices   three vertex indices for each triangle
+	 * @throws IllegalArgumentException if the arrays don't describe the same number of vertices, or an index is out of
+	 *                                  range
+	 */
+	public PackedMesh(float[] positions, float[] texcoords, float[] normals, int[] indices) {
+		if (positions.length % POSITION_COMPONENTS != 0) throw new IllegalArgumentException("Positions must have "+POSITION_COMPONENTS+" components each.");
+		int vertexCount = positions.length / POSITION_COMPONENTS;
+		if (texcoords.length != vertexCount * TEXCOORD_COMPONENTS) throw new IllegalArgumentException("Expected "+vertexCount+" texcoords, found "+(texcoords.length / (double) TEXCOORD_COMPONENTS));
+		if (normals.length != vertexCount * NORMAL_COMPONENTS) throw new IllegalArgumentException("Expected "+vertexCount+" normals, found "+(normals.length / (double) NORMAL_COMPONENTS));
+		if (indices.length % 3 != 0) throw new IllegalArgumentException("Index count must be a multiple of 3.");
+		for(int index : indices) {
+			if (index < 0 || index >= vertexCount) throw new IllegalArgumentException("Index "+index+" is out of range for "+vertexCount+" vertices.");
+		}
+
+		this.positions = positions;
+		this.texcoords = texcoords;
+		this.normals = normals;
+		this.indices = indices;
+	}
+
+	public int getVertexCount() {
+		return positions.length / POSITION_COMPONENTS;
+	}
+
+	public int getTriangleCount() {
+		return indices.length / 3;
+	}
+
+	/** Returns the position array: x, y, z for each vertex */
+	public float[] getPositions() {
+		return positions;
+	}
+
+	/** Returns the texture coordinate array: u, v for each vertex */
+	public float[] getTexcoords() {
+		return texcoords;
+	}
+
+	/** Returns the normal array: x, y, z for each vertex */
+	public float[] getNormals() {
+		return normals;
+	}
+
+	/** Returns the index buffer: three vertex indices for each triangle */
+	public int[] getIndices() {
+		return indices;
+	}
+
+	/**
+	 * Calls visitor once for each triangle, in index buffer order.
+	 */
+	public void forEachTriangle(TriangleVisitor visitor) {
+		int[] indices = this.indices;
+		for(int i=0; i<indices.length; i+=3) {
+			visitor.visit(i / 3, indices[i], indices[i+1], indices[i+2]);
+		}
+	}
+
+	/**
+	 * Returns the smallest box which contains every position, or an empty box at the origin if there are no vertices.
+	 * This is recalculated each time it's called.
+	 */
+	public Rect3d computeBounds() {
+		if (positions.length == 0) return new Rect3d(0, 0, 0, 0, 0, 0);
+		float minX = positions[0], minY = positions[1], minZ = positions[2];
+		float maxX = minX, maxY = minY, maxZ = minZ;
+		for(int ofs=3; ofs<positions.length; ofs+=3) {
+			minX = Math.min(minX, positions[ofs  ]); maxX = Math.max(maxX, positions[ofs  ]);
+			minY = Math.min(minY, positions[ofs+1]); maxY = Math.max(maxY, positions[ofs+1]);
+			minZ = Math.min(minZ, positions[ofs+2]); maxZ = Math.max(maxZ, positions[ofs+2]);
+		}
+		return new Rect3d(minX, minY, minZ, maxX - minX, maxY - minY, maxZ - minZ);
+	}
+
+	/**
+	 * Transforms every position by a matrix, in place. Normals are left alone.
+	 */
+	public void transform(Matrix3 matrix) {
+		double a = matrix.a(), b = matrix.b(), c = matrix.c();
+		double d = matrix.d(), e = matrix.e(), f = matrix.f();
+		double g = matrix.g(), h = matrix.h(), i = matrix.i();
+		for(int ofs=0; ofs<positions.length; ofs+=3) {
+			double x = positions[ofs];
+			double y = positions[ofs+1];
+			double z = positions[ofs+2];
+			positions[ofs  ] = (float) (x * a + y * b + z * c);
+			positions[ofs+1] = (float) (x * d + y * e + z * f);
+			positions[ofs+2] = (float) (x * g + y * h + z * i);
+		}
+	}
+}
@@ -8,11 +8,86 @@
  */
 package com.playsawdust.glow.model;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
 import com.playsawdust.glow.image.color.RGBColor;
 import com.playsawdust.glow.vecmath.Vector2d;
 import com.playsawdust.glow.vecmath.Vector3d;
 
-public record ShaderAttribute<T>(String name) {
+/**
+ * A named input to a shader, like a vertex's position or a material's color.
+ *
+ * <p>Every distinct name is given a small, dense id the first time it's used, and attributes with the same name share
+ * it. Holders use the id as an array index, so looking up an attribute doesn't need to hash anything.
+ */
+public record ShaderAttribute<T>(String name, int id) {
+	/* The registry. Ids are handed out in order, starting from zero, and never reused. */
+	private static final Map<String, Integer> IDS = new HashMap<>();
+	/* One canonical attribute per id. Replaced rather than modified, so it can be read without holding the lock. */
+	private static volatile ShaderAttribute<?>[] BY_ID = new ShaderAttribute<?>[0];
+	
+	public ShaderAttribute {
+		synchronized(IDS) {
+			Integer registered = IDS.get(name);
+			if (registered == null || registered != id) {
+				throw new IllegalArgumentException("Attribute \""+name+"\" doesn't have id "+id+". Use new ShaderAttribute<>(name) instead.");
+			}
+		}
+	}
+	
+	/**
+	 * Creates an attribute, giving it the next free id if this name hasn't been seen before.
+	 */
+	public ShaderAttribute(String name) {
+		this(name, register(name));
+	}
+	
+	private static int register(String name) {
+		synchronized(IDS) {
+			Integer registered = IDS.get(name);
+			if (registered != null) return registered;
+			
+			int id = BY_ID.length;
+			IDS.put(name, id);
+			ShaderAttribute<?>[] byId = Arrays.copyOf(BY_ID, id + 1);
+			byId[id] = new ShaderAttribute<>(name, id);
+			BY_ID = byId;
+			return id;
+		}
+	}
+	
+	/**
+	 * Returns the number of ids handed out so far. Every attribute's id is less than this.
+	 */
+	public static int count() {
+		return BY_ID.length;
+	}
+	
+	/**
+	 * Returns the attribute with the specified name, if that name has been registered. Unlike the constructor, this
+	 * never registers anything, so it's safe to call with names from untrusted data.
+	 * @return the attribute, or null if no attribute has that name
+	 */
+	public static @Nullable ShaderAttribute<?> lookup(String name) {
+		Integer id;
+		synchronized(IDS) {
+			id = IDS.get(name);
+		}
+		return (id == null) ? null : byId(id);
+	}
+	
+	/**
+	 * Returns an attribute with the specified id. Its type parameter is unknown, but it's equal to every other
+	 * attribute with this id.
+	 * @throws IndexOutOfBoundsException if no attribute has that id
+	 */
+	public static ShaderAttribute<?> byId(int id) {
+		return BY_ID[id];
+	}
 	
 	public static final ShaderAttribute<String> DIFFUSE_TEXTURE = new ShaderAttribute<>("diffuse_texture");
 	public static final ShaderAttribute<String> SPECULAR_TEXTURE = new ShaderAttribute<>("specular_texture");
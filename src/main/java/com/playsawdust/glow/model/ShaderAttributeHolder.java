@@ -9,6 +9,7 @@
 package com.playsawdust.glow.model;
 
 import java.util.Map;
+import java.util.function.BiConsumer;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -21,4 +22,12 @@ public interface ShaderAttributeHolder {
 	}
 	
 	public Map<ShaderAttribute<?>, Object> getAll();
+	
+	/**
+	 * Calls action for each attribute this holder has, with its value. Implementations can override this to avoid
+	 * building the Map that getAll returns.
+	 */
+	public default void forEach(BiConsumer<ShaderAttribute<?>, Object> action) {
+		getAll().forEach(action);
+	}
 }
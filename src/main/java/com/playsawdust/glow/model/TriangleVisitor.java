@@ -0,0 +1,24 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.model;
+
+/**
+ * Receives the triangles of a {@link PackedMesh} as vertex indices, so that they can be walked without allocating.
+ */
+@FunctionalInterface
+public interface TriangleVisitor {
+	/**
+	 * Called once for each triangle.
+	 * @param triangle the index of the triangle, counting from zero
+	 * @param a        the index of the triangle's first vertex
+	 * @param b        the index of the second vertex
+	 * @param c        the index of the third vertex
+	 */
+	void visit(int triangle, int a, int b, int c);
+}
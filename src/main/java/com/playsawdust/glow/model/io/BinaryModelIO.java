@@ -0,0 +1,333 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.model.io;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.playsawdust.glow.image.color.RGBColor;
+import com.playsawdust.glow.io.ArrayDataBuilder;
+import com.playsawdust.glow.io.ChunkedDataBuilder;
+import com.playsawdust.glow.io.DataBuilder;
+import com.playsawdust.glow.io.DataSlice;
+import com.playsawdust.glow.model.BufferMesh;
+import com.playsawdust.glow.model.Material;
+import com.playsawdust.glow.model.Mesh;
+import com.playsawdust.glow.model.Model;
+import com.playsawdust.glow.model.PackedMesh;
+import com.playsawdust.glow.model.ShaderAttribute;
+import com.playsawdust.glow.vecmath.Rect3d;
+import com.playsawdust.glow.vecmath.Vector2d;
+import com.playsawdust.glow.vecmath.Vector3d;
+import com.playsawdust.glow.vecmath.Vector4d;
+
+/**
+ * Reads and writes Models in glow's own binary format, which is designed to be loaded by pointing at it rather than
+ * by parsing it.
+ *
+ * <p>Everything after the magic number is little-endian, which is what GPUs and nearly every CPU want, so the streams
+ * can be read as floats and ints in place. The layout is:
+ * <ul>
+ *   <li>A 16-byte header: the magic {@code 'G' 'M' 'D' 'L'}, the format version, the number of meshes, and a
+ *       reserved int.
+ *   <li>A table with one 72-byte entry for each mesh: the file offsets of its positions, texcoords, normals, indices
+ *       and material (five I64s); its vertex and index counts (two I32s); and its bounds, as minimum x, y, z and
+ *       maximum x, y, z (six F32s).
+ *   <li>Each mesh's material and streams, every one starting at a multiple of {@link #ALIGNMENT} bytes. Streams are
+ *       laid out exactly as in {@link PackedMesh}. A material is an I32 count of entries, each an attribute name
+ *       (I16 length and UTF-8 bytes), a type tag byte, and a value. Entries naming an attribute that hasn't been
+ *       registered are skipped when loading, since a file mustn't be able to add to the global attribute registry.
+ * </ul>
+ *
+ * <p>{@link #open(DataSlice)} reads only the header, table and materials, and hands back {@link BufferMesh}es whose
+ * buffers come from {@link DataSlice#asByteBuffer(long, int)}. For a MappedDataSlice those are views of the mapping,
+ * so no geometry is copied, and opening a large file costs about the same as opening a small one.
+ */
+public class BinaryModelIO {
+	/** {@code 'G' 'M' 'D' 'L'}, stored big-endian so that it reads correctly in a hex editor */
+	public static final int MAGIC = 0x474D444C;
+	public static final int VERSION = 1;
+	/** Every material and stream starts at a multiple of this many bytes from the start of the file */
+	public static final int ALIGNMENT = 16;
+
+	private static final int HEADER_SIZE = 16;
+	private static final int MESH_ENTRY_SIZE = 72;
+
+	private static final int TYPE_DOUBLE  = 1;
+	private static final int TYPE_VECTOR2 = 2;
+	private static final int TYPE_VECTOR3 = 3;
+	private static final int TYPE_VECTOR4 = 4;
+	private static final int TYPE_COLOR   = 5;
+	private static final int TYPE_STRING  = 6;
+	private static final int TYPE_INTEGER = 7;
+	private static final int TYPE_BOOLEAN = 8;
+
+	/**
+	 * Reads the meshes in a model file without copying their geometry. The returned meshes read through to the slice,
+	 * so it must stay open, and unchanged, for as long as they're in use. This sets the slice's ByteOrder to
+	 * LITTLE_ENDIAN.
+	 * @param in the file to read
+	 * @return one BufferMesh for each mesh in the file, in order
+	 * @throws IOException if the file isn't a model file, or is truncated or corrupt
+	 */
+	public static List<BufferMesh> open(DataSlice in) throws IOException {
+		in.seek(0);
+		in.setByteOrder(ByteOrder.BIG_ENDIAN);
+		if (in.length() < HEADER_SIZE || in.readI32s() != MAGIC) throw new IOException("Not a glow model file.");
+		in.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+		int version = in.readI32s();
+		if (version != VERSION) throw new IOException("Unsupported model format version "+version+".");
+		int meshCount = in.readI32s();
+		if (meshCount < 0 || HEADER_SIZE + meshCount * (long) MESH_ENTRY_SIZE > in.length()) throw new IOException("Out of bounds.");
+
+		List<BufferMesh> result = new ArrayList<>(meshCount);
+		for(int i=0; i<meshCount; i++) {
+			in.seek(HEADER_SIZE + i * (long) MESH_ENTRY_SIZE);
+			long positionsOffset = in.readI64s();
+			long texcoordsOffset = in.readI64s();
+			long normalsOffset = in.readI64s();
+			long indicesOffset = in.readI64s();
+			long materialOffset = in.readI64s();
+			int vertexCount = in.readI32s();
+			int indexCount = in.readI32s();
+			if (vertexCount < 0 || indexCount < 0) throw new IOException("Mesh "+i+" has a negative size.");
+			float minX = in.readF32s(), minY = in.readF32s(), minZ = in.readF32s();
+			float maxX = in.readF32s(), maxY = in.readF32s(), maxZ = in.readF32s();
+			if (!(maxX >= minX && maxY >= minY && maxZ >= minZ)) throw new IOException("Mesh "+i+" has invalid bounds.");
+			Rect3d bounds = new Rect3d(minX, minY, minZ, maxX - minX, maxY - minY, maxZ - minZ);
+
+			FloatBuffer positions = floats(in, positionsOffset, vertexCount * (long) PackedMesh.POSITION_COMPONENTS);
+			FloatBuffer texcoords = floats(in, texcoordsOffset, vertexCount * (long) PackedMesh.TEXCOORD_COMPONENTS);
+			FloatBuffer normals = floats(in, normalsOffset, vertexCount * (long) PackedMesh.NORMAL_COMPONENTS);
+			IntBuffer indices = ints(in, indicesOffset, indexCount);
+			Material material = readMaterial(in, materialOffset);
+
+			try {
+				result.add(new BufferMesh(material, bounds, positions, texcoords, normals, indices));
+			} catch (IllegalArgumentException ex) {
+				throw new IOException("Mesh "+i+" is corrupt.", ex);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Reads a model file into a Model, copying all of its geometry onto the heap. Use {@link #open(DataSlice)} to
+	 * avoid the copy.
+	 * @throws IOException if the file isn't a model file, or is truncated or corrupt
+	 */
+	public static Model load(DataSlice in) throws IOException {
+		Model result = new Model();
+		for(BufferMesh mesh : open(in)) {
+			try {
+				result.getMeshes().add(mesh.toMesh());
+			} catch (IllegalArgumentException ex) {
+				throw new IOException(ex.getMessage(), ex);
+			}
+		}
+		return result;
+	}
+
+	public static DataSlice saveToDataSlice(Model model) {
+		ChunkedDataBuilder out = new ChunkedDataBuilder();
+		try {
+			save(model, out);
+			return out.toDataSlice();
+		} catch (IOException ioe) {
+			throw new RuntimeException(ioe);
+		}
+	}
+
+	/**
+	 * Writes a Model out as a model file. Only each Mesh's packed geometry and Material are saved. The data is written
+	 * front to back, so out doesn't need to support seeking, but it must start out empty, since the offsets in the
+	 * file are counted from its start.
+	 * @throws IOException if there was a problem writing to the destination, or a Material holds a value which can't be
+	 *                     saved. Doubles, Integers, Booleans, Strings, RGBColors, and Vector2d, 3d and 4d can be.
+	 */
+	public static void save(Model model, DataBuilder out) throws IOException {
+		List<Mesh> meshes = model.getMeshes();
+		byte[][] materials = new byte[meshes.size()][];
+		for(int i=0; i<meshes.size(); i++) {
+			materials[i] = writeMaterial(meshes.get(i).getMaterial());
+		}
+
+		//Lay everything out first, so that the table can be written before the data it points to
+		long[] offsets = new long[meshes.size() * 5];
+		long offset = align(HEADER_SIZE + meshes.size() * (long) MESH_ENTRY_SIZE);
+		for(int i=0; i<meshes.size(); i++) {
+			PackedMesh packed = meshes.get(i).getPackedMesh();
+			offsets[i*5 + 4] = offset;
+			offset = align(offset + materials[i].length);
+			offsets[i*5    ] = offset;
+			offset = align(offset + packed.getPositions().length * (long) Float.BYTES);
+			offsets[i*5 + 1] = offset;
+			offset = align(offset + packed.getTexcoords().length * (long) Float.BYTES);
+			offsets[i*5 + 2] = offset;
+			offset = align(offset + packed.getNormals().length * (long) Float.BYTES);
+			offsets[i*5 + 3] = offset;
+			offset = align(offset + packed.getIndices().length * (long) Integer.BYTES);
+		}
+
+		out.setByteOrder(ByteOrder.BIG_ENDIAN);
+		out.writeI32s(MAGIC);
+		out.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+		out.writeI32s(VERSION);
+		out.writeI32s(meshes.size());
+		out.writeI32s(0);
+
+		for(int i=0; i<meshes.size(); i++) {
+			PackedMesh packed = meshes.get(i).getPackedMesh();
+			for(int j=0; j<5; j++) out.writeI64s(offsets[i*5 + j]);
+			out.writeI32s(packed.getVertexCount());
+			out.writeI32s(packed.getIndices().length);
+			Rect3d bounds = packed.computeBounds();
+			out.writeF32s((float) bounds.x());
+			out.writeF32s((float) bounds.y());
+			out.writeF32s((float) bounds.z());
+			out.writeF32s((float) (bounds.x() + bounds.xSize()));
+			out.writeF32s((float) (bounds.y() + bounds.ySize()));
+			out.writeF32s((float) (bounds.z() + bounds.zSize()));
+		}
+
+		for(int i=0; i<meshes.size(); i++) {
+			PackedMesh packed = meshes.get(i).getPackedMesh();
+			pad(out);
+			out.write(materials[i]);
+			pad(out);
+			out.writeFloats(packed.getPositions(), 0, packed.getPositions().length);
+			pad(out);
+			out.writeFloats(packed.getTexcoords(), 0, packed.getTexcoords().length);
+			pad(out);
+			out.writeFloats(packed.getNormals(), 0, packed.getNormals().length);
+			pad(out);
+			out.writeInts(packed.getIndices(), 0, packed.getIndices().length);
+		}
+		pad(out);
+	}
+
+	private static byte[] writeMaterial(Material material) throws IOException {
+		ArrayDataBuilder out = new ArrayDataBuilder();
+		out.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+		Map<ShaderAttribute<?>, Object> values = material.getAll();
+		out.writeI32s(values.size());
+		for(Map.Entry<ShaderAttribute<?>, Object> entry : values.entrySet()) {
+			byte[] name = entry.getKey().name().getBytes(StandardCharsets.UTF_8);
+			if (name.length > 0xFFFF) throw new IOException("Attribute name is too long.");
+			out.writeI16u(name.length);
+			out.write(name);
+
+			switch(entry.getValue()) {
+				case Double d -> {
+					out.writeI8u(TYPE_DOUBLE);
+					out.writeF64s(d);
+				}
+				case Vector2d v -> {
+					out.writeI8u(TYPE_VECTOR2);
+					out.writeF64s(v.x()); out.writeF64s(v.y());
+				}
+				case Vector3d v -> {
+					out.writeI8u(TYPE_VECTOR3);
+					out.writeF64s(v.x()); out.writeF64s(v.y()); out.writeF64s(v.z());
+				}
+				case Vector4d v -> {
+					out.writeI8u(TYPE_VECTOR4);
+					out.writeF64s(v.x()); out.writeF64s(v.y()); out.writeF64s(v.z()); out.writeF64s(v.w());
+				}
+				case RGBColor c -> {
+					out.writeI8u(TYPE_COLOR);
+					out.writeF32s(c.alpha()); out.writeF32s(c.r()); out.writeF32s(c.g()); out.writeF32s(c.b());
+				}
+				case String s -> {
+					out.writeI8u(TYPE_STRING);
+					byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+					out.writeI32s(bytes.length);
+					out.write(bytes);
+				}
+				case Integer n -> {
+					out.writeI8u(TYPE_INTEGER);
+					out.writeI32s(n);
+				}
+				case Boolean b -> {
+					out.writeI8u(TYPE_BOOLEAN);
+					out.writeBoolean(b);
+				}
+				default -> throw new IOException("Can't save "+entry.getKey().name()+" values of type "+entry.getValue().getClass().getSimpleName()+".");
+			}
+		}
+		return out.toByteArray();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Material readMaterial(DataSlice in, long offset) throws IOException {
+		Material result = new Material();
+		if (offset < 0 || offset > in.length()) throw new IOException("Out of bounds.");
+		in.seek(offset);
+		int count = in.readI32s();
+		if (count < 0) throw new IOException("Material has a negative size.");
+		for(int i=0; i<count; i++) {
+			byte[] name = new byte[in.readI16u()];
+			in.copy(name);
+			ShaderAttribute<Object> attribute = (ShaderAttribute<Object>) ShaderAttribute.lookup(new String(name, StandardCharsets.UTF_8));
+
+			int type = in.readI8u();
+			Object value = switch(type) {
+				case TYPE_DOUBLE  -> in.readF64s();
+				case TYPE_VECTOR2 -> new Vector2d(in.readF64s(), in.readF64s());
+				case TYPE_VECTOR3 -> new Vector3d(in.readF64s(), in.readF64s(), in.readF64s());
+				case TYPE_VECTOR4 -> new Vector4d(in.readF64s(), in.readF64s(), in.readF64s(), in.readF64s());
+				case TYPE_COLOR   -> new RGBColor(in.readF32s(), in.readF32s(), in.readF32s(), in.readF32s());
+				case TYPE_STRING  -> {
+					int length = in.readI32s();
+					if (length < 0 || length > in.length() - in.position()) throw new IOException("Out of bounds.");
+					byte[] bytes = new byte[length];
+					in.copy(bytes);
+					yield new String(bytes, StandardCharsets.UTF_8);
+				}
+				case TYPE_INTEGER -> in.readI32s();
+				case TYPE_BOOLEAN -> in.readBoolean();
+				default -> throw new IOException("Unknown material value type "+type+".");
+			};
+			if (attribute != null) result.put(attribute, value);
+		}
+		return result;
+	}
+
+	private static FloatBuffer floats(DataSlice in, long offset, long count) throws IOException {
+		checkRange(in, offset, count);
+		return in.asByteBuffer(offset, (int) (count * Float.BYTES)).asFloatBuffer();
+	}
+
+	private static IntBuffer ints(DataSlice in, long offset, long count) throws IOException {
+		checkRange(in, offset, count);
+		return in.asByteBuffer(offset, (int) (count * Integer.BYTES)).asIntBuffer();
+	}
+
+	/** Makes sure count four-byte values starting at offset lie inside the slice, and fit in one ByteBuffer */
+	private static void checkRange(DataSlice in, long offset, long count) throws IOException {
+		long bytes = count * 4;
+		if (offset < 0 || bytes > Integer.MAX_VALUE || offset + bytes > in.length()) throw new IOException("Out of bounds.");
+	}
+
+	private static long align(long offset) {
+		return (offset + ALIGNMENT - 1) & -ALIGNMENT;
+	}
+
+	private static void pad(DataBuilder out) throws IOException {
+		long length = out.length();
+		out.skip(align(length) - length);
+	}
+}
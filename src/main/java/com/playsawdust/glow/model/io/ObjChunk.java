@@ -0,0 +1,340 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.model.io;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The parsed contents of one line-aligned piece of an OBJ file. Pieces are parsed independently of each other, so
+ * nothing here knows how many vertices came before it; {@link ObjModelIO} stitches them together afterwards.
+ *
+ * <p>Faces are fanned into triangles as they're read, and stored as three ints per corner: the position, texcoord
+ * and normal index, counting from zero, with -1 for a texcoord or normal that's missing. Negative (relative) indices
+ * in the file can only be resolved against the vertices in this chunk, so they're stored relative to the start of it,
+ * and the slots they were written to are listed in {@link #relativeSlots} to be fixed up once the chunk's place in the
+ * file is known.
+ *
+ * <p>Numbers are parsed straight out of the byte array, without building Strings.
+ */
+final class ObjChunk {
+	private static final double[] POW10 = {
+			1e0,  1e1,  1e2,  1e3,  1e4,  1e5,  1e6,  1e7,  1e8,  1e9,  1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	/* Mantissas below this are exact in a double, so multiplying or dividing one by a POW10 entry rounds only once */
+	private static final long EXACT_MANTISSA = 1L << 53;
+
+	private static final byte[] USEMTL = "usemtl".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] MTLLIB = "mtllib".getBytes(StandardCharsets.US_ASCII);
+
+	/** Where this chunk starts in the file, for error messages */
+	final long offset;
+
+	float[] positions = new float[3 * 256];
+	int positionCount;
+	float[] texcoords = new float[2 * 256];
+	int texcoordCount;
+	float[] normals = new float[3 * 256];
+	int normalCount;
+
+	/** Three corners of three ints for each triangle */
+	int[] corners = new int[9 * 256];
+	int triangleCount;
+	/** Indices into corners which hold relative indices. Slot % 3 says whether each is a position, texcoord or normal. */
+	int[] relativeSlots = new int[0];
+	int relativeCount;
+
+	/** Each usemtl in the chunk, and the triangle it takes effect from */
+	final List<String> materialNames = new ArrayList<>();
+	int[] materialStarts = new int[4];
+	/** Every file named by an mtllib line */
+	final List<String> libraries = new ArrayList<>();
+
+	/* The text being parsed. Dropped once parsing is done, since the chunk outlives it. */
+	private byte[] data;
+	private final int end;
+	private int pos;
+
+	private final int[] first = new int[3];
+	private final int[] previous = new int[3];
+	private final int[] current = new int[3];
+	private int firstRelative;
+	private int previousRelative;
+	private int currentRelative;
+	private boolean lastRelative;
+
+	private ObjChunk(byte[] data, int length, long offset) {
+		this.data = data;
+		this.end = length;
+		this.offset = offset;
+	}
+
+	/**
+	 * Parses the first length bytes of data, which must end at the end of a line or the end of the file.
+	 * @param offset where data starts in the file
+	 * @throws IOException if the data is malformed
+	 */
+	static ObjChunk parse(byte[] data, int length, long offset) throws IOException {
+		ObjChunk result = new ObjChunk(data, length, offset);
+		result.parse();
+		result.data = null;
+		return result;
+	}
+
+	private void parse() throws IOException {
+		while(pos < end) {
+			skipSpaces();
+			if (pos >= end) break;
+
+			byte c = data[pos];
+			if (c == 'v') {
+				byte next = (pos + 1 < end) ? data[pos + 1] : (byte) '\n';
+				if (isSpace(next)) {
+					pos++;
+					positions = grow(positions, positionCount * 3 + 3);
+					positions[positionCount * 3    ] = (float) parseNumber();
+					positions[positionCount * 3 + 1] = (float) parseNumber();
+					positions[positionCount * 3 + 2] = (float) parseNumber();
+					positionCount++;
+				} else if (next == 't' && isSpaceAt(pos + 2)) {
+					pos += 2;
+					texcoords = grow(texcoords, texcoordCount * 2 + 2);
+					texcoords[texcoordCount * 2    ] = (float) parseNumber();
+					texcoords[texcoordCount * 2 + 1] = (atEndOfLine()) ? 0f : (float) parseNumber();
+					texcoordCount++;
+				} else if (next == 'n' && isSpaceAt(pos + 2)) {
+					pos += 2;
+					normals = grow(normals, normalCount * 3 + 3);
+					normals[normalCount * 3    ] = (float) parseNumber();
+					normals[normalCount * 3 + 1] = (float) parseNumber();
+					normals[normalCount * 3 + 2] = (float) parseNumber();
+					normalCount++;
+				}
+			} else if (c == 'f' && isSpaceAt(pos + 1)) {
+				pos++;
+				parseFace();
+			} else if (matchKeyword(USEMTL)) {
+				materialStarts = grow(materialStarts, materialNames.size() + 1);
+				materialStarts[materialNames.size()] = triangleCount;
+				materialNames.add(restOfLine().strip());
+			} else if (matchKeyword(MTLLIB)) {
+				for(String library : restOfLine().strip().split("\\s+")) {
+					if (!library.isEmpty()) libraries.add(library);
+				}
+			}
+
+			//Comments, groups, smoothing groups, lines, w components, and anything else we don't understand
+			skipLine();
+		}
+	}
+
+	private void parseFace() throws IOException {
+		int cornerCount = 0;
+		while(!atEndOfLine()) {
+			int[] corner = (cornerCount == 0) ? first : current;
+			int relative = 0;
+
+			corner[0] = resolve(parseInt(), positionCount);
+			if (lastRelative) relative |= 1;
+			corner[1] = -1;
+			corner[2] = -1;
+			if (pos < end && data[pos] == '/') {
+				pos++;
+				if (pos < end && data[pos] != '/') {
+					corner[1] = resolve(parseInt(), texcoordCount);
+					if (lastRelative) relative |= 2;
+				}
+				if (pos < end && data[pos] == '/') {
+					pos++;
+					corner[2] = resolve(parseInt(), normalCount);
+					if (lastRelative) relative |= 4;
+				}
+			}
+			if (pos < end && !isSpace(data[pos])) throw malformed();
+
+			if (cornerCount == 0) {
+				firstRelative = relative;
+			} else {
+				currentRelative = relative;
+				if (cornerCount >= 2) {
+					corners = grow(corners, triangleCount * 9 + 9);
+					int base = triangleCount * 9;
+					emit(base, first, firstRelative);
+					emit(base + 3, previous, previousRelative);
+					emit(base + 6, current, currentRelative);
+					triangleCount++;
+				}
+				System.arraycopy(current, 0, previous, 0, 3);
+				previousRelative = currentRelative;
+			}
+			cornerCount++;
+		}
+		if (cornerCount < 3) throw new IOException("Face with fewer than three corners at byte "+(offset + pos)+".");
+	}
+
+	private void emit(int slot, int[] corner, int relative) {
+		System.arraycopy(corner, 0, corners, slot, 3);
+		for(int i=0; i<3; i++) {
+			if ((relative & (1 << i)) != 0) {
+				relativeSlots = grow(relativeSlots, relativeCount + 1);
+				relativeSlots[relativeCount++] = slot + i;
+			}
+		}
+	}
+
+	/**
+	 * Converts an OBJ index into a zero-based one, and sets lastRelative to say whether it's relative to the start of
+	 * this chunk. Relative indices which reach back into earlier chunks are negative.
+	 * @param count the number of vertices of this kind read from this chunk so far
+	 */
+	private int resolve(int index, int count) throws IOException {
+		lastRelative = index < 0;
+		if (index > 0) return index - 1;
+		if (index < 0) return count + index;
+		throw malformed();
+	}
+
+	/**
+	 * Parses a decimal number, with an optional sign, fraction and exponent.
+	 */
+	private double parseNumber() throws IOException {
+		skipSpaces();
+		boolean negative = false;
+		if (pos < end && (data[pos] == '-' || data[pos] == '+')) {
+			negative = data[pos] == '-';
+			pos++;
+		}
+
+		long mantissa = 0;
+		int exponent = 0;
+		boolean anyDigits = false;
+		while(pos < end && isDigit(data[pos])) {
+			anyDigits = true;
+			if (mantissa < 100_000_000_000_000_000L) {
+				mantissa = mantissa * 10 + (data[pos] - '0');
+			} else {
+				exponent++; //Digits past the 18th can't change a float
+			}
+			pos++;
+		}
+		if (pos < end && data[pos] == '.') {
+			pos++;
+			while(pos < end && isDigit(data[pos])) {
+				anyDigits = true;
+				if (mantissa < 100_000_000_000_000_000L) {
+					mantissa = mantissa * 10 + (data[pos] - '0');
+					exponent--;
+				}
+				pos++;
+			}
+		}
+		if (!anyDigits) throw malformed();
+
+		if (pos < end && (data[pos] == 'e' || data[pos] == 'E')) {
+			pos++;
+			boolean negativeExponent = false;
+			if (pos < end && (data[pos] == '-' || data[pos] == '+')) {
+				negativeExponent = data[pos] == '-';
+				pos++;
+			}
+			if (pos >= end || !isDigit(data[pos])) throw malformed();
+			int value = 0;
+			while(pos < end && isDigit(data[pos])) {
+				value = Math.min(value * 10 + (data[pos] - '0'), 10_000);
+				pos++;
+			}
+			exponent += (negativeExponent) ? -value : value;
+		}
+		if (pos < end && !isSpace(data[pos])) throw malformed();
+
+		double result;
+		if (mantissa == 0) {
+			result = 0;
+		} else if (mantissa < EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+			result = (exponent < 0) ? mantissa / POW10[-exponent] : mantissa * POW10[exponent];
+		} else {
+			result = mantissa * Math.pow(10, exponent);
+		}
+		return (negative) ? -result : result;
+	}
+
+	private int parseInt() throws IOException {
+		boolean negative = false;
+		if (pos < end && (data[pos] == '-' || data[pos] == '+')) {
+			negative = data[pos] == '-';
+			pos++;
+		}
+		if (pos >= end || !isDigit(data[pos])) throw malformed();
+		long value = 0;
+		while(pos < end && isDigit(data[pos])) {
+			value = value * 10 + (data[pos] - '0');
+			if (value > Integer.MAX_VALUE) throw malformed();
+			pos++;
+		}
+		return (int) ((negative) ? -value : value);
+	}
+
+	private boolean matchKeyword(byte[] keyword) {
+		if (pos + keyword.length > end || !isSpaceAt(pos + keyword.length)) return false;
+		for(int i=0; i<keyword.length; i++) {
+			if (data[pos + i] != keyword[i]) return false;
+		}
+		pos += keyword.length;
+		return true;
+	}
+
+	private String restOfLine() {
+		int start = pos;
+		while(pos < end && data[pos] != '\n') pos++;
+		return new String(data, start, pos - start, StandardCharsets.UTF_8);
+	}
+
+	private void skipLine() {
+		while(pos < end && data[pos] != '\n') pos++;
+		pos++;
+	}
+
+	/** Skips spaces and tabs, but not line breaks */
+	private void skipSpaces() {
+		while(pos < end && (data[pos] == ' ' || data[pos] == '\t' || data[pos] == '\r')) pos++;
+	}
+
+	private boolean atEndOfLine() {
+		skipSpaces();
+		return pos >= end || data[pos] == '\n' || data[pos] == '#';
+	}
+
+	private boolean isSpaceAt(int index) {
+		return index >= end || isSpace(data[index]);
+	}
+
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+	}
+
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	private IOException malformed() {
+		return new IOException("Malformed OBJ data at byte "+(offset + pos)+".");
+	}
+
+	private static float[] grow(float[] array, int required) {
+		return (required <= array.length) ? array : Arrays.copyOf(array, Math.max(required, array.length * 2));
+	}
+
+	private static int[] grow(int[] array, int required) {
+		return (required <= array.length) ? array : Arrays.copyOf(array, Math.max(required, array.length * 2));
+	}
+}
@@ -0,0 +1,368 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.model.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.playsawdust.glow.image.color.RGBColor;
+import com.playsawdust.glow.io.DataSlice;
+import com.playsawdust.glow.io.resource.Identifier;
+import com.playsawdust.glow.io.resource.Resource;
+import com.playsawdust.glow.io.resource.ResourceManager;
+import com.playsawdust.glow.model.Material;
+import com.playsawdust.glow.model.Mesh;
+import com.playsawdust.glow.model.Model;
+import com.playsawdust.glow.model.PackedMesh;
+import com.playsawdust.glow.model.ShaderAttribute;
+
+/**
+ * Loads Wavefront OBJ files, along with the MTL material libraries they reference.
+ *
+ * <p>The file is cut into line-aligned chunks, which are parsed in parallel. Once every chunk is in, the faces are
+ * split up by material, one Mesh per material in the order each is first used, and each Mesh's corners are
+ * deduplicated into an indexed vertex buffer, again in parallel. Polygons are fanned into triangles. Texcoords and
+ * normals which a face doesn't specify are zero. Points, lines, groups and smoothing groups are ignored.
+ *
+ * <p>Only one chunk per pool thread, plus a few, is held as raw text at a time, so memory use is driven by the size of
+ * the parsed geometry rather than the size of the file.
+ */
+public class ObjModelIO {
+	/** How many bytes of the file each parse task gets, unless a chunk size is given. Chunks are cut at line breaks. */
+	public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+	/**
+	 * Opens the material libraries named by an OBJ file's mtllib lines.
+	 */
+	@FunctionalInterface
+	public interface LibraryResolver {
+		/**
+		 * @param name the library's name, exactly as it appears in the OBJ file
+		 * @return the library's contents, or null if it can't be found. The loader closes the slice once it's read.
+		 */
+		@Nullable DataSlice open(String name) throws IOException;
+	}
+
+	/**
+	 * Loads an OBJ file, without its material libraries. Meshes still get one Material per usemtl name, but they're
+	 * empty.
+	 */
+	public static Model load(DataSlice in) throws IOException {
+		return load(in, name -> null, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Loads an OBJ file, and the material libraries it names, which are looked up next to it in the ResourceManager.
+	 * Libraries which can't be found are skipped.
+	 */
+	public static Model load(Resource obj, ResourceManager resources) throws IOException {
+		DataSlice in = obj.asDataSlice();
+		try {
+			return load(in, name -> {
+				Identifier id = sibling(obj.id(), name);
+				if (id == null) return null;
+				Optional<Resource> library = resources.findFirst(id, ResourceManager.PriorityOrder.DESCENDING);
+				return (library.isPresent()) ? library.get().asDataSlice() : null;
+			}, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Loads an OBJ file.
+	 * @param in        the OBJ file. Only this thread reads from it.
+	 * @param libraries opens the material libraries the file names
+	 * @param pool      the pool to parse chunks and build meshes on
+	 * @param chunkSize roughly how many bytes of the file to give each parse task. A chunk grows past this if a single
+	 *                  line is longer.
+	 * @throws IOException if the file or a material library is malformed, a face refers to a vertex which doesn't
+	 *                     exist, or there was a problem reading the data
+	 */
+	public static Model load(DataSlice in, LibraryResolver libraries, ForkJoinPool pool, int chunkSize) throws IOException {
+		if (chunkSize <= 0) throw new IllegalArgumentException("Chunk size must be positive.");
+		List<ObjChunk> chunks = parseChunks(in, pool, chunkSize);
+
+		//Work out where each chunk's vertices land in the whole file, and resolve its relative indices against that
+		int positionCount = 0, texcoordCount = 0, normalCount = 0;
+		for(ObjChunk chunk : chunks) {
+			int[] bases = { positionCount, texcoordCount, normalCount };
+			for(int i=0; i<chunk.relativeCount; i++) {
+				int slot = chunk.relativeSlots[i];
+				chunk.corners[slot] += bases[slot % 3];
+			}
+			positionCount = Math.addExact(positionCount, chunk.positionCount);
+			texcoordCount = Math.addExact(texcoordCount, chunk.texcoordCount);
+			normalCount = Math.addExact(normalCount, chunk.normalCount);
+		}
+		float[] positions = new float[Math.multiplyExact(positionCount, 3)];
+		float[] texcoords = new float[Math.multiplyExact(texcoordCount, 2)];
+		float[] normals = new float[Math.multiplyExact(normalCount, 3)];
+		int positionOffset = 0, texcoordOffset = 0, normalOffset = 0;
+		for(ObjChunk chunk : chunks) {
+			System.arraycopy(chunk.positions, 0, positions, positionOffset, chunk.positionCount * 3);
+			System.arraycopy(chunk.texcoords, 0, texcoords, texcoordOffset, chunk.texcoordCount * 2);
+			System.arraycopy(chunk.normals, 0, normals, normalOffset, chunk.normalCount * 3);
+			positionOffset += chunk.positionCount * 3;
+			texcoordOffset += chunk.texcoordCount * 2;
+			normalOffset += chunk.normalCount * 3;
+			chunk.positions = null;
+			chunk.texcoords = null;
+			chunk.normals = null;
+		}
+
+		//Split the triangles up by material. A usemtl stays in effect across chunk boundaries.
+		Map<String, List<Run>> runs = new LinkedHashMap<>();
+		String material = "";
+		for(ObjChunk chunk : chunks) {
+			int start = 0;
+			for(int i=0; i<chunk.materialNames.size(); i++) {
+				int switchAt = chunk.materialStarts[i];
+				if (switchAt > start) runs.computeIfAbsent(material, it -> new ArrayList<>()).add(new Run(chunk, start, switchAt));
+				start = switchAt;
+				material = chunk.materialNames.get(i);
+			}
+			if (chunk.triangleCount > start) runs.computeIfAbsent(material, it -> new ArrayList<>()).add(new Run(chunk, start, chunk.triangleCount));
+		}
+
+		Map<String, Material> materials = new HashMap<>();
+		for(ObjChunk chunk : chunks) {
+			for(String name : chunk.libraries) {
+				DataSlice library = libraries.open(name);
+				if (library == null) continue;
+				try {
+					for(Map.Entry<String, Material> entry : loadMaterials(library).entrySet()) {
+						materials.putIfAbsent(entry.getKey(), entry.getValue());
+					}
+				} finally {
+					library.close();
+				}
+			}
+		}
+
+		List<ForkJoinTask<Mesh>> tasks = new ArrayList<>(runs.size());
+		for(Map.Entry<String, List<Run>> entry : runs.entrySet()) {
+			Material meshMaterial = materials.computeIfAbsent(entry.getKey(), it -> new Material());
+			List<Run> meshRuns = entry.getValue();
+			tasks.add(pool.submit(() -> {
+				try {
+					return buildMesh(meshMaterial, meshRuns, positions, texcoords, normals);
+				} catch (IOException ex) {
+					throw new UncheckedIOException(ex);
+				}
+			}));
+		}
+
+		Model result = new Model();
+		for(ForkJoinTask<Mesh> task : tasks) {
+			result.getMeshes().add(join(task));
+		}
+		return result;
+	}
+
+	/**
+	 * Reads a material library. Diffuse colors (Kd), opacity (d, or its inverse Tr), and diffuse, specular and normal
+	 * (map_Kd, map_Ks, and map_Bump, bump or norm) texture names are read; everything else is ignored. Options before
+	 * a texture name, like {@code -s}, are skipped.
+	 * @return the library's materials, by name
+	 * @throws IOException if a number is malformed, or there was a problem reading the data
+	 */
+	public static Map<String, Material> loadMaterials(DataSlice in) throws IOException {
+		Map<String, Material> result = new LinkedHashMap<>();
+		String[] lines = new String(in.toArray(), StandardCharsets.UTF_8).split("\n");
+		Material current = null;
+		for(int i=0; i<lines.length; i++) {
+			String line = lines[i].strip();
+			int hash = line.indexOf('#');
+			if (hash != -1) line = line.substring(0, hash).strip();
+			if (line.isEmpty()) continue;
+			String[] parts = line.split("\\s+");
+
+			if (parts[0].equals("newmtl")) {
+				current = new Material();
+				result.put(line.substring(parts[0].length()).strip(), current);
+				continue;
+			}
+			if (current == null) continue;
+
+			try {
+				switch(parts[0]) {
+					case "Kd" -> {
+						RGBColor color = current.get(ShaderAttribute.DIFFUSE_COLOR, new RGBColor(1, 1, 1, 1));
+						current.put(ShaderAttribute.DIFFUSE_COLOR, new RGBColor(color.alpha(), Float.parseFloat(parts[1]), Float.parseFloat(parts[2]), Float.parseFloat(parts[3])));
+					}
+					case "d", "Tr" -> {
+						float alpha = Float.parseFloat(parts[1]);
+						if (parts[0].equals("Tr")) alpha = 1 - alpha;
+						RGBColor color = current.get(ShaderAttribute.DIFFUSE_COLOR, new RGBColor(1, 1, 1, 1));
+						current.put(ShaderAttribute.DIFFUSE_COLOR, new RGBColor(alpha, color.r(), color.g(), color.b()));
+					}
+					case "map_Kd" -> current.put(ShaderAttribute.DIFFUSE_TEXTURE, parts[parts.length - 1]);
+					case "map_Ks" -> current.put(ShaderAttribute.SPECULAR_TEXTURE, parts[parts.length - 1]);
+					case "map_Bump", "map_bump", "bump", "norm" -> current.put(ShaderAttribute.NORMAL_TEXTURE, parts[parts.length - 1]);
+					default -> {}
+				}
+			} catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+				throw new IOException("Malformed MTL data on line "+(i + 1)+".", ex);
+			}
+		}
+		return result;
+	}
+
+	/** A range of one chunk's triangles, which all use the same material */
+	private record Run(ObjChunk chunk, int start, int end) {}
+
+	private static List<ObjChunk> parseChunks(DataSlice in, ForkJoinPool pool, int chunkSize) throws IOException {
+		long length = in.length();
+		int maxInFlight = pool.getParallelism() + 2;
+		List<ForkJoinTask<ObjChunk>> tasks = new ArrayList<>();
+		List<ObjChunk> result = new ArrayList<>();
+
+		long offset = 0;
+		while(offset < length) {
+			int size = (int) Math.min(chunkSize, length - offset);
+			byte[] data = new byte[size];
+			in.arraycopy(offset, data, 0, size);
+			int end = lineEnd(data, size, offset + size >= length);
+			while(end == 0) {
+				//One line is longer than the whole chunk
+				if (size == Integer.MAX_VALUE - 8) throw new IOException("Line at byte "+offset+" is too long.");
+				size = (int) Math.min(Math.min(size * 2L, Integer.MAX_VALUE - 8), length - offset);
+				data = new byte[size];
+				in.arraycopy(offset, data, 0, size);
+				end = lineEnd(data, size, offset + size >= length);
+			}
+
+			byte[] chunkData = data;
+			int chunkLength = end;
+			long chunkOffset = offset;
+			tasks.add(pool.submit(() -> {
+				try {
+					return ObjChunk.parse(chunkData, chunkLength, chunkOffset);
+				} catch (IOException ex) {
+					throw new UncheckedIOException(ex);
+				}
+			}));
+			offset += end;
+
+			//Wait for the oldest chunk before reading any further, so the raw text doesn't pile up
+			if (tasks.size() - result.size() >= maxInFlight) {
+				result.add(join(tasks.get(result.size())));
+				tasks.set(result.size() - 1, null);
+			}
+		}
+
+		while(result.size() < tasks.size()) {
+			result.add(join(tasks.get(result.size())));
+			tasks.set(result.size() - 1, null);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the length of the longest prefix of data which ends on a line break, or the whole length if it's the end
+	 * of the file.
+	 */
+	private static int lineEnd(byte[] data, int length, boolean endOfFile) {
+		if (endOfFile) return length;
+		for(int i=length-1; i>=0; i--) {
+			if (data[i] == '\n') return i + 1;
+		}
+		return 0;
+	}
+
+	private static Mesh buildMesh(Material material, List<Run> runs, float[] positions, float[] texcoords, float[] normals) throws IOException {
+		int positionCount = positions.length / 3;
+		int texcoordCount = texcoords.length / 2;
+		int normalCount = normals.length / 3;
+
+		int triangleCount = 0;
+		for(Run run : runs) triangleCount = Math.addExact(triangleCount, run.end() - run.start());
+		int[] indices = new int[Math.multiplyExact(triangleCount, 3)];
+		VertexKeyMap map = new VertexKeyMap(Math.min(indices.length, positionCount));
+
+		float[] outPositions = new float[Math.min(indices.length, positionCount) * 3];
+		float[] outTexcoords = new float[outPositions.length / 3 * 2];
+		float[] outNormals = new float[outPositions.length];
+		int vertexCount = 0;
+		int index = 0;
+		for(Run run : runs) {
+			int[] corners = run.chunk().corners;
+			for(int slot = run.start() * 9; slot < run.end() * 9; slot += 3) {
+				int v = corners[slot];
+				int t = corners[slot + 1];
+				int n = corners[slot + 2];
+				if (v < 0 || v >= positionCount || t < -1 || t >= texcoordCount || n < -1 || n >= normalCount) {
+					throw new IOException("Face in the chunk at byte "+run.chunk().offset+" refers to a vertex which doesn't exist.");
+				}
+
+				int vertex = map.putIfAbsent(v, t, n, vertexCount);
+				if (vertex == vertexCount) {
+					if (vertexCount * 3 == outPositions.length) {
+						int newSize = Math.max(16, vertexCount * 2);
+						outPositions = Arrays.copyOf(outPositions, newSize * 3);
+						outTexcoords = Arrays.copyOf(outTexcoords, newSize * 2);
+						outNormals = Arrays.copyOf(outNormals, newSize * 3);
+					}
+					System.arraycopy(positions, v * 3, outPositions, vertexCount * 3, 3);
+					if (t != -1) System.arraycopy(texcoords, t * 2, outTexcoords, vertexCount * 2, 2);
+					if (n != -1) System.arraycopy(normals, n * 3, outNormals, vertexCount * 3, 3);
+					vertexCount++;
+				}
+				indices[index++] = vertex;
+			}
+		}
+
+		PackedMesh packed = new PackedMesh(
+				Arrays.copyOf(outPositions, vertexCount * 3),
+				Arrays.copyOf(outTexcoords, vertexCount * 2),
+				Arrays.copyOf(outNormals, vertexCount * 3),
+				indices);
+		return new Mesh(material, packed);
+	}
+
+	/**
+	 * Finds a library next to the OBJ file's Identifier, or returns null if its name isn't a valid path.
+	 */
+	private static @Nullable Identifier sibling(Identifier obj, String name) {
+		String path = obj.path();
+		String directory = path.substring(0, path.lastIndexOf('/') + 1);
+		try {
+			return Identifier.of(obj.namespace()+":"+directory+name);
+		} catch (IllegalArgumentException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Waits for a task, and rethrows any IOException it threw.
+	 */
+	private static <T> T join(ForkJoinTask<T> task) throws IOException {
+		try {
+			return task.join();
+		} catch (RuntimeException ex) {
+			for(Throwable cause = ex; cause != null; cause = cause.getCause()) {
+				if (cause instanceof UncheckedIOException unchecked) throw unchecked.getCause();
+			}
+			throw ex;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.model.io;
+
+import java.util.Arrays;
+
+/**
+ * Maps triples of ints, like the position, texcoord and normal indices of an OBJ face corner, to non-negative ints.
+ * Keys and values live in flat arrays with open addressing, so nothing is boxed or allocated per entry.
+ */
+final class VertexKeyMap {
+	private static final int EMPTY = -1;
+
+	private int[] keys;
+	private int[] values;
+	private int mask;
+	private int size;
+
+	/**
+	 * @param expected roughly how many entries the map will hold. It grows past this if it needs to.
+	 */
+	VertexKeyMap(int expected) {
+		int capacity = 16;
+		while(capacity < expected * 2L && capacity < (1 << 29)) capacity <<= 1;
+		allocate(capacity);
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the value for a key, first setting it to value if the key isn't in the map yet.
+	 * @param value the value to store if the key is new. Must not be negative.
+	 */
+	int putIfAbsent(int a, int b, int c, int value) {
+		int slot = hash(a, b, c) & mask;
+		while(values[slot] != EMPTY) {
+			int k = slot * 3;
+			if (keys[k] == a && keys[k + 1] == b && keys[k + 2] == c) return values[slot];
+			slot = (slot + 1) & mask;
+		}
+
+		keys[slot * 3    ] = a;
+		keys[slot * 3 + 1] = b;
+		keys[slot * 3 + 2] = c;
+		values[slot] = value;
+		size++;
+		if (size * 2 > values.length) rehash();
+		return value;
+	}
+
+	private void rehash() {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(oldValues.length * 2);
+		for(int i=0; i<oldValues.length; i++) {
+			if (oldValues[i] == EMPTY) continue;
+			int a = oldKeys[i * 3], b = oldKeys[i * 3 + 1], c = oldKeys[i * 3 + 2];
+			int slot = hash(a, b, c) & mask;
+			while(values[slot] != EMPTY) slot = (slot + 1) & mask;
+			keys[slot * 3    ] = a;
+			keys[slot * 3 + 1] = b;
+			keys[slot * 3 + 2] = c;
+			values[slot] = oldValues[i];
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new int[capacity * 3];
+		values = new int[capacity];
+		Arrays.fill(values, EMPTY);
+		mask = capacity - 1;
+	}
+
+	private static int hash(int a, int b, int c) {
+		int h = a * 0x9E3779B1 + b * 0x85EBCA77 + c * 0xC2B2AE3D;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,107 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.render;
+
+import java.util.Arrays;
+
+import com.playsawdust.glow.image.Sized;
+
+/**
+ * A stack of clip rectangles for a Painter. The current clip is the intersection of every rectangle on the stack and
+ * the bounds of the thing being drawn on, so drawing can be rejected up front instead of one pixel at a time.
+ *
+ * <p>The edges returned by {@link #left()}, {@link #top()}, {@link #right()} and {@link #bottom()} are already
+ * clamped to the bounds, with right and bottom exclusive.
+ */
+public class ClipStack {
+	private final Sized bounds;
+	/* Saved x0, y0, x1, y1 for each level below the current one */
+	private int[] saved = new int[16];
+	private int depth = 0;
+
+	private int x0 = Integer.MIN_VALUE;
+	private int y0 = Integer.MIN_VALUE;
+	private int x1 = Integer.MAX_VALUE;
+	private int y1 = Integer.MAX_VALUE;
+
+	public ClipStack(Sized bounds) {
+		this.bounds = bounds;
+	}
+
+	/**
+	 * Narrows the clip to its intersection with a rectangle, until the matching {@link #pop()}.
+	 */
+	public void push(int x, int y, int width, int height) {
+		if (saved.length < (depth + 1) * 4) saved = Arrays.copyOf(saved, saved.length * 2);
+		saved[depth*4  ] = x0;
+		saved[depth*4+1] = y0;
+		saved[depth*4+2] = x1;
+		saved[depth*4+3] = y1;
+		depth++;
+
+		x0 = Math.max(x0, x);
+		y0 = Math.max(y0, y);
+		x1 = (int) Math.min(x1, (long) x + Math.max(width, 0));
+		y1 = (int) Math.min(y1, (long) y + Math.max(height, 0));
+	}
+
+	/**
+	 * Restores the clip that was in effect before the last {@link #push}.
+	 * @throws IllegalStateException if there's nothing to pop
+	 */
+	public void pop() {
+		if (depth == 0) throw new IllegalStateException("popClip called without a matching pushClip.");
+		depth--;
+		x0 = saved[depth*4  ];
+		y0 = saved[depth*4+1];
+		x1 = saved[depth*4+2];
+		y1 = saved[depth*4+3];
+	}
+
+	/** Returns the number of rectangles currently pushed */
+	public int depth() {
+		return depth;
+	}
+
+	/** Returns the leftmost column that can be drawn to */
+	public int left() {
+		return Math.max(x0, 0);
+	}
+
+	/** Returns the topmost row that can be drawn to */
+	public int top() {
+		return Math.max(y0, 0);
+	}
+
+	/** Returns the column just past the rightmost one that can be drawn to */
+	public int right() {
+		return Math.min(x1, bounds.getWidth());
+	}
+
+	/** Returns the row just past the bottom one that can be drawn to */
+	public int bottom() {
+		return Math.min(y1, bounds.getHeight());
+	}
+
+	/** Returns true if nothing can be drawn at all */
+	public boolean isEmpty() {
+		return left() >= right() || top() >= bottom();
+	}
+
+	/**
+	 * Returns true if any part of a rectangle is inside the clip.
+	 * @param x0 the left edge of the rectangle
+	 * @param y0 the top edge of the rectangle
+	 * @param x1 the right edge of the rectangle, exclusive
+	 * @param y1 the bottom edge of the rectangle, exclusive
+	 */
+	public boolean intersects(long x0, long y0, long x1, long y1) {
+		return x1 > left() && x0 < right() && y1 > top() && y0 < bottom();
+	}
+}
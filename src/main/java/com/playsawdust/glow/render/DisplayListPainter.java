@@ -0,0 +1,386 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow.render;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.playsawdust.glow.image.ImageData;
+import com.playsawdust.glow.image.LinearImageData;
+import com.playsawdust.glow.image.color.RGBColor;
+import com.playsawdust.glow.io.DataBuilder;
+import com.playsawdust.glow.io.DataSlice;
+
+/**
+ * A Painter which records what's drawn on it, so that it can be replayed onto other Painters later.
+ *
+ * <p>Shapes are broken down into spans while recording, using Painter's default implementations, so lines, arrows,
+ * curves, circles and polygons cost nothing more than their spans to replay. Rectangles and images are kept whole.
+ * Commands are stored as a flat run of ints: an opcode followed by its arguments, with colors stored as the raw bits
+ * of their four floats.
+ *
+ * <p>Shapes are clipped to the size given to the constructor, and to the current clip, while recording. Clips are
+ * also recorded, so images and rectangles are clipped the same way on replay. Images are held by reference, so
+ * changes made to them after recording will show up on replay.
+ */
+public class DisplayListPainter implements Painter {
+	private static final int MAGIC = 0x474C444C; // "GLDL"
+	private static final int VERSION = 1;
+
+	private static final int OP_CLEAR      = 1; // color
+	private static final int OP_SPAN       = 2; // x0, x1, y, color
+	private static final int OP_RECT       = 3; // x, y, width, height, color
+	private static final int OP_IMAGE      = 4; // image, destX, destY, srcX, srcY, width, height, opacity
+	private static final int OP_TINT_IMAGE = 5; // image, destX, destY, srcX, srcY, width, height, color
+	private static final int OP_PUSH_CLIP  = 6; // x, y, width, height
+	private static final int OP_POP_CLIP   = 7;
+
+	private final int width;
+	private final int height;
+	private int[] commands = new int[256];
+	private int length = 0;
+	private final List<ImageData> images = new ArrayList<>();
+	private final Map<ImageData, Integer> imageIndices = new IdentityHashMap<>();
+	private final ClipStack clip = new ClipStack(this);
+
+	/**
+	 * Creates an empty display list.
+	 * @param width  the width of the area being recorded. Shapes are clipped to this.
+	 * @param height the height of the area being recorded
+	 */
+	public DisplayListPainter(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Discards everything recorded so far, including any clips which haven't been popped yet.
+	 */
+	public void reset() {
+		while(clip.depth() > 0) clip.pop();
+		length = 0;
+		images.clear();
+		imageIndices.clear();
+	}
+
+	/**
+	 * Returns true if nothing has been recorded.
+	 */
+	public boolean isEmpty() {
+		return length == 0;
+	}
+
+	/**
+	 * Draws everything recorded onto target, in order.
+	 */
+	public void replay(Painter target) {
+		replay(target, Long.MIN_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Draws everything recorded onto target, skipping commands which lie entirely outside of a clip rectangle.
+	 * Commands that cross the edge of the rectangle are drawn whole; the rectangle only decides what's worth drawing.
+	 * Recorded clips are always pushed and popped, whether or not anything inside them is drawn.
+	 */
+	public void replay(Painter target, int clipX, int clipY, int clipWidth, int clipHeight) {
+		replay(target, clipX, clipY, (long) clipX + clipWidth, (long) clipY + clipHeight);
+	}
+
+	private void replay(Painter target, long clipX, long clipY, long clipX1, long clipY1) {
+		int i = 0;
+		while(i < length) {
+			int op = commands[i];
+			switch(op) {
+				case OP_CLEAR -> {
+					target.clear(readColor(i + 1));
+					i += 5;
+				}
+				case OP_SPAN -> {
+					int x0 = commands[i+1];
+					int x1 = commands[i+2];
+					int y = commands[i+3];
+					if (y >= clipY && y < clipY1 && x1 > clipX && x0 < clipX1) {
+						target.fillSpan(x0, x1, y, readColor(i + 4));
+					}
+					i += 8;
+				}
+				case OP_RECT -> {
+					int x = commands[i+1];
+					int y = commands[i+2];
+					int w = commands[i+3];
+					int h = commands[i+4];
+					if (intersects(x, y, w, h, clipX, clipY, clipX1, clipY1)) {
+						target.fillRect(x, y, w, h, readColor(i + 5));
+					}
+					i += 9;
+				}
+				case OP_IMAGE, OP_TINT_IMAGE -> {
+					ImageData image = images.get(commands[i+1]);
+					int destX = commands[i+2];
+					int destY = commands[i+3];
+					int w = commands[i+6];
+					int h = commands[i+7];
+					if (intersects(destX, destY, w, h, clipX, clipY, clipX1, clipY1)) {
+						if (op == OP_IMAGE) {
+							target.drawImage(image, destX, destY, commands[i+4], commands[i+5], w, h, Float.intBitsToFloat(commands[i+8]));
+						} else {
+							target.drawTintImage(image, destX, destY, commands[i+4], commands[i+5], w, h, readColor(i + 8));
+						}
+					}
+					i += (op == OP_IMAGE) ? 9 : 12;
+				}
+				case OP_PUSH_CLIP -> {
+					target.pushClip(commands[i+1], commands[i+2], commands[i+3], commands[i+4]);
+					i += 5;
+				}
+				case OP_POP_CLIP -> {
+					target.popClip();
+					i += 1;
+				}
+				default -> throw new IllegalStateException("Corrupt display list: unknown opcode "+op+" at "+i+".");
+			}
+		}
+	}
+
+	private static boolean intersects(int x, int y, int w, int h, long clipX, long clipY, long clipX1, long clipY1) {
+		return (long) x + w > clipX && x < clipX1 && (long) y + h > clipY && y < clipY1;
+	}
+
+	/*
+	 * Serialization. The format is a header of magic, version, width, height, the command ints, and then each image as
+	 * its size followed by its pixels as linear R, G, B, A floats, one row at a time. Images come back as
+	 * LinearImageData regardless of what they were recorded as, which is lossless for both kinds.
+	 */
+
+	/**
+	 * Writes this display list, including copies of all the images it references, to a DataBuilder.
+	 */
+	public void write(DataBuilder out) throws IOException {
+		out.writeI32s(MAGIC);
+		out.writeI32s(VERSION);
+		out.writeI32s(width);
+		out.writeI32s(height);
+		out.writeI32s(length);
+		out.writeInts(commands, 0, length);
+
+		out.writeI32s(images.size());
+		for(ImageData image : images) {
+			int w = image.getWidth();
+			int h = image.getHeight();
+			out.writeI32s(w);
+			out.writeI32s(h);
+			float[] row = new float[w * 4];
+			for(int y=0; y<h; y++) {
+				image.getLinearRow(y, 0, w, row);
+				out.writeFloats(row, 0, row.length);
+			}
+		}
+	}
+
+	/**
+	 * Reads a display list written by {@link #write(DataBuilder)}.
+	 */
+	public static DisplayListPainter read(DataSlice in) throws IOException {
+		if (in.readI32s() != MAGIC) throw new IOException("Not a display list!");
+		int version = in.readI32s();
+		if (version != VERSION) throw new IOException("Unsupported display list version "+version+".");
+
+		DisplayListPainter result = new DisplayListPainter(in.readI32s(), in.readI32s());
+		int length = in.readI32s();
+		if (length < 0 || length * 4L > in.length() - in.position()) throw new IOException("Out of bounds.");
+		result.commands = new int[Math.max(length, 16)];
+		in.readInts(result.commands, 0, length);
+		result.length = length;
+
+		int imageCount = in.readI32s();
+		for(int i=0; i<imageCount; i++) {
+			int w = in.readI32s();
+			int h = in.readI32s();
+			if (w < 0 || h < 0 || (long) w * h * 16 > in.length() - in.position()) throw new IOException("Out of bounds.");
+			LinearImageData image = new LinearImageData(w, h);
+			float[] row = new float[w * 4];
+			for(int y=0; y<h; y++) {
+				in.readFloats(row, 0, row.length);
+				image.setLinearRow(y, 0, w, row);
+			}
+			result.imageIndices.put(image, result.images.size());
+			result.images.add(image);
+		}
+		result.validate();
+		return result;
+	}
+
+	/** Walks the command stream to check that every command is whole, every image index is valid, and every pushed clip is popped */
+	private void validate() throws IOException {
+		int i = 0;
+		int clipDepth = 0;
+		while(i < length) {
+			int size = switch(commands[i]) {
+				case OP_CLEAR -> 5;
+				case OP_SPAN -> 8;
+				case OP_RECT -> 9;
+				case OP_IMAGE -> 9;
+				case OP_TINT_IMAGE -> 12;
+				case OP_PUSH_CLIP -> 5;
+				case OP_POP_CLIP -> 1;
+				default -> throw new IOException("Unknown display list command #"+commands[i]);
+			};
+			if (i + size > length) throw new IOException("Truncated display list command at "+i+".");
+			if ((commands[i] == OP_IMAGE || commands[i] == OP_TINT_IMAGE) && (commands[i+1] < 0 || commands[i+1] >= images.size())) {
+				throw new IOException("Display list refers to missing image #"+commands[i+1]);
+			}
+			if (commands[i] == OP_PUSH_CLIP) clipDepth++;
+			if (commands[i] == OP_POP_CLIP && --clipDepth < 0) throw new IOException("Display list pops a clip it never pushed at "+i+".");
+			i += size;
+		}
+		if (clipDepth != 0) throw new IOException("Display list ends with "+clipDepth+" clips still pushed.");
+	}
+
+	/* Recording */
+
+	@Override
+	public void drawImage(ImageData image, int destX, int destY, int srcX, int srcY, int width, int height, float opacity) {
+		if (!clip.intersects(destX, destY, (long) destX + width, (long) destY + height)) return;
+
+		ensureSpace(9);
+		commands[length++] = OP_IMAGE;
+		commands[length++] = imageIndex(image);
+		commands[length++] = destX;
+		commands[length++] = destY;
+		commands[length++] = srcX;
+		commands[length++] = srcY;
+		commands[length++] = width;
+		commands[length++] = height;
+		commands[length++] = Float.floatToRawIntBits(opacity);
+	}
+
+	@Override
+	public void drawTintImage(ImageData image, int destX, int destY, int srcX, int srcY, int width, int height, RGBColor tintColor) {
+		if (!clip.intersects(destX, destY, (long) destX + width, (long) destY + height)) return;
+
+		ensureSpace(12);
+		commands[length++] = OP_TINT_IMAGE;
+		commands[length++] = imageIndex(image);
+		commands[length++] = destX;
+		commands[length++] = destY;
+		commands[length++] = srcX;
+		commands[length++] = srcY;
+		commands[length++] = width;
+		commands[length++] = height;
+		writeColor(tintColor);
+	}
+
+	@Override
+	public void drawPixel(int x, int y, RGBColor color) {
+		fillSpan(x, x + 1, y, color);
+	}
+
+	@Override
+	public void fillSpan(int x0, int x1, int y, RGBColor color) {
+		if (y<clip.top() || y>=clip.bottom()) return;
+		x0 = Math.max(x0, clip.left());
+		x1 = Math.min(x1, clip.right());
+		if (x0 >= x1) return;
+
+		ensureSpace(8);
+		commands[length++] = OP_SPAN;
+		commands[length++] = x0;
+		commands[length++] = x1;
+		commands[length++] = y;
+		writeColor(color);
+	}
+
+	@Override
+	public void fillRect(int x, int y, int width, int height, RGBColor color) {
+		if (width <= 0 || height <= 0) return;
+		if (!clip.intersects(x, y, (long) x + width, (long) y + height)) return;
+
+		ensureSpace(9);
+		commands[length++] = OP_RECT;
+		commands[length++] = x;
+		commands[length++] = y;
+		commands[length++] = width;
+		commands[length++] = height;
+		writeColor(color);
+	}
+
+	@Override
+	public void clear(RGBColor color) {
+		if (clip.isEmpty()) return;
+
+		ensureSpace(5);
+		commands[length++] = OP_CLEAR;
+		writeColor(color);
+	}
+
+	@Override
+	public void pushClip(int x, int y, int width, int height) {
+		clip.push(x, y, width, height);
+		ensureSpace(5);
+		commands[length++] = OP_PUSH_CLIP;
+		commands[length++] = x;
+		commands[length++] = y;
+		commands[length++] = width;
+		commands[length++] = height;
+	}
+
+	@Override
+	public void popClip() {
+		clip.pop();
+		ensureSpace(1);
+		commands[length++] = OP_POP_CLIP;
+	}
+
+	@Override
+	public ClipStack getClipStack() {
+		return clip;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	private int imageIndex(ImageData image) {
+		return imageIndices.computeIfAbsent(image, it -> {
+			images.add(it);
+			return images.size() - 1;
+		});
+	}
+
+	private void writeColor(RGBColor color) {
+		commands[length++] = Float.floatToRawIntBits(color.r());
+		commands[length++] = Float.floatToRawIntBits(color.g());
+		commands[length++] = Float.floatToRawIntBits(color.b());
+		commands[length++] = Float.floatToRawIntBits(color.alpha());
+	}
+
+	private RGBColor readColor(int ofs) {
+		return new RGBColor(
+				Float.intBitsToFloat(commands[ofs+3]),
+				Float.intBitsToFloat(commands[ofs  ]),
+				Float.intBitsToFloat(commands[ofs+1]),
+				Float.intBitsToFloat(commands[ofs+2]));
+	}
+
+	private void ensureSpace(int count) {
+		if (length + count > commands.length) {
+			commands = Arrays.copyOf(commands, Math.max(commands.length * 2, length + count));
+		}
+	}
+}
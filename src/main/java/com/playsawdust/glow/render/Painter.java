@@ -24,7 +24,7 @@ public interface Painter extends Sized {
 	}
 	
 	default void drawImage(ImageData image, int x, int y, float opacity) {
-		drawImage(image, x, y, 0, 0, image.getWidth(), image.getHeight(), 1.0f);
+		drawImage(image, x, y, 0, 0, image.getWidth(), image.getHeight(), opacity);
 	}
 	
 	void drawImage(ImageData image, int destX, int destY, int srcX, int srcY, int width, int height, float opacity);
@@ -33,15 +33,72 @@ public interface Painter extends Sized {
 	
 	void drawPixel(int x, int y, RGBColor color);
 	
+	/**
+	 * Returns the stack of clip rectangles which limits where this Painter can draw. Every primitive, including
+	 * drawPixel, fillSpan and drawImage, must respect it.
+	 *
+	 * <p>The default shapes call this once per span, so implementations should create one stack, usually
+	 * {@code new ClipStack(this)}, and return that same stack every time.
+	 */
+	ClipStack getClipStack();
+	
+	/**
+	 * Limits drawing to the intersection of the current clip and the specified rectangle, until the matching call to
+	 * {@link #popClip()}.
+	 */
+	default void pushClip(int x, int y, int width, int height) {
+		getClipStack().push(x, y, width, height);
+	}
+	
+	/**
+	 * Restores the clip which was in effect before the most recent {@link #pushClip(int, int, int, int)}.
+	 */
+	default void popClip() {
+		getClipStack().pop();
+	}
+	
+	/**
+	 * Fills a horizontal run of pixels with a color. All of the filled shapes are built out of spans, so Painters
+	 * that can fill a run of pixels faster than one drawPixel call at a time should override this.
+	 * @param x0 the x coordinate of the first pixel to fill
+	 * @param x1 the x coordinate just past the last pixel to fill
+	 * @param y  the row to fill
+	 */
+	default void fillSpan(int x0, int x1, int y, RGBColor color) {
+		ClipStack clip = getClipStack();
+		if (y<clip.top() || y>=clip.bottom()) return;
+		x0 = Math.max(x0, clip.left());
+		x1 = Math.min(x1, clip.right());
+		for(int x=x0; x<x1; x++) {
+			drawPixel(x, y, color);
+		}
+	}
+	
+	/**
+	 * Draws part of one row of an image onto a single row of this Painter.
+	 * @param x0   the x coordinate of the first destination pixel
+	 * @param x1   the x coordinate just past the last destination pixel
+	 * @param y    the destination row
+	 * @param srcX the x coordinate in the image that lands on x0
+	 * @param srcY the row of the image to draw
+	 */
+	default void drawImageSpan(ImageData image, int x0, int x1, int y, int srcX, int srcY, float opacity) {
+		if (x1 <= x0) return;
+		drawImage(image, x0, y, srcX, srcY, x1 - x0, 1, opacity);
+	}
+	
 	default void clear(RGBColor color) {
-		for(int y=0; y<getHeight(); y++) {
-			for(int x=0; x<getWidth(); x++) {
-				drawPixel(x, y, color);
-			}
+		ClipStack clip = getClipStack();
+		for(int y=clip.top(); y<clip.bottom(); y++) {
+			fillSpan(clip.left(), clip.right(), y, color);
 		}
 	}
 	
 	default void drawLine(double x1, double y1, double x2, double y2, RGBColor color) {
+		if (!getClipStack().intersects(
+				(long) Math.floor(Math.min(x1, x2)) - 1, (long) Math.floor(Math.min(y1, y2)) - 1,
+				(long) Math.ceil(Math.max(x1, x2)) + 2, (long) Math.ceil(Math.max(y1, y2)) + 2)) return;
+		
 		double dx = x2-x1;
 		double dy = y2-y1;
 		double scale = Math.max(Math.abs(dx), Math.abs(dy));
@@ -139,10 +196,12 @@ public interface Painter extends Sized {
 	}
 	
 	public default void fillRect(int x, int y, int width, int height, RGBColor color) {
-		for(int yi = 0; yi<height; yi++) {
-			for(int xi = 0; xi<width; xi++) {
-				drawPixel(x + xi, y + yi, color);
-			}
+		if (width <= 0) return;
+		ClipStack clip = getClipStack();
+		int y0 = Math.max(y, clip.top());
+		int y1 = (int) Math.min((long) y + height, clip.bottom());
+		for(int yi = y0; yi<y1; yi++) {
+			fillSpan(x, x + width, yi, color);
 		}
 	}
 	
@@ -164,132 +223,124 @@ public interface Painter extends Sized {
 	}
 	
 	public default void fillTriangle(int x1, int y1, int x2, int y2, int x3, int y3, RGBColor color) {
-		int minY = min(y1, y2, y3);
-		int maxY = max(y1, y2, y3);
-		
-		int dy = maxY-minY;
-		
-		int[] xStart = new int[dy];
-		int[] xEnd = new int[dy];
-		Arrays.fill(xStart, Integer.MAX_VALUE);
-		Arrays.fill(xEnd, -1);
+		fillPolygon(color, x1, y1, x2, y2, x3, y3);
+	}
+	
+	public default void fillQuad(int x1, int y1, int x2, int y2, int x3, int y3, int x4, int y4, RGBColor color) {
+		fillPolygon(color, x1, y1, x2, y2, x3, y3, x4, y4);
+	}
+	
+	public default void fillCircle(int x, int y, double radius, RGBColor color) {
+		int ir = (int) Math.ceil(radius);
+		double r2 = radius * radius;
+		ClipStack clip = getClipStack();
+		if (!clip.intersects((long) x - ir, (long) y - ir, (long) x + ir + 1, (long) y + ir + 1)) return;
 		
-		bresenham(x1,y1,x2,y2, (x,y)->{
-			int yi = ((int) y) - minY;
-			if (yi<0 || yi>=dy) return;
+		for(int iy=Math.max(y-ir, clip.top()); iy<=Math.min(y+ir, clip.bottom()-1); iy++) {
+			double dy = iy-y;
+			int half = widestHalfSpan(dy*dy, r2, false, ir);
+			if (half < 0) continue;
 			
-			xStart[yi] = Math.min(xStart[yi], (int) x);
-			xEnd[yi] = Math.max(xEnd[yi], (int) x);
-		});
+			fillSpan(x - half, x + half + 1, iy, color);
+		}
+	}
+	
+	public default void outlineCircle(int x, int y, double radius, RGBColor color, double weight) {
+		weight = weight / 2.0;
+		int ir = (int) Math.ceil(radius);
+		//double r2 = radius * radius;
+		double innerRadius = (radius-weight) * (radius-weight);
+		double outerRadius = (radius+weight) * (radius+weight);
 		
-		bresenham(x2,y2,x3,y3, (x,y)->{
-			int yi = ((int) y) - minY;
-			if (yi<0 || yi>=dy) return;
-			
-			xStart[yi] = Math.min(xStart[yi], (int) x);
-			xEnd[yi] = Math.max(xEnd[yi], (int) x);
-		});
+		int extent = ir + (int) radius;
+		ClipStack clip = getClipStack();
+		if (!clip.intersects((long) x - extent, (long) y - extent, (long) x + extent + 1, (long) y + extent + 1)) return;
 		
-		bresenham(x3,y3,x1,y1, (x,y)->{
-			int yi = ((int) y) - minY;
-			if (yi<0 || yi>=dy) return;
+		for(int iy=Math.max(y - extent, clip.top()); iy<=Math.min(y + extent, clip.bottom()-1); iy++) {
+			double dy = iy-y;
 			
-			xStart[yi] = Math.min(xStart[yi], (int) x);
-			xEnd[yi] = Math.max(xEnd[yi], (int) x);
-		});
-		
-		for(int y=0; y<dy; y++) {
-			if (xEnd[y]>xStart[y]) {
-				for(int x=xStart[y]; x<=xEnd[y]; x++) {
-					drawPixel(x, y+minY, color);
-				}
+			//The ring covers dx*dx + dy*dy from innerRadius to outerRadius inclusive, which on each row is either one
+			//span across the middle, or two spans mirrored around it
+			double dy2 = dy*dy;
+			int outer = widestHalfSpan(dy2, outerRadius, true, extent);
+			if (outer < 0) continue;
+			int inner = (int) Math.max(Math.sqrt(Math.max(innerRadius - dy2, 0)) - 1, 0);
+			while(inner > 0 && (double) (inner-1)*(inner-1) + dy2 >= innerRadius) inner--;
+			while(inner <= outer && (double) inner*inner + dy2 < innerRadius) inner++;
+			if (inner > outer) continue;
+			
+			if (inner == 0) {
+				fillSpan(x - outer, x + outer + 1, iy, color);
+			} else {
+				fillSpan(x - outer, x - inner + 1, iy, color);
+				fillSpan(x + inner, x + outer + 1, iy, color);
 			}
 		}
 	}
 	
-	public default void fillQuad(int x1, int y1, int x2, int y2, int x3, int y3, int x4, int y4, RGBColor color) {
-		int minY = min(y1, y2, y3, y4);
-		int maxY = max(y1, y2, y3, y4);
+	/**
+	 * Fills a polygon given as a list of x, y pairs, by tracing its edges and filling the span between the leftmost
+	 * and rightmost point traced on each row. Only the rows inside the clip are tracked.
+	 */
+	private void fillPolygon(RGBColor color, int... points) {
+		int minX = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE;
+		int minY = Integer.MAX_VALUE;
+		int maxY = Integer.MIN_VALUE;
+		for(int i=0; i<points.length; i+=2) {
+			minX = Math.min(minX, points[i]);
+			maxX = Math.max(maxX, points[i]);
+			minY = Math.min(minY, points[i+1]);
+			maxY = Math.max(maxY, points[i+1]);
+		}
+		
+		ClipStack clip = getClipStack();
+		if (!clip.intersects(minX, minY, maxX + 1L, maxY)) return;
 		
-		//int dx = maxX-minX;
-		int dy = maxY-minY;
+		int top = Math.max(minY, clip.top());
+		int dy = Math.min(maxY, clip.bottom()) - top;
+		if (dy <= 0) return;
 		
 		int[] xStart = new int[dy];
 		int[] xEnd = new int[dy];
 		Arrays.fill(xStart, Integer.MAX_VALUE);
 		Arrays.fill(xEnd, -1);
 		
-		bresenham(x1,y1,x2,y2, (x,y)->{
-			int yi = ((int) y) - minY;
-			if (yi<0 || yi>=dy) return;
-			
-			xStart[yi] = Math.min(xStart[yi], (int) x);
-			xEnd[yi] = Math.max(xEnd[yi], (int) x);
-		});
-		
-		bresenham(x2,y2,x3,y3, (x,y)->{
-			int yi = ((int) y) - minY;
-			if (yi<0 || yi>=dy) return;
-			
-			xStart[yi] = Math.min(xStart[yi], (int) x);
-			xEnd[yi] = Math.max(xEnd[yi], (int) x);
-		});
-		
-		bresenham(x3,y3,x4,y4, (x,y)->{
-			int yi = ((int) y) - minY;
-			if (yi<0 || yi>=dy) return;
-			
-			xStart[yi] = Math.min(xStart[yi], (int) x);
-			xEnd[yi] = Math.max(xEnd[yi], (int) x);
-		});
-		
-		bresenham(x4,y4,x1,y1, (x,y)->{
-			int yi = ((int) y) - minY;
-			if (yi<0 || yi>=dy) return;
-			
-			xStart[yi] = Math.min(xStart[yi], (int) x);
-			xEnd[yi] = Math.max(xEnd[yi], (int) x);
-		});
+		for(int i=0; i<points.length; i+=2) {
+			int next = (i + 2) % points.length;
+			bresenham(points[i], points[i+1], points[next], points[next+1], (x,y)->{
+				int yi = ((int) y) - top;
+				if (yi<0 || yi>=dy) return;
+				
+				xStart[yi] = Math.min(xStart[yi], (int) x);
+				xEnd[yi] = Math.max(xEnd[yi], (int) x);
+			});
+		}
 		
 		for(int y=0; y<dy; y++) {
 			if (xEnd[y]>xStart[y]) {
-				for(int x=xStart[y]; x<=xEnd[y]; x++) {
-					drawPixel(x, y+minY, color);
-				}
+				fillSpan(xStart[y], xEnd[y] + 1, y+top, color);
 			}
 		}
 	}
 	
-	//TODO: This could probably be more efficiently done using horizontal strips
-	public default void fillCircle(int x, int y, double radius, RGBColor color) {
-		int ir = (int) Math.ceil(radius);
-		double r2 = radius * radius;
-		
-		for(int iy=y-ir; iy<=y+ir; iy++) {
-			for(int ix=x-ir; ix<=x+ir; ix++) {
-				double dx = ix-x;
-				double dy = iy-y;
-				double d = dx*dx + dy*dy;
-				if (d<r2) drawPixel(ix, iy, color);
-			}
-		}
+	/**
+	 * Returns the largest k from 0 to limit for which k*k + dy2 is less than bound (or equal to it, if inclusive), or
+	 * -1 if there isn't one. This turns a per-pixel distance test into the half-width of a span, while making exactly
+	 * the same floating-point comparison the per-pixel test would.
+	 */
+	private static int widestHalfSpan(double dy2, double bound, boolean inclusive, int limit) {
+		if (!withinDistance(0, dy2, bound, inclusive)) return -1;
+		//The sqrt gets us close, and the loops correct for rounding
+		int half = (int) Math.min(Math.sqrt(Math.max(bound - dy2, 0)), limit);
+		while(half < limit && withinDistance(half+1, dy2, bound, inclusive)) half++;
+		while(half > 0 && !withinDistance(half, dy2, bound, inclusive)) half--;
+		return half;
 	}
 	
-	public default void outlineCircle(int x, int y, double radius, RGBColor color, double weight) {
-		weight = weight / 2.0;
-		int ir = (int) Math.ceil(radius);
-		//double r2 = radius * radius;
-		double innerRadius = (radius-weight) * (radius-weight);
-		double outerRadius = (radius+weight) * (radius+weight);
-		
-		for(int iy=y - ir - (int) radius; iy<=y + ir + (int) radius; iy++) {
-			for(int ix=x - ir - (int) radius; ix<=x + ir + (int) radius; ix++) {
-				double dx = ix-x;
-				double dy = iy-y;
-				double d = dx*dx + dy*dy;
-				if (d>=innerRadius && d<=outerRadius) drawPixel(ix, iy, color);
-			}
-		}
+	private static boolean withinDistance(int dx, double dy2, double bound, boolean inclusive) {
+		double d = (double) dx*dx + dy2;
+		return inclusive ? d <= bound : d < bound;
 	}
 	
 	//TODO: These can be enabled when we bring shapes back online
@@ -317,21 +368,5 @@ public interface Painter extends Sized {
 		}
 	}*/
 	
-	private static int min(int i1, int i2, int i3) {
-		return Math.min(i1, Math.min(i2, i3));
-	}
-	
-	private static int min(int i1, int i2, int i3, int i4) {
-		return Math.min(Math.min(i1, i2), Math.min(i3, i4));
-	}
-	
-	private static int max(int i1, int i2, int i3) {
-		return Math.max(i1, Math.max(i2, i3));
-	}
-	
-	private static int max(int i1, int i2, int i3, int i4) {
-		return Math.max(Math.max(i1, i2), Math.max(i3, i4));
-	}
-	
 	
-}
+}
\ No newline at end of file
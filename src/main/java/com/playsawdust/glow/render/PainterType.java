@@ -14,6 +14,8 @@ import com.playsawdust.glow.image.color.BlendMode;
 
 public class PainterType extends AbstractSentinel {
 	public static final PainterType NORMAL = new BlendModePainterType("normal_painter", BlendMode.NORMAL);
+	/** Integer source-over compositing in sRGB space, for SrgbImageData targets. See FastSrgbPainter. */
+	public static final PainterType FAST_SRGB = new PainterType("fast_srgb_painter");
 	public static final PainterType TEXT = new PainterType("sdf_painter");
 	
 	public PainterType(String debugName) {
@@ -8,7 +8,6 @@
  */
 package com.playsawdust.glow.render;
 
-import java.util.Iterator;
 import java.util.function.Function;
 
 import com.playsawdust.glow.image.ImageData;
@@ -30,42 +29,24 @@ public interface Renderer {
 			Material material = mesh.getMaterial();
 			String s = material.get(ShaderAttribute.DIFFUSE_TEXTURE);
 			if (s!=null) {
-				//Render this mesh textured
-				ImageData texture = textureGetter.apply(s);
-				RGBColor backupColor = material.get(ShaderAttribute.DIFFUSE_COLOR, new RGBColor(1,1,1,1));
-				for(Mesh.Face face : mesh.createTriangleList()) {
-					
-					Iterator<Mesh.Vertex> iterator = face.iterator();
-					Mesh.Vertex va = iterator.next();
-					Mesh.Vertex vb = iterator.next();
-					Mesh.Vertex vc = iterator.next();
-					
-					drawTriangle(va, vb, vc, material, null);
-					/*
-					Vector3d a = va.get(ShaderAttribute.POSITION);
-					Vector3d b = vb.get(ShaderAttribute.POSITION);
-					Vector3d c = vc.get(ShaderAttribute.POSITION);
-					
-					if (texture==null) {
-						fillTriangle(a.x(), a.y(), a.z(), b.x(), b.y(), b.z(), c.x(), c.y(), c.z(), backupColor);
-					} else {
-						textureTriangle(a.x(), a.y(), a.z(), b.x(), b.y(), b.z(), c.x(), c.y(), c.z(), texture);
-					}*/
-				}
+				//Render this mesh textured. Vertices are built the first time a triangle uses them, and shared after that.
+				Mesh.Vertex[] vertices = new Mesh.Vertex[mesh.getVertexCount()];
+				mesh.forEachTriangle((triangle, a, b, c) -> {
+					if (vertices[a] == null) vertices[a] = mesh.getVertex(a);
+					if (vertices[b] == null) vertices[b] = mesh.getVertex(b);
+					if (vertices[c] == null) vertices[c] = mesh.getVertex(c);
+					drawTriangle(vertices[a], vertices[b], vertices[c], material, null);
+				});
 			} else {
 				RGBColor color = material.get(ShaderAttribute.DIFFUSE_COLOR, new RGBColor(1,1,1,1));
-				for(Mesh.Face face : mesh.createTriangleList()) {
-					Iterator<Mesh.Vertex> iterator = face.iterator();
-					Mesh.Vertex va = iterator.next();
-					Mesh.Vertex vb = iterator.next();
-					Mesh.Vertex vc = iterator.next();
-					
-					Vector3d a = va.get(ShaderAttribute.POSITION);
-					Vector3d b = vb.get(ShaderAttribute.POSITION);
-					Vector3d c = vc.get(ShaderAttribute.POSITION);
-					
-					fillTriangle(a.x(), a.y(), a.z(), b.x(), b.y(), b.z(), c.x(), c.y(), c.z(), color);
-				}
+				float[] positions = mesh.getPackedMesh().getPositions();
+				mesh.forEachTriangle((triangle, a, b, c) -> {
+					fillTriangle(
+							positions[a*3], positions[a*3+1], positions[a*3+2],
+							positions[b*3], positions[b*3+1], positions[b*3+2],
+							positions[c*3], positions[c*3+1], positions[c*3+2],
+							color);
+				});
 			}
 		}
 	}
@@ -13,10 +13,15 @@
  */
 package com.playsawdust.glow;
 
+import java.util.Arrays;
+import java.util.Random;
+
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import com.playsawdust.glow.image.color.BlendMode;
 import com.playsawdust.glow.image.color.Colors;
+import com.playsawdust.glow.image.color.GammaLut;
 import com.playsawdust.glow.image.color.LABColor;
 import com.playsawdust.glow.image.color.RGBColor;
 import com.playsawdust.glow.image.color.XYZColor;
@@ -50,4 +55,99 @@ public class TestColorMath {
 		Assertions.assertEquals(result.y(), subject.y(), 0.000001);
 		Assertions.assertEquals(result.z(), subject.z(), 0.000001);
 	}
+	
+	/* Lookup-table tests. The tables have to agree exactly with the reference math they were built from */
+	
+	@Test
+	public void testGammaLutDecode() {
+		for(int i=0; i<256; i++) {
+			Assertions.assertEquals(Colors.gammaElementToLinear(i / 255.0f, Colors.SRGB_GAMMA), GammaLut.decode(i), 0.0);
+		}
+	}
+	
+	@Test
+	public void testGammaLutEncode() {
+		Random random = new Random(1L);
+		for(int i=0; i<1_000_000; i++) {
+			float linear = (i < 500_000) ? i / 500_000.0f : random.nextFloat() * 1.2f - 0.1f;
+			assertEncodeExact(linear);
+			assertEncodeExact(Math.nextUp(linear));
+			assertEncodeExact(Math.nextDown(linear));
+		}
+		for(int i=0; i<256; i++) {
+			assertEncodeExact(GammaLut.decode(i));
+		}
+		
+		Assertions.assertEquals(0, GammaLut.encode(-0.0f));
+		Assertions.assertEquals(0, GammaLut.encode(Float.NEGATIVE_INFINITY));
+		Assertions.assertEquals(255, GammaLut.encode(Float.POSITIVE_INFINITY));
+		Assertions.assertEquals(255, GammaLut.encode(Float.NaN));
+	}
+	
+	@Test
+	public void testGammaLutRoundTrip() {
+		for(int i=0; i<256; i++) {
+			Assertions.assertEquals(i, GammaLut.encode(GammaLut.decode(i)));
+			Assertions.assertEquals(i, GammaLut.encodeAlpha(i / 255.0f));
+		}
+		
+		int[] srgb = { 0xFF_a532e1, 0x00_000000, 0x80_ffffff, 0x01_7f8081 };
+		float[] r = new float[4], g = new float[4], b = new float[4], a = new float[4];
+		int[] result = new int[4];
+		GammaLut.decodePlanes(srgb, 0, r, g, b, a, 0, 4);
+		GammaLut.encodePlanes(r, g, b, a, 0, result, 0, 4);
+		Assertions.assertArrayEquals(srgb, result);
+		
+		for(int pixel : srgb) {
+			Assertions.assertEquals(pixel, new RGBColor(pixel).toSrgb());
+		}
+	}
+	
+	@Test
+	public void testLabBlendRowMatchesBlend() {
+		//The row path uses approximate math, so it's held to a color difference rather than exact equality
+		Random random = new Random(2L);
+		int len = 1000;
+		float[] src = new float[len*4];
+		float[] dest = new float[len*4];
+		for(int i=0; i<src.length; i++) {
+			src[i] = random.nextFloat();
+			dest[i] = random.nextFloat();
+		}
+		
+		for(BlendMode mode : new BlendMode[] { BlendMode.MULTIPLY_LAB, BlendMode.SCREEN_LAB, BlendMode.OVERLAY_LAB, BlendMode.ADD_LAB }) {
+			float[] result = dest.clone();
+			mode.blendRow(src, result, len, 0.8f);
+			
+			for(int i=0; i<len; i++) {
+				int ofs = i*4;
+				RGBColor expected = mode.blend(
+						new RGBColor(src[ofs+3], src[ofs], src[ofs+1], src[ofs+2]),
+						new RGBColor(dest[ofs+3], dest[ofs], dest[ofs+1], dest[ofs+2]),
+						0.8f);
+				RGBColor actual = new RGBColor(result[ofs+3], result[ofs], result[ofs+1], result[ofs+2]);
+				
+				LABColor expectedLab = expected.toXyz().toLab(Colors.WHITEPOINT_D65);
+				LABColor actualLab = actual.toXyz().toLab(Colors.WHITEPOINT_D65);
+				double dl = expectedLab.l() - actualLab.l();
+				double da = expectedLab.a() - actualLab.a();
+				double db = expectedLab.b() - actualLab.b();
+				Assertions.assertTrue(Math.sqrt(dl*dl + da*da + db*db) < 0.01, mode+" pixel "+i+": expected "+expected+" got "+actual);
+				Assertions.assertEquals(expected.alpha(), actual.alpha(), 0.0f);
+			}
+			
+			//Single pixels take a shortcut, which has to land on exactly the same values as the full run
+			for(int i=0; i<len; i+=97) {
+				float[] pixel = Arrays.copyOfRange(dest, i*4, i*4+4);
+				mode.blendRow(Arrays.copyOfRange(src, i*4, i*4+4), pixel, 1, 0.8f);
+				Assertions.assertArrayEquals(Arrays.copyOfRange(result, i*4, i*4+4), pixel);
+			}
+		}
+	}
+	
+	private static void assertEncodeExact(float linear) {
+		int expected = (linear <= 0) ? 0 : (int) Math.round(Colors.linearElementToGamma(linear, Colors.SRGB_GAMMA) * 255);
+		if (!(linear < 1)) expected = 255;
+		Assertions.assertEquals(expected, GammaLut.encode(linear), "encode("+linear+")");
+	}
 }
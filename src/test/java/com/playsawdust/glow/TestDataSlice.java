@@ -0,0 +1,276 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.playsawdust.glow.io.ArrayDataBuilder;
+import com.playsawdust.glow.io.ArrayDataSlice;
+import com.playsawdust.glow.io.BitReader;
+import com.playsawdust.glow.io.ChannelDataSlice;
+import com.playsawdust.glow.io.ChunkedDataBuilder;
+import com.playsawdust.glow.io.DataBuilder;
+import com.playsawdust.glow.io.DataSlice;
+import com.playsawdust.glow.io.MappedDataSlice;
+import com.playsawdust.glow.io.PageCache;
+import com.playsawdust.glow.io.SubSlice;
+
+public class TestDataSlice {
+	
+	private static final byte[] SAMPLE = {
+		(byte) 0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A,
+		0x01, 0x02, 0x03, 0x04, (byte) 0xF0, (byte) 0xE0, (byte) 0xD0, (byte) 0xC0
+	};
+	
+	@Test
+	public void testMappedMatchesArray() throws IOException {
+		Path file = Files.createTempFile("glow", ".bin");
+		try {
+			Files.write(file, SAMPLE);
+			MappedDataSlice mapped = MappedDataSlice.map(file);
+			try {
+				assertSameReads(DataSlice.of(SAMPLE), mapped);
+				
+				mapped.setByteOrder(ByteOrder.BIG_ENDIAN);
+				mapped.seek(8);
+				DataSlice sub = mapped.slice(4);
+				Assertions.assertEquals(12, mapped.position());
+				Assertions.assertEquals(0x01020304, sub.readI32s());
+			} finally {
+				mapped.destroy();
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testBulkReads() throws IOException {
+		Path file = Files.createTempFile("glow", ".bin");
+		try {
+			Files.write(file, SAMPLE);
+			MappedDataSlice mapped = MappedDataSlice.map(file);
+			try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+				byte[] padded = new byte[SAMPLE.length + 6];
+				System.arraycopy(SAMPLE, 0, padded, 3, SAMPLE.length);
+				
+				DataSlice[] slices = {
+					DataSlice.of(SAMPLE),
+					new ArrayDataSlice(padded, 3, SAMPLE.length),
+					new SubSlice(DataSlice.of(padded), 3, SAMPLE.length),
+					DataSlice.of(raf),
+					mapped
+				};
+				
+				for(DataSlice slice : slices) {
+					for(ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+						ByteBuffer expected = ByteBuffer.wrap(SAMPLE).order(order);
+						slice.setByteOrder(order);
+						
+						short[] shorts = new short[8];
+						slice.seek(0);
+						slice.readShorts(shorts, 0, 8);
+						for(int i=0; i<8; i++) Assertions.assertEquals(expected.getShort(i*2), shorts[i]);
+						
+						int[] ints = new int[5];
+						slice.seek(0);
+						slice.readInts(ints, 1, 4);
+						for(int i=0; i<4; i++) Assertions.assertEquals(expected.getInt(i*4), ints[i+1]);
+						
+						float[] floats = new float[4];
+						slice.seek(0);
+						slice.readFloats(floats, 0, 4);
+						for(int i=0; i<4; i++) Assertions.assertEquals(Float.floatToRawIntBits(expected.getFloat(i*4)), Float.floatToRawIntBits(floats[i]));
+						Assertions.assertEquals(16, slice.position());
+						
+						slice.seek(0);
+						Assertions.assertEquals(expected.getInt(0), slice.readI32s());
+						Assertions.assertEquals(expected.getLong(4), slice.readI64s());
+						Assertions.assertEquals(expected.getShort(12), slice.readI16s());
+						Assertions.assertEquals(expected.getShort(14) & 0xFFFF, slice.readI16u());
+					}
+					
+					ByteBuffer direct = ByteBuffer.allocateDirect(10);
+					slice.seek(10);
+					Assertions.assertEquals(6, slice.read(direct));
+					Assertions.assertEquals(6, direct.position());
+					Assertions.assertEquals(SAMPLE[15], direct.get(5));
+				}
+			} finally {
+				mapped.destroy();
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testChannelSlicesAcrossBlocks() throws IOException {
+		Path file = Files.createTempFile("glow", ".bin");
+		try {
+			byte[] data = new byte[1000];
+			for(int i=0; i<data.length; i++) data[i] = (byte) (i * 7 + (i >> 8));
+			Files.write(file, data);
+			
+			try (FileChannel channel = FileChannel.open(file)) {
+				//Tiny blocks and a tiny cache, so that every multi-byte read straddles a block edge and blocks get evicted
+				ChannelDataSlice slice = new ChannelDataSlice(new PageCache(channel, 7, 4), false);
+				assertSameReads(DataSlice.of(data), slice);
+				
+				//However the budget divides between the lock stripes, it's never exceeded
+				for(int maxBlocks : new int[] { 1, 4, 15, 17, 1023 }) {
+					Assertions.assertEquals(maxBlocks, new PageCache(channel, 7, maxBlocks).getMaxBlocks());
+				}
+				Assertions.assertThrows(IllegalArgumentException.class, () -> new PageCache(channel, 7, 0));
+				
+				//Slices are independent cursors, and can be read on other threads
+				List<DataSlice> strips = new ArrayList<>();
+				for(int i=0; i<10; i++) strips.add(slice.slice(i * 100, 100));
+				IntStream.range(0, strips.size()).parallel().forEach(i -> {
+					try {
+						DataSlice strip = strips.get(i);
+						strip.seek(50);
+						Assertions.assertEquals(data[i * 100 + 50] & 0xFF, strip.read());
+						Assertions.assertArrayEquals(Arrays.copyOfRange(data, i * 100, i * 100 + 100), strip.arraycopy(0, 100));
+					} catch (IOException ex) {
+						throw new RuntimeException(ex);
+					}
+				});
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testChunkedBuilderMatchesArrayBuilder() throws IOException {
+		//A chunk size that doesn't divide anything evenly, so that writes straddle chunk edges
+		ChunkedDataBuilder chunked = new ChunkedDataBuilder(5);
+		ArrayDataBuilder array = DataBuilder.create();
+		
+		for(DataBuilder out : new DataBuilder[] { chunked, array }) {
+			out.writeI32s(0x01020304);
+			out.write(SAMPLE, 3, 11);
+			out.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+			out.writeInts(new int[] { 5, -6, 7 }, 0, 3);
+			out.writeDataSlice(DataSlice.of(SAMPLE));
+			out.seek(2);
+			out.write(0xAB);
+			out.seek(out.length() + 3);
+			out.writeI16s((short) -2);
+		}
+		
+		byte[] expected = array.toByteArray();
+		Assertions.assertEquals(expected.length, chunked.length());
+		Assertions.assertArrayEquals(expected, chunked.toByteArray());
+		assertSameReads(DataSlice.of(expected), chunked.toDataSlice());
+		
+		ByteArrayOutputStream written = new ByteArrayOutputStream();
+		chunked.writeTo(Channels.newChannel(written));
+		Assertions.assertArrayEquals(expected, written.toByteArray());
+		
+		Path file = Files.createTempFile("glow", ".bin");
+		try {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+				chunked.writeTo(channel); //FileChannel takes the gather-write path
+			}
+			Assertions.assertArrayEquals(expected, Files.readAllBytes(file));
+		} finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testBitReaders() throws IOException {
+		byte[] data = new byte[10000];
+		new Random(42).nextBytes(data);
+		
+		for(boolean msb : new boolean[] { true, false }) {
+			BitReader[] readers = (msb) ?
+					new BitReader[] { BitReader.msbFirst(ByteBuffer.wrap(data)), BitReader.msbFirst(DataSlice.of(data)) } :
+					new BitReader[] { BitReader.lsbFirst(ByteBuffer.wrap(data)), BitReader.lsbFirst(DataSlice.of(data)) };
+			
+			for(BitReader reader : readers) {
+				Random widths = new Random(7);
+				long bitPosition = 0;
+				while(true) {
+					int count = widths.nextInt(BitReader.MAX_BITS + 1);
+					if (bitPosition + count > data.length * 8L) break;
+					
+					//Pull the same bits out one at a time, the slow way
+					long expected = 0;
+					for(int i=0; i<count; i++) {
+						long bitIndex = bitPosition + i;
+						int b = data[(int) (bitIndex / 8)] & 0xFF;
+						int bit = (msb) ? (b >> (7 - bitIndex % 8)) & 1 : (b >> (bitIndex % 8)) & 1;
+						expected |= (msb) ? (long) bit << (count - 1 - i) : (long) bit << i;
+					}
+					
+					Assertions.assertEquals(expected, reader.readBits(count));
+					bitPosition += count;
+				}
+			}
+		}
+		
+		BitReader tail = BitReader.msbFirst(ByteBuffer.wrap(new byte[] { (byte) 0xA5, 0x3C }));
+		Assertions.assertEquals(0xA, tail.readBits(4));
+		tail.align();
+		Assertions.assertEquals(0x3C, tail.readBits(8));
+		Assertions.assertThrows(EOFException.class, () -> tail.readBits(1));
+		
+		//Rewinding starts over, and picks up changes made to the data in the meantime
+		byte[] line = { (byte) 0xA5, 0x3C };
+		BitReader reused = BitReader.msbFirst(ByteBuffer.wrap(line));
+		Assertions.assertEquals(0xA53C, reused.readBits(16));
+		line[0] = 0x12;
+		reused.rewind();
+		Assertions.assertEquals(0x123C, reused.readBits(16));
+		BitReader sliced = BitReader.lsbFirst(DataSlice.of(line));
+		Assertions.assertEquals(0x2, sliced.readBits(4));
+		sliced.rewind();
+		Assertions.assertEquals(0x3C12, sliced.readBits(16));
+	}
+	
+	private static void assertSameReads(DataSlice expected, DataSlice actual) throws IOException {
+		Assertions.assertEquals(expected.length(), actual.length());
+		for(int i=0; i<expected.length(); i++) {
+			Assertions.assertEquals(expected.read(i) & 0xFF, actual.read(i) & 0xFF);
+		}
+		
+		for(ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+			expected.seek(0); expected.setByteOrder(order);
+			actual.seek(0); actual.setByteOrder(order);
+			Assertions.assertEquals(expected.readI64s(), actual.readI64s());
+			Assertions.assertEquals(expected.readI16u(), actual.readI16u());
+			Assertions.assertEquals(expected.readI16s(), actual.readI16s());
+			Assertions.assertEquals(expected.readI32u(), actual.readI32u());
+			Assertions.assertEquals(expected.position(), actual.position());
+		}
+		
+		Assertions.assertArrayEquals(expected.arraycopy(3, 9), actual.arraycopy(3, 9));
+	}
+}
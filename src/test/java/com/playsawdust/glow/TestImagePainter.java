@@ -0,0 +1,579 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.playsawdust.glow.image.ImageData;
+import com.playsawdust.glow.image.ImagePainter;
+import com.playsawdust.glow.image.LinearImageData;
+import com.playsawdust.glow.image.ParallelPainter;
+import com.playsawdust.glow.image.SoftwareRenderer;
+import com.playsawdust.glow.image.SrgbImageData;
+import com.playsawdust.glow.image.color.BlendMode;
+import com.playsawdust.glow.image.color.RGBColor;
+import com.playsawdust.glow.io.ArrayDataBuilder;
+import com.playsawdust.glow.io.DataSlice;
+import com.playsawdust.glow.model.Material;
+import com.playsawdust.glow.model.Mesh;
+import com.playsawdust.glow.model.Model;
+import com.playsawdust.glow.model.ShaderAttribute;
+import com.playsawdust.glow.render.ClipStack;
+import com.playsawdust.glow.render.DisplayListPainter;
+import com.playsawdust.glow.render.Painter;
+import com.playsawdust.glow.render.PainterType;
+import com.playsawdust.glow.vecmath.Matrix4;
+import com.playsawdust.glow.vecmath.Vector2d;
+import com.playsawdust.glow.vecmath.Vector3d;
+import com.playsawdust.glow.vecmath.Vector4d;
+
+public class TestImagePainter {
+	
+	@Test
+	public void testRowAccessMatchesPixelAccess() {
+		SrgbImageData srgb = noise(23, 17, 1);
+		LinearImageData linear = new LinearImageData(srgb);
+		
+		float[] row = new float[30 * 4];
+		for(ImageData image : new ImageData[] { srgb, linear }) {
+			for(int y=-1; y<=image.getHeight(); y++) {
+				//Start and end outside the image, to cover clipping
+				image.getLinearRow(y, -3, 30, row);
+				for(int i=0; i<30; i++) {
+					RGBColor expected = image.getLinearPixel(i - 3, y);
+					Assertions.assertEquals(expected.r(), row[i*4], 0.0f);
+					Assertions.assertEquals(expected.g(), row[i*4+1], 0.0f);
+					Assertions.assertEquals(expected.b(), row[i*4+2], 0.0f);
+					Assertions.assertEquals(expected.alpha(), row[i*4+3], 0.0f);
+				}
+			}
+		}
+		
+		//Round trip through both representations
+		SrgbImageData back = linear.toSrgb();
+		for(int y=0; y<srgb.getHeight(); y++) {
+			for(int x=0; x<srgb.getWidth(); x++) {
+				Assertions.assertEquals(srgb.getLinearPixel(x, y).toSrgb(), back.getSrgbPixel(x, y));
+			}
+		}
+	}
+	
+	@Test
+	public void testDrawImageMatchesPerPixelBlend() {
+		for(BlendMode mode : new BlendMode[] { BlendMode.NORMAL, BlendMode.MULTIPLY, BlendMode.SCREEN_LAB }) {
+			SrgbImageData src = noise(11, 9, 2);
+			SrgbImageData dest = noise(16, 16, 3);
+			SrgbImageData expected = noise(16, 16, 3);
+			
+			new ImagePainter(dest, mode).drawImage(src, 8, -2, 0, 0, src.getWidth(), src.getHeight(), 0.75f);
+			
+			for(int y=0; y<src.getHeight(); y++) {
+				for(int x=0; x<src.getWidth(); x++) {
+					RGBColor blended = mode.blend(src.getLinearPixel(x, y), expected.getLinearPixel(x + 8, y - 2), 0.75f);
+					expected.setPixel(x + 8, y - 2, blended);
+				}
+			}
+			
+			Assertions.assertArrayEquals(expected.getData(), dest.getData());
+		}
+	}
+	
+	@Test
+	public void testSpanFillsMatchPerPixelFills() {
+		RGBColor opaque = new RGBColor(0xFF_a532e1);
+		RGBColor translucent = new RGBColor(0x80_20c040);
+		for(BlendMode mode : new BlendMode[] { BlendMode.NORMAL, BlendMode.MULTIPLY }) {
+			for(RGBColor color : new RGBColor[] { opaque, translucent }) {
+				assertSpanFills(noise(32, 24, 4), noise(32, 24, 4), mode, color);
+				assertSpanFills(new LinearImageData(noise(32, 24, 4)), new LinearImageData(noise(32, 24, 4)), mode, color);
+			}
+		}
+	}
+	
+	@Test
+	public void testPlanarBlendMatchesPerPixelBlend() {
+		BlendMode custom = new BlendMode.Piecewise((src, dest) -> (src + dest) * 0.5f);
+		BlendMode unvectorized = (src, dest, alpha) -> BlendMode.MULTIPLY.blend(src, dest, alpha);
+		BlendMode[] modes = {
+				BlendMode.NORMAL, BlendMode.MULTIPLY, BlendMode.DIVIDE, BlendMode.ADD, BlendMode.SUBTRACT,
+				BlendMode.DODGE, BlendMode.BURN, BlendMode.LINEAR_BURN, BlendMode.DARKEN, BlendMode.LIGHTEN,
+				BlendMode.SCREEN, BlendMode.OVERLAY, custom, unvectorized
+		};
+		for(BlendMode mode : modes) {
+			LinearImageData src = new LinearImageData(noise(11, 9, 7));
+			LinearImageData dest = new LinearImageData(noise(16, 16, 8));
+			LinearImageData expected = new LinearImageData(noise(16, 16, 8));
+			
+			new ImagePainter(dest, mode).drawImage(src, 8, -2, 0, 0, src.getWidth(), src.getHeight(), 0.75f);
+			
+			for(int y=2; y<src.getHeight(); y++) {
+				for(int x=0; x<8; x++) {
+					RGBColor blended = mode.blend(src.getLinearPixel(x, y), expected.getLinearPixel(x + 8, y - 2), 0.75f);
+					expected.setPixel(x + 8, y - 2, blended);
+				}
+			}
+			
+			for(float[][] planes : new float[][][] {
+					{ expected.getRed(), dest.getRed() }, { expected.getGreen(), dest.getGreen() },
+					{ expected.getBlue(), dest.getBlue() }, { expected.getAlpha(), dest.getAlpha() } }) {
+				for(int i=0; i<planes[0].length; i++) {
+					Assertions.assertEquals(Float.floatToIntBits(planes[0][i]), Float.floatToIntBits(planes[1][i]), mode+" at "+i);
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testFastSrgbPainter() {
+		SrgbImageData src = noise(11, 9, 5);
+		SrgbImageData dest = noise(16, 16, 6);
+		SrgbImageData expected = noise(16, 16, 6);
+		
+		Painter painter = ImagePainter.create(dest, PainterType.FAST_SRGB);
+		painter.drawImage(src, 8, -2, 0, 0, src.getWidth(), src.getHeight(), 0.6f);
+		painter.fillRect(1, 1, 5, 5, new RGBColor(0x40_ff8000));
+		
+		int opacity = Math.round(0.6f * 255);
+		for(int y=0; y<src.getHeight(); y++) {
+			for(int x=0; x<src.getWidth(); x++) {
+				if (x+8 >= 16 || y-2 < 0) continue;
+				int a = (int) Math.round(((src.getSrgbPixel(x, y) >>> 24) * opacity) / 255.0);
+				expected.setPixel(x + 8, y - 2, referenceOver(src.getSrgbPixel(x, y), expected.getSrgbPixel(x + 8, y - 2), a));
+			}
+		}
+		for(int y=1; y<6; y++) {
+			for(int x=1; x<6; x++) {
+				expected.setPixel(x, y, referenceOver(0x40_ff8000, expected.getSrgbPixel(x, y), 0x40));
+			}
+		}
+		
+		Assertions.assertArrayEquals(expected.getData(), dest.getData());
+	}
+	
+	@Test
+	public void testParallelPainterMatchesSerialPainter() {
+		SrgbImageData serial = noise(200, 150, 9);
+		SrgbImageData parallel = noise(200, 150, 9);
+		SrgbImageData sprite = noise(40, 30, 10);
+		
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			ParallelPainter parallelPainter = new ParallelPainter(parallel, PainterType.NORMAL, pool);
+			for(Painter painter : new Painter[] { new ImagePainter(serial, BlendMode.NORMAL), parallelPainter }) {
+				painter.fillRect(10, 10, 120, 90, new RGBColor(0x80_ff0000));
+				painter.drawImage(sprite, 50, 40, 0.5f);
+				painter.fillCircle(100, 75, 60.5, new RGBColor(0x60_0000ff));
+				painter.fillTriangle(-20, 140, 190, 5, 170, 149, new RGBColor(0x40_00ff00));
+				painter.drawLine(0, 0, 199, 149, new RGBColor(0xFF_ffffff));
+				painter.drawLine(5, 140, 195, 20, new RGBColor(0xA0_ffff00), 5.0);
+				painter.outlineCircle(60, 60, 20, new RGBColor(0xC0_00ffff), 3.0);
+				painter.drawTintImage(sprite, 150, 100, 0, 0, 40, 30, new RGBColor(0x80_ff00ff));
+				//Bounds far outside the int range on either side must be culled, not wrapped around into the image
+				painter.drawLine(3e9, 10, 3.1e9, 20, new RGBColor(0xFF_ffffff));
+				painter.drawLine(-5e9, 10, -4e9, 20, new RGBColor(0xFF_ffffff));
+			}
+			parallelPainter.flush();
+		} finally {
+			pool.shutdown();
+		}
+		
+		Assertions.assertArrayEquals(serial.getData(), parallel.getData());
+	}
+	
+	@Test
+	public void testDisplayListReplay() throws IOException {
+		SrgbImageData direct = noise(120, 80, 11);
+		SrgbImageData replayed = noise(120, 80, 11);
+		SrgbImageData deserialized = noise(120, 80, 11);
+		SrgbImageData sprite = noise(20, 10, 12);
+		
+		DisplayListPainter list = new DisplayListPainter(120, 80);
+		for(Painter painter : new Painter[] { new ImagePainter(direct, BlendMode.NORMAL), list }) {
+			painter.fillRect(-5, 5, 50, 40, new RGBColor(0x80_ff0000));
+			painter.drawArrow(10, 70, 110, 10, new RGBColor(0xFF_00ff00), 3.0, 12, 6, true);
+			painter.drawQuadraticCurve(0, 0, 60, 80, 119, 0, 20, new RGBColor(0xC0_0000ff));
+			painter.fillCircle(90, 50, 15.5, new RGBColor(0x60_ffffff));
+			painter.drawImage(sprite, 70, 30, 0.5f);
+			painter.drawTintImage(sprite, 5, 60, 0, 0, 20, 10, new RGBColor(0x80_ff00ff));
+		}
+		list.replay(new ImagePainter(replayed, BlendMode.NORMAL));
+		Assertions.assertArrayEquals(direct.getData(), replayed.getData());
+		
+		ArrayDataBuilder out = new ArrayDataBuilder();
+		list.write(out);
+		DisplayListPainter copy = DisplayListPainter.read(out.toDataSlice());
+		copy.replay(new ImagePainter(deserialized, BlendMode.NORMAL));
+		Assertions.assertArrayEquals(direct.getData(), deserialized.getData());
+		
+		//Recording a deserialized image again reuses its index instead of storing a second copy
+		List<ImageData> seen = new ArrayList<>();
+		copy.replay(new Painter() {
+			private final ClipStack clip = new ClipStack(this);
+			@Override public ClipStack getClipStack() { return clip; }
+			@Override public int getWidth() { return 120; }
+			@Override public int getHeight() { return 80; }
+			@Override public void drawImage(ImageData image, int destX, int destY, int srcX, int srcY, int width, int height, float opacity) { seen.add(image); }
+			@Override public void drawTintImage(ImageData image, int destX, int destY, int srcX, int srcY, int width, int height, RGBColor tintColor) { seen.add(image); }
+			@Override public void drawPixel(int x, int y, RGBColor color) {}
+		});
+		Assertions.assertEquals(2, seen.size());
+		copy.drawImage(seen.get(0), 0, 0, 1.0f);
+		ArrayDataBuilder rewritten = new ArrayDataBuilder();
+		copy.write(rewritten);
+		Assertions.assertEquals(1, imageCount(out.toDataSlice()));
+		Assertions.assertEquals(1, imageCount(rewritten.toDataSlice()));
+		
+		//A list that leaves a clip pushed at the end is malformed
+		DisplayListPainter unbalanced = new DisplayListPainter(120, 80);
+		unbalanced.pushClip(0, 0, 10, 10);
+		unbalanced.fillRect(0, 0, 20, 20, new RGBColor(0xFF_ffffff));
+		ArrayDataBuilder unbalancedOut = new ArrayDataBuilder();
+		unbalanced.write(unbalancedOut);
+		Assertions.assertThrows(IOException.class, () -> DisplayListPainter.read(unbalancedOut.toDataSlice()));
+		
+		//Culled replay only touches commands that overlap the clip, so the far corner stays as it was
+		SrgbImageData culled = noise(120, 80, 11);
+		list.replay(new ImagePainter(culled, BlendMode.NORMAL), 0, 0, 4, 4);
+		Assertions.assertEquals(noise(120, 80, 11).getSrgbPixel(119, 79), culled.getSrgbPixel(119, 79));
+		Assertions.assertEquals(direct.getSrgbPixel(0, 0), culled.getSrgbPixel(0, 0));
+	}
+	
+	@Test
+	public void testClipStack() {
+		SrgbImageData clipped = noise(100, 80, 13);
+		SrgbImageData expected = noise(100, 80, 13);
+		RGBColor outline = new RGBColor(0xC0_00ffff);
+		RGBColor fill = new RGBColor(0x80_ff0000);
+		
+		ImagePainter painter = new ImagePainter(clipped, BlendMode.NORMAL);
+		painter.pushClip(20, 15, 50, 40);
+		painter.pushClip(10, 10, 45, 100);
+		painter.outlineCircle(40, 35, 18.5, outline, 4.0);
+		painter.fillCircle(50, 30, 12.5, fill);
+		painter.popClip();
+		painter.popClip();
+		
+		//Only the pixels in (20, 15) - (55, 55) pass both clips
+		for(int y=15; y<55; y++) {
+			for(int x=20; x<55; x++) {
+				double d = (x-40)*(x-40) + (y-35)*(y-35);
+				if (d >= 16.5*16.5 && d <= 20.5*20.5) blendPixel(expected, BlendMode.NORMAL, x, y, outline);
+			}
+		}
+		for(int y=15; y<55; y++) {
+			for(int x=20; x<55; x++) {
+				if ((x-50)*(x-50) + (y-30)*(y-30) < 12.5*12.5) blendPixel(expected, BlendMode.NORMAL, x, y, fill);
+			}
+		}
+		Assertions.assertArrayEquals(expected.getData(), clipped.getData());
+		
+		try {
+			painter.popClip();
+			Assertions.fail("popClip should throw when nothing has been pushed");
+		} catch (IllegalStateException ex) {
+			//Expected
+		}
+		
+		//A Painter which only implements the basics gets clipped shapes from the defaults
+		boolean[] drawn = new boolean[20 * 20];
+		Painter minimal = new Painter() {
+			private final ClipStack clip = new ClipStack(this);
+			@Override public ClipStack getClipStack() { return clip; }
+			@Override public int getWidth() { return 20; }
+			@Override public int getHeight() { return 20; }
+			@Override public void drawImage(ImageData image, int destX, int destY, int srcX, int srcY, int width, int height, float opacity) {}
+			@Override public void drawTintImage(ImageData image, int destX, int destY, int srcX, int srcY, int width, int height, RGBColor tintColor) {}
+			@Override public void drawPixel(int x, int y, RGBColor color) { drawn[y * 20 + x] = true; }
+		};
+		minimal.pushClip(5, 6, 4, 3);
+		minimal.fillRect(0, 0, 20, 20, fill);
+		minimal.popClip();
+		for(int i=0; i<drawn.length; i++) {
+			int x = i % 20, y = i / 20;
+			Assertions.assertEquals(x >= 5 && x < 9 && y >= 6 && y < 9, drawn[i], "pixel "+x+", "+y);
+		}
+		
+		//Parallel and recorded painting should honor clips the same way, images included
+		SrgbImageData serial = noise(150, 100, 14);
+		SrgbImageData parallel = noise(150, 100, 14);
+		SrgbImageData replayed = noise(150, 100, 14);
+		SrgbImageData sprite = noise(60, 50, 15);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			ParallelPainter parallelPainter = new ParallelPainter(parallel, PainterType.NORMAL, pool);
+			DisplayListPainter list = new DisplayListPainter(150, 100);
+			for(Painter p : new Painter[] { new ImagePainter(serial, BlendMode.NORMAL), parallelPainter, list }) {
+				p.pushClip(30, 20, 90, 60);
+				p.drawImage(sprite, 10, 10, 0.75f);
+				p.fillRect(0, 0, 150, 100, new RGBColor(0x40_00ff00));
+				p.pushClip(60, 0, 100, 50);
+				p.fillCircle(75, 50, 40, fill);
+				p.drawTintImage(sprite, 90, 5, 0, 0, 60, 50, new RGBColor(0x80_ff00ff));
+				p.popClip();
+				p.outlineCircle(75, 50, 30, outline, 6.0);
+				p.popClip();
+				p.drawLine(0, 99, 149, 0, new RGBColor(0xFF_ffffff));
+			}
+			parallelPainter.flush();
+			list.replay(new ImagePainter(replayed, BlendMode.NORMAL));
+		} finally {
+			pool.shutdown();
+		}
+		Assertions.assertArrayEquals(serial.getData(), parallel.getData());
+		Assertions.assertArrayEquals(serial.getData(), replayed.getData());
+	}
+	
+	@Test
+	public void testTriangleRasterizer() {
+		SrgbImageData triangles = noise(64, 48, 16);
+		SrgbImageData rect = noise(64, 48, 16);
+		RGBColor color = new RGBColor(0x80_ff8000);
+		
+		//Two triangles, wound opposite ways, sharing a diagonal which runs exactly through pixel centers. With the
+		//top-left rule, every pixel of the rectangle is drawn exactly once.
+		SoftwareRenderer renderer = new SoftwareRenderer(new ImagePainter(triangles, BlendMode.NORMAL));
+		renderer.fillTriangle(10.5, 10.5, 0, 50.5, 10.5, 0, 50.5, 40.5, 0, color);
+		renderer.fillTriangle(10.5, 10.5, 0, 50.5, 40.5, 0, 10.5, 40.5, 0, color);
+		new ImagePainter(rect, BlendMode.NORMAL).fillRect(10, 10, 40, 30, color);
+		Assertions.assertArrayEquals(rect.getData(), triangles.getData());
+		
+		//Nearer triangles win, whichever order they're drawn in
+		SrgbImageData depth = new SrgbImageData(64, 48);
+		renderer = new SoftwareRenderer(new ImagePainter(depth, BlendMode.NORMAL));
+		renderer.fillTriangle(0, 0, 0.5, 64, 0, 0.5, 0, 48, 0.5, new RGBColor(0xFF_ff0000));
+		renderer.fillTriangle(0, 0, 0.2, 64, 0, 0.2, 64, 48, 0.8, new RGBColor(0xFF_00ff00));
+		renderer.fillTriangle(0, 0, 0.9, 64, 0, 0.9, 0, 48, 0.9, new RGBColor(0xFF_0000ff));
+		Assertions.assertEquals(0xFF_00ff00, depth.getSrgbPixel(40, 2));
+		Assertions.assertEquals(0xFF_ff0000, depth.getSrgbPixel(5, 40));
+		Assertions.assertEquals(0, depth.getSrgbPixel(60, 45));
+		renderer.clearDepth();
+		renderer.fillTriangle(0, 0, 0.9, 64, 0, 0.9, 0, 48, 0.9, new RGBColor(0xFF_0000ff));
+		Assertions.assertEquals(0xFF_0000ff, depth.getSrgbPixel(40, 2));
+	}
+	
+	@Test
+	public void testFragmentInterpolation() {
+		Mesh mesh = new Mesh(new Material(),
+				new Vector3d[] { new Vector3d(0, 0, 0), new Vector3d(40, 0, 0), new Vector3d(0, 40, 0) },
+				new Vector2d[] { new Vector2d(0, 0), new Vector2d(1, 0), new Vector2d(0, 1) },
+				new Vector3d[] { new Vector3d(0, 0, 1), new Vector3d(0, 0, 1), new Vector3d(0, 0, 1) },
+				new int[] { 0, 1, 2 });
+		Mesh.Vertex a = mesh.getVertex(0);
+		Mesh.Vertex b = mesh.getVertex(1);
+		Mesh.Vertex c = mesh.getVertex(2);
+		a.put(ShaderAttribute.DIFFUSE_COLOR, new RGBColor(1, 1, 0, 0));
+		b.put(ShaderAttribute.DIFFUSE_COLOR, new RGBColor(1, 0, 1, 0));
+		c.put(ShaderAttribute.DIFFUSE_COLOR, new RGBColor(1, 0, 0, 1));
+		a.put(ShaderAttribute.DIFFUSE_TEXTURE, "flat");
+		
+		float[] uv = new float[40 * 40 * 2];
+		SoftwareRenderer renderer = new SoftwareRenderer(new ImagePainter(new SrgbImageData(40, 40), BlendMode.NORMAL));
+		renderer.setPixelShader((p, x, y, fragment) -> {
+			uv[(y * 40 + x) * 2    ] = fragment.getFloat(ShaderAttribute.TEXCOORD, 0);
+			uv[(y * 40 + x) * 2 + 1] = fragment.getFloat(ShaderAttribute.TEXCOORD, 1);
+			Assertions.assertEquals("flat", fragment.get(ShaderAttribute.DIFFUSE_TEXTURE));
+			RGBColor color = fragment.get(ShaderAttribute.DIFFUSE_COLOR);
+			Assertions.assertEquals(1f, color.r() + color.g() + color.b(), 1e-5f);
+		});
+		renderer.drawTriangle(a, b, c, mesh.getMaterial(), null);
+		
+		//Without perspective, the texture coordinates just follow the pixel centers
+		Assertions.assertEquals(10.5f / 40, uv[(5 * 40 + 10) * 2], 1e-5f);
+		Assertions.assertEquals(5.5f / 40, uv[(5 * 40 + 10) * 2 + 1], 1e-5f);
+		Assertions.assertEquals(0.5f / 40, uv[(30 * 40) * 2], 1e-5f);
+		Assertions.assertEquals(30.5f / 40, uv[(30 * 40) * 2 + 1], 1e-5f);
+		
+		//A triangle on the floor, whose corners are at w = 2, 2 and 8. Its texture coordinates are its x and z, so
+		//wherever it's drawn, they should match the point on the floor that the pixel center looks at.
+		Matrix4 projection = new Matrix4(
+				1, 0, 0, 0,
+				0, 1, 0, 0,
+				0, 0, -1, -0.2,
+				0, 0, -1, 0);
+		Material textured = new Material();
+		textured.put(ShaderAttribute.DIFFUSE_TEXTURE, "floor");
+		Model floor = new Model();
+		floor.getMeshes().add(new Mesh(textured,
+				new Vector3d[] { new Vector3d(-1, -1, -2), new Vector3d(1, -1, -2), new Vector3d(0, -1, -8) },
+				new Vector2d[] { new Vector2d(-1, -2), new Vector2d(1, -2), new Vector2d(0, -8) },
+				new Vector3d[3],
+				new int[] { 0, 1, 2 }));
+		Arrays.fill(uv, Float.NaN);
+		renderer.setTransform(projection);
+		renderer.setCullBackFaces(false);
+		renderer.setPixelShader((p, x, y, fragment) -> {
+			uv[(y * 40 + x) * 2    ] = fragment.getFloat(ShaderAttribute.TEXCOORD, 0);
+			uv[(y * 40 + x) * 2 + 1] = fragment.getFloat(ShaderAttribute.TEXCOORD, 1);
+		});
+		renderer.renderModel(floor, 0, 0, 0, it -> null);
+		
+		//The center of pixel 20, 27 looks along (0.025, -0.375, -1), which meets the floor at (1/15, -1, -8/3). Linear
+		//interpolation in screen space would give a v of -4 there instead.
+		Assertions.assertEquals(1 / 15f, uv[(27 * 40 + 20) * 2], 1e-4f);
+		Assertions.assertEquals(-8 / 3f, uv[(27 * 40 + 20) * 2 + 1], 1e-4f);
+		//And the center of 15, 29 looks along (-0.225, -0.475, -1), meeting the floor at (-9/19, -1, -40/19)
+		Assertions.assertEquals(-9 / 19f, uv[(29 * 40 + 15) * 2], 1e-4f);
+		Assertions.assertEquals(-40 / 19f, uv[(29 * 40 + 15) * 2 + 1], 1e-4f);
+	}
+	
+	@Test
+	public void testRenderModel() {
+		//A square filling the middle half of the screen, wound counter-clockwise
+		Material red = new Material();
+		red.put(ShaderAttribute.DIFFUSE_COLOR, new RGBColor(0xFF_ff0000));
+		Model square = new Model();
+		square.getMeshes().add(new Mesh(red,
+				new Vector3d[] { new Vector3d(-0.5, -0.5, 0), new Vector3d(0.5, -0.5, 0), new Vector3d(0.5, 0.5, 0), new Vector3d(-0.5, 0.5, 0) },
+				new Vector2d[4], new Vector3d[4],
+				new int[] { 0, 1, 2, 0, 2, 3 }));
+		
+		SrgbImageData image = new SrgbImageData(40, 40);
+		SoftwareRenderer renderer = new SoftwareRenderer(new ImagePainter(image, BlendMode.NORMAL));
+		renderer.renderModel(square, 0.25, 0, 0, it -> null);
+		Assertions.assertEquals(0xFF_ff0000, image.getSrgbPixel(15, 10));
+		Assertions.assertEquals(0xFF_ff0000, image.getSrgbPixel(34, 29));
+		Assertions.assertEquals(0, image.getSrgbPixel(14, 10));
+		Assertions.assertEquals(0, image.getSrgbPixel(35, 30));
+		
+		//Seen from behind, it's culled
+		SrgbImageData culled = new SrgbImageData(40, 40);
+		renderer = new SoftwareRenderer(new ImagePainter(culled, BlendMode.NORMAL));
+		renderer.setTransform(Matrix4.rotateY(Math.PI));
+		renderer.renderModel(square, 0, 0, 0, it -> null);
+		Assertions.assertArrayEquals(new SrgbImageData(40, 40).getData(), culled.getData());
+		
+		//A floor running from behind the camera off into the distance, seen in perspective. It has to be clipped
+		//against the near plane, and wherever it's drawn, the interpolated position should land back on the pixel.
+		double near = 0.1;
+		double far = 100;
+		Matrix4 projection = new Matrix4(
+				1, 0, 0, 0,
+				0, 1, 0, 0,
+				0, 0, (far + near) / (near - far), 2 * far * near / (near - far),
+				0, 0, -1, 0);
+		Material textured = new Material();
+		textured.put(ShaderAttribute.DIFFUSE_TEXTURE, "floor");
+		Model floor = new Model();
+		floor.getMeshes().add(new Mesh(textured,
+				new Vector3d[] { new Vector3d(-50, -1, 5), new Vector3d(50, -1, 5), new Vector3d(0, -1, -90) },
+				new Vector2d[] { new Vector2d(0, 0), new Vector2d(1, 0), new Vector2d(0.5, 1) },
+				new Vector3d[] { new Vector3d(0, 1, 0), new Vector3d(0, 1, 0), new Vector3d(0, 1, 0) },
+				new int[] { 0, 1, 2 }));
+		
+		boolean[] shaded = new boolean[40 * 40];
+		float[] worstError = new float[1];
+		renderer = new SoftwareRenderer(new ImagePainter(new SrgbImageData(40, 40), BlendMode.NORMAL));
+		renderer.setTransform(projection);
+		renderer.setCullBackFaces(false);
+		renderer.setPixelShader((p, x, y, fragment) -> {
+			Vector4d clip = projection.transform(new Vector4d(
+					fragment.getFloat(ShaderAttribute.POSITION, 0),
+					fragment.getFloat(ShaderAttribute.POSITION, 1),
+					fragment.getFloat(ShaderAttribute.POSITION, 2), 1));
+			double screenX = (clip.x() / clip.w() + 1) * 20;
+			double screenY = (1 - clip.y() / clip.w()) * 20;
+			worstError[0] = (float) Math.max(worstError[0], Math.max(Math.abs(screenX - (x + 0.5)), Math.abs(screenY - (y + 0.5))));
+			shaded[y * 40 + x] = true;
+		});
+		renderer.renderModel(floor, 0, 0, 0, it -> null);
+		
+		//Vertices are snapped to 1/16th of a pixel, so that's as close as it can get
+		Assertions.assertTrue(worstError[0] < 1/16f, "Interpolated positions are off by up to "+worstError[0]+" pixels");
+		for(int x=0; x<40; x++) {
+			Assertions.assertTrue(shaded[39 * 40 + x], "The bottom row should be covered by the floor");
+			Assertions.assertTrue(!shaded[19 * 40 + x], "Nothing should be drawn above the horizon");
+		}
+		
+		//Triangles with a corner exactly on the near plane, and another beyond it. Clipping mustn't duplicate the corner
+		//on the plane, or the polygon's first three corners have no area and it gets culled.
+		Vector3d onPlane = new Vector3d(-0.5, -0.5, -1);
+		Vector3d[][] triangles = {
+				{ onPlane, new Vector3d(0.5, -0.5, -2), new Vector3d(0, 0.5, 0) },
+				{ onPlane, new Vector3d(0.5, -0.5, 0), new Vector3d(0, 0.5, -2) },
+		};
+		int[][] insidePixels = { { 18, 20 }, { 21, 26 } };
+		for(int i=0; i<triangles.length; i++) {
+			Model model = new Model();
+			model.getMeshes().add(new Mesh(red, triangles[i], new Vector2d[3], new Vector3d[3], new int[] { 0, 1, 2 }));
+			SrgbImageData clipped = new SrgbImageData(40, 40);
+			renderer = new SoftwareRenderer(new ImagePainter(clipped, BlendMode.NORMAL));
+			renderer.renderModel(model, 0, 0, 0, it -> null);
+			Assertions.assertEquals(0xFF_ff0000, clipped.getSrgbPixel(insidePixels[i][0], insidePixels[i][1]), "Triangle "+i+" should be drawn");
+		}
+	}
+	
+	private static int referenceOver(int src, int dest, int alpha) {
+		int result = 0;
+		for(int shift=0; shift<32; shift+=8) {
+			int s = (shift == 24) ? 255 : (src >>> shift) & 0xFF;
+			int d = (dest >>> shift) & 0xFF;
+			result |= (int) Math.round((s * alpha + d * (255 - alpha)) / 255.0) << shift;
+		}
+		return result;
+	}
+	
+	private static void assertSpanFills(ImageData dest, ImageData expected, BlendMode mode, RGBColor color) {
+		ImagePainter painter = new ImagePainter(dest, mode);
+		painter.fillRect(-3, 2, 10, 30, color);
+		painter.fillCircle(20, 12, 7.5, color);
+		painter.fillTriangle(4, 20, 30, 3, 28, 23, color);
+		
+		//The same shapes, drawn one pixel at a time with the per-pixel coverage rules
+		for(int y=2; y<32; y++) {
+			for(int x=-3; x<7; x++) blendPixel(expected, mode, x, y, color);
+		}
+		for(int y=12-8; y<=12+8; y++) {
+			for(int x=20-8; x<=20+8; x++) {
+				if ((x-20)*(x-20) + (y-12)*(y-12) < 7.5*7.5) blendPixel(expected, mode, x, y, color);
+			}
+		}
+		new ImagePainter(expected, mode) {
+			@Override
+			public void fillSpan(int x0, int x1, int y, RGBColor c) {
+				for(int x=x0; x<x1; x++) blendPixel(expected, mode, x, y, c);
+			}
+		}.fillTriangle(4, 20, 30, 3, 28, 23, color);
+		
+		for(int y=0; y<dest.getHeight(); y++) {
+			for(int x=0; x<dest.getWidth(); x++) {
+				Assertions.assertEquals(expected.getSrgbPixel(x, y), dest.getSrgbPixel(x, y));
+			}
+		}
+	}
+	
+	private static void blendPixel(ImageData image, BlendMode mode, int x, int y, RGBColor color) {
+		if (x<0 || x>=image.getWidth() || y<0 || y>=image.getHeight()) return;
+		image.setPixel(x, y, mode.blend(color, image.getLinearPixel(x, y), 1.0f));
+	}
+	
+	private static int imageCount(DataSlice list) throws IOException {
+		//The image count follows the header and the command ints
+		list.seek(16);
+		int length = list.readI32s();
+		list.seek(20 + length * 4L);
+		return list.readI32s();
+	}
+	
+	private static SrgbImageData noise(int width, int height, long seed) {
+		SrgbImageData result = new SrgbImageData(width, height);
+		Random random = new Random(seed);
+		for(int i=0; i<result.getData().length; i++) {
+			result.getData()[i] = random.nextInt();
+		}
+		return result;
+	}
+}
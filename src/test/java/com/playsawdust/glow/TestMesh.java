@@ -0,0 +1,262 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.playsawdust.glow.image.color.RGBColor;
+import com.playsawdust.glow.io.DataSlice;
+import com.playsawdust.glow.io.MappedDataSlice;
+import com.playsawdust.glow.model.BufferMesh;
+import com.playsawdust.glow.model.Material;
+import com.playsawdust.glow.model.Mesh;
+import com.playsawdust.glow.model.MeshOptimizer;
+import com.playsawdust.glow.model.Model;
+import com.playsawdust.glow.model.PackedMesh;
+import com.playsawdust.glow.model.ShaderAttribute;
+import com.playsawdust.glow.model.io.BinaryModelIO;
+import com.playsawdust.glow.model.io.ObjModelIO;
+import com.playsawdust.glow.vecmath.Matrix3;
+import com.playsawdust.glow.vecmath.Rect3d;
+import com.playsawdust.glow.vecmath.Vector2d;
+import com.playsawdust.glow.vecmath.Vector3d;
+
+public class TestMesh {
+	@Test
+	public void testMeshIsAViewOfPackedMesh() {
+		Mesh mesh = new Mesh(new Material(),
+				new Vector3d[] { new Vector3d(0, 0, 0), new Vector3d(1, 0, 0), new Vector3d(1, 1, 0), new Vector3d(0, 1, 0) },
+				new Vector2d[] { new Vector2d(0, 0), new Vector2d(1, 0), new Vector2d(1, 1), new Vector2d(0, 1) },
+				new Vector3d[] { new Vector3d(0, 0, 1), new Vector3d(0, 0, 1), new Vector3d(0, 0, 1), new Vector3d(0, 0, 1) },
+				new int[] { 0, 1, 2, 0, 2, 3 });
+		PackedMesh packed = mesh.getPackedMesh();
+		Assertions.assertEquals(4, packed.getVertexCount());
+		Assertions.assertEquals(2, packed.getTriangleCount());
+		Assertions.assertArrayEquals(new float[] { 0,0,0, 1,0,0, 1,1,0, 0,1,0 }, packed.getPositions());
+
+		int[] visited = new int[6];
+		mesh.forEachTriangle((triangle, a, b, c) -> {
+			visited[triangle*3  ] = a;
+			visited[triangle*3+1] = b;
+			visited[triangle*3+2] = c;
+		});
+		Assertions.assertArrayEquals(new int[] { 0, 1, 2, 0, 2, 3 }, visited);
+
+		//Changes to the packed arrays show through the record-based API
+		packed.getTexcoords()[5] = 0.5f;
+		mesh.transform(new Matrix3(2, 0, 0, 0, 2, 0, 0, 0, 2));
+		List<Mesh.Face> faces = mesh.createTriangleList();
+		Assertions.assertEquals(2, faces.size());
+		Mesh.Vertex vertex = faces.get(0).stream().skip(2).findFirst().get();
+		Assertions.assertEquals(new Vector3d(2, 2, 0), vertex.get(ShaderAttribute.POSITION));
+		Assertions.assertEquals(new Vector2d(1, 0.5), vertex.get(ShaderAttribute.TEXCOORD));
+		Assertions.assertEquals(new Vector3d(0, 0, 1), vertex.get(ShaderAttribute.NORMAL));
+	}
+
+	@Test
+	public void testPackedMeshValidation() {
+		float[] positions = new float[9];
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new PackedMesh(positions, new float[6], new float[9], new int[] { 0, 1, 3 }));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new PackedMesh(positions, new float[4], new float[9], new int[] { 0, 1, 2 }));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new PackedMesh(positions, new float[6], new float[9], new int[] { 0, 1 }));
+	}
+
+	@Test
+	public void testShaderAttributeIds() {
+		ShaderAttribute<Double> custom = new ShaderAttribute<>("test_custom");
+		Assertions.assertEquals(custom.id(), new ShaderAttribute<Double>("test_custom").id());
+		Assertions.assertEquals(custom, ShaderAttribute.byId(custom.id()));
+		Assertions.assertTrue(ShaderAttribute.byId(custom.id()) == ShaderAttribute.byId(custom.id()), "byId should return one canonical instance");
+		Assertions.assertTrue(custom.id() < ShaderAttribute.count(), "Ids should be dense");
+		Assertions.assertTrue(ShaderAttribute.POSITION.id() != ShaderAttribute.NORMAL.id(), "Different names need different ids");
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new ShaderAttribute<>("position", ShaderAttribute.NORMAL.id()));
+
+		Material material = new Material();
+		material.put(custom, 0.5);
+		material.put(ShaderAttribute.DIFFUSE_TEXTURE, "stone.png");
+		Assertions.assertEquals(Double.valueOf(0.5), material.get(custom));
+		Assertions.assertNull(material.get(ShaderAttribute.NORMAL_TEXTURE));
+		Assertions.assertEquals(2, material.getAll().size());
+
+		Material copy = new Material();
+		copy.putAll(material);
+		copy.put(custom, null);
+		Assertions.assertEquals("{ \"diffuse_texture\": stone.png }", copy.toString());
+	}
+
+	@Test
+	public void testBinaryModelRoundTrip() throws IOException {
+		Material material = new Material();
+		material.put(ShaderAttribute.DIFFUSE_TEXTURE, "stone.png");
+		material.put(ShaderAttribute.DIFFUSE_COLOR, new RGBColor(1, 0.5f, 0.25f, 0));
+		material.put(ShaderAttribute.ROUGHNESS, 0.75);
+		Model model = new Model();
+		model.getMeshes().add(new Mesh(material,
+				new PackedMesh(new float[] { -1,0,2, 3,1,2, 0,4,-5 }, new float[] { 0,0, 1,0, 0,1 }, new float[] { 0,0,1, 0,0,1, 0,0,1 }, new int[] { 0, 1, 2 })));
+		model.getMeshes().add(new Mesh(new Material(), new PackedMesh(new float[0], new float[0], new float[0], new int[0])));
+
+		DataSlice saved = BinaryModelIO.saveToDataSlice(model);
+		Model loaded = BinaryModelIO.load(saved);
+		Assertions.assertEquals(2, loaded.getMeshes().size());
+		Mesh mesh = loaded.getMeshes().get(0);
+		Assertions.assertArrayEquals(new float[] { -1,0,2, 3,1,2, 0,4,-5 }, mesh.getPackedMesh().getPositions());
+		Assertions.assertArrayEquals(new float[] { 0,0, 1,0, 0,1 }, mesh.getPackedMesh().getTexcoords());
+		Assertions.assertArrayEquals(new int[] { 0, 1, 2 }, mesh.getPackedMesh().getIndices());
+		Assertions.assertEquals(material.getAll(), mesh.getMaterial().getAll());
+		Assertions.assertEquals(0, loaded.getMeshes().get(1).getVertexCount());
+
+		//A mapped file hands out views of the mapping instead of copies
+		Path file = Files.createTempFile("glow", ".gmdl");
+		try {
+			Files.write(file, saved.toArray());
+			MappedDataSlice mapped = MappedDataSlice.map(file);
+			try {
+				BufferMesh view = BinaryModelIO.open(mapped).get(0);
+				Assertions.assertTrue(view.getPositions().isDirect());
+				Assertions.assertEquals(new Rect3d(-1, 0, -5, 4, 4, 7), view.getBounds());
+				Assertions.assertEquals(4f, view.getPositions().get(7));
+				Assertions.assertEquals(Double.valueOf(0.75), view.getMaterial().get(ShaderAttribute.ROUGHNESS));
+			} finally {
+				mapped.destroy();
+			}
+		} finally {
+			Files.delete(file);
+		}
+
+		byte[] corrupt = saved.toArray();
+		corrupt[8] = 100; //Mesh count
+		Assertions.assertThrows(IOException.class, () -> BinaryModelIO.open(DataSlice.of(corrupt)));
+		
+		//Attribute names nobody has registered are skipped, rather than registered by the file
+		Material renamed = new Material();
+		renamed.put(new ShaderAttribute<>("test_rename_me"), 1.0);
+		renamed.put(ShaderAttribute.ROUGHNESS, 0.5);
+		Model unknown = new Model();
+		unknown.getMeshes().add(new Mesh(renamed, new PackedMesh(new float[0], new float[0], new float[0], new int[0])));
+		byte[] unknownFile = BinaryModelIO.saveToDataSlice(unknown).toArray();
+		String text = new String(unknownFile, StandardCharsets.ISO_8859_1).replace("test_rename_me", "test_never_reg");
+		Material loadedMaterial = BinaryModelIO.load(DataSlice.of(text.getBytes(StandardCharsets.ISO_8859_1))).getMeshes().get(0).getMaterial();
+		Assertions.assertNull(ShaderAttribute.lookup("test_never_reg"));
+		Assertions.assertEquals(1, loadedMaterial.getAll().size());
+		Assertions.assertEquals(Double.valueOf(0.5), loadedMaterial.get(ShaderAttribute.ROUGHNESS));
+	}
+
+	@Test
+	public void testObjLoader() throws IOException {
+		String obj = """
+				# A quad and a triangle
+				mtllib test.mtl
+				v 0 0 0
+				v 1 0 0
+				v 1 1 0
+				v 0 1 0
+				vt 0 0
+				vt 1 0
+				vt 1 1
+				vt 0 1
+				vn 0 0 1
+				usemtl red
+				f 1/1/1 2/2/1 3/3/1 4/4/1
+				v 2 0 0
+				v 2 1.5e0 -0.25
+				usemtl blue
+				f -4//1 -2//1 -1//1
+				usemtl red
+				f 1/1/1 3/3/1 4/4/1
+				""";
+		String mtl = """
+				newmtl red
+				Kd 1 0 0
+				d 0.5
+				map_Kd -s 1 1 1 red.png
+				newmtl blue
+				Kd 0 0 1
+				""";
+		ObjModelIO.LibraryResolver libraries = name -> name.equals("test.mtl") ? DataSlice.of(mtl.getBytes(StandardCharsets.UTF_8)) : null;
+
+		//Tiny chunks put every line in its own chunk, and some lines are longer than a chunk
+		for(int chunkSize : new int[] { 16, ObjModelIO.DEFAULT_CHUNK_SIZE }) {
+			Model model = ObjModelIO.load(DataSlice.of(obj.getBytes(StandardCharsets.UTF_8)), libraries, ForkJoinPool.commonPool(), chunkSize);
+			Assertions.assertEquals(2, model.getMeshes().size());
+
+			Mesh red = model.getMeshes().get(0);
+			Assertions.assertEquals(new RGBColor(0.5f, 1, 0, 0), red.getMaterial().get(ShaderAttribute.DIFFUSE_COLOR));
+			Assertions.assertEquals("red.png", red.getMaterial().get(ShaderAttribute.DIFFUSE_TEXTURE));
+			Assertions.assertEquals(4, red.getVertexCount(), "Corners with the same indices should be shared");
+			Assertions.assertArrayEquals(new int[] { 0, 1, 2, 0, 2, 3, 0, 2, 3 }, red.getPackedMesh().getIndices());
+			Assertions.assertArrayEquals(new float[] { 0,0, 1,0, 1,1, 0,1 }, red.getPackedMesh().getTexcoords());
+
+			Mesh blue = model.getMeshes().get(1);
+			Assertions.assertEquals(new RGBColor(1, 0, 0, 1), blue.getMaterial().get(ShaderAttribute.DIFFUSE_COLOR));
+			Assertions.assertArrayEquals(new float[] { 1,1,0, 2,0,0, 2,1.5f,-0.25f }, blue.getPackedMesh().getPositions());
+			Assertions.assertArrayEquals(new float[] { 0,0,1, 0,0,1, 0,0,1 }, blue.getPackedMesh().getNormals());
+		}
+
+		Assertions.assertThrows(IOException.class, () -> ObjModelIO.load(DataSlice.of("v 1 x 2\n".getBytes(StandardCharsets.UTF_8))));
+		Assertions.assertThrows(IOException.class, () -> ObjModelIO.load(DataSlice.of("v 1 2 3\nf 1 2 3\n".getBytes(StandardCharsets.UTF_8))));
+	}
+
+	@Test
+	public void testMeshOptimizer() {
+		//A 16x16 grid of quads as a triangle soup, where every triangle has its own three vertices
+		int size = 16;
+		float[] positions = new float[size * size * 6 * 3];
+		int[] indices = new int[size * size * 6];
+		int v = 0;
+		for(int y=0; y<size; y++) {
+			for(int x=0; x<size; x++) {
+				int[][] corners = { {x, y}, {x+1, y}, {x+1, y+1}, {x, y}, {x+1, y+1}, {x, y+1} };
+				for(int[] corner : corners) {
+					positions[v*3    ] = corner[0] + ((v % 2 == 0) ? 0 : 1e-6f); //Not quite exact duplicates
+					positions[v*3 + 1] = corner[1];
+					indices[v] = v;
+					v++;
+				}
+			}
+		}
+		Mesh soup = new Mesh(new Material(), new PackedMesh(positions, new float[v * 2], new float[v * 3], indices));
+
+		MeshOptimizer.Result result = MeshOptimizer.optimize(soup, 1e-4);
+		PackedMesh optimized = result.mesh().getPackedMesh();
+		Assertions.assertEquals(v, result.verticesBefore());
+		Assertions.assertEquals((size + 1) * (size + 1), result.verticesAfter());
+		Assertions.assertEquals(size * size * 2, optimized.getTriangleCount());
+		Assertions.assertEquals(3.0, result.acmrBefore(), 1e-9);
+		Assertions.assertTrue(result.acmrAfter() < 1.0, "ACMR should drop well below 1, was "+result.acmrAfter());
+
+		//Every triangle still covers half a cell, with the same winding
+		float[] p = optimized.getPositions();
+		double area = 0;
+		for(int i=0; i<optimized.getIndices().length; i+=3) {
+			int a = optimized.getIndices()[i] * 3, b = optimized.getIndices()[i+1] * 3, c = optimized.getIndices()[i+2] * 3;
+			area += ((p[b] - p[a]) * (p[c+1] - p[a+1]) - (p[b+1] - p[a+1]) * (p[c] - p[a])) / 2;
+		}
+		Assertions.assertEquals(size * size, area, 1e-3);
+
+		//Vertices are numbered in the order they're first used
+		int highest = -1;
+		for(int index : optimized.getIndices()) {
+			Assertions.assertTrue(index <= highest + 1);
+			highest = Math.max(highest, index);
+		}
+
+		//Vertices with different texcoords are kept apart
+		PackedMesh seams = new PackedMesh(new float[] { 0,0,0, 1,0,0, 0,1,0, 0,0,0 }, new float[] { 0,0, 1,0, 0,1, 0.5f,0 }, new float[12], new int[] { 0, 1, 2, 3, 1, 2 });
+		Assertions.assertEquals(4, MeshOptimizer.weld(seams, 1e-4).getVertexCount());
+		Assertions.assertThrows(IllegalArgumentException.class, () -> MeshOptimizer.weld(seams, -1));
+	}
+}
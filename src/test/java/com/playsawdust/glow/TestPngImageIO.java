@@ -0,0 +1,159 @@
+/**
+ * Glow - GL Object Wrapper
+ * Copyright (C) 2020-2024 the Chipper developers
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+package com.playsawdust.glow;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.playsawdust.glow.image.ImageData;
+import com.playsawdust.glow.image.LinearImageData;
+import com.playsawdust.glow.image.SrgbImageData;
+import com.playsawdust.glow.image.io.PngImageIO;
+import com.playsawdust.glow.image.io.png.PNGImageDataDecoder;
+import com.playsawdust.glow.image.io.png.PNGImageDataEncoder;
+import com.playsawdust.glow.io.DataSlice;
+
+public class TestPngImageIO {
+
+	/* Reference files are produced by the JDK's own PNG writer, so these tests check us against a known-good encoder */
+
+	@Test
+	public void testRgba8IsBitIdentical() throws IOException {
+		BufferedImage reference = noise(BufferedImage.TYPE_INT_ARGB, 37, 23);
+		assertMatches(reference, PngImageIO.load(DataSlice.of(encode(reference))));
+	}
+
+	@Test
+	public void testRgb8IsBitIdentical() throws IOException {
+		BufferedImage reference = noise(BufferedImage.TYPE_INT_RGB, 41, 19);
+		assertMatches(reference, PngImageIO.load(DataSlice.of(encode(reference))));
+	}
+
+	@Test
+	public void testGray8IsBitIdentical() throws IOException {
+		BufferedImage reference = noise(BufferedImage.TYPE_BYTE_GRAY, 17, 29);
+		assertMatches(reference, PngImageIO.load(DataSlice.of(encode(reference))));
+	}
+
+	@Test
+	public void testIndexedIsBitIdentical() throws IOException {
+		BufferedImage reference = noise(BufferedImage.TYPE_BYTE_INDEXED, 31, 13);
+		assertMatches(reference, PngImageIO.load(DataSlice.of(encode(reference))));
+
+		BufferedImage oneBit = noise(BufferedImage.TYPE_BYTE_BINARY, 29, 11);
+		assertMatches(oneBit, PngImageIO.load(DataSlice.of(encode(oneBit))));
+	}
+
+	@Test
+	public void testSaveRoundTrip() throws IOException {
+		for(int level : new int[] { PNGImageDataEncoder.LEVEL_STORE, PNGImageDataEncoder.LEVEL_FASTEST, PNGImageDataEncoder.LEVEL_DEFAULT }) {
+			//Large enough that the deflate stream is split across several blocks and IDAT chunks
+			SrgbImageData image = toSrgb(noise(BufferedImage.TYPE_INT_ARGB, 400, 300));
+			byte[] file = PngImageIO.saveToDataSlice(image, level).toArray();
+			assertChunkCrcs(file);
+			
+			ImageData loaded = PngImageIO.load(DataSlice.of(file));
+			assertMatches(ImageIO.read(new ByteArrayInputStream(file)), loaded);
+			for(int y=0; y<image.getHeight(); y++) {
+				for(int x=0; x<image.getWidth(); x++) {
+					Assertions.assertEquals(image.getSrgbPixel(x, y), loaded.getSrgbPixel(x, y));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testPackedGrayMatchesAcrossTargets() throws IOException {
+		//Every 2 and 4-bit gray level, decoded into both kinds of image, should come out as the same sRGB value
+		for(int bits : new int[] { 2, 4 }) {
+			int width = 1 << bits;
+			int lineBytes = (width * bits + 7) / 8;
+			byte[] data = new byte[1 + lineBytes]; //Filter type 0, then one scanline holding each level in order
+			for(int x=0; x<width; x++) {
+				data[1 + (x * bits) / 8] |= (byte) (x << (8 - bits - (x * bits) % 8));
+			}
+			
+			SrgbImageData srgb = new SrgbImageData(width, 1);
+			LinearImageData linear = new LinearImageData(width, 1);
+			PNGImageDataDecoder.decode(DataSlice.of(data), srgb, PNGImageDataDecoder.TYPE_GRAY, bits, null);
+			PNGImageDataDecoder.decode(DataSlice.of(data), linear, PNGImageDataDecoder.TYPE_GRAY, bits, null);
+			for(int x=0; x<width; x++) {
+				int level = (x * 255) / (width - 1);
+				Assertions.assertEquals(0xFF_000000 | level * 0x01_01_01, srgb.getSrgbPixel(x, 0), bits+"-bit level "+x);
+				Assertions.assertEquals(srgb.getSrgbPixel(x, 0), linear.getSrgbPixel(x, 0), bits+"-bit level "+x);
+			}
+		}
+	}
+	
+	private static void assertChunkCrcs(byte[] file) {
+		ByteBuffer buf = ByteBuffer.wrap(file);
+		for(int pos=8; pos<file.length; ) {
+			int length = buf.getInt(pos);
+			CRC32 crc = new CRC32();
+			crc.update(file, pos + 4, length + 4);
+			Assertions.assertEquals((int) crc.getValue(), buf.getInt(pos + 8 + length), "CRC of the chunk at "+pos);
+			pos += length + 12;
+		}
+	}
+	
+	private static SrgbImageData toSrgb(BufferedImage image) {
+		SrgbImageData result = new SrgbImageData(image.getWidth(), image.getHeight());
+		for(int y=0; y<image.getHeight(); y++) {
+			for(int x=0; x<image.getWidth(); x++) {
+				result.setPixel(x, y, image.getRGB(x, y));
+			}
+		}
+		return result;
+	}
+	
+	private static BufferedImage noise(int type, int width, int height) {
+		BufferedImage result = new BufferedImage(width, height, type);
+		Random random = new Random(width * 31 + height);
+		for(int y=0; y<height; y++) {
+			for(int x=0; x<width; x++) {
+				//Mix in some smooth gradients so that the encoder picks a variety of filters
+				int argb = (x % 5 == 0) ? random.nextInt() : (0xFF_000000 | (x * 6) << 16 | (y * 8) << 8 | (x ^ y));
+				result.setRGB(x, y, argb);
+			}
+		}
+		return result;
+	}
+
+	private static byte[] encode(BufferedImage image) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", out);
+		return out.toByteArray();
+	}
+
+	private static void assertMatches(BufferedImage expected, ImageData actual) {
+		Assertions.assertTrue(actual instanceof SrgbImageData);
+		Assertions.assertEquals(expected.getWidth(), actual.getWidth());
+		Assertions.assertEquals(expected.getHeight(), actual.getHeight());
+		for(int y=0; y<expected.getHeight(); y++) {
+			for(int x=0; x<expected.getWidth(); x++) {
+				int expectedPixel = expected.getRGB(x, y);
+				if (expected.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+					//getRGB runs gray images through a linear-gray colorspace, so compare against the raw samples
+					expectedPixel = 0xFF_000000 | expected.getRaster().getSample(x, y, 0) * 0x01_01_01;
+				}
+				Assertions.assertEquals(expectedPixel, actual.getSrgbPixel(x, y), "pixel "+x+", "+y);
+			}
+		}
+	}
+}